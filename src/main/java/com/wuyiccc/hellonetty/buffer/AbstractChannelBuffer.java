@@ -28,7 +28,9 @@ import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.ScatteringByteChannel;
+import java.nio.charset.Charset;
 import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 
 /**
@@ -41,11 +43,21 @@ import java.util.NoSuchElementException;
  */
 public abstract class AbstractChannelBuffer implements ChannelBuffer {
 
+    private static final AtomicIntegerFieldUpdater<AbstractChannelBuffer> refCntUpdater =
+        AtomicIntegerFieldUpdater.newUpdater(AbstractChannelBuffer.class, "refCnt");
+
+    private volatile int refCnt = 1;
     private int readerIndex;
     private int writerIndex;
     private int markedReaderIndex;
     private int markedWriterIndex;
 
+    /**
+     * Records the accesses to this buffer if this buffer was sampled by
+     * {@link ChannelBufferLeakDetector}.
+     */
+    ChannelBufferLeakDetector.Tracker leakTracker;
+
     public int readerIndex() {
         return readerIndex;
     }
@@ -118,11 +130,21 @@ public abstract class AbstractChannelBuffer implements ChannelBuffer {
         }
         setBytes(0, this, readerIndex, writerIndex - readerIndex);
         writerIndex -= readerIndex;
-        markedReaderIndex = Math.max(markedReaderIndex - readerIndex, 0);
-        markedWriterIndex = Math.max(markedWriterIndex - readerIndex, 0);
+        adjustMarkers(readerIndex);
         readerIndex = 0;
     }
 
+    /**
+     * Decreases the marked {@code readerIndex} and {@code writerIndex} by
+     * the specified value.  A subclass which discards the leading bytes of
+     * its content calls this method to keep the marked indexes pointing to
+     * the same bytes.
+     */
+    protected void adjustMarkers(int decrement) {
+        markedReaderIndex = Math.max(markedReaderIndex - decrement, 0);
+        markedWriterIndex = Math.max(markedWriterIndex - decrement, 0);
+    }
+
     public short getUnsignedByte(int index) {
         return (short) (getByte(index) & 0xFF);
     }
@@ -264,6 +286,46 @@ public abstract class AbstractChannelBuffer implements ChannelBuffer {
         return v;
     }
 
+    public int readVarInt32() {
+        int readerIndex = this.readerIndex;
+        int index = readerIndex;
+        int endIndex = Math.min(writerIndex, index + VarInts.MAX_VARINT32_BYTES);
+        int value = 0;
+        for (int shift = 0; index < endIndex; shift += 7) {
+            byte b = getByte(index ++);
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                this.readerIndex = index;
+                return value;
+            }
+        }
+        throw VarInts.decodeFailure(index - readerIndex, VarInts.MAX_VARINT32_BYTES);
+    }
+
+    public long readVarInt64() {
+        int readerIndex = this.readerIndex;
+        int index = readerIndex;
+        int endIndex = Math.min(writerIndex, index + VarInts.MAX_VARINT64_BYTES);
+        long value = 0;
+        for (int shift = 0; index < endIndex; shift += 7) {
+            byte b = getByte(index ++);
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                this.readerIndex = index;
+                return value;
+            }
+        }
+        throw VarInts.decodeFailure(index - readerIndex, VarInts.MAX_VARINT64_BYTES);
+    }
+
+    public int readZigZagVarInt32() {
+        return VarInts.unZigZag(readVarInt32());
+    }
+
+    public long readZigZagVarInt64() {
+        return VarInts.unZigZag(readVarInt64());
+    }
+
     public ChannelBuffer readBytes(int length) {
         checkReadableBytes(length);
         if (length == 0) {
@@ -297,6 +359,20 @@ public abstract class AbstractChannelBuffer implements ChannelBuffer {
         return readSlice(endIndex);
     }
 
+    public ChannelBuffer readLengthPrefixedSlice() {
+        int oldReaderIndex = readerIndex;
+        int length = readVarInt32();
+        if (length < 0) {
+            readerIndex = oldReaderIndex;
+            throw new IllegalStateException("negative length prefix: " + length);
+        }
+        if (length > writerIndex - readerIndex) {
+            readerIndex = oldReaderIndex;
+            throw new IndexOutOfBoundsException();
+        }
+        return readSlice(length);
+    }
+
     public void readBytes(byte[] dst, int dstIndex, int length) {
         checkReadableBytes(length);
         getBytes(readerIndex, dst, dstIndex, length);
@@ -388,6 +464,78 @@ public abstract class AbstractChannelBuffer implements ChannelBuffer {
         writerIndex += 8;
     }
 
+    public void writeVarInt32(int value) {
+        if (VarInts.sizeOf(value) > writableBytes()) {
+            throw new IndexOutOfBoundsException();
+        }
+        int index = writerIndex;
+        while ((value & ~0x7F) != 0) {
+            setByte(index ++, (byte) (value | 0x80));
+            value >>>= 7;
+        }
+        setByte(index ++, (byte) value);
+        writerIndex = index;
+    }
+
+    public void writeVarInt64(long value) {
+        if (VarInts.sizeOf(value) > writableBytes()) {
+            throw new IndexOutOfBoundsException();
+        }
+        int index = writerIndex;
+        while ((value & ~0x7FL) != 0) {
+            setByte(index ++, (byte) (value | 0x80));
+            value >>>= 7;
+        }
+        setByte(index ++, (byte) value);
+        writerIndex = index;
+    }
+
+    public void writeZigZagVarInt32(int value) {
+        writeVarInt32(VarInts.zigZag(value));
+    }
+
+    public void writeZigZagVarInt64(long value) {
+        writeVarInt64(VarInts.zigZag(value));
+    }
+
+    public int setCharSequence(int index, CharSequence sequence, Charset charset) {
+        int length = CharsetCodecs.encodedLength(sequence, charset);
+        if (length >= 0) {
+            if (index < 0 || length > capacity() - index) {
+                throw new IndexOutOfBoundsException();
+            }
+            byte[] encoded = CharsetCodecs.scratch(length);
+            CharsetCodecs.encode(sequence, charset, encoded, 0);
+            setBytes(index, encoded, 0, length);
+            return length;
+        }
+
+        ByteBuffer encoded = CharsetCodecs.encode(sequence, charset);
+        length = encoded.remaining();
+        if (index < 0 || length > capacity() - index) {
+            throw new IndexOutOfBoundsException();
+        }
+        setBytes(index, encoded);
+        return length;
+    }
+
+    public CharSequence getCharSequence(int index, int length, Charset charset) {
+        return CharsetCodecs.decode(this, index, length, charset);
+    }
+
+    public int writeCharSequence(CharSequence sequence, Charset charset) {
+        int length = setCharSequence(writerIndex, sequence, charset);
+        writerIndex += length;
+        return length;
+    }
+
+    public CharSequence readCharSequence(int length, Charset charset) {
+        checkReadableBytes(length);
+        CharSequence sequence = getCharSequence(readerIndex, length, charset);
+        readerIndex += length;
+        return sequence;
+    }
+
     public void writeBytes(byte[] src, int srcIndex, int length) {
         setBytes(writerIndex, src, srcIndex, length);
         writerIndex += length;
@@ -530,6 +678,96 @@ public abstract class AbstractChannelBuffer implements ChannelBuffer {
         return ChannelBuffers.compare(this, that);
     }
 
+    public int refCnt() {
+        return refCnt;
+    }
+
+    public ChannelBuffer retain() {
+        for (;;) {
+            int refCnt = this.refCnt;
+            if (refCnt == 0) {
+                throw new IllegalStateException("released already");
+            }
+            if (refCnt == Integer.MAX_VALUE) {
+                throw new IllegalStateException("refCnt overflow");
+            }
+            if (refCntUpdater.compareAndSet(this, refCnt, refCnt + 1)) {
+                ChannelBufferLeakDetector.Tracker leakTracker = this.leakTracker;
+                if (leakTracker != null) {
+                    leakTracker.record("Retained (refCnt: " + (refCnt + 1) + ')');
+                }
+                return this;
+            }
+        }
+    }
+
+    public boolean release() {
+        for (;;) {
+            int refCnt = this.refCnt;
+            if (refCnt == 0) {
+                return false;
+            }
+            if (refCntUpdater.compareAndSet(this, refCnt, refCnt - 1)) {
+                ChannelBufferLeakDetector.Tracker leakTracker = this.leakTracker;
+                if (refCnt == 1) {
+                    if (leakTracker != null) {
+                        leakTracker.close();
+                    }
+                    deallocate();
+                    return true;
+                }
+                if (leakTracker != null) {
+                    leakTracker.record("Released (refCnt: " + (refCnt - 1) + ')');
+                }
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Throws an {@link IllegalStateException} if the {@linkplain #refCnt()
+     * reference count} of this buffer is {@code 0}.  A buffer which frees
+     * or recycles its memory on {@link #deallocate()} must call this method
+     * before accessing the memory, so that accessing a released buffer raises
+     * an exception rather than reading or writing the memory which might
+     * belong to another buffer now.
+     */
+    protected final void ensureAccessible() {
+        if (refCnt() == 0) {
+            throw new IllegalStateException("released already");
+        }
+    }
+
+    /**
+     * Returns the heap byte array which holds the content of this buffer, or
+     * {@code null} if this buffer is not backed by an accessible array.  The
+     * byte at the index {@code i} of this buffer is the element at
+     * {@code i + backingArrayOffset()} of the returned array.
+     * {@link ChannelBuffers} uses it to hash and compare buffers without
+     * going through the accessors.
+     */
+    byte[] backingArray() {
+        return null;
+    }
+
+    /**
+     * Returns the offset of the first byte of this buffer in
+     * {@link #backingArray()}.
+     */
+    int backingArrayOffset() {
+        return 0;
+    }
+
+    /**
+     * Returns the memory of this buffer to where it came from.  This method
+     * is called once when the reference count of this buffer reaches
+     * {@code 0}.  The default implementation does nothing, leaving the
+     * memory to the garbage collector.
+     */
+    protected void deallocate() {
+        // Nothing to do by default.
+    }
+
     @Override
     public String toString() {
         return getClass().getSimpleName() + '(' +
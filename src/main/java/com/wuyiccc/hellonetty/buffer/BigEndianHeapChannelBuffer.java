@@ -55,15 +55,14 @@ public class BigEndianHeapChannelBuffer extends HeapChannelBuffer {
         super(array);
     }
 
-    private BigEndianHeapChannelBuffer(byte[] array, int readerIndex, int writerIndex) {
-        super(array, readerIndex, writerIndex);
-    }
-
     public ByteOrder order() {
         return ByteOrder.BIG_ENDIAN;
     }
 
     public short getShort(int index) {
+        if (UnsafeAccess.isAvailable()) {
+            return UnsafeAccess.getShort(array, index, true);
+        }
         return (short) (array[index] << 8 | array[index+1] & 0xFF);
     }
 
@@ -74,6 +73,9 @@ public class BigEndianHeapChannelBuffer extends HeapChannelBuffer {
     }
 
     public int getInt(int index) {
+        if (UnsafeAccess.isAvailable()) {
+            return UnsafeAccess.getInt(array, index, true);
+        }
         return  (array[index]   & 0xff) << 24 |
                 (array[index+1] & 0xff) << 16 |
                 (array[index+2] & 0xff) <<  8 |
@@ -81,6 +83,9 @@ public class BigEndianHeapChannelBuffer extends HeapChannelBuffer {
     }
 
     public long getLong(int index) {
+        if (UnsafeAccess.isAvailable()) {
+            return UnsafeAccess.getLong(array, index, true);
+        }
         return  ((long) array[index]   & 0xff) << 56 |
                 ((long) array[index+1] & 0xff) << 48 |
                 ((long) array[index+2] & 0xff) << 40 |
@@ -92,6 +97,10 @@ public class BigEndianHeapChannelBuffer extends HeapChannelBuffer {
     }
 
     public void setShort(int index, short value) {
+        if (UnsafeAccess.isAvailable()) {
+            UnsafeAccess.putShort(array, index, value, true);
+            return;
+        }
         array[index  ] = (byte) (value >>> 8);
         array[index+1] = (byte) (value >>> 0);
     }
@@ -103,6 +112,10 @@ public class BigEndianHeapChannelBuffer extends HeapChannelBuffer {
     }
 
     public void setInt(int index, int   value) {
+        if (UnsafeAccess.isAvailable()) {
+            UnsafeAccess.putInt(array, index, value, true);
+            return;
+        }
         array[index  ] = (byte) (value >>> 24);
         array[index+1] = (byte) (value >>> 16);
         array[index+2] = (byte) (value >>> 8);
@@ -110,6 +123,10 @@ public class BigEndianHeapChannelBuffer extends HeapChannelBuffer {
     }
 
     public void setLong(int index, long  value) {
+        if (UnsafeAccess.isAvailable()) {
+            UnsafeAccess.putLong(array, index, value, true);
+            return;
+        }
         array[index  ] = (byte) (value >>> 56);
         array[index+1] = (byte) (value >>> 48);
         array[index+2] = (byte) (value >>> 40);
@@ -121,7 +138,7 @@ public class BigEndianHeapChannelBuffer extends HeapChannelBuffer {
     }
 
     public ChannelBuffer duplicate() {
-        return new BigEndianHeapChannelBuffer(array, readerIndex(), writerIndex());
+        return new DuplicatedChannelBuffer(this);
     }
 
     public ChannelBuffer copy(int index, int length) {
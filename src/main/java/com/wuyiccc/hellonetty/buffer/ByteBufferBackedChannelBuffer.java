@@ -36,6 +36,10 @@ import java.nio.charset.UnsupportedCharsetException;
  * A NIO {@link ByteBuffer} based buffer.  It is recommended to use {@link ChannelBuffers#directBuffer(int)}
  * and {@link ChannelBuffers#wrappedBuffer(ByteBuffer)} instead of calling the
  * constructor explicitly.
+ * <p>
+ * Once the {@linkplain #refCnt() reference count} of this buffer drops to
+ * {@code 0}, its memory may have been freed.  Accessing the buffer or any of
+ * its derived buffers after that raises an {@link IllegalStateException}.
  *
  * @author The Netty Project (netty-dev@lists.jboss.org)
  * @author Trustin Lee (tlee@redhat.com)
@@ -47,26 +51,59 @@ public class ByteBufferBackedChannelBuffer extends AbstractChannelBuffer {
 
     private final ByteBuffer buffer;
     private final int capacity;
+    private final boolean bigEndian;
+
+    /**
+     * The address of the direct buffer, or {@code 0} if the multi-byte
+     * primitives and the byte arrays are accessed via {@link #buffer}.
+     */
+    private final long address;
+
+    /**
+     * A view of {@link #buffer} whose position and limit are set for each
+     * bulk operation, so that the operation does not allocate a new view.
+     * It is confined to the thread which created it because a buffer can be
+     * read by more than one thread via its derived buffers.
+     */
+    private InternalView internalView;
+
+    /**
+     * The buffer allocated by {@link DirectMemoryManager} and its account,
+     * or {@code null} if the wrapped buffer was allocated elsewhere.
+     */
+    private final ByteBuffer allocated;
+    private final DirectMemoryManager.Allocation allocation;
 
     /**
      * Creates a new buffer which wraps the specified buffer's slice.
      */
     public ByteBufferBackedChannelBuffer(ByteBuffer buffer) {
+        this(buffer, null);
+    }
+
+    /**
+     * Creates a new buffer which wraps the specified buffer allocated by
+     * {@link DirectMemoryManager}, and frees it when deallocated.
+     */
+    ByteBufferBackedChannelBuffer(
+            ByteBuffer buffer, DirectMemoryManager.Allocation allocation) {
         if (buffer == null) {
             throw new NullPointerException("buffer");
         }
 
-        this.buffer = buffer.slice();
+        this.buffer = buffer.slice().order(buffer.order());
         capacity = buffer.remaining();
+        bigEndian = buffer.order() == ByteOrder.BIG_ENDIAN;
+        if (UnsafeAccess.isAvailable() && buffer.isDirect() && !buffer.isReadOnly()) {
+            address = UnsafeAccess.address(this.buffer);
+        } else {
+            address = 0;
+        }
+        allocated = allocation != null? buffer : null;
+        this.allocation = allocation;
         writerIndex(capacity);
     }
 
-    private ByteBufferBackedChannelBuffer(ByteBufferBackedChannelBuffer buffer) {
-        this.buffer = buffer.buffer;
-        capacity = buffer.capacity;
-        setIndex(buffer.readerIndex(), buffer.writerIndex());
-    }
-
     public ByteOrder order() {
         return buffer.order();
     }
@@ -75,11 +112,27 @@ public class ByteBufferBackedChannelBuffer extends AbstractChannelBuffer {
         return capacity;
     }
 
+    @Override
+    byte[] backingArray() {
+        return buffer.hasArray()? buffer.array() : null;
+    }
+
+    @Override
+    int backingArrayOffset() {
+        return buffer.hasArray()? buffer.arrayOffset() : 0;
+    }
+
     public byte getByte(int index) {
+        ensureAccessible();
         return buffer.get(index);
     }
 
     public short getShort(int index) {
+        ensureAccessible();
+        if (address != 0) {
+            checkIndex(index, 2);
+            return UnsafeAccess.getShort(address + index, bigEndian);
+        }
         return buffer.getShort(index);
     }
 
@@ -90,20 +143,30 @@ public class ByteBufferBackedChannelBuffer extends AbstractChannelBuffer {
     }
 
     public int getInt(int index) {
+        ensureAccessible();
+        if (address != 0) {
+            checkIndex(index, 4);
+            return UnsafeAccess.getInt(address + index, bigEndian);
+        }
         return buffer.getInt(index);
     }
 
     public long getLong(int index) {
+        ensureAccessible();
+        if (address != 0) {
+            checkIndex(index, 8);
+            return UnsafeAccess.getLong(address + index, bigEndian);
+        }
         return buffer.getLong(index);
     }
 
     public void getBytes(int index, ChannelBuffer dst, int dstIndex, int length) {
-        if (dst instanceof ByteBufferBackedChannelBuffer) {
+        if (dst == this) {
+            // The internal view can't be the source and the destination.
+            getBytes(index, newBuffer(dstIndex, length));
+        } else if (dst instanceof ByteBufferBackedChannelBuffer) {
             ByteBufferBackedChannelBuffer bbdst = (ByteBufferBackedChannelBuffer) dst;
-            ByteBuffer data = bbdst.buffer.duplicate();
-
-            data.limit(dstIndex + length).position(dstIndex);
-            getBytes(index, data);
+            getBytes(index, bbdst.internalBuffer(dstIndex, length));
         } else if (buffer.hasArray()) {
             dst.setBytes(dstIndex, buffer.array(), index + buffer.arrayOffset(), length);
         } else {
@@ -112,31 +175,32 @@ public class ByteBufferBackedChannelBuffer extends AbstractChannelBuffer {
     }
 
     public void getBytes(int index, byte[] dst, int dstIndex, int length) {
-        ByteBuffer data = buffer.duplicate();
-        try {
-            data.limit(index + length).position(index);
-        } catch (IllegalArgumentException e) {
-            throw new IndexOutOfBoundsException();
+        ensureAccessible();
+        if (address != 0) {
+            checkIndex(index, length);
+            UnsafeAccess.copyMemory(address + index, dst, dstIndex, length);
+        } else {
+            internalBuffer(index, length).get(dst, dstIndex, length);
         }
-        data.get(dst, dstIndex, length);
     }
 
     public void getBytes(int index, ByteBuffer dst) {
-        ByteBuffer data = buffer.duplicate();
         int bytesToCopy = Math.min(capacity() - index, dst.remaining());
-        try {
-            data.limit(index + bytesToCopy).position(index);
-        } catch (IllegalArgumentException e) {
-            throw new IndexOutOfBoundsException();
-        }
-        dst.put(data);
+        dst.put(internalBuffer(index, bytesToCopy));
     }
 
     public void setByte(int index, byte value) {
+        ensureAccessible();
         buffer.put(index, value);
     }
 
     public void setShort(int index, short value) {
+        ensureAccessible();
+        if (address != 0) {
+            checkIndex(index, 2);
+            UnsafeAccess.putShort(address + index, value, bigEndian);
+            return;
+        }
         buffer.putShort(index, value);
     }
 
@@ -146,21 +210,33 @@ public class ByteBufferBackedChannelBuffer extends AbstractChannelBuffer {
         setByte(index+2, (byte) (value >>>  0));
     }
 
-    public void setInt(int index, int   value) {
+    public void setInt(int index, int value) {
+        ensureAccessible();
+        if (address != 0) {
+            checkIndex(index, 4);
+            UnsafeAccess.putInt(address + index, value, bigEndian);
+            return;
+        }
         buffer.putInt(index, value);
     }
 
-    public void setLong(int index, long  value) {
+    public void setLong(int index, long value) {
+        ensureAccessible();
+        if (address != 0) {
+            checkIndex(index, 8);
+            UnsafeAccess.putLong(address + index, value, bigEndian);
+            return;
+        }
         buffer.putLong(index, value);
     }
 
     public void setBytes(int index, ChannelBuffer src, int srcIndex, int length) {
-        if (src instanceof ByteBufferBackedChannelBuffer) {
+        if (src == this) {
+            // The internal view can't be the source and the destination.
+            setBytes(index, newBuffer(srcIndex, length));
+        } else if (src instanceof ByteBufferBackedChannelBuffer) {
             ByteBufferBackedChannelBuffer bbsrc = (ByteBufferBackedChannelBuffer) src;
-            ByteBuffer data = bbsrc.buffer.duplicate();
-
-            data.limit(srcIndex + length).position(srcIndex);
-            setBytes(index, data);
+            setBytes(index, bbsrc.internalBuffer(srcIndex, length));
         } else if (buffer.hasArray()) {
             src.getBytes(srcIndex, buffer.array(), index + buffer.arrayOffset(), length);
         } else {
@@ -169,18 +245,21 @@ public class ByteBufferBackedChannelBuffer extends AbstractChannelBuffer {
     }
 
     public void setBytes(int index, byte[] src, int srcIndex, int length) {
-        ByteBuffer data = buffer.duplicate();
-        data.limit(index + length).position(index);
-        data.put(src, srcIndex, length);
+        ensureAccessible();
+        if (address != 0) {
+            checkIndex(index, length);
+            UnsafeAccess.copyMemory(src, srcIndex, address + index, length);
+        } else {
+            internalBuffer(index, length).put(src, srcIndex, length);
+        }
     }
 
     public void setBytes(int index, ByteBuffer src) {
-        ByteBuffer data = buffer.duplicate();
-        data.limit(index + src.remaining()).position(index);
-        data.put(src);
+        internalBuffer(index, src.remaining()).put(src);
     }
 
     public void getBytes(int index, OutputStream out, int length) throws IOException {
+        ensureAccessible();
         if (length == 0) {
             return;
         }
@@ -192,7 +271,7 @@ public class ByteBufferBackedChannelBuffer extends AbstractChannelBuffer {
                     length);
         } else {
             byte[] tmp = new byte[length];
-            ((ByteBuffer) buffer.duplicate().position(index)).get(tmp);
+            getBytes(index, tmp, 0, tmp.length);
             out.write(tmp);
         }
     }
@@ -202,12 +281,13 @@ public class ByteBufferBackedChannelBuffer extends AbstractChannelBuffer {
             return 0;
         }
 
-        return out.write((ByteBuffer) buffer.duplicate().position(index).limit(index + length));
+        return out.write(internalBuffer(index, length));
     }
 
     public int setBytes(int index, InputStream in, int length)
             throws IOException {
 
+        ensureAccessible();
         int readBytes = 0;
 
         if (!buffer.isReadOnly() && buffer.hasArray()) {
@@ -240,7 +320,7 @@ public class ByteBufferBackedChannelBuffer extends AbstractChannelBuffer {
                 readBytes += localReadBytes;
                 i += readBytes;
             } while (i < tmp.length);
-            ((ByteBuffer) buffer.duplicate().position(index)).put(tmp);
+            setBytes(index, tmp, 0, tmp.length);
         }
 
         return readBytes;
@@ -249,7 +329,7 @@ public class ByteBufferBackedChannelBuffer extends AbstractChannelBuffer {
     public int setBytes(int index, ScatteringByteChannel in, int length)
             throws IOException {
 
-        ByteBuffer slice = (ByteBuffer) buffer.duplicate().limit(index + length).position(index);
+        ByteBuffer slice = internalBuffer(index, length);
         int readBytes = 0;
 
         while (readBytes < length) {
@@ -269,15 +349,29 @@ public class ByteBufferBackedChannelBuffer extends AbstractChannelBuffer {
         return readBytes;
     }
 
+    @Override
+    public int indexOf(int fromIndex, int toIndex, byte value) {
+        ensureAccessible();
+        return ByteSearch.indexOf(this, buffer, fromIndex, toIndex, value);
+    }
+
+    @Override
+    public int indexOf(int fromIndex, int toIndex, ChannelBufferIndexFinder indexFinder) {
+        ensureAccessible();
+        return ByteSearch.indexOf(this, buffer, fromIndex, toIndex, indexFinder);
+    }
+
     public ByteBuffer toByteBuffer(int index, int length) {
+        ensureAccessible();
         if (index == 0 && length == capacity()) {
-            return buffer.duplicate();
+            return buffer.duplicate().order(order());
         } else {
-            return ((ByteBuffer) buffer.duplicate().position(index).limit(index + length)).slice();
+            return internalBuffer(index, length).slice().order(order());
         }
     }
 
     public String toString(int index, int length, String charsetName) {
+        ensureAccessible();
         if (!buffer.isReadOnly() && buffer.hasArray()) {
             try {
                 return new String(
@@ -288,7 +382,7 @@ public class ByteBufferBackedChannelBuffer extends AbstractChannelBuffer {
             }
         } else {
             byte[] tmp = new byte[length];
-            ((ByteBuffer) buffer.duplicate().position(index)).get(tmp);
+            getBytes(index, tmp, 0, tmp.length);
             try {
                 return new String(tmp, charsetName);
             } catch (UnsupportedEncodingException e) {
@@ -298,32 +392,87 @@ public class ByteBufferBackedChannelBuffer extends AbstractChannelBuffer {
     }
 
     public ChannelBuffer slice(int index, int length) {
-        if (index == 0 && length == capacity()) {
-            return duplicate();
+        if (index == 0) {
+            if (length == 0) {
+                return ChannelBuffers.EMPTY_BUFFER;
+            }
+            if (length == capacity) {
+                return duplicate();
+            } else {
+                return new TruncatedChannelBuffer(this, length);
+            }
         } else {
-            if (index >= 0 && length == 0) {
+            if (length == 0) {
                 return ChannelBuffers.EMPTY_BUFFER;
             }
-            return new ByteBufferBackedChannelBuffer(
-                    ((ByteBuffer) buffer.duplicate().position(index).limit(index + length)));
+            return new SlicedChannelBuffer(this, index, length);
         }
     }
 
     public ChannelBuffer duplicate() {
-        return new ByteBufferBackedChannelBuffer(this);
+        return new DuplicatedChannelBuffer(this);
     }
 
     public ChannelBuffer copy(int index, int length) {
-        ByteBuffer src;
-        try {
-            src = (ByteBuffer) buffer.duplicate().position(index).limit(index + length);
-        } catch (IllegalArgumentException e) {
-            throw new IndexOutOfBoundsException();
+        ByteBuffer src = internalBuffer(index, length);
+        if (buffer.isDirect() && length != 0) {
+            DirectMemoryManager.Subsystem subsystem = allocation != null?
+                    allocation.subsystem : DirectMemoryManager.Subsystem.USER;
+            ChannelBuffer dst = DirectMemoryManager.directBuffer(
+                    subsystem, order(), length);
+            dst.writeBytes(src);
+            return dst;
         }
 
         ByteBuffer dst = buffer.isDirect() ? ByteBuffer.allocateDirect(length) : ByteBuffer.allocate(length);
         dst.put(src);
         dst.clear();
+        dst.order(order());
         return new ByteBufferBackedChannelBuffer(dst);
     }
+
+    @Override
+    protected void deallocate() {
+        if (allocation != null) {
+            allocation.free(allocated);
+        }
+    }
+
+    /**
+     * Returns a view of the specified range of this buffer.  The returned
+     * view must not be retained; it is reused by the next call.
+     */
+    private ByteBuffer internalBuffer(int index, int length) {
+        ensureAccessible();
+        checkIndex(index, length);
+        InternalView view = internalView;
+        if (view == null || view.thread != Thread.currentThread()) {
+            internalView = view = new InternalView(buffer.duplicate());
+        }
+        ByteBuffer tmp = view.buffer;
+        tmp.clear();
+        tmp.position(index).limit(index + length);
+        return tmp;
+    }
+
+    private ByteBuffer newBuffer(int index, int length) {
+        ensureAccessible();
+        checkIndex(index, length);
+        return (ByteBuffer) buffer.duplicate().limit(index + length).position(index);
+    }
+
+    private void checkIndex(int index, int length) {
+        if (index < 0 || length < 0 || index > capacity - length) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+
+    private static final class InternalView {
+        final Thread thread = Thread.currentThread();
+        final ByteBuffer buffer;
+
+        InternalView(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+    }
 }
@@ -0,0 +1,340 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.wuyiccc.hellonetty.buffer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Searches a byte array or a {@link ByteBuffer} for a byte which belongs
+ * (or does not belong) to a set of up to two bytes, eight bytes at a time.
+ * Each 64-bit word is tested for all of its bytes at once with the
+ * SIMD-within-a-register technique, so that the buffers backed by an array
+ * or a {@link ByteBuffer} do not have to call {@link ChannelBuffer#getByte(int)}
+ * and its bounds check for every byte.
+ *
+ * @author The Netty Project (netty-dev@lists.jboss.org)
+ * @author Trustin Lee (tlee@redhat.com)
+ *
+ * @version $Rev$, $Date$
+ */
+final class ByteSearch {
+
+    private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    /**
+     * A {@link ChannelBufferIndexFinder} which locates a byte which is equal
+     * to (or, if negated, different from) both of the specified bytes.  The
+     * buffers which can be searched in bulk recognize this finder.
+     */
+    static final class Finder implements ChannelBufferIndexFinder {
+
+        final byte first;
+        final byte second;
+        final boolean negated;
+
+        Finder(char first, char second, boolean negated) {
+            this.first = (byte) first;
+            this.second = (byte) second;
+            this.negated = negated;
+        }
+
+        public boolean find(ChannelBuffer buffer, int guessedIndex) {
+            byte b = buffer.getByte(guessedIndex);
+            return b == first || b == second? !negated : negated;
+        }
+    }
+
+    /**
+     * Implements {@link ChannelBuffer#indexOf(int, int, byte)} for a buffer
+     * whose content starts at the specified {@code offset} of the specified
+     * {@code array}.
+     */
+    static int indexOf(
+            ChannelBuffer buffer, byte[] array, int offset,
+            int fromIndex, int toIndex, byte value) {
+        return indexOf(buffer, array, offset, fromIndex, toIndex, value, value, false);
+    }
+
+    /**
+     * Implements {@link ChannelBuffer#indexOf(int, int, ChannelBufferIndexFinder)}
+     * for a buffer whose content starts at the specified {@code offset} of
+     * the specified {@code array}.
+     */
+    static int indexOf(
+            ChannelBuffer buffer, byte[] array, int offset,
+            int fromIndex, int toIndex, ChannelBufferIndexFinder indexFinder) {
+        if (!(indexFinder instanceof Finder)) {
+            return ChannelBuffers.indexOf(buffer, fromIndex, toIndex, indexFinder);
+        }
+        Finder f = (Finder) indexFinder;
+        return indexOf(buffer, array, offset, fromIndex, toIndex, f.first, f.second, f.negated);
+    }
+
+    /**
+     * Implements {@link ChannelBuffer#indexOf(int, int, byte)} for a buffer
+     * whose content is the specified {@link ByteBuffer}, from its position
+     * {@code 0} to its capacity.
+     */
+    static int indexOf(
+            ChannelBuffer buffer, ByteBuffer nioBuffer,
+            int fromIndex, int toIndex, byte value) {
+        return indexOf(buffer, nioBuffer, fromIndex, toIndex, value, value, false);
+    }
+
+    /**
+     * Implements {@link ChannelBuffer#indexOf(int, int, ChannelBufferIndexFinder)}
+     * for a buffer whose content is the specified {@link ByteBuffer}, from
+     * its position {@code 0} to its capacity.
+     */
+    static int indexOf(
+            ChannelBuffer buffer, ByteBuffer nioBuffer,
+            int fromIndex, int toIndex, ChannelBufferIndexFinder indexFinder) {
+        if (!(indexFinder instanceof Finder)) {
+            return ChannelBuffers.indexOf(buffer, fromIndex, toIndex, indexFinder);
+        }
+        Finder f = (Finder) indexFinder;
+        return indexOf(buffer, nioBuffer, fromIndex, toIndex, f.first, f.second, f.negated);
+    }
+
+    private static int indexOf(
+            ChannelBuffer buffer, byte[] array, int offset, int fromIndex, int toIndex,
+            byte first, byte second, boolean negated) {
+        int capacity = buffer.capacity();
+        int index;
+        if (fromIndex <= toIndex) {
+            fromIndex = Math.max(fromIndex, 0);
+            if (fromIndex >= toIndex || capacity == 0) {
+                return -1;
+            }
+            if (toIndex > capacity) {
+                return slowIndexOf(buffer, fromIndex, toIndex, first, second, negated);
+            }
+            index = firstIndexOf(
+                    array, offset + fromIndex, offset + toIndex, first, second, negated);
+        } else {
+            fromIndex = Math.min(fromIndex, capacity);
+            if (fromIndex < 0 || capacity == 0) {
+                return -1;
+            }
+            if (toIndex < 0) {
+                return slowIndexOf(buffer, fromIndex, toIndex, first, second, negated);
+            }
+            index = lastIndexOf(
+                    array, offset + toIndex, offset + fromIndex, first, second, negated);
+        }
+        return index < 0? -1 : index - offset;
+    }
+
+    private static int indexOf(
+            ChannelBuffer buffer, ByteBuffer nioBuffer, int fromIndex, int toIndex,
+            byte first, byte second, boolean negated) {
+        if (nioBuffer.hasArray()) {
+            return indexOf(
+                    buffer, nioBuffer.array(), nioBuffer.arrayOffset(),
+                    fromIndex, toIndex, first, second, negated);
+        }
+
+        int capacity = buffer.capacity();
+        if (fromIndex <= toIndex) {
+            fromIndex = Math.max(fromIndex, 0);
+            if (fromIndex >= toIndex || capacity == 0) {
+                return -1;
+            }
+            if (toIndex > capacity) {
+                return slowIndexOf(buffer, fromIndex, toIndex, first, second, negated);
+            }
+            return firstIndexOf(nioBuffer, fromIndex, toIndex, first, second, negated);
+        } else {
+            fromIndex = Math.min(fromIndex, capacity);
+            if (fromIndex < 0 || capacity == 0) {
+                return -1;
+            }
+            if (toIndex < 0) {
+                return slowIndexOf(buffer, fromIndex, toIndex, first, second, negated);
+            }
+            return lastIndexOf(nioBuffer, toIndex, fromIndex, first, second, negated);
+        }
+    }
+
+    /**
+     * Searches byte by byte, raising the same exception with the default
+     * implementation when the range exceeds the buffer.
+     */
+    private static int slowIndexOf(
+            ChannelBuffer buffer, int fromIndex, int toIndex,
+            byte first, byte second, boolean negated) {
+        if (fromIndex <= toIndex) {
+            for (int i = fromIndex; i < toIndex; i ++) {
+                if (matches(buffer.getByte(i), first, second, negated)) {
+                    return i;
+                }
+            }
+        } else {
+            for (int i = fromIndex - 1; i >= toIndex; i --) {
+                if (matches(buffer.getByte(i), first, second, negated)) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static int firstIndexOf(
+            byte[] array, int start, int end,
+            byte first, byte second, boolean negated) {
+        long firstPattern = pattern(first);
+        long secondPattern = pattern(second);
+        int i = start;
+        for (; end - i >= 8; i += 8) {
+            long m = matches(getLongLE(array, i), firstPattern, secondPattern, negated);
+            if (m != 0) {
+                return i + (Long.numberOfTrailingZeros(m) >>> 3);
+            }
+        }
+        for (; i < end; i ++) {
+            if (matches(array[i], first, second, negated)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int lastIndexOf(
+            byte[] array, int start, int end,
+            byte first, byte second, boolean negated) {
+        long firstPattern = pattern(first);
+        long secondPattern = pattern(second);
+        int i = end;
+        for (; i - start >= 8; i -= 8) {
+            long m = matches(getLongLE(array, i - 8), firstPattern, secondPattern, negated);
+            if (m != 0) {
+                return i - 1 - (Long.numberOfLeadingZeros(m) >>> 3);
+            }
+        }
+        for (i --; i >= start; i --) {
+            if (matches(array[i], first, second, negated)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int firstIndexOf(
+            ByteBuffer buffer, int start, int end,
+            byte first, byte second, boolean negated) {
+        boolean bigEndian = buffer.order() == ByteOrder.BIG_ENDIAN;
+        long firstPattern = pattern(first);
+        long secondPattern = pattern(second);
+        int i = start;
+        for (; end - i >= 8; i += 8) {
+            long word = buffer.getLong(i);
+            if (bigEndian) {
+                word = Long.reverseBytes(word);
+            }
+            long m = matches(word, firstPattern, secondPattern, negated);
+            if (m != 0) {
+                return i + (Long.numberOfTrailingZeros(m) >>> 3);
+            }
+        }
+        for (; i < end; i ++) {
+            if (matches(buffer.get(i), first, second, negated)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int lastIndexOf(
+            ByteBuffer buffer, int start, int end,
+            byte first, byte second, boolean negated) {
+        boolean bigEndian = buffer.order() == ByteOrder.BIG_ENDIAN;
+        long firstPattern = pattern(first);
+        long secondPattern = pattern(second);
+        int i = end;
+        for (; i - start >= 8; i -= 8) {
+            long word = buffer.getLong(i - 8);
+            if (bigEndian) {
+                word = Long.reverseBytes(word);
+            }
+            long m = matches(word, firstPattern, secondPattern, negated);
+            if (m != 0) {
+                return i - 1 - (Long.numberOfLeadingZeros(m) >>> 3);
+            }
+        }
+        for (i --; i >= start; i --) {
+            if (matches(buffer.get(i), first, second, negated)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean matches(byte b, byte first, byte second, boolean negated) {
+        return b == first || b == second? !negated : negated;
+    }
+
+    /**
+     * Returns a word whose bytes have their highest bit set if and only if
+     * the corresponding byte of the specified {@code word} matches.
+     */
+    private static long matches(
+            long word, long firstPattern, long secondPattern, boolean negated) {
+        long m = zeroBytes(word ^ firstPattern) | zeroBytes(word ^ secondPattern);
+        return negated? ~m & HIGH_BITS : m;
+    }
+
+    /**
+     * Returns a word whose bytes have their highest bit set if and only if
+     * the corresponding byte of the specified {@code word} is zero.  Unlike
+     * the cheaper {@code (word - 0x01..01) & ~word & 0x80..80}, this does
+     * not report false positives, so that any matching byte can be trusted.
+     */
+    private static long zeroBytes(long word) {
+        long t = (word & LOW_BITS) + LOW_BITS;
+        return ~(t | word | LOW_BITS);
+    }
+
+    private static long pattern(byte b) {
+        return (b & 0xFFL) * 0x0101010101010101L;
+    }
+
+    private static long getLongLE(byte[] array, int index) {
+        if (UnsafeAccess.isAvailable()) {
+            return UnsafeAccess.getLong(array, index, false);
+        }
+        return  array[index]     & 0xFFL        |
+                (array[index + 1] & 0xFFL) <<  8 |
+                (array[index + 2] & 0xFFL) << 16 |
+                (array[index + 3] & 0xFFL) << 24 |
+                (array[index + 4] & 0xFFL) << 32 |
+                (array[index + 5] & 0xFFL) << 40 |
+                (array[index + 6] & 0xFFL) << 48 |
+                (long) array[index + 7]          << 56;
+    }
+
+    private ByteSearch() {
+        // Unused
+    }
+}
@@ -29,6 +29,7 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.ScatteringByteChannel;
+import java.nio.charset.Charset;
 import java.nio.charset.UnsupportedCharsetException;
 import java.util.NoSuchElementException;
 
@@ -202,6 +203,23 @@ import java.util.NoSuchElementException;
  * In case a completely fresh copy of an existing buffer is required, please
  * call {@link #copy()} method instead.
  *
+ * <h3>Reference counting</h3>
+ *
+ * A newly created buffer has the reference count of {@code 1}.
+ * {@link #retain()} increases the reference count and {@link #release()}
+ * decreases it.  Once the reference count reaches {@code 0}, the memory of
+ * the buffer is returned to where it came from, such as the
+ * {@link PooledChannelBufferFactory} which allocated it, and therefore the
+ * buffer must not be accessed anymore.  A derived buffer shares the
+ * reference count with its parent.
+ * <p>
+ * Whoever consumes a buffer releases it.  For example, a transport releases
+ * a written buffer once it has been written completely, and a decoder
+ * releases its input once it has been decoded.  If you want to keep a buffer
+ * beyond that point, for example to write the same buffer to more than one
+ * {@link com.wuyiccc.hellonetty.channel.Channel}, please call
+ * {@link #retain()} as many times as it will be released.
+ *
  * <h3>Conversion to existing JDK types</h3>
  *
  * <h4>NIO Buffers</h4>
@@ -805,6 +823,35 @@ public interface ChannelBuffer extends Comparable<ChannelBuffer> {
      */
     void setZero(int index, int length);
 
+    /**
+     * Encodes the specified character sequence with the specified
+     * {@code charset} into this buffer starting at the specified absolute
+     * {@code index}.  The character sequence is encoded without creating an
+     * intermediary byte array, and US-ASCII, ISO-8859-1 and UTF-8 are
+     * encoded without a {@link java.nio.charset.CharsetEncoder} at all.
+     * Malformed and unmappable characters are replaced just like
+     * {@link String#getBytes(Charset)} does.  This method does not modify
+     * {@code readerIndex} or {@code writerIndex} of this buffer.
+     *
+     * @return the number of written bytes
+     *
+     * @throws IndexOutOfBoundsException
+     *         if the specified {@code index} is less than {@code 0} or
+     *         if the encoded sequence does not fit in this buffer
+     */
+    int setCharSequence(int index, CharSequence sequence, Charset charset);
+
+    /**
+     * Decodes the specified region of this buffer with the specified
+     * {@code charset}.  This method does not modify {@code readerIndex} or
+     * {@code writerIndex} of this buffer.
+     *
+     * @throws IndexOutOfBoundsException
+     *         if the specified {@code index} is less than {@code 0} or
+     *         if {@code index + length} is greater than {@code this.capacity}
+     */
+    CharSequence getCharSequence(int index, int length, Charset charset);
+
     /**
      * Gets a byte at the current {@code readerIndex} and increases
      * the {@code readerIndex} by {@code 1} in this buffer.
@@ -886,6 +933,54 @@ public interface ChannelBuffer extends Comparable<ChannelBuffer> {
      */
     long  readLong();
 
+    /**
+     * Gets a variable-length 32-bit integer encoded in the base 128 varint
+     * format of Google Protocol Buffers at the current {@code readerIndex}
+     * and increases the {@code readerIndex} by the length of the encoded
+     * integer, which is {@code 1} to {@code 5} bytes.
+     *
+     * @throws IndexOutOfBoundsException
+     *         if this buffer ends before the encoded integer does.
+     *         The {@code readerIndex} is not changed.
+     * @throws IllegalStateException
+     *         if the encoded integer is longer than {@code 5} bytes.
+     *         The {@code readerIndex} is not changed.
+     */
+    int   readVarInt32();
+
+    /**
+     * Gets a variable-length 64-bit integer encoded in the base 128 varint
+     * format of Google Protocol Buffers at the current {@code readerIndex}
+     * and increases the {@code readerIndex} by the length of the encoded
+     * integer, which is {@code 1} to {@code 10} bytes.
+     *
+     * @throws IndexOutOfBoundsException
+     *         if this buffer ends before the encoded integer does.
+     *         The {@code readerIndex} is not changed.
+     * @throws IllegalStateException
+     *         if the encoded integer is longer than {@code 10} bytes.
+     *         The {@code readerIndex} is not changed.
+     */
+    long  readVarInt64();
+
+    /**
+     * Gets a ZigZag encoded variable-length 32-bit integer at the current
+     * {@code readerIndex} and increases the {@code readerIndex} by the length
+     * of the encoded integer.  This method is same with
+     * {@link #readVarInt32()} except that it decodes the {@code sint32}
+     * encoding, which keeps the small negative integers short.
+     */
+    int   readZigZagVarInt32();
+
+    /**
+     * Gets a ZigZag encoded variable-length 64-bit integer at the current
+     * {@code readerIndex} and increases the {@code readerIndex} by the length
+     * of the encoded integer.  This method is same with
+     * {@link #readVarInt64()} except that it decodes the {@code sint64}
+     * encoding, which keeps the small negative integers short.
+     */
+    long  readZigZagVarInt64();
+
     /**
      * Transfers this buffer's data to a newly created buffer starting at
      * the current {@code readerIndex} and increases the {@code readerIndex}
@@ -947,6 +1042,22 @@ public interface ChannelBuffer extends Comparable<ChannelBuffer> {
      */
     ChannelBuffer readSlice(ChannelBufferIndexFinder indexFinder);
 
+    /**
+     * Returns a new slice of this buffer's sub-region which is prefixed with
+     * its length encoded by {@link #writeVarInt32(int)}, and increases the
+     * {@code readerIndex} by the length of the prefix and the slice.
+     *
+     * @return the newly created slice, which does not contain the prefix
+     *
+     * @throws IndexOutOfBoundsException
+     *         if this buffer ends before the prefix or the sub-region does.
+     *         The {@code readerIndex} is not changed.
+     * @throws IllegalStateException
+     *         if the prefix is malformed or negative.
+     *         The {@code readerIndex} is not changed.
+     */
+    ChannelBuffer readLengthPrefixedSlice();
+
     /**
      * Transfers this buffer's data to the specified destination starting at
      * the current {@code readerIndex} until the destination becomes
@@ -1127,6 +1238,56 @@ public interface ChannelBuffer extends Comparable<ChannelBuffer> {
      */
     void writeLong(long  value);
 
+    /**
+     * Sets the specified 32-bit integer at the current {@code writerIndex}
+     * in the base 128 varint format of Google Protocol Buffers, and
+     * increases the {@code writerIndex} by the length of the encoded integer.
+     * The integer is encoded as an unsigned integer, so a negative integer
+     * always takes {@code 5} bytes.  Use {@link #writeZigZagVarInt32(int)}
+     * if negative integers are common.
+     *
+     * @throws IndexOutOfBoundsException
+     *         if {@code this.writableBytes} is less than the length of the
+     *         encoded integer.  The {@code writerIndex} is not changed.
+     */
+    void writeVarInt32(int   value);
+
+    /**
+     * Sets the specified 64-bit long integer at the current
+     * {@code writerIndex} in the base 128 varint format of Google Protocol
+     * Buffers, and increases the {@code writerIndex} by the length of the
+     * encoded integer.  A negative integer always takes {@code 10} bytes.
+     * Use {@link #writeZigZagVarInt64(long)} if negative integers are common.
+     *
+     * @throws IndexOutOfBoundsException
+     *         if {@code this.writableBytes} is less than the length of the
+     *         encoded integer.  The {@code writerIndex} is not changed.
+     */
+    void writeVarInt64(long  value);
+
+    /**
+     * Sets the specified 32-bit integer at the current {@code writerIndex}
+     * in the ZigZag encoded variable-length format ({@code sint32}), and
+     * increases the {@code writerIndex} by the length of the encoded integer.
+     *
+     * @throws IndexOutOfBoundsException
+     *         if {@code this.writableBytes} is less than the length of the
+     *         encoded integer.  The {@code writerIndex} is not changed.
+     */
+    void writeZigZagVarInt32(int   value);
+
+    /**
+     * Sets the specified 64-bit long integer at the current
+     * {@code writerIndex} in the ZigZag encoded variable-length format
+     * ({@code sint64}), and increases the {@code writerIndex} by the length
+     * of the encoded integer.
+     *
+     * @throws IndexOutOfBoundsException
+     *         if {@code this.writableBytes} is less than the length of the
+     *         encoded integer.  The {@code writerIndex} is not changed.
+     */
+    void writeZigZagVarInt64(long  value);
+
     /**
      * Transfers the specified source buffer's data to this buffer starting at
      * the current {@code writerIndex} until the source buffer becomes
@@ -1257,6 +1418,31 @@ public interface ChannelBuffer extends Comparable<ChannelBuffer> {
      */
     void writeZero(int length);
 
+    /**
+     * Encodes the specified character sequence with the specified
+     * {@code charset} at the current {@code writerIndex} and increases the
+     * {@code writerIndex} by the number of the written bytes.  This method
+     * is same with {@link #setCharSequence(int, CharSequence, Charset)}
+     * except that it increases the {@code writerIndex}.
+     *
+     * @return the number of written bytes
+     *
+     * @throws IndexOutOfBoundsException
+     *         if the encoded sequence does not fit in this buffer.
+     *         The {@code writerIndex} is not changed.
+     */
+    int writeCharSequence(CharSequence sequence, Charset charset);
+
+    /**
+     * Decodes {@code length} bytes at the current {@code readerIndex} with
+     * the specified {@code charset} and increases the {@code readerIndex}
+     * by {@code length}.
+     *
+     * @throws IndexOutOfBoundsException
+     *         if {@code length} is greater than {@code this.readableBytes}
+     */
+    CharSequence readCharSequence(int length, Charset charset);
+
     /**
      * Locates the first occurrence of the specified {@code value} in this
      * buffer.  The search takes place from the specified {@code fromIndex}
@@ -1429,6 +1615,33 @@ public interface ChannelBuffer extends Comparable<ChannelBuffer> {
      */
     int compareTo(ChannelBuffer buffer);
 
+    /**
+     * Returns the reference count of this buffer.  If {@code 0}, it means
+     * this buffer has been released and must not be accessed anymore.
+     */
+    int refCnt();
+
+    /**
+     * Increases the reference count of this buffer by {@code 1}.
+     *
+     * @return this buffer
+     *
+     * @throws IllegalStateException
+     *         if this buffer has been released already
+     */
+    ChannelBuffer retain();
+
+    /**
+     * Decreases the reference count of this buffer by {@code 1} and returns
+     * the memory of this buffer to where it came from if the reference count
+     * reaches {@code 0}.  Releasing a buffer whose reference count is
+     * {@code 0} already has no effect.
+     *
+     * @return {@code true} if and only if the reference count became
+     *         {@code 0} by this call
+     */
+    boolean release();
+
     /**
      * Returns the string representation of this buffer.  This method doesn't
      * necessarily return the whole content of the buffer but returns
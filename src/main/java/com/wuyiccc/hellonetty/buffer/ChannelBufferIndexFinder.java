@@ -53,100 +53,69 @@ public interface ChannelBufferIndexFinder {
      */
     boolean find(ChannelBuffer buffer, int guessedIndex);
 
+    // The finders below are recognized by the buffers backed by an array or
+    // a ByteBuffer, which search for them eight bytes at a time.
+
     /**
      * Index finder which locates a {@code NUL (0x00)} byte.
      */
-    static ChannelBufferIndexFinder NUL = new ChannelBufferIndexFinder() {
-        public boolean find(ChannelBuffer buffer, int guessedIndex) {
-            return buffer.getByte(guessedIndex) == 0;
-        }
-    };
+    static ChannelBufferIndexFinder NUL =
+        new ByteSearch.Finder('\0', '\0', false);
 
     /**
      * Index finder which locates a non-{@code NUL (0x00)} byte.
      */
-    static ChannelBufferIndexFinder NOT_NUL = new ChannelBufferIndexFinder() {
-        public boolean find(ChannelBuffer buffer, int guessedIndex) {
-            return buffer.getByte(guessedIndex) != 0;
-        }
-    };
+    static ChannelBufferIndexFinder NOT_NUL =
+        new ByteSearch.Finder('\0', '\0', true);
 
     /**
      * Index finder which locates a {@code CR ('\r')} byte.
      */
-    static ChannelBufferIndexFinder CR = new ChannelBufferIndexFinder() {
-        public boolean find(ChannelBuffer buffer, int guessedIndex) {
-            return buffer.getByte(guessedIndex) == '\r';
-        }
-    };
+    static ChannelBufferIndexFinder CR =
+        new ByteSearch.Finder('\r', '\r', false);
 
     /**
      * Index finder which locates a non-{@code CR ('\r')} byte.
      */
-    static ChannelBufferIndexFinder NOT_CR = new ChannelBufferIndexFinder() {
-        public boolean find(ChannelBuffer buffer, int guessedIndex) {
-            return buffer.getByte(guessedIndex) != '\r';
-        }
-    };
+    static ChannelBufferIndexFinder NOT_CR =
+        new ByteSearch.Finder('\r', '\r', true);
 
     /**
      * Index finder which locates a {@code LF ('\n')} byte.
      */
-    static ChannelBufferIndexFinder LF = new ChannelBufferIndexFinder() {
-        public boolean find(ChannelBuffer buffer, int guessedIndex) {
-            return buffer.getByte(guessedIndex) == '\n';
-        }
-    };
+    static ChannelBufferIndexFinder LF =
+        new ByteSearch.Finder('\n', '\n', false);
 
     /**
      * Index finder which locates a non-{@code LF ('\n')} byte.
      */
-    static ChannelBufferIndexFinder NOT_LF = new ChannelBufferIndexFinder() {
-        public boolean find(ChannelBuffer buffer, int guessedIndex) {
-            return buffer.getByte(guessedIndex) != '\n';
-        }
-    };
+    static ChannelBufferIndexFinder NOT_LF =
+        new ByteSearch.Finder('\n', '\n', true);
 
     /**
      * Index finder which locates a {@code CR ('\r')} or {@code LF ('\n')}.
      */
-    static ChannelBufferIndexFinder CRLF = new ChannelBufferIndexFinder() {
-        public boolean find(ChannelBuffer buffer, int guessedIndex) {
-            byte b = buffer.getByte(guessedIndex);
-            return b == '\r' || b == '\n';
-        }
-    };
+    static ChannelBufferIndexFinder CRLF =
+        new ByteSearch.Finder('\r', '\n', false);
 
     /**
      * Index finder which locates a byte which is neither a {@code CR ('\r')}
      * nor a {@code LF ('\n')}.
      */
-    static ChannelBufferIndexFinder NOT_CRLF = new ChannelBufferIndexFinder() {
-        public boolean find(ChannelBuffer buffer, int guessedIndex) {
-            byte b = buffer.getByte(guessedIndex);
-            return b != '\r' && b != '\n';
-        }
-    };
+    static ChannelBufferIndexFinder NOT_CRLF =
+        new ByteSearch.Finder('\r', '\n', true);
 
     /**
      * Index finder which locates a linear whitespace
      * ({@code ' '} and {@code '\t'}).
      */
-    static ChannelBufferIndexFinder LINEAR_WHITESPACE = new ChannelBufferIndexFinder() {
-        public boolean find(ChannelBuffer buffer, int guessedIndex) {
-            byte b = buffer.getByte(guessedIndex);
-            return b == ' ' || b == '\t';
-        }
-    };
+    static ChannelBufferIndexFinder LINEAR_WHITESPACE =
+        new ByteSearch.Finder(' ', '\t', false);
 
     /**
      * Index finder which locates a byte which is not a linear whitespace
      * (neither {@code ' '} nor {@code '\t'}).
      */
-    static ChannelBufferIndexFinder NOT_LINEAR_WHITESPACE = new ChannelBufferIndexFinder() {
-        public boolean find(ChannelBuffer buffer, int guessedIndex) {
-            byte b = buffer.getByte(guessedIndex);
-            return b != ' ' && b != '\t';
-        }
-    };
+    static ChannelBufferIndexFinder NOT_LINEAR_WHITESPACE =
+        new ByteSearch.Finder(' ', '\t', true);
 }
@@ -23,6 +23,7 @@
 package com.wuyiccc.hellonetty.buffer;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 
 /**
  * An {@link InputStream} which reads data from a {@link ChannelBuffer}.
@@ -33,7 +34,10 @@ import java.io.*;
  * <p>
  * This stream implements {@link DataInput} for your convenience.
  * The endianness of the stream is not always big endian but depends on
- * the endianness of the underlying buffer.
+ * the endianness of the underlying buffer.  The primitive values are read
+ * with the absolute accessors of the buffer, and {@link #readLine()} and
+ * {@link #readUTF()} scan and decode the buffer in place rather than
+ * reading it a byte at a time.
  *
  * @author The Netty Project (netty-dev@lists.jboss.org)
  * @author Trustin Lee (tlee@redhat.com)
@@ -108,14 +112,21 @@ public class ChannelBufferInputStream extends InputStream implements DataInput {
 
     @Override
     public int read() throws IOException {
-        if (!buffer.readable()) {
+        int readerIndex = buffer.readerIndex();
+        if (readerIndex >= endIndex) {
             return -1;
         }
-        return buffer.readByte() & 0xff;
+        byte b = buffer.getByte(readerIndex);
+        buffer.readerIndex(readerIndex + 1);
+        return b & 0xff;
     }
 
     @Override
     public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
         int available = available();
         if (available == 0) {
             return -1;
@@ -133,6 +144,9 @@ public class ChannelBufferInputStream extends InputStream implements DataInput {
 
     @Override
     public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
         if (n > Integer.MAX_VALUE) {
             return skipBytes(Integer.MAX_VALUE);
         } else {
@@ -141,15 +155,12 @@ public class ChannelBufferInputStream extends InputStream implements DataInput {
     }
 
     public boolean readBoolean() throws IOException {
-        checkAvailable(1);
-        return read() != 0;
+        return readByte() != 0;
     }
 
     public byte readByte() throws IOException {
-        if (!buffer.readable()) {
-            throw new EOFException();
-        }
-        return buffer.readByte();
+        int readerIndex = advance(1);
+        return buffer.getByte(readerIndex);
     }
 
     public char readChar() throws IOException {
@@ -174,42 +185,69 @@ public class ChannelBufferInputStream extends InputStream implements DataInput {
     }
 
     public int readInt() throws IOException {
-        checkAvailable(4);
-        return buffer.readInt();
+        int readerIndex = advance(4);
+        return buffer.getInt(readerIndex);
     }
 
-    private final StringBuilder lineBuf = new StringBuilder();
-
+    /**
+     * Reads the bytes up to the next {@code '\n'} or the end of this stream,
+     * and returns them as a string with the trailing {@code '\r'}s removed.
+     * Each byte is converted into a character as described in
+     * {@link DataInput#readLine()}.
+     *
+     * @return the line, or {@code null} if this stream has no more bytes
+     */
     public String readLine() throws IOException {
-        lineBuf.setLength(0);
-        for (;;) {
-            int b = read();
-            if (b < 0 || b == '\n') {
-                break;
-            }
-
-            lineBuf.append((char) b);
+        int readerIndex = buffer.readerIndex();
+        if (readerIndex >= endIndex) {
+            return null;
         }
 
-        while (lineBuf.charAt(lineBuf.length() - 1) == '\r') {
-            lineBuf.setLength(lineBuf.length() - 1);
+        int lineEnd = buffer.indexOf(readerIndex, endIndex, (byte) '\n');
+        int nextIndex;
+        if (lineEnd < 0) {
+            lineEnd = endIndex;
+            nextIndex = endIndex;
+        } else {
+            nextIndex = lineEnd + 1;
+        }
+        while (lineEnd > readerIndex && buffer.getByte(lineEnd - 1) == '\r') {
+            lineEnd --;
         }
 
-        return lineBuf.toString();
+        String line = buffer.getCharSequence(
+                readerIndex, lineEnd - readerIndex, StandardCharsets.ISO_8859_1).toString();
+        buffer.readerIndex(nextIndex);
+        return line;
     }
 
     public long readLong() throws IOException {
-        checkAvailable(8);
-        return buffer.readLong();
+        int readerIndex = advance(8);
+        return buffer.getLong(readerIndex);
     }
 
     public short readShort() throws IOException {
-        checkAvailable(2);
-        return buffer.readShort();
+        int readerIndex = advance(2);
+        return buffer.getShort(readerIndex);
     }
 
     public String readUTF() throws IOException {
-        return DataInputStream.readUTF(this);
+        int utfLength = readUnsignedShort();
+        int readerIndex = advance(utfLength);
+
+        byte[] array = null;
+        int offset = 0;
+        if (buffer instanceof AbstractChannelBuffer) {
+            array = ((AbstractChannelBuffer) buffer).backingArray();
+        }
+        if (array != null) {
+            offset = ((AbstractChannelBuffer) buffer).backingArrayOffset() + readerIndex;
+        } else {
+            array = new byte[utfLength];
+            buffer.getBytes(readerIndex, array);
+        }
+
+        return decodeUtf(array, offset, utfLength);
     }
 
     public int readUnsignedByte() throws IOException {
@@ -226,6 +264,84 @@ public class ChannelBufferInputStream extends InputStream implements DataInput {
         return nBytes;
     }
 
+    /**
+     * Moves the {@code readerIndex} forward by the specified number of
+     * bytes, and returns the {@code readerIndex} before it was moved.
+     */
+    private int advance(int fieldSize) throws IOException {
+        int readerIndex = buffer.readerIndex();
+        if (fieldSize > endIndex - readerIndex) {
+            throw new EOFException();
+        }
+        buffer.readerIndex(readerIndex + fieldSize);
+        return readerIndex;
+    }
+
+    /**
+     * Decodes the specified modified UTF-8 bytes as described in
+     * {@link DataInput#readUTF()}.
+     */
+    private static String decodeUtf(byte[] bytes, int offset, int length)
+            throws UTFDataFormatException {
+        char[] chars = new char[length];
+        int i = offset;
+        int end = offset + length;
+        int nChars = 0;
+
+        // Most strings are ASCII only.
+        while (i < end && bytes[i] >= 0) {
+            chars[nChars ++] = (char) bytes[i ++];
+        }
+
+        while (i < end) {
+            int c = bytes[i] & 0xff;
+            switch (c >> 4) {
+            case 0: case 1: case 2: case 3: case 4: case 5: case 6: case 7:
+                // 0xxxxxxx
+                chars[nChars ++] = (char) c;
+                i ++;
+                break;
+            case 12: case 13: {
+                // 110x xxxx  10xx xxxx
+                if (i + 2 > end) {
+                    throw new UTFDataFormatException(
+                            "malformed input: partial character at end");
+                }
+                int c2 = bytes[i + 1];
+                if ((c2 & 0xC0) != 0x80) {
+                    throw new UTFDataFormatException(
+                            "malformed input around byte " + (i + 1 - offset));
+                }
+                chars[nChars ++] = (char) ((c & 0x1F) << 6 | c2 & 0x3F);
+                i += 2;
+                break;
+            }
+            case 14: {
+                // 1110 xxxx  10xx xxxx  10xx xxxx
+                if (i + 3 > end) {
+                    throw new UTFDataFormatException(
+                            "malformed input: partial character at end");
+                }
+                int c2 = bytes[i + 1];
+                int c3 = bytes[i + 2];
+                if ((c2 & 0xC0) != 0x80 || (c3 & 0xC0) != 0x80) {
+                    throw new UTFDataFormatException(
+                            "malformed input around byte " + (i + 2 - offset));
+                }
+                chars[nChars ++] = (char) ((c & 0x0F) << 12 | (c2 & 0x3F) << 6 | c3 & 0x3F);
+                i += 3;
+                break;
+            }
+            default:
+                // 10xx xxxx, 1111 xxxx
+                throw new UTFDataFormatException(
+                        "malformed input around byte " + (i - offset));
+            }
+        }
+
+        return new String(chars, 0, nChars);
+    }
+
     private void checkAvailable(int fieldSize) throws IOException {
         if (fieldSize < 0) {
             throw new IndexOutOfBoundsException();
@@ -0,0 +1,325 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.wuyiccc.hellonetty.buffer;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.wuyiccc.hellonetty.logging.InternalLogger;
+import com.wuyiccc.hellonetty.logging.InternalLoggerFactory;
+import com.wuyiccc.hellonetty.util.MapBackedSet;
+import com.wuyiccc.hellonetty.util.SystemPropertyUtil;
+
+/**
+ * Detects the pooled and direct buffers which were garbage-collected
+ * without being {@linkplain ChannelBuffer#release() released}.  Such a
+ * buffer never returns its memory to the pool, and its native memory is
+ * freed only when the garbage collector gets around to it, so a forgotten
+ * {@link ChannelBuffer#release()} shows up only as a slowly growing process.
+ * <p>
+ * The detector is disabled by default.  Once enabled, it tracks one out of
+ * every {@linkplain #getSamplingInterval() sampling interval} allocations
+ * with a {@link PhantomReference}, recording where the buffer was allocated
+ * and the last few places where it was retained or released.  When a
+ * tracked buffer is garbage-collected before its reference count reaches
+ * {@code 0}, the detector logs an error with the recorded stack traces.
+ * Because only the sampled buffers pay for the stack traces, a sampling
+ * interval of a few hundred is cheap enough to leave on in production.
+ * <p>
+ * The detector is configured with the following system properties, or
+ * with the setters of this class at runtime:
+ * <table border="1">
+ * <tr><th>Property</th><th>Default</th><th>Meaning</th></tr>
+ * <tr><td>{@code com.wuyiccc.hellonetty.buffer.leakDetectionInterval}</td>
+ *     <td>{@code 0}</td>
+ *     <td>tracks one out of this many allocations; {@code 0} disables
+ *         the detector and {@code 1} tracks every allocation</td></tr>
+ * <tr><td>{@code com.wuyiccc.hellonetty.buffer.leakDetectionMaxRecords}</td>
+ *     <td>{@code 4}</td>
+ *     <td>the number of the most recent accesses to record</td></tr>
+ * </table>
+ *
+ * @author The Netty Project (netty-dev@lists.jboss.org)
+ * @author Trustin Lee (tlee@redhat.com)
+ *
+ * @version $Rev$, $Date$
+ */
+public final class ChannelBufferLeakDetector {
+
+    private static final InternalLogger logger =
+        InternalLoggerFactory.getInstance(ChannelBufferLeakDetector.class);
+
+    private static final String INTERVAL_PROPERTY =
+        "com.wuyiccc.hellonetty.buffer.leakDetectionInterval";
+    private static final String MAX_RECORDS_PROPERTY =
+        "com.wuyiccc.hellonetty.buffer.leakDetectionMaxRecords";
+
+    private static final String NEWLINE =
+        SystemPropertyUtil.get("line.separator", "\n");
+
+    private static final ReferenceQueue<ChannelBuffer> queue =
+        new ReferenceQueue<ChannelBuffer>();
+
+    // Keeps the trackers of the live buffers reachable.
+    private static final Set<Tracker> trackers =
+        new MapBackedSet<Tracker>(new ConcurrentHashMap<Tracker, Boolean>());
+
+    private static final AtomicLong leakCount = new AtomicLong();
+
+    private static volatile int samplingInterval =
+        getIntProperty(INTERVAL_PROPERTY, 0);
+    private static volatile int maxRecords =
+        getIntProperty(MAX_RECORDS_PROPERTY, 4);
+
+    /**
+     * Returns the sampling interval.  One out of this many allocations is
+     * tracked.  {@code 0} means the detector is disabled.
+     */
+    public static int getSamplingInterval() {
+        return samplingInterval;
+    }
+
+    /**
+     * Sets the sampling interval.  One out of this many allocations is
+     * tracked.  {@code 0} disables the detector.
+     */
+    public static void setSamplingInterval(int samplingInterval) {
+        if (samplingInterval < 0) {
+            throw new IllegalArgumentException(
+                    "samplingInterval must be 0 or a positive integer: " +
+                    samplingInterval);
+        }
+        ChannelBufferLeakDetector.samplingInterval = samplingInterval;
+    }
+
+    /**
+     * Returns the number of the most recent accesses recorded for each
+     * tracked buffer.
+     */
+    public static int getMaxRecords() {
+        return maxRecords;
+    }
+
+    /**
+     * Sets the number of the most recent accesses recorded for each tracked
+     * buffer.
+     */
+    public static void setMaxRecords(int maxRecords) {
+        if (maxRecords < 0) {
+            throw new IllegalArgumentException(
+                    "maxRecords must be 0 or a positive integer: " + maxRecords);
+        }
+        ChannelBufferLeakDetector.maxRecords = maxRecords;
+    }
+
+    /**
+     * Returns the number of the leaks detected so far.
+     */
+    public static long getLeakCount() {
+        return leakCount.get();
+    }
+
+    /**
+     * Returns the number of the tracked buffers which have not been
+     * released or garbage-collected yet.
+     */
+    public static int getTrackedCount() {
+        return trackers.size();
+    }
+
+    /**
+     * Reports the tracked buffers which have been garbage-collected without
+     * being released since the last call.  This method is called on every
+     * allocation while the detector is enabled, so there is usually no need
+     * to call it explicitly.
+     */
+    public static void reportLeaks() {
+        for (;;) {
+            Tracker tracker = (Tracker) queue.poll();
+            if (tracker == null) {
+                break;
+            }
+            if (trackers.remove(tracker)) {
+                leakCount.incrementAndGet();
+                if (logger.isErrorEnabled()) {
+                    logger.error(tracker.report());
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts to track the specified newly allocated buffer if it is
+     * sampled.
+     */
+    static void track(AbstractChannelBuffer buffer) {
+        int samplingInterval = ChannelBufferLeakDetector.samplingInterval;
+        if (samplingInterval == 0) {
+            return;
+        }
+
+        reportLeaks();
+        if (samplingInterval == 1 ||
+            ThreadLocalRandom.current().nextInt(samplingInterval) == 0) {
+            Tracker tracker = new Tracker(buffer);
+            trackers.add(tracker);
+            buffer.leakTracker = tracker;
+        }
+    }
+
+    private static int getIntProperty(String key, int def) {
+        String value = SystemPropertyUtil.get(key);
+        if (value == null) {
+            return def;
+        }
+        try {
+            int v = Integer.parseInt(value.trim());
+            if (v >= 0) {
+                return v;
+            }
+        } catch (NumberFormatException e) {
+            // Fall through
+        }
+        logger.warn("Ignoring the invalid value of " + key + ": " + value);
+        return def;
+    }
+
+    private ChannelBufferLeakDetector() {
+        // Unused
+    }
+
+    /**
+     * Tracks a sampled buffer, recording where it was allocated and
+     * accessed.
+     */
+    static final class Tracker extends PhantomReference<ChannelBuffer> {
+
+        private final String description;
+        private final Record creation;
+        private final Deque<Record> records = new ArrayDeque<Record>();
+        private int droppedRecords;
+
+        Tracker(ChannelBuffer buffer) {
+            super(buffer, queue);
+            description = buffer.getClass().getSimpleName() +
+                          "(cap=" + buffer.capacity() + ')';
+            creation = new Record("Allocated");
+        }
+
+        /**
+         * Records an access to the tracked buffer.
+         */
+        void record(String hint) {
+            int maxRecords = ChannelBufferLeakDetector.maxRecords;
+            if (maxRecords == 0) {
+                return;
+            }
+            Record record = new Record(hint);
+            synchronized (records) {
+                while (records.size() >= maxRecords) {
+                    records.removeFirst();
+                    droppedRecords ++;
+                }
+                records.addLast(record);
+            }
+        }
+
+        /**
+         * Stops tracking because the tracked buffer has been released.
+         */
+        void close() {
+            trackers.remove(this);
+            clear();
+        }
+
+        String report() {
+            StringBuilder buf = new StringBuilder(4096);
+            buf.append("LEAK: ");
+            buf.append(description);
+            buf.append(" was garbage-collected without being released.");
+            synchronized (records) {
+                if (droppedRecords > 0) {
+                    buf.append("  ");
+                    buf.append(droppedRecords);
+                    buf.append(" older access(es) were not recorded; increase ");
+                    buf.append(MAX_RECORDS_PROPERTY);
+                    buf.append(" to record more.");
+                }
+                Record[] recent = records.toArray(new Record[records.size()]);
+                for (int i = recent.length - 1; i >= 0; i --) {
+                    recent[i].appendTo(buf);
+                }
+            }
+            creation.appendTo(buf);
+            return buf.toString();
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o;
+        }
+    }
+
+    /**
+     * The stack trace of an allocation or an access.
+     */
+    private static final class Record extends Throwable {
+
+        private static final long serialVersionUID = -4441669283165424384L;
+
+        Record(String hint) {
+            super(hint);
+        }
+
+        void appendTo(StringBuilder buf) {
+            buf.append(NEWLINE);
+            buf.append(getMessage());
+            buf.append(':');
+            String detectorClassName = ChannelBufferLeakDetector.class.getName();
+            StackTraceElement[] elements = getStackTrace();
+            for (int i = 0; i < elements.length; i ++) {
+                StackTraceElement e = elements[i];
+                // Skip the frames of the detector itself.
+                String className = e.getClassName();
+                if (className.equals(detectorClassName) ||
+                    className.startsWith(detectorClassName + '$')) {
+                    continue;
+                }
+                buf.append(NEWLINE);
+                buf.append("\tat ");
+                buf.append(e);
+            }
+        }
+    }
+}
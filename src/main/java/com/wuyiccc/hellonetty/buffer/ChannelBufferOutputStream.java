@@ -23,9 +23,10 @@
 package com.wuyiccc.hellonetty.buffer;
 
 import java.io.DataOutput;
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.UTFDataFormatException;
+import java.nio.charset.StandardCharsets;
 
 /**
  * An {@link OutputStream} which writes data to a {@link ChannelBuffer}.
@@ -36,7 +37,8 @@ import java.io.OutputStream;
  * <p>
  * This stream implements {@link DataOutput} for your convenience.
  * The endianness of the stream is not always big endian but depends on
- * the endianness of the underlying buffer.
+ * the endianness of the underlying buffer.  The primitive values and the
+ * strings are written to the buffer at once rather than a byte at a time.
  *
  * @author The Netty Project (netty-dev@lists.jboss.org)
  * @author Trustin Lee (tlee@redhat.com)
@@ -49,7 +51,6 @@ import java.io.OutputStream;
 public class ChannelBufferOutputStream extends OutputStream implements DataOutput {
 
     private final ChannelBuffer buffer;
-    private final DataOutputStream utf8out = new DataOutputStream(this);
 
     /**
      * Creates a new stream which writes data to the specified {@code buffer}.
@@ -81,37 +82,43 @@ public class ChannelBufferOutputStream extends OutputStream implements DataOutpu
     }
 
     public void writeBoolean(boolean v) throws IOException {
-        write(v? (byte) 1 : (byte) 0);
+        buffer.writeByte(v? (byte) 1 : (byte) 0);
     }
 
     public void writeByte(int v) throws IOException {
-        write(v);
+        buffer.writeByte((byte) v);
     }
 
     public void writeBytes(String s) throws IOException {
         int len = s.length();
+        if (len == 0) {
+            return;
+        }
+
+        byte[] bytes = new byte[len];
         for (int i = 0; i < len; i ++) {
-            write((byte) s.charAt(i));
+            bytes[i] = (byte) s.charAt(i);
         }
+        buffer.writeBytes(bytes);
     }
 
     public void writeChar(int v) throws IOException {
-        writeShort((short) v);
+        buffer.writeShort((short) v);
     }
 
     public void writeChars(String s) throws IOException {
         int len = s.length();
         for (int i = 0 ; i < len ; i ++) {
-            writeChar(s.charAt(i));
+            buffer.writeShort((short) s.charAt(i));
         }
     }
 
     public void writeDouble(double v) throws IOException {
-        writeLong(Double.doubleToLongBits(v));
+        buffer.writeLong(Double.doubleToLongBits(v));
     }
 
     public void writeFloat(float v) throws IOException {
-        writeInt(Float.floatToIntBits(v));
+        buffer.writeInt(Float.floatToIntBits(v));
     }
 
     public void writeInt(int v) throws IOException {
@@ -127,7 +134,44 @@ public class ChannelBufferOutputStream extends OutputStream implements DataOutpu
     }
 
     public void writeUTF(String s) throws IOException {
-        utf8out.writeUTF(s);
+        int strLength = s.length();
+        int utfLength = strLength;
+        for (int i = 0; i < strLength; i ++) {
+            char c = s.charAt(i);
+            if (c >= 0x800) {
+                utfLength += 2;
+            } else if (c >= 0x80 || c == 0) {
+                utfLength ++;
+            }
+        }
+        if (utfLength > 65535) {
+            throw new UTFDataFormatException(
+                    "encoded string too long: " + utfLength + " bytes");
+        }
+
+        buffer.writeShort((short) utfLength);
+        if (utfLength == strLength) {
+            // No character needs more than one byte.
+            buffer.writeCharSequence(s, StandardCharsets.US_ASCII);
+            return;
+        }
+
+        byte[] bytes = new byte[utfLength];
+        int j = 0;
+        for (int i = 0; i < strLength; i ++) {
+            char c = s.charAt(i);
+            if (c >= 0x800) {
+                bytes[j ++] = (byte) (0xE0 | c >> 12 & 0x0F);
+                bytes[j ++] = (byte) (0x80 | c >>  6 & 0x3F);
+                bytes[j ++] = (byte) (0x80 | c       & 0x3F);
+            } else if (c >= 0x80 || c == 0) {
+                bytes[j ++] = (byte) (0xC0 | c >>  6 & 0x1F);
+                bytes[j ++] = (byte) (0x80 | c       & 0x3F);
+            } else {
+                bytes[j ++] = (byte) c;
+            }
+        }
+        buffer.writeBytes(bytes);
     }
 
     /**
@@ -22,9 +22,13 @@
  */
 package com.wuyiccc.hellonetty.buffer;
 
-import java.io.UnsupportedEncodingException;
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
 import java.nio.charset.UnsupportedCharsetException;
 
 
@@ -67,6 +71,13 @@ import java.nio.charset.UnsupportedCharsetException;
  * a buffer which is composed of more than one array to reduce the number of
  * memory copy.
  *
+ * <h3>Creating a mapped buffer</h3>
+ *
+ * Mapped buffer is a view of a memory-mapped region of a file, created by
+ * {@code mappedBuffer()}.  Its content is not copied onto the heap, so it
+ * can be sliced and written to a {@link com.wuyiccc.hellonetty.channel.Channel}
+ * cheaply.  See {@link MappedChannelBuffer} for when the region is unmapped.
+ *
  * <h3>Creating a copied buffer</h3>
  *
  * Copied buffer is a deep copy of one or more existing byte arrays, byte
@@ -104,7 +115,7 @@ public class ChannelBuffers {
     /**
      * A buffer whose capacity is {@code 0}.
      */
-    public static ChannelBuffer EMPTY_BUFFER = new BigEndianHeapChannelBuffer(0);
+    public static ChannelBuffer EMPTY_BUFFER = new EmptyChannelBuffer();
 
     private static final char[] HEXDUMP_TABLE = new char[65536 * 4];
 
@@ -160,20 +171,50 @@ public class ChannelBuffers {
     /**
      * Creates a new direct buffer with the specified {@code endianness} and
      * {@code capacity}.  The new buffer's {@code readerIndex} and
-     * {@code writerIndex} are {@code 0}.
+     * {@code writerIndex} are {@code 0}.  The buffer is charged to
+     * {@link DirectMemoryManager.Subsystem#USER}, and its native memory is
+     * freed when it is {@linkplain ChannelBuffer#release() released}.  A heap
+     * buffer is returned instead if the direct memory is exhausted.
+     *
+     * @see DirectMemoryManager
      */
     public static ChannelBuffer directBuffer(ByteOrder endianness, int capacity) {
-        if (endianness == null) {
-            throw new NullPointerException("endianness");
+        return DirectMemoryManager.directBuffer(
+                DirectMemoryManager.Subsystem.USER, endianness, capacity);
+    }
+
+    /**
+     * Creates a new big-endian read-only buffer which maps the specified
+     * region of the specified file.  The new buffer's {@code readerIndex} is
+     * {@code 0} and its {@code writerIndex} is {@code size}.
+     *
+     * @see MappedChannelBuffer
+     */
+    public static ChannelBuffer mappedBuffer(
+            FileChannel file, long position, int size) throws IOException {
+        return mappedBuffer(file, MapMode.READ_ONLY, position, size);
+    }
+
+    /**
+     * Creates a new big-endian buffer which maps the specified region of the
+     * specified file with the specified {@link MapMode}.  The new buffer's
+     * {@code readerIndex} is {@code 0} and its {@code writerIndex} is
+     * {@code size}.
+     *
+     * @see MappedChannelBuffer
+     */
+    public static ChannelBuffer mappedBuffer(
+            FileChannel file, MapMode mode, long position, int size) throws IOException {
+        if (file == null) {
+            throw new NullPointerException("file");
         }
-        if (capacity == 0) {
+        if (mode == null) {
+            throw new NullPointerException("mode");
+        }
+        if (size == 0) {
             return EMPTY_BUFFER;
         }
-
-        ChannelBuffer buffer = new ByteBufferBackedChannelBuffer(
-                ByteBuffer.allocateDirect(capacity).order(endianness));
-        buffer.clear();
-        return buffer;
+        return new MappedChannelBuffer(file, mode, position, size);
     }
 
     /**
@@ -205,6 +246,16 @@ public class ChannelBuffers {
         return new DynamicChannelBuffer(endianness, estimatedLength);
     }
 
+    /**
+     * Creates a new dynamic buffer with the specified endianness and
+     * the specified estimated data length, which acquires its underlying
+     * buffer from the specified {@link ChannelBufferFactory}.  The new
+     * buffer's {@code readerIndex} and {@code writerIndex} are {@code 0}.
+     */
+    public static ChannelBuffer dynamicBuffer(ByteOrder endianness, int estimatedLength, ChannelBufferFactory factory) {
+        return new DynamicChannelBuffer(endianness, estimatedLength, factory);
+    }
+
     /**
      * Creates a new big-endian buffer which wraps the specified {@code array}.
      * A modification on the specified array's content will be visible to the
@@ -608,11 +659,45 @@ public class ChannelBuffers {
      * respectively.
      */
     public static ChannelBuffer copiedBuffer(ByteOrder endianness, String string, String charsetName) {
+        Charset charset;
         try {
-            return wrappedBuffer(endianness, string.getBytes(charsetName));
-        } catch (UnsupportedEncodingException e) {
+            charset = CharsetCodecs.forName(charsetName);
+        } catch (IllegalCharsetNameException e) {
             throw new UnsupportedCharsetException(charsetName);
         }
+        return copiedBuffer(endianness, string, charset);
+    }
+
+    /**
+     * Creates a new big-endian buffer whose content is the specified
+     * {@code string} encoded by the specified {@code charset}.
+     * The new buffer's {@code readerIndex} and {@code writerIndex} are
+     * {@code 0} and the length of the encoded string respectively.
+     */
+    public static ChannelBuffer copiedBuffer(CharSequence string, Charset charset) {
+        return copiedBuffer(BIG_ENDIAN, string, charset);
+    }
+
+    /**
+     * Creates a new buffer with the specified {@code endianness} whose
+     * content is the specified {@code string} encoded by the specified
+     * {@code charset}.  The new buffer's {@code readerIndex} and
+     * {@code writerIndex} are {@code 0} and the length of the encoded string
+     * respectively.  The string is encoded straight into the new buffer
+     * if the {@code charset} is US-ASCII, ISO-8859-1 or UTF-8.
+     */
+    public static ChannelBuffer copiedBuffer(ByteOrder endianness, CharSequence string, Charset charset) {
+        int length = CharsetCodecs.encodedLength(string, charset);
+        if (length >= 0) {
+            byte[] array = new byte[length];
+            CharsetCodecs.encode(string, charset, array, 0);
+            return wrappedBuffer(endianness, array);
+        }
+
+        ByteBuffer encoded = CharsetCodecs.encode(string, charset);
+        ChannelBuffer buffer = buffer(endianness, encoded.remaining());
+        buffer.writeBytes(encoded);
+        return buffer;
     }
 
     /**
@@ -675,25 +760,48 @@ public class ChannelBuffers {
      */
     public static int hashCode(ChannelBuffer buffer) {
         final int aLen = buffer.readableBytes();
-        final int intCount = aLen >>> 2;
+        final int longCount = aLen >>> 3;
         final int byteCount = aLen & 3;
 
+        // The hash code is calculated as if the content was a sequence of
+        // big-endian 32-bit integers followed by up to three bytes, no
+        // matter what the endianness of the buffer is.  Two integers are
+        // read at a time; 31 * (31 * h + high) + low = 961 * h + 31 * high + low.
         int hashCode = 1;
         int arrayIndex = buffer.readerIndex();
-        if (buffer.order() == BIG_ENDIAN) {
-            for (int i = intCount; i > 0; i --) {
-                hashCode = 31 * hashCode + buffer.getInt(arrayIndex);
+        byte[] array = backingArray(buffer);
+        if (array != null) {
+            arrayIndex += ((AbstractChannelBuffer) buffer).backingArrayOffset();
+            for (int i = longCount; i > 0; i --) {
+                long v = getLong(array, arrayIndex, true);
+                hashCode = 961 * hashCode + 31 * (int) (v >>> 32) + (int) v;
+                arrayIndex += 8;
+            }
+            if ((aLen & 4) != 0) {
+                hashCode = 31 * hashCode + getInt(array, arrayIndex);
                 arrayIndex += 4;
             }
+            for (int i = byteCount; i > 0; i --) {
+                hashCode = 31 * hashCode + array[arrayIndex ++];
+            }
         } else {
-            for (int i = intCount; i > 0; i --) {
-                hashCode = 31 * hashCode + swapInt(buffer.getInt(arrayIndex));
+            boolean bigEndian = buffer.order() == BIG_ENDIAN;
+            for (int i = longCount; i > 0; i --) {
+                long v = buffer.getLong(arrayIndex);
+                if (!bigEndian) {
+                    v = swapLong(v);
+                }
+                hashCode = 961 * hashCode + 31 * (int) (v >>> 32) + (int) v;
+                arrayIndex += 8;
+            }
+            if ((aLen & 4) != 0) {
+                int v = buffer.getInt(arrayIndex);
+                hashCode = 31 * hashCode + (bigEndian? v : swapInt(v));
                 arrayIndex += 4;
             }
-        }
-
-        for (int i = byteCount; i > 0; i --) {
-            hashCode = 31 * hashCode + buffer.getByte(arrayIndex ++);
+            for (int i = byteCount; i > 0; i --) {
+                hashCode = 31 * hashCode + buffer.getByte(arrayIndex ++);
+            }
         }
 
         if (hashCode == 0) {
@@ -720,6 +828,26 @@ public class ChannelBuffers {
         int aIndex = bufferA.readerIndex();
         int bIndex = bufferB.readerIndex();
 
+        byte[] aArray = backingArray(bufferA);
+        byte[] bArray = backingArray(bufferB);
+        if (aArray != null && bArray != null) {
+            aIndex += ((AbstractChannelBuffer) bufferA).backingArrayOffset();
+            bIndex += ((AbstractChannelBuffer) bufferB).backingArrayOffset();
+            for (int i = longCount; i > 0; i --) {
+                if (getLong(aArray, aIndex, true) != getLong(bArray, bIndex, true)) {
+                    return false;
+                }
+                aIndex += 8;
+                bIndex += 8;
+            }
+            for (int i = byteCount; i > 0; i --) {
+                if (aArray[aIndex ++] != bArray[bIndex ++]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
         if (bufferA.order() == bufferB.order()) {
             for (int i = longCount; i > 0; i --) {
                 if (bufferA.getLong(aIndex) != bufferB.getLong(bIndex)) {
@@ -757,36 +885,81 @@ public class ChannelBuffers {
         final int aLen = bufferA.readableBytes();
         final int bLen = bufferB.readableBytes();
         final int minLength = Math.min(aLen, bLen);
-        final int uintCount = minLength >>> 2;
+        final int longCount = minLength >>> 3;
         final int byteCount = minLength & 3;
 
+        // The common prefix is compared as a sequence of unsigned 32-bit
+        // integers in the endianness of bufferA followed by up to three
+        // signed bytes.  Two integers are compared at a time.
+        final boolean bigEndian = bufferA.order() == BIG_ENDIAN;
+
         int aIndex = bufferA.readerIndex();
         int bIndex = bufferB.readerIndex();
 
-        if (bufferA.order() == bufferB.order()) {
-            for (int i = uintCount; i > 0; i --) {
-                long va = bufferA.getUnsignedInt(aIndex);
-                long vb = bufferB.getUnsignedInt(bIndex);
-                if (va > vb) {
-                    return 1;
-                } else if (va < vb) {
-                    return -1;
+        byte[] aArray = backingArray(bufferA);
+        byte[] bArray = backingArray(bufferB);
+        if (aArray != null && bArray != null) {
+            aIndex += ((AbstractChannelBuffer) bufferA).backingArrayOffset();
+            bIndex += ((AbstractChannelBuffer) bufferB).backingArrayOffset();
+            for (int i = longCount; i > 0; i --) {
+                long va = getLong(aArray, aIndex, bigEndian);
+                long vb = getLong(bArray, bIndex, bigEndian);
+                if (va != vb) {
+                    return compareUnsignedInts(va, vb, bigEndian);
+                }
+                aIndex += 8;
+                bIndex += 8;
+            }
+            if ((minLength & 4) != 0) {
+                int va = getInt(aArray, aIndex);
+                int vb = getInt(bArray, bIndex);
+                if (va != vb) {
+                    if (!bigEndian) {
+                        va = swapInt(va);
+                        vb = swapInt(vb);
+                    }
+                    return (va & 0xFFFFFFFFL) > (vb & 0xFFFFFFFFL)? 1 : -1;
                 }
                 aIndex += 4;
                 bIndex += 4;
             }
-        } else {
-            for (int i = uintCount; i > 0; i --) {
-                long va = bufferA.getUnsignedInt(aIndex);
-                long vb = swapInt(bufferB.getInt(bIndex)) & 0xFFFFFFFFL;
+            for (int i = byteCount; i > 0; i --) {
+                byte va = aArray[aIndex ++];
+                byte vb = bArray[bIndex ++];
                 if (va > vb) {
                     return 1;
                 } else if (va < vb) {
                     return -1;
                 }
-                aIndex += 4;
-                bIndex += 4;
             }
+            return aLen - bLen;
+        }
+
+        final boolean sameOrder = bufferA.order() == bufferB.order();
+        for (int i = longCount; i > 0; i --) {
+            long va = bufferA.getLong(aIndex);
+            long vb = bufferB.getLong(bIndex);
+            if (!sameOrder) {
+                vb = swapLong(vb);
+            }
+            if (va != vb) {
+                return compareUnsignedInts(va, vb, bigEndian);
+            }
+            aIndex += 8;
+            bIndex += 8;
+        }
+
+        if ((minLength & 4) != 0) {
+            long va = bufferA.getUnsignedInt(aIndex);
+            long vb = sameOrder? bufferB.getUnsignedInt(bIndex)
+                               : swapInt(bufferB.getInt(bIndex)) & 0xFFFFFFFFL;
+            if (va > vb) {
+                return 1;
+            } else if (va < vb) {
+                return -1;
+            }
+            aIndex += 4;
+            bIndex += 4;
         }
 
         for (int i = byteCount; i > 0; i --) {
@@ -858,6 +1031,52 @@ public class ChannelBuffers {
                       swapInt((int) (value >>> 32)) & 0xffffffffL;
     }
 
+    /**
+     * Returns the backing array of the specified buffer, or {@code null} if
+     * it has to be accessed via its accessors.
+     */
+    private static byte[] backingArray(ChannelBuffer buffer) {
+        if (buffer instanceof AbstractChannelBuffer) {
+            return ((AbstractChannelBuffer) buffer).backingArray();
+        }
+        return null;
+    }
+
+    /**
+     * Compares two different 64-bit words, each of which holds two unsigned
+     * 32-bit integers read in the specified endianness, in the order the
+     * integers appear in the buffer.
+     */
+    private static int compareUnsignedInts(long va, long vb, boolean bigEndian) {
+        if (!bigEndian) {
+            // The first integer is in the lower half.
+            va = Long.rotateLeft(va, 32);
+            vb = Long.rotateLeft(vb, 32);
+        }
+        return (va ^ Long.MIN_VALUE) > (vb ^ Long.MIN_VALUE)? 1 : -1;
+    }
+
+    private static long getLong(byte[] array, int index, boolean bigEndian) {
+        if (UnsafeAccess.isAvailable()) {
+            return UnsafeAccess.getLong(array, index, bigEndian);
+        }
+        long v = (long) getInt(array, index) << 32 | getInt(array, index + 4) & 0xFFFFFFFFL;
+        return bigEndian? v : swapLong(v);
+    }
+
+    /**
+     * Reads a big-endian 32-bit integer from the specified array.
+     */
+    private static int getInt(byte[] array, int index) {
+        if (UnsafeAccess.isAvailable()) {
+            return UnsafeAccess.getInt(array, index, true);
+        }
+        return  array[index]            << 24 |
+                (array[index + 1] & 0xff) << 16 |
+                (array[index + 2] & 0xff) <<  8 |
+                array[index + 3] & 0xff;
+    }
+
     private static int firstIndexOf(ChannelBuffer buffer, int fromIndex, int toIndex, byte value) {
         fromIndex = Math.max(fromIndex, 0);
         if (fromIndex >= toIndex || buffer.capacity() == 0) {
@@ -0,0 +1,393 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.wuyiccc.hellonetty.buffer;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Encodes {@link CharSequence}s into and decodes them from
+ * {@link ChannelBuffer}s.  US-ASCII, ISO-8859-1 and UTF-8 are encoded by
+ * hand without a {@link CharsetEncoder}, and the other character sets use
+ * the {@link CharsetEncoder}s and {@link CharsetDecoder}s cached per thread.
+ * Malformed input and unmappable characters are replaced just like
+ * {@link String#getBytes(Charset)} and {@link String#String(byte[], Charset)}
+ * do.
+ *
+ * @author The Netty Project (netty-dev@lists.jboss.org)
+ * @author Trustin Lee (tlee@redhat.com)
+ *
+ * @version $Rev$, $Date$
+ */
+final class CharsetCodecs {
+
+    /**
+     * The maximum length of the scratch arrays and buffers kept per thread.
+     * Longer sequences are coded with the temporary ones.
+     */
+    private static final int MAX_CACHED_LENGTH = 16384;
+
+    private static final ConcurrentMap<String, Charset> charsets =
+        new ConcurrentHashMap<String, Charset>();
+
+    private static final ThreadLocal<Codecs> codecs = new ThreadLocal<Codecs>() {
+        @Override
+        protected Codecs initialValue() {
+            return new Codecs();
+        }
+    };
+
+    /**
+     * Returns the {@link Charset} of the specified name without looking it
+     * up again once it has been looked up.
+     *
+     * @throws java.nio.charset.UnsupportedCharsetException
+     *         if the specified character set is not supported
+     */
+    static Charset forName(String charsetName) {
+        Charset charset = charsets.get(charsetName);
+        if (charset == null) {
+            charset = Charset.forName(charsetName);
+            charsets.putIfAbsent(charsetName, charset);
+        }
+        return charset;
+    }
+
+    /**
+     * Returns the exact number of bytes the specified sequence is encoded
+     * into if the specified character set is encoded by hand, or {@code -1}
+     * if it has to be encoded by a {@link CharsetEncoder}.
+     */
+    static int encodedLength(CharSequence seq, Charset charset) {
+        if (charset.equals(StandardCharsets.UTF_8)) {
+            return utf8Length(seq);
+        }
+        if (charset.equals(StandardCharsets.US_ASCII) ||
+            charset.equals(StandardCharsets.ISO_8859_1)) {
+            return singleByteLength(seq);
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the maximum number of bytes the specified sequence can be
+     * encoded into.
+     */
+    static int maxEncodedLength(CharSequence seq, Charset charset) {
+        int length = encodedLength(seq, charset);
+        if (length >= 0) {
+            return length;
+        }
+        return (int) Math.ceil(
+                seq.length() * (double) encoder(charset).maxBytesPerChar());
+    }
+
+    /**
+     * Encodes the specified sequence into the specified array by hand.  The
+     * array must have as much room as {@link #encodedLength(CharSequence, Charset)}
+     * returned.
+     *
+     * @return the number of written bytes
+     */
+    static int encode(CharSequence seq, Charset charset, byte[] dst, int dstIndex) {
+        if (charset.equals(StandardCharsets.UTF_8)) {
+            return encodeUtf8(seq, dst, dstIndex);
+        }
+        return encodeSingleByte(seq, charset.equals(StandardCharsets.US_ASCII)? 0x80 : 0x100, dst, dstIndex);
+    }
+
+    /**
+     * Encodes the specified sequence with the {@link CharsetEncoder} of this
+     * thread.
+     *
+     * @return the flipped buffer which contains the encoded bytes.  It is
+     *         reused by the next call from the same thread.
+     */
+    static ByteBuffer encode(CharSequence seq, Charset charset) {
+        CharsetEncoder encoder = encoder(charset);
+        int maxLength = (int) Math.ceil(seq.length() * (double) encoder.maxBytesPerChar());
+        ByteBuffer dst = codecs.get().byteBuffer(maxLength);
+        CharBuffer src = CharBuffer.wrap(seq);
+        try {
+            CoderResult cr = encoder.encode(src, dst, true);
+            if (!cr.isUnderflow()) {
+                cr.throwException();
+            }
+            cr = encoder.flush(dst);
+            if (!cr.isUnderflow()) {
+                cr.throwException();
+            }
+        } catch (CharacterCodingException e) {
+            // Can't happen - there's always enough room and the errors are replaced.
+            throw new IllegalStateException(e);
+        }
+        dst.flip();
+        return dst;
+    }
+
+    /**
+     * Decodes the specified region of the specified buffer.
+     */
+    static String decode(ChannelBuffer buffer, int index, int length, Charset charset) {
+        if (length == 0) {
+            return "";
+        }
+
+        if (isHandCoded(charset)) {
+            // The String constructor decodes these character sets without
+            // creating a decoder.
+            byte[] src = codecs.get().bytes(length);
+            buffer.getBytes(index, src, 0, length);
+            return new String(src, 0, length, charset);
+        }
+
+        CharsetDecoder decoder = decoder(charset);
+        int maxLength = (int) Math.ceil(length * (double) decoder.maxCharsPerByte());
+        CharBuffer dst = codecs.get().charBuffer(maxLength);
+        ByteBuffer src = buffer.toByteBuffer(index, length);
+        try {
+            CoderResult cr = decoder.decode(src, dst, true);
+            if (!cr.isUnderflow()) {
+                cr.throwException();
+            }
+            cr = decoder.flush(dst);
+            if (!cr.isUnderflow()) {
+                cr.throwException();
+            }
+        } catch (CharacterCodingException e) {
+            // Can't happen - there's always enough room and the errors are replaced.
+            throw new IllegalStateException(e);
+        }
+        dst.flip();
+        return dst.toString();
+    }
+
+    /**
+     * Returns a scratch array of this thread whose length is equal to or
+     * greater than the specified length.
+     */
+    static byte[] scratch(int length) {
+        return codecs.get().bytes(length);
+    }
+
+    private static boolean isHandCoded(Charset charset) {
+        return charset.equals(StandardCharsets.UTF_8) ||
+               charset.equals(StandardCharsets.US_ASCII) ||
+               charset.equals(StandardCharsets.ISO_8859_1);
+    }
+
+    private static CharsetEncoder encoder(Charset charset) {
+        return codecs.get().encoder(charset);
+    }
+
+    private static CharsetDecoder decoder(Charset charset) {
+        return codecs.get().decoder(charset);
+    }
+
+    private static int utf8Length(CharSequence seq) {
+        int length = seq.length();
+        int encodedLength = length;
+        for (int i = 0; i < length; i ++) {
+            char c = seq.charAt(i);
+            if (c < 0x80) {
+                continue;
+            }
+            if (c < 0x800) {
+                encodedLength ++;
+            } else if (!Character.isSurrogate(c)) {
+                encodedLength += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length &&
+                       Character.isLowSurrogate(seq.charAt(i + 1))) {
+                // A supplementary character takes 4 bytes for 2 chars.
+                encodedLength += 2;
+                i ++;
+            }
+            // An unpaired surrogate is replaced with a '?'.
+        }
+        return encodedLength;
+    }
+
+    private static int encodeUtf8(CharSequence seq, byte[] dst, int dstIndex) {
+        int length = seq.length();
+        int i = 0;
+        int j = dstIndex;
+
+        // Copy the leading ASCII characters in a tight loop.
+        for (; i < length; i ++) {
+            char c = seq.charAt(i);
+            if (c >= 0x80) {
+                break;
+            }
+            dst[j ++] = (byte) c;
+        }
+
+        for (; i < length; i ++) {
+            char c = seq.charAt(i);
+            if (c < 0x80) {
+                dst[j ++] = (byte) c;
+            } else if (c < 0x800) {
+                dst[j ++] = (byte) (0xC0 | c >> 6);
+                dst[j ++] = (byte) (0x80 | c & 0x3F);
+            } else if (!Character.isSurrogate(c)) {
+                dst[j ++] = (byte) (0xE0 | c >> 12);
+                dst[j ++] = (byte) (0x80 | c >> 6 & 0x3F);
+                dst[j ++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length &&
+                       Character.isLowSurrogate(seq.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, seq.charAt(++ i));
+                dst[j ++] = (byte) (0xF0 | codePoint >> 18);
+                dst[j ++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                dst[j ++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                dst[j ++] = (byte) (0x80 | codePoint & 0x3F);
+            } else {
+                dst[j ++] = '?';
+            }
+        }
+        return j - dstIndex;
+    }
+
+    private static int singleByteLength(CharSequence seq) {
+        int length = seq.length();
+        int encodedLength = length;
+        for (int i = 0; i < length - 1; i ++) {
+            // A surrogate pair is replaced with a single '?'.
+            if (Character.isHighSurrogate(seq.charAt(i)) &&
+                Character.isLowSurrogate(seq.charAt(i + 1))) {
+                encodedLength --;
+                i ++;
+            }
+        }
+        return encodedLength;
+    }
+
+    private static int encodeSingleByte(CharSequence seq, int limit, byte[] dst, int dstIndex) {
+        int length = seq.length();
+        int j = dstIndex;
+        for (int i = 0; i < length; i ++) {
+            char c = seq.charAt(i);
+            if (c < limit) {
+                dst[j ++] = (byte) c;
+            } else {
+                if (Character.isHighSurrogate(c) && i + 1 < length &&
+                    Character.isLowSurrogate(seq.charAt(i + 1))) {
+                    i ++;
+                }
+                dst[j ++] = '?';
+            }
+        }
+        return j - dstIndex;
+    }
+
+    private CharsetCodecs() {
+        // Unused
+    }
+
+    /**
+     * The coders and the scratch space of a thread.
+     */
+    private static final class Codecs {
+        private final Map<Charset, CharsetEncoder> encoders =
+            new IdentityHashMap<Charset, CharsetEncoder>();
+        private final Map<Charset, CharsetDecoder> decoders =
+            new IdentityHashMap<Charset, CharsetDecoder>();
+        private byte[] bytes = new byte[256];
+        private ByteBuffer byteBuffer;
+        private CharBuffer charBuffer;
+
+        Codecs() {
+            super();
+        }
+
+        CharsetEncoder encoder(Charset charset) {
+            CharsetEncoder encoder = encoders.get(charset);
+            if (encoder == null) {
+                encoder = charset.newEncoder()
+                        .onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+                encoders.put(charset, encoder);
+            } else {
+                encoder.reset();
+            }
+            return encoder;
+        }
+
+        CharsetDecoder decoder(Charset charset) {
+            CharsetDecoder decoder = decoders.get(charset);
+            if (decoder == null) {
+                decoder = charset.newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+                decoders.put(charset, decoder);
+            } else {
+                decoder.reset();
+            }
+            return decoder;
+        }
+
+        byte[] bytes(int length) {
+            if (length <= bytes.length) {
+                return bytes;
+            }
+            byte[] newBytes = new byte[length];
+            if (length <= MAX_CACHED_LENGTH) {
+                bytes = newBytes;
+            }
+            return newBytes;
+        }
+
+        ByteBuffer byteBuffer(int length) {
+            ByteBuffer buf = byteBuffer;
+            if (buf == null || buf.capacity() < length) {
+                buf = ByteBuffer.allocate(length);
+                if (length <= MAX_CACHED_LENGTH) {
+                    byteBuffer = buf;
+                }
+            }
+            buf.clear();
+            return buf;
+        }
+
+        CharBuffer charBuffer(int length) {
+            CharBuffer buf = charBuffer;
+            if (buf == null || buf.capacity() < length) {
+                buf = CharBuffer.allocate(length);
+                if (length <= MAX_CACHED_LENGTH) {
+                    charBuffer = buf;
+                }
+            }
+            buf.clear();
+            return buf;
+        }
+    }
+}
@@ -32,6 +32,7 @@ import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.ScatteringByteChannel;
 import java.nio.charset.UnsupportedCharsetException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 
@@ -39,6 +40,26 @@ import java.util.List;
  * A virtual buffer which shows multiple buffers as a single merged buffer.  It
  * is recommended to use {@link ChannelBuffers#wrappedBuffer(ChannelBuffer...)}
  * instead of calling the constructor explicitly.
+ * <p>
+ * A composite buffer has its own reference count, and it releases all the
+ * buffers it is composed of when its reference count reaches {@code 0}.
+ *
+ * <h3>Adding and removing components</h3>
+ *
+ * A composite buffer can grow by {@linkplain #addComponent(ChannelBuffer)
+ * appending a buffer}, and shrink by {@linkplain #removeComponents(int, int)
+ * removing buffers} or by {@linkplain #discardReadComponents() discarding
+ * the buffers which were read fully}, without copying their content.  For
+ * example, an outbound frame can be built out of a header and a payload
+ * which were encoded separately, and a decoder can aggregate the received
+ * buffers until a whole message is received.
+ * <p>
+ * Accessing a byte requires finding the buffer the byte belongs to, which
+ * gets slower as the number of the buffers increases.  Once more than
+ * {@link #maxNumComponents()} buffers have been added, some of the buffers
+ * are {@linkplain #consolidateIfNecessary(int) consolidated} into one heap
+ * buffer automatically.  The buffers specified in the constructor are never
+ * consolidated on construction.
  *
  * @author The Netty Project (netty-dev@lists.jboss.org)
  * @author Trustin Lee (tlee@redhat.com)
@@ -48,12 +69,34 @@ import java.util.List;
  */
 public class CompositeChannelBuffer extends AbstractChannelBuffer {
 
-    private final ChannelBuffer[] slices;
+    private static final int DEFAULT_MAX_NUM_COMPONENTS = 16;
+
     private final ByteOrder order;
-    private final int[] indices;
+    private final int maxNumComponents;
+    private ChannelBuffer[] slices;
+    private int[] indices;
+    private int componentCount;
     private int lastSliceId;
 
+    /**
+     * Creates a new composite buffer which is composed of the readable bytes
+     * of the specified buffers, and which consolidates its components when
+     * more than {@code 16} components are added.
+     */
     public CompositeChannelBuffer(ChannelBuffer... buffers) {
+        this(DEFAULT_MAX_NUM_COMPONENTS, buffers);
+    }
+
+    /**
+     * Creates a new composite buffer which is composed of the readable bytes
+     * of the specified buffers, and which consolidates its components when
+     * more than {@code maxNumComponents} components are added.
+     */
+    public CompositeChannelBuffer(int maxNumComponents, ChannelBuffer... buffers) {
+        if (maxNumComponents <= 0) {
+            throw new IllegalArgumentException(
+                    "maxNumComponents must be a positive integer: " + maxNumComponents);
+        }
         if (buffers.length == 0) {
             throw new IllegalArgumentException("buffers should not be empty.");
         }
@@ -70,6 +113,7 @@ public class CompositeChannelBuffer extends AbstractChannelBuffer {
         }
 
         order = expectedEndianness;
+        this.maxNumComponents = maxNumComponents;
         slices = new ChannelBuffer[buffers.length];
         for (int i = 0; i < buffers.length; i ++) {
             if (buffers[i].capacity() != 0 && buffers[i].order() != expectedEndianness) {
@@ -82,22 +126,330 @@ public class CompositeChannelBuffer extends AbstractChannelBuffer {
         for (int i = 1; i <= buffers.length; i ++) {
             indices[i] = indices[i - 1] + slices[i - 1].capacity();
         }
+        componentCount = buffers.length;
         writerIndex(capacity());
     }
 
-    private CompositeChannelBuffer(CompositeChannelBuffer buffer) {
-        order = buffer.order;
-        slices = buffer.slices.clone();
-        indices = buffer.indices.clone();
-        setIndex(buffer.readerIndex(), buffer.writerIndex());
+    /**
+     * Creates a new empty composite buffer with the specified endianness,
+     * which consolidates its components when more than
+     * {@code maxNumComponents} components are added.
+     */
+    public CompositeChannelBuffer(ByteOrder endianness, int maxNumComponents) {
+        if (endianness == null) {
+            throw new NullPointerException("endianness");
+        }
+        if (maxNumComponents <= 0) {
+            throw new IllegalArgumentException(
+                    "maxNumComponents must be a positive integer: " + maxNumComponents);
+        }
+        order = endianness;
+        this.maxNumComponents = maxNumComponents;
+        slices = new ChannelBuffer[Math.min(maxNumComponents, DEFAULT_MAX_NUM_COMPONENTS) + 1];
+        indices = new int[slices.length + 1];
     }
 
     public ByteOrder order() {
         return order;
     }
 
+    /**
+     * Returns the number of the components above which this buffer
+     * consolidates its components when a new component is added.
+     */
+    public int maxNumComponents() {
+        return maxNumComponents;
+    }
+
+    /**
+     * Returns the number of buffers this composite buffer is composed of.
+     */
+    public int numComponents() {
+        return componentCount;
+    }
+
+    /**
+     * Returns the {@code cIndex}th component of this buffer.  The returned
+     * buffer is owned by this buffer; do not release it.
+     */
+    public ChannelBuffer component(int cIndex) {
+        checkComponentIndex(cIndex);
+        return slices[cIndex];
+    }
+
+    /**
+     * Returns the index of the component which contains the byte at the
+     * specified {@code index}.
+     */
+    public int toComponentIndex(int index) {
+        if (index < 0 || index >= capacity()) {
+            throw new IndexOutOfBoundsException();
+        }
+        return sliceId(index);
+    }
+
+    /**
+     * Returns the index of the first byte of the {@code cIndex}th component.
+     */
+    public int toByteIndex(int cIndex) {
+        checkComponentIndex(cIndex);
+        return indices[cIndex];
+    }
+
+    /**
+     * Appends the readable bytes of the specified buffer to the end of this
+     * buffer, increasing both the capacity and the {@code writerIndex} of
+     * this buffer by {@code buffer.readableBytes()}.  This buffer takes
+     * over the reference of the specified buffer, which is released when
+     * this buffer is released.
+     *
+     * @throws IllegalArgumentException
+     *         if the endianness of the specified buffer is different from
+     *         this buffer's
+     */
+    public void addComponent(ChannelBuffer buffer) {
+        if (buffer == null) {
+            throw new NullPointerException("buffer");
+        }
+        checkEndianness(buffer);
+        addComponent0(buffer);
+        consolidateIfNecessary();
+    }
+
+    /**
+     * Appends the readable bytes of the specified buffers to the end of this
+     * buffer.  This method is identical to calling
+     * {@link #addComponent(ChannelBuffer)} for each buffer, except that this
+     * buffer is consolidated at most once.
+     *
+     * @throws IllegalArgumentException
+     *         if the endianness of any of the specified buffers is different
+     *         from this buffer's.  No buffer is added in this case.
+     */
+    public void addComponents(ChannelBuffer... buffers) {
+        if (buffers == null) {
+            throw new NullPointerException("buffers");
+        }
+        for (ChannelBuffer b: buffers) {
+            if (b == null) {
+                throw new NullPointerException("buffers");
+            }
+            checkEndianness(b);
+        }
+        for (ChannelBuffer b: buffers) {
+            addComponent0(b);
+        }
+        consolidateIfNecessary();
+    }
+
+    private void checkEndianness(ChannelBuffer buffer) {
+        if (buffer.readable() && buffer.order() != order) {
+            throw new IllegalArgumentException(
+                    "All buffers must have the same endianness.");
+        }
+    }
+
+    private void addComponent0(ChannelBuffer buffer) {
+        int length = buffer.readableBytes();
+        if (length == 0) {
+            buffer.release();
+            return;
+        }
+
+        int n = componentCount;
+        if (n == slices.length) {
+            slices = Arrays.copyOf(slices, n << 1);
+            indices = Arrays.copyOf(indices, (n << 1) + 1);
+        }
+        slices[n] = buffer.slice();
+        indices[n + 1] = indices[n] + length;
+        componentCount = n + 1;
+        writerIndex(writerIndex() + length);
+    }
+
+    private void consolidateIfNecessary() {
+        consolidateIfNecessary(maxNumComponents);
+    }
+
+    /**
+     * Consolidates some of the components so that this buffer is composed of
+     * at most {@code maxNumComponents} components.  This method is called
+     * with {@link #maxNumComponents()} whenever a component is added.
+     * <p>
+     * Consolidating all components whenever one more is added would copy
+     * the whole content every time, which makes a buffer built out of many
+     * small buffers quadratically expensive.  Instead, the last run of
+     * adjacent components in which no component is longer than the other
+     * components of the run together is consolidated, so that a byte is
+     * copied only when the length of the component it belongs to at least
+     * doubles.  All components are consolidated only if there is no such
+     * run, which means that their lengths differ exponentially.
+     */
+    public void consolidateIfNecessary(int maxNumComponents) {
+        if (maxNumComponents <= 0) {
+            throw new IllegalArgumentException(
+                    "maxNumComponents must be a positive integer: " + maxNumComponents);
+        }
+        while (componentCount > maxNumComponents) {
+            if (!consolidateBalancedRun()) {
+                consolidate();
+                break;
+            }
+        }
+    }
+
+    private boolean consolidateBalancedRun() {
+        for (int end = componentCount; end > 1; end --) {
+            int maxLength = 0;
+            for (int start = end - 1; start >= 0; start --) {
+                maxLength = Math.max(maxLength, indices[start + 1] - indices[start]);
+                int length = indices[end] - indices[start];
+                if (start < end - 1 && maxLength <= length - maxLength) {
+                    consolidate(start, end - start);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes and releases the {@code cIndex}th component.
+     *
+     * @see #removeComponents(int, int)
+     */
+    public void removeComponent(int cIndex) {
+        removeComponents(cIndex, 1);
+    }
+
+    /**
+     * Removes and releases the {@code numComponents} components starting
+     * from the {@code cIndex}th component.  The capacity of this buffer
+     * decreases by the length of the removed components.  The
+     * {@code readerIndex} and the {@code writerIndex} are decreased so that
+     * they keep pointing to the same bytes, or to the first byte after the
+     * removed bytes if they pointed to one of the removed bytes.  The marked
+     * indexes are adjusted in the same way only when the leading components
+     * are removed.
+     * <p>
+     * Please note that the buffers derived from this buffer, such as
+     * {@link #slice()} and {@link #duplicate()}, do not see the same content
+     * after this call.
+     */
+    public void removeComponents(int cIndex, int numComponents) {
+        if (cIndex < 0 || numComponents < 0 ||
+            cIndex + numComponents > componentCount) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (numComponents == 0) {
+            return;
+        }
+
+        int offset = indices[cIndex];
+        int length = indices[cIndex + numComponents] - offset;
+        int endIndex = cIndex + numComponents;
+        for (int i = cIndex; i < endIndex; i ++) {
+            slices[i].release();
+        }
+
+        int newComponentCount = componentCount - numComponents;
+        System.arraycopy(slices, endIndex, slices, cIndex, componentCount - endIndex);
+        Arrays.fill(slices, newComponentCount, componentCount, null);
+        for (int i = cIndex + 1; i <= newComponentCount; i ++) {
+            indices[i] = indices[i + numComponents] - length;
+        }
+        componentCount = newComponentCount;
+        lastSliceId = 0;
+
+        setIndex(
+                adjustIndex(readerIndex(), offset, length),
+                adjustIndex(writerIndex(), offset, length));
+        if (offset == 0) {
+            adjustMarkers(length);
+        }
+    }
+
+    private static int adjustIndex(int index, int offset, int length) {
+        if (index <= offset) {
+            return index;
+        }
+        return index - Math.min(index - offset, length);
+    }
+
+    /**
+     * Removes and releases the components which precede the current
+     * {@code readerIndex} entirely.  Unlike {@link #discardReadBytes()}, no
+     * content is copied.  The {@code readerIndex}, {@code writerIndex} and
+     * their marked values are decreased by the number of the discarded
+     * bytes.  The last component is never removed.
+     * <p>
+     * Please note that the buffers derived from this buffer, such as
+     * {@link #slice()} and {@link #duplicate()}, do not see the same content
+     * after this call.
+     */
+    public void discardReadComponents() {
+        int readerIndex = readerIndex();
+        int n = 0;
+        while (n < componentCount - 1 && indices[n + 1] <= readerIndex) {
+            n ++;
+        }
+        removeComponents(0, n);
+    }
+
+    /**
+     * Copies the content of all components into one heap buffer which
+     * replaces them.  The indexes of this buffer do not change.
+     */
+    public void consolidate() {
+        consolidate(0, componentCount);
+    }
+
+    /**
+     * Copies the content of the {@code numComponents} components starting
+     * from the {@code cIndex}th component into one heap buffer which replaces
+     * them.  The indexes of this buffer do not change.
+     */
+    public void consolidate(int cIndex, int numComponents) {
+        if (cIndex < 0 || numComponents < 0 ||
+            cIndex + numComponents > componentCount) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (numComponents <= 1) {
+            return;
+        }
+
+        int offset = indices[cIndex];
+        int endIndex = cIndex + numComponents;
+        int length = indices[endIndex] - offset;
+        ChannelBuffer consolidated = ChannelBuffers.buffer(order, length);
+        if (length != 0) {
+            getBytes(offset, consolidated, 0, length);
+        }
+        for (int i = cIndex; i < endIndex; i ++) {
+            slices[i].release();
+        }
+
+        int removedComponents = numComponents - 1;
+        int newComponentCount = componentCount - removedComponents;
+        slices[cIndex] = consolidated;
+        System.arraycopy(slices, endIndex, slices, cIndex + 1, componentCount - endIndex);
+        Arrays.fill(slices, newComponentCount, componentCount, null);
+        for (int i = cIndex + 1; i <= newComponentCount; i ++) {
+            indices[i] = indices[i + removedComponents];
+        }
+        componentCount = newComponentCount;
+        lastSliceId = 0;
+    }
+
+    private void checkComponentIndex(int cIndex) {
+        if (cIndex < 0 || cIndex >= componentCount) {
+            throw new IndexOutOfBoundsException(
+                    "cIndex: " + cIndex + " (expected: 0 - " + (componentCount - 1) + ")");
+        }
+    }
+
     public int capacity() {
-        return indices[slices.length];
+        return indices[componentCount];
     }
 
     public byte getByte(int index) {
@@ -214,9 +566,10 @@ public class CompositeChannelBuffer extends AbstractChannelBuffer {
 
     public int getBytes(int index, GatheringByteChannel out, int length)
             throws IOException {
-        // XXX Gathering write is not supported because of a known issue.
-        //     See http://bugs.sun.com/view_bug.do?bug_id=6210541
-        return out.write(toByteBuffer());
+        // The temporary direct buffer leak of gathering writes
+        // (http://bugs.sun.com/view_bug.do?bug_id=6210541) does not exist
+        // in the JDKs this project requires.
+        return (int) out.write(toByteBuffers(index, length));
     }
 
     public void getBytes(int index, OutputStream out, int length)
@@ -427,9 +780,14 @@ public class CompositeChannelBuffer extends AbstractChannelBuffer {
     }
 
     public ChannelBuffer duplicate() {
-        ChannelBuffer duplicate = new CompositeChannelBuffer(this);
-        duplicate.setIndex(readerIndex(), writerIndex());
-        return duplicate;
+        return new DuplicatedChannelBuffer(this);
+    }
+
+    @Override
+    protected void deallocate() {
+        for (int i = 0; i < componentCount; i ++) {
+            slices[i].release();
+        }
     }
 
     public ChannelBuffer copy(int index, int length) {
@@ -474,7 +832,7 @@ public class CompositeChannelBuffer extends AbstractChannelBuffer {
     }
 
     public ByteBuffer toByteBuffer(int index, int length) {
-        if (slices.length == 1) {
+        if (componentCount == 1) {
             return slices[0].toByteBuffer(index, length);
         }
 
@@ -494,7 +852,7 @@ public class CompositeChannelBuffer extends AbstractChannelBuffer {
             throw new IndexOutOfBoundsException();
         }
 
-        List<ByteBuffer> buffers = new ArrayList<ByteBuffer>(slices.length);
+        List<ByteBuffer> buffers = new ArrayList<ByteBuffer>(componentCount);
 
         int i = sliceId;
         while (length > 0) {
@@ -541,25 +899,24 @@ public class CompositeChannelBuffer extends AbstractChannelBuffer {
 
     private int sliceId(int index) {
         int lastSliceId = this.lastSliceId;
-        if (index >= indices[lastSliceId]) {
-            if (index < indices[lastSliceId + 1]) {
-                return lastSliceId;
-            }
-
-            // Search right
-            for (int i = lastSliceId + 1; i < slices.length; i ++) {
-                if (index < indices[i + 1]) {
-                    this.lastSliceId = i;
-                    return i;
-                }
-            }
-        } else {
-            // Search left
-            for (int i = lastSliceId - 1; i >= 0; i --) {
-                if (index >= indices[i]) {
-                    this.lastSliceId = i;
-                    return i;
-                }
+        if (lastSliceId < componentCount &&
+            index >= indices[lastSliceId] && index < indices[lastSliceId + 1]) {
+            return lastSliceId;
+        }
+
+        // Binary search - empty components are skipped because no index
+        // satisfies indices[i] <= index < indices[i + 1] for them.
+        int low = 0;
+        int high = componentCount - 1;
+        while (low <= high) {
+            int mid = low + high >>> 1;
+            if (index < indices[mid]) {
+                high = mid - 1;
+            } else if (index >= indices[mid + 1]) {
+                low = mid + 1;
+            } else {
+                this.lastSliceId = mid;
+                return mid;
             }
         }
 
@@ -0,0 +1,124 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.wuyiccc.hellonetty.buffer;
+
+import com.wuyiccc.hellonetty.logging.InternalLogger;
+import com.wuyiccc.hellonetty.logging.InternalLoggerFactory;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+/**
+ * Frees the native memory of a direct or mapped {@link ByteBuffer} without
+ * waiting for the garbage collector.  It uses {@code Unsafe.invokeCleaner()}
+ * on Java 9 or above and {@code DirectBuffer.cleaner().clean()} on older
+ * JDKs.  If neither is available, {@link #clean(ByteBuffer)} does nothing
+ * and the memory is freed when the buffer is garbage-collected.
+ *
+ * @author The Netty Project (netty-dev@lists.jboss.org)
+ * @author Trustin Lee (tlee@redhat.com)
+ *
+ * @version $Rev$, $Date$
+ */
+final class DirectByteBufferCleaner {
+
+    private static final InternalLogger logger =
+        InternalLoggerFactory.getInstance(DirectByteBufferCleaner.class);
+
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+    private static final Method CLEANER;
+    private static final Method CLEAN;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        Method cleaner = null;
+        Method clean = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+        } catch (Throwable t) {
+            unsafe = null;
+            invokeCleaner = null;
+            try {
+                cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+                clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            } catch (Throwable t2) {
+                cleaner = null;
+                clean = null;
+                logger.debug(
+                        "Direct buffers will be freed by the garbage collector " +
+                        "because neither Unsafe.invokeCleaner() nor " +
+                        "DirectBuffer.cleaner() is available.", t2);
+            }
+        }
+
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+        CLEANER = cleaner;
+        CLEAN = clean;
+    }
+
+    /**
+     * Returns {@code true} if and only if {@link #clean(ByteBuffer)} frees
+     * the native memory immediately.
+     */
+    static boolean isSupported() {
+        return INVOKE_CLEANER != null || CLEAN != null;
+    }
+
+    /**
+     * Frees the native memory of the specified buffer.  The specified buffer
+     * must be the buffer returned by {@link ByteBuffer#allocateDirect(int)}
+     * or {@link java.nio.channels.FileChannel#map}, not its slice or
+     * duplicate.  Accessing the buffer or its derived buffers after this
+     * call can crash the JVM.
+     */
+    static void clean(ByteBuffer buffer) {
+        if (!buffer.isDirect()) {
+            return;
+        }
+
+        try {
+            if (INVOKE_CLEANER != null) {
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+            } else if (CLEAN != null) {
+                Object cleaner = CLEANER.invoke(buffer);
+                if (cleaner != null) {
+                    CLEAN.invoke(cleaner);
+                }
+            }
+        } catch (Throwable t) {
+            logger.warn("Failed to free a direct buffer.", t);
+        }
+    }
+
+    private DirectByteBufferCleaner() {
+        // Unused
+    }
+}
@@ -0,0 +1,349 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.wuyiccc.hellonetty.buffer;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.wuyiccc.hellonetty.logging.InternalLogger;
+import com.wuyiccc.hellonetty.logging.InternalLoggerFactory;
+import com.wuyiccc.hellonetty.util.MapBackedSet;
+import com.wuyiccc.hellonetty.util.SystemPropertyUtil;
+
+/**
+ * Allocates and accounts for the direct buffers of the framework.
+ * <p>
+ * Every direct buffer created by {@link ChannelBuffers#directBuffer(int)},
+ * the NIO receive buffer allocators and a direct {@code SslBufferPool} is
+ * allocated here and charged to its {@link Subsystem}, so that the native
+ * memory held by each part of an application can be monitored with
+ * {@link #getUsedDirectMemory(Subsystem)}.
+ *
+ * <h3>Soft limit</h3>
+ *
+ * When the {@linkplain #getMaxDirectMemory() maximum direct memory} is set,
+ * an allocation which would exceed it returns a heap buffer instead of
+ * failing.  The same fallback applies when the JVM itself refuses to
+ * allocate more direct memory ({@code -XX:MaxDirectMemorySize}).  The
+ * caller gets a buffer which behaves the same way except that
+ * {@link ChannelBuffer#toByteBuffer()} returns a heap buffer, and
+ * {@link #getHeapFallbackCount()} tells how often it has happened.  The
+ * limit is configured with the
+ * {@code com.wuyiccc.hellonetty.buffer.maxDirectMemory} system property in
+ * bytes, or with {@link #setMaxDirectMemory(long)} at runtime.  {@code 0},
+ * the default, means no limit.
+ *
+ * <h3>Deallocation</h3>
+ *
+ * The native memory of a direct buffer allocated here is freed as soon as
+ * its reference count reaches {@code 0}, rather than when the garbage
+ * collector finds it unreachable.  The buffer and its derived buffers must
+ * not be accessed after the last {@link ChannelBuffer#release()}.  A buffer
+ * which is never released is still freed by the garbage collector, and its
+ * bytes are returned to the account on the next allocation; such buffers
+ * are counted by {@link #getCollectedCount()}.
+ *
+ * @author The Netty Project (netty-dev@lists.jboss.org)
+ * @author Trustin Lee (tlee@redhat.com)
+ *
+ * @version $Rev$, $Date$
+ */
+public final class DirectMemoryManager {
+
+    /**
+     * The part of the framework a direct buffer is allocated for.
+     */
+    public enum Subsystem {
+        /**
+         * The receive buffers of the NIO socket workers.
+         */
+        WORKER_READ,
+        /**
+         * The buffers of a direct {@code SslBufferPool}.
+         */
+        SSL,
+        /**
+         * The buffers allocated by a user via {@link ChannelBuffers}.
+         */
+        USER
+    }
+
+    private static final InternalLogger logger =
+        InternalLoggerFactory.getInstance(DirectMemoryManager.class);
+
+    private static final String MAX_DIRECT_MEMORY_PROPERTY =
+        "com.wuyiccc.hellonetty.buffer.maxDirectMemory";
+
+    private static final Subsystem[] SUBSYSTEMS = Subsystem.values();
+
+    private static final ReferenceQueue<ByteBuffer> queue =
+        new ReferenceQueue<ByteBuffer>();
+
+    // Keeps the allocations of the live buffers reachable.
+    private static final Set<Allocation> allocations =
+        new MapBackedSet<Allocation>(new ConcurrentHashMap<Allocation, Boolean>());
+
+    private static final AtomicLong usedDirectMemory = new AtomicLong();
+    private static final AtomicLong[] usedDirectMemoryPerSubsystem =
+        newCounters();
+    private static final AtomicLong[] heapFallbackCounts = newCounters();
+    private static final AtomicLong collectedCount = new AtomicLong();
+
+    private static volatile long maxDirectMemory =
+        getLongProperty(MAX_DIRECT_MEMORY_PROPERTY, 0);
+
+    /**
+     * Returns the maximum number of bytes of the direct buffers allocated
+     * here.  {@code 0} means there is no limit other than the JVM's.
+     */
+    public static long getMaxDirectMemory() {
+        return maxDirectMemory;
+    }
+
+    /**
+     * Sets the maximum number of bytes of the direct buffers allocated here.
+     * {@code 0} removes the limit.  Lowering the limit below
+     * {@link #getUsedDirectMemory()} does not free the existing buffers; it
+     * only makes the subsequent allocations fall back to heap buffers.
+     */
+    public static void setMaxDirectMemory(long maxDirectMemory) {
+        if (maxDirectMemory < 0) {
+            throw new IllegalArgumentException(
+                    "maxDirectMemory must be 0 or a positive integer: " +
+                    maxDirectMemory);
+        }
+        DirectMemoryManager.maxDirectMemory = maxDirectMemory;
+    }
+
+    /**
+     * Returns the number of bytes of the direct buffers which were
+     * allocated here and have not been freed yet.
+     */
+    public static long getUsedDirectMemory() {
+        freeCollected();
+        return usedDirectMemory.get();
+    }
+
+    /**
+     * Returns the number of bytes of the direct buffers which were
+     * allocated here for the specified subsystem and have not been freed
+     * yet.
+     */
+    public static long getUsedDirectMemory(Subsystem subsystem) {
+        if (subsystem == null) {
+            throw new NullPointerException("subsystem");
+        }
+        freeCollected();
+        return usedDirectMemoryPerSubsystem[subsystem.ordinal()].get();
+    }
+
+    /**
+     * Returns the number of the allocations which returned a heap buffer
+     * because the direct memory was exhausted.
+     */
+    public static long getHeapFallbackCount() {
+        long count = 0;
+        for (AtomicLong c: heapFallbackCounts) {
+            count += c.get();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of the allocations for the specified subsystem
+     * which returned a heap buffer because the direct memory was exhausted.
+     */
+    public static long getHeapFallbackCount(Subsystem subsystem) {
+        if (subsystem == null) {
+            throw new NullPointerException("subsystem");
+        }
+        return heapFallbackCounts[subsystem.ordinal()].get();
+    }
+
+    /**
+     * Returns the number of the direct buffers which were freed by the
+     * garbage collector because they were never released.
+     */
+    public static long getCollectedCount() {
+        freeCollected();
+        return collectedCount.get();
+    }
+
+    /**
+     * Creates a new direct buffer with the specified {@code endianness} and
+     * {@code capacity}, and charges it to the specified subsystem.  The new
+     * buffer's {@code readerIndex} and {@code writerIndex} are {@code 0}.
+     * A heap buffer is returned instead if the direct memory is exhausted.
+     */
+    public static ChannelBuffer directBuffer(
+            Subsystem subsystem, ByteOrder endianness, int capacity) {
+        if (subsystem == null) {
+            throw new NullPointerException("subsystem");
+        }
+        if (endianness == null) {
+            throw new NullPointerException("endianness");
+        }
+        if (capacity == 0) {
+            return ChannelBuffers.EMPTY_BUFFER;
+        }
+        if (capacity < 0) {
+            throw new IllegalArgumentException(
+                    "capacity must be 0 or a positive integer: " + capacity);
+        }
+
+        freeCollected();
+        if (!reserve(subsystem, capacity)) {
+            return heapBuffer(subsystem, endianness, capacity);
+        }
+
+        ByteBuffer buffer;
+        try {
+            buffer = ByteBuffer.allocateDirect(capacity);
+        } catch (OutOfMemoryError e) {
+            unreserve(subsystem, capacity);
+            if (logger.isDebugEnabled()) {
+                logger.debug(
+                        "Failed to allocate a direct buffer of " + capacity +
+                        " bytes; falling back to a heap buffer.", e);
+            }
+            return heapBuffer(subsystem, endianness, capacity);
+        }
+
+        buffer.order(endianness);
+        Allocation allocation = new Allocation(buffer, subsystem, capacity);
+        allocations.add(allocation);
+
+        AbstractChannelBuffer channelBuffer =
+            new ByteBufferBackedChannelBuffer(buffer, allocation);
+        channelBuffer.clear();
+        ChannelBufferLeakDetector.track(channelBuffer);
+        return channelBuffer;
+    }
+
+    private static ChannelBuffer heapBuffer(
+            Subsystem subsystem, ByteOrder endianness, int capacity) {
+        heapFallbackCounts[subsystem.ordinal()].incrementAndGet();
+        return ChannelBuffers.buffer(endianness, capacity);
+    }
+
+    private static boolean reserve(Subsystem subsystem, int capacity) {
+        for (;;) {
+            long used = usedDirectMemory.get();
+            long maxDirectMemory = DirectMemoryManager.maxDirectMemory;
+            if (maxDirectMemory != 0 && used + capacity > maxDirectMemory) {
+                return false;
+            }
+            if (usedDirectMemory.compareAndSet(used, used + capacity)) {
+                usedDirectMemoryPerSubsystem[subsystem.ordinal()].addAndGet(capacity);
+                return true;
+            }
+        }
+    }
+
+    private static void unreserve(Subsystem subsystem, int capacity) {
+        usedDirectMemoryPerSubsystem[subsystem.ordinal()].addAndGet(-capacity);
+        usedDirectMemory.addAndGet(-capacity);
+    }
+
+    /**
+     * Returns the bytes of the buffers which were garbage-collected without
+     * being released to the account.
+     */
+    private static void freeCollected() {
+        for (;;) {
+            Allocation allocation = (Allocation) queue.poll();
+            if (allocation == null) {
+                break;
+            }
+            if (allocations.remove(allocation)) {
+                collectedCount.incrementAndGet();
+                unreserve(allocation.subsystem, allocation.capacity);
+            }
+        }
+    }
+
+    private static AtomicLong[] newCounters() {
+        AtomicLong[] counters = new AtomicLong[SUBSYSTEMS.length];
+        for (int i = 0; i < counters.length; i ++) {
+            counters[i] = new AtomicLong();
+        }
+        return counters;
+    }
+
+    private static long getLongProperty(String key, long def) {
+        String value = SystemPropertyUtil.get(key);
+        if (value == null) {
+            return def;
+        }
+        try {
+            long v = Long.parseLong(value.trim());
+            if (v >= 0) {
+                return v;
+            }
+        } catch (NumberFormatException e) {
+            // Fall through
+        }
+        logger.warn("Ignoring the invalid value of " + key + ": " + value);
+        return def;
+    }
+
+    private DirectMemoryManager() {
+        // Unused
+    }
+
+    /**
+     * The account of a direct buffer allocated by this manager.  It becomes
+     * phantom reachable when the buffer is garbage-collected without being
+     * freed.
+     */
+    static final class Allocation extends PhantomReference<ByteBuffer> {
+
+        final Subsystem subsystem;
+        final int capacity;
+
+        Allocation(ByteBuffer buffer, Subsystem subsystem, int capacity) {
+            super(buffer, queue);
+            this.subsystem = subsystem;
+            this.capacity = capacity;
+        }
+
+        /**
+         * Frees the native memory of the specified buffer, which must be
+         * the buffer this allocation was created for, and returns its bytes
+         * to the account.  Calling this method more than once has no
+         * effect.
+         */
+        void free(ByteBuffer buffer) {
+            if (allocations.remove(this)) {
+                clear();
+                DirectByteBufferCleaner.clean(buffer);
+                unreserve(subsystem, capacity);
+            }
+        }
+    }
+}
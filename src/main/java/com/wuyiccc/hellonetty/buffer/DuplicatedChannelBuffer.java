@@ -46,23 +46,60 @@ public class DuplicatedChannelBuffer extends AbstractChannelBuffer implements Wr
 
     private final ChannelBuffer buffer;
 
+    /**
+     * The array of {@link #buffer} if it is a heap buffer, so that the byte
+     * accessors do not have to call the heap buffer.
+     */
+    private final byte[] array;
+
     public DuplicatedChannelBuffer(ChannelBuffer buffer) {
         if (buffer == null) {
             throw new NullPointerException("buffer");
         }
+        int readerIndex = buffer.readerIndex();
+        int writerIndex = buffer.writerIndex();
+
+        // Duplicate the root buffer rather than another duplicate so that
+        // an access costs the same no matter how many times it was derived.
+        while (buffer instanceof DuplicatedChannelBuffer) {
+            buffer = ((DuplicatedChannelBuffer) buffer).buffer;
+        }
+
         this.buffer = buffer;
-        setIndex(buffer.readerIndex(), buffer.writerIndex());
+        array = buffer instanceof HeapChannelBuffer? ((HeapChannelBuffer) buffer).array : null;
+        setIndex(readerIndex, writerIndex);
     }
 
     private DuplicatedChannelBuffer(DuplicatedChannelBuffer buffer) {
         this.buffer = buffer.buffer;
+        array = buffer.array;
         setIndex(buffer.readerIndex(), buffer.writerIndex());
     }
 
+    /**
+     * Returns the buffer this buffer is a duplicate of, which is never a
+     * {@link DuplicatedChannelBuffer}.
+     */
     public ChannelBuffer unwrap() {
         return buffer;
     }
 
+    @Override
+    public int refCnt() {
+        return buffer.refCnt();
+    }
+
+    @Override
+    public ChannelBuffer retain() {
+        buffer.retain();
+        return this;
+    }
+
+    @Override
+    public boolean release() {
+        return buffer.release();
+    }
+
     public ByteOrder order() {
         return buffer.order();
     }
@@ -71,7 +108,16 @@ public class DuplicatedChannelBuffer extends AbstractChannelBuffer implements Wr
         return buffer.capacity();
     }
 
+    @Override
+    byte[] backingArray() {
+        return array;
+    }
+
     public byte getByte(int index) {
+        byte[] array = this.array;
+        if (array != null) {
+            return array[index];
+        }
         return buffer.getByte(index);
     }
 
@@ -108,7 +154,12 @@ public class DuplicatedChannelBuffer extends AbstractChannelBuffer implements Wr
     }
 
     public void getBytes(int index, byte[] dst, int dstIndex, int length) {
-        buffer.getBytes(index, dst, dstIndex, length);
+        byte[] array = this.array;
+        if (array != null) {
+            System.arraycopy(array, index, dst, dstIndex, length);
+        } else {
+            buffer.getBytes(index, dst, dstIndex, length);
+        }
     }
 
     public void getBytes(int index, ByteBuffer dst) {
@@ -116,7 +167,12 @@ public class DuplicatedChannelBuffer extends AbstractChannelBuffer implements Wr
     }
 
     public void setByte(int index, byte value) {
-        buffer.setByte(index, value);
+        byte[] array = this.array;
+        if (array != null) {
+            array[index] = value;
+        } else {
+            buffer.setByte(index, value);
+        }
     }
 
     public void setShort(int index, short value) {
@@ -136,7 +192,12 @@ public class DuplicatedChannelBuffer extends AbstractChannelBuffer implements Wr
     }
 
     public void setBytes(int index, byte[] src, int srcIndex, int length) {
-        buffer.setBytes(index, src, srcIndex, length);
+        byte[] array = this.array;
+        if (array != null) {
+            System.arraycopy(src, srcIndex, array, index, length);
+        } else {
+            buffer.setBytes(index, src, srcIndex, length);
+        }
     }
 
     public void setBytes(int index, ChannelBuffer src, int srcIndex, int length) {
@@ -167,10 +228,25 @@ public class DuplicatedChannelBuffer extends AbstractChannelBuffer implements Wr
         return buffer.setBytes(index, in, length);
     }
 
+    @Override
+    public int indexOf(int fromIndex, int toIndex, byte value) {
+        return buffer.indexOf(fromIndex, toIndex, value);
+    }
+
+    @Override
+    public int indexOf(int fromIndex, int toIndex, ChannelBufferIndexFinder indexFinder) {
+        return buffer.indexOf(fromIndex, toIndex, indexFinder);
+    }
+
     public ByteBuffer toByteBuffer(int index, int length) {
         return buffer.toByteBuffer(index, length);
     }
 
+    @Override
+    public ByteBuffer[] toByteBuffers(int index, int length) {
+        return buffer.toByteBuffers(index, length);
+    }
+
     public String toString(int index, int length, String charsetName) {
         return buffer.toString(index, length, charsetName);
     }
@@ -22,6 +22,10 @@
  */
 package com.wuyiccc.hellonetty.buffer;
 
+import com.wuyiccc.hellonetty.logging.InternalLogger;
+import com.wuyiccc.hellonetty.logging.InternalLoggerFactory;
+import com.wuyiccc.hellonetty.util.SystemPropertyUtil;
+
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -29,6 +33,8 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.ScatteringByteChannel;
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 /**
@@ -36,6 +42,20 @@ import java.nio.channels.ScatteringByteChannel;
  * recommended to use {@link ChannelBuffers#dynamicBuffer(int)} instead of
  * calling the constructor explicitly.
  *
+ * <h3>Growth and shrink policy</h3>
+ *
+ * The capacity is doubled until it reaches the {@linkplain #getGrowthThreshold()
+ * growth threshold}, and is increased by the threshold after that, so that
+ * a large message does not leave up to twice as much memory behind.  The
+ * default threshold is 4 MiB and can be changed with the
+ * {@code com.wuyiccc.hellonetty.buffer.dynamicGrowthThreshold} system
+ * property.
+ * <p>
+ * A long-lived buffer such as the cumulative buffer of a decoder can give
+ * its oversized backing storage back by calling {@link #shrink()} whenever
+ * it is idle.  {@link #getTotalCapacity()} tells how much memory all dynamic
+ * buffers retain.
+ *
  * @author The Netty Project (netty-dev@lists.jboss.org)
  * @author Trustin Lee (tlee@redhat.com)
  *
@@ -44,24 +64,181 @@ import java.nio.channels.ScatteringByteChannel;
  */
 public class DynamicChannelBuffer extends AbstractChannelBuffer {
 
+    private static final InternalLogger logger =
+        InternalLoggerFactory.getInstance(DynamicChannelBuffer.class);
+
+    /**
+     * The default growth threshold, which is 4 MiB unless overridden by the
+     * {@code com.wuyiccc.hellonetty.buffer.dynamicGrowthThreshold} system
+     * property.
+     */
+    public static final int DEFAULT_GROWTH_THRESHOLD;
+
+    /**
+     * The number of consecutive {@link #shrink()} calls which have to see an
+     * oversized buffer before it is shrunk.
+     */
+    private static final int SHRINK_DELAY = 8;
+
+    private static final AtomicLong totalCapacity = new AtomicLong();
+    private static final AtomicLong expansionCount = new AtomicLong();
+    private static final AtomicLong shrinkCount = new AtomicLong();
+
+    static {
+        int growthThreshold = 4 * 1048576;
+        String value = SystemPropertyUtil.get(
+                "com.wuyiccc.hellonetty.buffer.dynamicGrowthThreshold");
+        if (value != null) {
+            try {
+                int v = Integer.parseInt(value);
+                if (v > 0) {
+                    growthThreshold = v;
+                } else {
+                    logger.warn(
+                            "Ignoring the non-positive dynamic buffer growth threshold: " +
+                            value);
+                }
+            } catch (NumberFormatException e) {
+                logger.warn(
+                        "Ignoring the malformed dynamic buffer growth threshold: " +
+                        value);
+            }
+        }
+        DEFAULT_GROWTH_THRESHOLD = growthThreshold;
+    }
+
+    /**
+     * Returns the sum of the capacities of all dynamic buffers which have not
+     * been released yet.  The capacity of a buffer is subtracted only when
+     * its {@linkplain #refCnt() reference count} drops to {@code 0}; a buffer
+     * which is garbage-collected without being released stays in the count.
+     */
+    public static long getTotalCapacity() {
+        return totalCapacity.get();
+    }
+
+    /**
+     * Returns the number of times any dynamic buffer increased its capacity.
+     */
+    public static long getExpansionCount() {
+        return expansionCount.get();
+    }
+
+    /**
+     * Returns the number of times any dynamic buffer was shrunk by
+     * {@link #shrink()}.
+     */
+    public static long getShrinkCount() {
+        return shrinkCount.get();
+    }
+
     private final int initialCapacity;
     private final ByteOrder endianness;
+    private final ChannelBufferFactory factory;
     private ChannelBuffer buffer = ChannelBuffers.EMPTY_BUFFER;
+    private int growthThreshold = DEFAULT_GROWTH_THRESHOLD;
+    private int oversizedCount;
 
     public DynamicChannelBuffer(int estimatedLength) {
         this(ByteOrder.BIG_ENDIAN, estimatedLength);
     }
 
     public DynamicChannelBuffer(ByteOrder endianness, int estimatedLength) {
+        this(endianness, estimatedLength, HeapChannelBufferFactory.getInstance());
+    }
+
+    /**
+     * Creates a new dynamic buffer which acquires a new underlying buffer from
+     * the specified {@link ChannelBufferFactory} whenever its capacity needs
+     * to be increased.
+     */
+    public DynamicChannelBuffer(ByteOrder endianness, int estimatedLength, ChannelBufferFactory factory) {
         if (estimatedLength < 0) {
             throw new IllegalArgumentException("estimatedLength: " + estimatedLength);
         }
         if (endianness == null) {
             throw new NullPointerException("endianness");
         }
+        if (factory == null) {
+            throw new NullPointerException("factory");
+        }
 
         initialCapacity = estimatedLength;
         this.endianness = endianness;
+        this.factory = factory;
+    }
+
+    /**
+     * Returns the {@link ChannelBufferFactory} which creates the underlying
+     * buffer of this dynamic buffer.
+     */
+    public ChannelBufferFactory factory() {
+        return factory;
+    }
+
+    /**
+     * Returns the capacity up to which this buffer doubles its capacity.
+     * Beyond this capacity, the capacity is increased by this value.
+     */
+    public int getGrowthThreshold() {
+        return growthThreshold;
+    }
+
+    /**
+     * Sets the capacity up to which this buffer doubles its capacity.
+     * Beyond this capacity, the capacity is increased by this value.
+     */
+    public void setGrowthThreshold(int growthThreshold) {
+        if (growthThreshold <= 0) {
+            throw new IllegalArgumentException(
+                    "growthThreshold must be a positive integer: " +
+                    growthThreshold);
+        }
+        this.growthThreshold = growthThreshold;
+    }
+
+    /**
+     * Gives back the oversized backing storage of this buffer.  The backing
+     * storage is replaced with a smaller one once the readable bytes have
+     * been a quarter of the capacity or less for eight
+     * consecutive calls, so that a buffer which is still cumulating a large
+     * message or which receives large messages steadily is left alone.
+     * The read bytes are discarded as {@link #discardReadBytes()} does when
+     * the buffer is shrunk.  This method is meant to be called when the
+     * buffer is idle, e.g. after a decoder consumed all the frames it could.
+     *
+     * @return {@code true} if and only if the backing storage was shrunk
+     */
+    public boolean shrink() {
+        int capacity = capacity();
+        int readableBytes = readableBytes();
+        int minCapacity = Math.max(initialCapacity, 1);
+        if (capacity <= minCapacity || readableBytes > capacity >>> 2) {
+            oversizedCount = 0;
+            return false;
+        }
+        if (++ oversizedCount < SHRINK_DELAY) {
+            return false;
+        }
+        oversizedCount = 0;
+
+        // Leave as much room as there are readable bytes.
+        int newCapacity = minCapacity;
+        while (newCapacity < readableBytes << 1) {
+            newCapacity <<= 1;
+        }
+        if (newCapacity >= capacity) {
+            return false;
+        }
+
+        int readerIndex = readerIndex();
+        ChannelBuffer newBuffer = factory.getBuffer(endianness, newCapacity);
+        newBuffer.writeBytes(buffer, readerIndex, readableBytes);
+        replaceBuffer(newBuffer);
+        adjustMarkers(readerIndex);
+        setIndex(0, readableBytes);
+        shrinkCount.incrementAndGet();
+        return true;
     }
 
     public ByteOrder order() {
@@ -186,6 +363,24 @@ public class DynamicChannelBuffer extends AbstractChannelBuffer {
         super.writeLong(value);
     }
 
+    @Override
+    public void writeVarInt32(int value) {
+        ensureWritableBytes(VarInts.sizeOf(value));
+        super.writeVarInt32(value);
+    }
+
+    @Override
+    public void writeVarInt64(long value) {
+        ensureWritableBytes(VarInts.sizeOf(value));
+        super.writeVarInt64(value);
+    }
+
+    @Override
+    public int writeCharSequence(CharSequence sequence, Charset charset) {
+        ensureWritableBytes(CharsetCodecs.maxEncodedLength(sequence, charset));
+        return super.writeCharSequence(sequence, charset);
+    }
+
     @Override
     public void writeBytes(byte[] src, int srcIndex, int length) {
         ensureWritableBytes(length);
@@ -215,8 +410,9 @@ public class DynamicChannelBuffer extends AbstractChannelBuffer {
     }
 
     public ChannelBuffer copy(int index, int length) {
-        DynamicChannelBuffer copiedBuffer = new DynamicChannelBuffer(endianness, Math.max(length, 64));
+        DynamicChannelBuffer copiedBuffer = new DynamicChannelBuffer(endianness, Math.max(length, 64), factory);
         copiedBuffer.buffer = buffer.copy(index, length);
+        totalCapacity.addAndGet(copiedBuffer.buffer.capacity());
         copiedBuffer.setIndex(0, length);
         return copiedBuffer;
     }
@@ -235,10 +431,26 @@ public class DynamicChannelBuffer extends AbstractChannelBuffer {
         }
     }
 
+    @Override
+    public int indexOf(int fromIndex, int toIndex, byte value) {
+        return buffer.indexOf(fromIndex, toIndex, value);
+    }
+
+    @Override
+    public int indexOf(int fromIndex, int toIndex, ChannelBufferIndexFinder indexFinder) {
+        return buffer.indexOf(fromIndex, toIndex, indexFinder);
+    }
+
     public ByteBuffer toByteBuffer(int index, int length) {
         return buffer.toByteBuffer(index, length);
     }
 
+    @Override
+    protected void deallocate() {
+        totalCapacity.addAndGet(-buffer.capacity());
+        buffer.release();
+    }
+
 
     public String toString(int index, int length, String charsetName) {
         return buffer.toString(index, length, charsetName);
@@ -248,22 +460,45 @@ public class DynamicChannelBuffer extends AbstractChannelBuffer {
             return;
         }
 
+        int minNewCapacity = writerIndex() + requestedBytes;
+        if (minNewCapacity < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+
         int newCapacity;
-        if (capacity() == 0) {
-            newCapacity = initialCapacity;
-            if (newCapacity == 0) {
-                newCapacity = 1;
+        int growthThreshold = this.growthThreshold;
+        if (minNewCapacity > growthThreshold) {
+            // Increase by the threshold rather than doubling beyond it.
+            newCapacity = minNewCapacity / growthThreshold * growthThreshold;
+            if (newCapacity > Integer.MAX_VALUE - growthThreshold) {
+                newCapacity = Integer.MAX_VALUE;
+            } else {
+                newCapacity += growthThreshold;
             }
         } else {
-            newCapacity = capacity();
-        }
-        int minNewCapacity = writerIndex() + requestedBytes;
-        while (newCapacity < minNewCapacity) {
-            newCapacity <<= 1;
+            if (capacity() == 0) {
+                newCapacity = initialCapacity;
+                if (newCapacity == 0) {
+                    newCapacity = 1;
+                }
+            } else {
+                newCapacity = capacity();
+            }
+            while (newCapacity < minNewCapacity) {
+                newCapacity <<= 1;
+            }
+            newCapacity = Math.min(newCapacity, growthThreshold);
         }
 
-        ChannelBuffer newBuffer = ChannelBuffers.buffer(endianness, newCapacity);
-        newBuffer.writeBytes(buffer, readerIndex(), readableBytes());
+        ChannelBuffer newBuffer = factory.getBuffer(endianness, newCapacity);
+        newBuffer.writeBytes(buffer, 0, writerIndex());
+        replaceBuffer(newBuffer);
+        expansionCount.incrementAndGet();
+    }
+
+    private void replaceBuffer(ChannelBuffer newBuffer) {
+        totalCapacity.addAndGet(newBuffer.capacity() - buffer.capacity());
+        buffer.release();
         buffer = newBuffer;
     }
 }
@@ -25,10 +25,11 @@ package com.wuyiccc.hellonetty.buffer;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
 import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.ScatteringByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
 import java.nio.charset.UnsupportedCharsetException;
 
 /**
@@ -83,6 +84,11 @@ public abstract class HeapChannelBuffer extends AbstractChannelBuffer {
         return array.length;
     }
 
+    @Override
+    byte[] backingArray() {
+        return array;
+    }
+
     public byte getByte(int index) {
         return array[index];
     }
@@ -191,14 +197,93 @@ public abstract class HeapChannelBuffer extends AbstractChannelBuffer {
         }
     }
 
+    @Override
+    public int indexOf(int fromIndex, int toIndex, byte value) {
+        return ByteSearch.indexOf(this, array, 0, fromIndex, toIndex, value);
+    }
+
+    @Override
+    public int indexOf(int fromIndex, int toIndex, ChannelBufferIndexFinder indexFinder) {
+        return ByteSearch.indexOf(this, array, 0, fromIndex, toIndex, indexFinder);
+    }
+
+    @Override
+    public int readVarInt32() {
+        byte[] array = this.array;
+        int readerIndex = readerIndex();
+        int index = readerIndex;
+        int endIndex = Math.min(writerIndex(), index + VarInts.MAX_VARINT32_BYTES);
+        int value = 0;
+        for (int shift = 0; index < endIndex; shift += 7) {
+            byte b = array[index ++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                readerIndex(index);
+                return value;
+            }
+        }
+        throw VarInts.decodeFailure(index - readerIndex, VarInts.MAX_VARINT32_BYTES);
+    }
+
+    @Override
+    public long readVarInt64() {
+        byte[] array = this.array;
+        int readerIndex = readerIndex();
+        int index = readerIndex;
+        int endIndex = Math.min(writerIndex(), index + VarInts.MAX_VARINT64_BYTES);
+        long value = 0;
+        for (int shift = 0; index < endIndex; shift += 7) {
+            byte b = array[index ++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                readerIndex(index);
+                return value;
+            }
+        }
+        throw VarInts.decodeFailure(index - readerIndex, VarInts.MAX_VARINT64_BYTES);
+    }
+
+    @Override
+    public void writeVarInt32(int value) {
+        if (VarInts.sizeOf(value) > writableBytes()) {
+            throw new IndexOutOfBoundsException();
+        }
+        writerIndex(VarInts.encode(array, writerIndex(), value));
+    }
+
+    @Override
+    public void writeVarInt64(long value) {
+        if (VarInts.sizeOf(value) > writableBytes()) {
+            throw new IndexOutOfBoundsException();
+        }
+        writerIndex(VarInts.encode(array, writerIndex(), value));
+    }
+
+    @Override
+    public int setCharSequence(int index, CharSequence sequence, Charset charset) {
+        int length = CharsetCodecs.encodedLength(sequence, charset);
+        if (length < 0) {
+            return super.setCharSequence(index, sequence, charset);
+        }
+        if (index < 0 || length > array.length - index) {
+            throw new IndexOutOfBoundsException();
+        }
+        return CharsetCodecs.encode(sequence, charset, array, index);
+    }
+
+    @Override
+    public CharSequence getCharSequence(int index, int length, Charset charset) {
+        return new String(array, index, length, charset);
+    }
+
     public ByteBuffer toByteBuffer(int index, int length) {
         return ByteBuffer.wrap(array, index, length);
     }
 
     public String toString(int index, int length, String charsetName) {
         try {
-            return new String(array, index, length, charsetName);
-        } catch (UnsupportedEncodingException e) {
+            return new String(array, index, length, CharsetCodecs.forName(charsetName));
+        } catch (IllegalCharsetNameException e) {
             throw new UnsupportedCharsetException(charsetName);
         }
     }
@@ -0,0 +1,97 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.wuyiccc.hellonetty.buffer;
+
+import java.nio.ByteOrder;
+
+/**
+ * A {@link ChannelBufferFactory} which merely allocates a new heap buffer
+ * via {@link ChannelBuffers#buffer(ByteOrder, int)} on every request.  This
+ * is the default factory of all transports.
+ *
+ * @author The Netty Project (netty-dev@lists.jboss.org)
+ * @author Trustin Lee (tlee@redhat.com)
+ *
+ * @version $Rev$, $Date$
+ */
+public class HeapChannelBufferFactory implements ChannelBufferFactory {
+
+    private static final HeapChannelBufferFactory INSTANCE_BE =
+        new HeapChannelBufferFactory(ByteOrder.BIG_ENDIAN);
+
+    private static final HeapChannelBufferFactory INSTANCE_LE =
+        new HeapChannelBufferFactory(ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * Returns the shared big-endian instance.
+     */
+    public static ChannelBufferFactory getInstance() {
+        return INSTANCE_BE;
+    }
+
+    /**
+     * Returns the shared instance whose default endianness is
+     * {@code defaultEndianness}.
+     */
+    public static ChannelBufferFactory getInstance(ByteOrder defaultEndianness) {
+        if (defaultEndianness == ByteOrder.BIG_ENDIAN) {
+            return INSTANCE_BE;
+        } else if (defaultEndianness == ByteOrder.LITTLE_ENDIAN) {
+            return INSTANCE_LE;
+        } else {
+            throw new NullPointerException("defaultEndianness");
+        }
+    }
+
+    private final ByteOrder defaultOrder;
+
+    /**
+     * Creates a new factory whose default endianness is
+     * {@link ByteOrder#BIG_ENDIAN}.
+     */
+    public HeapChannelBufferFactory() {
+        this(ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Creates a new factory with the specified default endianness.
+     */
+    public HeapChannelBufferFactory(ByteOrder defaultOrder) {
+        if (defaultOrder == null) {
+            throw new NullPointerException("defaultOrder");
+        }
+        this.defaultOrder = defaultOrder;
+    }
+
+    public ChannelBuffer getBuffer(int capacity) {
+        return getBuffer(getDefaultOrder(), capacity);
+    }
+
+    public ChannelBuffer getBuffer(ByteOrder endianness, int capacity) {
+        return ChannelBuffers.buffer(endianness, capacity);
+    }
+
+    public ByteOrder getDefaultOrder() {
+        return defaultOrder;
+    }
+}
@@ -55,15 +55,14 @@ public class LittleEndianHeapChannelBuffer extends HeapChannelBuffer {
         super(array);
     }
 
-    private LittleEndianHeapChannelBuffer(byte[] array, int readerIndex, int writerIndex) {
-        super(array, readerIndex, writerIndex);
-    }
-
     public ByteOrder order() {
         return ByteOrder.LITTLE_ENDIAN;
     }
 
     public short getShort(int index) {
+        if (UnsafeAccess.isAvailable()) {
+            return UnsafeAccess.getShort(array, index, false);
+        }
         return (short) (array[index] & 0xFF | array[index+1] << 8);
     }
 
@@ -74,6 +73,9 @@ public class LittleEndianHeapChannelBuffer extends HeapChannelBuffer {
     }
 
     public int getInt(int index) {
+        if (UnsafeAccess.isAvailable()) {
+            return UnsafeAccess.getInt(array, index, false);
+        }
         return (array[index  ] & 0xff) <<  0 |
                (array[index+1] & 0xff) <<  8 |
                (array[index+2] & 0xff) << 16 |
@@ -81,6 +83,9 @@ public class LittleEndianHeapChannelBuffer extends HeapChannelBuffer {
     }
 
     public long getLong(int index) {
+        if (UnsafeAccess.isAvailable()) {
+            return UnsafeAccess.getLong(array, index, false);
+        }
         return ((long) array[index]   & 0xff) <<  0 |
                ((long) array[index+1] & 0xff) <<  8 |
                ((long) array[index+2] & 0xff) << 16 |
@@ -92,6 +97,10 @@ public class LittleEndianHeapChannelBuffer extends HeapChannelBuffer {
     }
 
     public void setShort(int index, short value) {
+        if (UnsafeAccess.isAvailable()) {
+            UnsafeAccess.putShort(array, index, value, false);
+            return;
+        }
         array[index  ] = (byte) (value >>> 0);
         array[index+1] = (byte) (value >>> 8);
     }
@@ -103,6 +112,10 @@ public class LittleEndianHeapChannelBuffer extends HeapChannelBuffer {
     }
 
     public void setInt(int index, int   value) {
+        if (UnsafeAccess.isAvailable()) {
+            UnsafeAccess.putInt(array, index, value, false);
+            return;
+        }
         array[index  ] = (byte) (value >>> 0);
         array[index+1] = (byte) (value >>> 8);
         array[index+2] = (byte) (value >>> 16);
@@ -110,6 +123,10 @@ public class LittleEndianHeapChannelBuffer extends HeapChannelBuffer {
     }
 
     public void setLong(int index, long  value) {
+        if (UnsafeAccess.isAvailable()) {
+            UnsafeAccess.putLong(array, index, value, false);
+            return;
+        }
         array[index  ] = (byte) (value >>> 0);
         array[index+1] = (byte) (value >>> 8);
         array[index+2] = (byte) (value >>> 16);
@@ -121,7 +138,7 @@ public class LittleEndianHeapChannelBuffer extends HeapChannelBuffer {
     }
 
     public ChannelBuffer duplicate() {
-        return new LittleEndianHeapChannelBuffer(array, readerIndex(), writerIndex());
+        return new DuplicatedChannelBuffer(this);
     }
 
     public ChannelBuffer copy(int index, int length) {
@@ -0,0 +1,134 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.wuyiccc.hellonetty.buffer;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * A buffer which is backed by a memory-mapped region of a file.  It is
+ * recommended to use {@link ChannelBuffers#mappedBuffer(FileChannel, long, int)}
+ * and {@link ChannelBuffers#mappedBuffer(FileChannel, MapMode, long, int)}
+ * instead of calling the constructor explicitly.
+ *
+ * <h3>Read-only and read-write mappings</h3>
+ *
+ * A buffer mapped with {@link MapMode#READ_ONLY} throws a
+ * {@link java.nio.ReadOnlyBufferException} on any write access.  The
+ * modifications on a buffer mapped with {@link MapMode#READ_WRITE} are
+ * written to the file eventually, or when {@link #force()} is called.
+ * A buffer mapped with {@link MapMode#PRIVATE} is a copy-on-write view of
+ * the file.
+ *
+ * <h3>Unmapping</h3>
+ *
+ * A mapping occupies the address space and keeps the file open on some
+ * platforms until it is unmapped.  The region is unmapped as soon as the
+ * {@link #refCnt() reference count} of this buffer drops to {@code 0}, so
+ * a mapped buffer (or its slice) written to a {@link com.wuyiccc.hellonetty.channel.Channel}
+ * is unmapped once the write is done.  {@link #retain()} the buffer if you
+ * are going to write its slices more than once.  Accessing the buffer or
+ * any of its derived buffers after it is unmapped raises an
+ * {@link IllegalStateException}.  If the running JVM provides no means to unmap a region explicitly, the
+ * region is unmapped when the buffer is garbage-collected.
+ *
+ * @author The Netty Project (netty-dev@lists.jboss.org)
+ * @author Trustin Lee (tlee@redhat.com)
+ *
+ * @version $Rev$, $Date$
+ */
+public class MappedChannelBuffer extends ByteBufferBackedChannelBuffer {
+
+    private final MappedByteBuffer mapped;
+    private final MapMode mode;
+
+    /**
+     * Maps the specified region of the specified file.
+     *
+     * @param file     the file to map
+     * @param mode     the mapping mode
+     * @param position the offset in the file where the mapped region starts
+     * @param size     the size of the mapped region
+     */
+    public MappedChannelBuffer(
+            FileChannel file, MapMode mode, long position, int size) throws IOException {
+        this(file.map(mode, position, size), mode);
+    }
+
+    private MappedChannelBuffer(MappedByteBuffer mapped, MapMode mode) {
+        super(mapped);
+        this.mapped = mapped;
+        this.mode = mode;
+    }
+
+    /**
+     * Returns the {@link MapMode} this buffer was mapped with.
+     */
+    public MapMode getMapMode() {
+        return mode;
+    }
+
+    /**
+     * Returns {@code true} if and only if a write access to this buffer
+     * raises a {@link java.nio.ReadOnlyBufferException}.
+     */
+    public boolean isReadOnly() {
+        return mode == MapMode.READ_ONLY;
+    }
+
+    /**
+     * Writes the modifications on this buffer to the storage device which
+     * contains the mapped file.  This method does nothing if this buffer
+     * was not mapped with {@link MapMode#READ_WRITE}.
+     */
+    public void force() {
+        ensureAccessible();
+        if (mode == MapMode.READ_WRITE) {
+            mapped.force();
+        }
+    }
+
+    /**
+     * Loads the content of this buffer into physical memory.
+     */
+    public void load() {
+        ensureAccessible();
+        mapped.load();
+    }
+
+    /**
+     * Returns {@code true} if the content of this buffer is likely to be
+     * resident in physical memory.
+     */
+    public boolean isLoaded() {
+        ensureAccessible();
+        return mapped.isLoaded();
+    }
+
+    @Override
+    protected void deallocate() {
+        DirectByteBufferCleaner.clean(mapped);
+    }
+}
@@ -0,0 +1,408 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.wuyiccc.hellonetty.buffer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+import java.nio.charset.UnsupportedCharsetException;
+
+/**
+ * A heap buffer which occupies a region of a larger byte array (an arena
+ * chunk) managed by {@link PooledChannelBufferFactory}.  Unlike
+ * {@link HeapChannelBuffer}, the region does not start at the beginning of
+ * the array and is not as long as the array, and therefore every access is
+ * bounds-checked against the region explicitly.
+ * <p>
+ * The region is returned to the factory when the buffer is
+ * {@linkplain #release() released}, and it is reused by another buffer
+ * afterwards.  Therefore any access to a released buffer raises an
+ * {@link IllegalStateException}.
+ *
+ * @author The Netty Project (netty-dev@lists.jboss.org)
+ * @author Trustin Lee (tlee@redhat.com)
+ *
+ * @version $Rev$, $Date$
+ */
+public class PooledChannelBuffer extends AbstractChannelBuffer {
+
+    private final PooledChannelBufferFactory factory;
+    private final ByteOrder order;
+    private final boolean bigEndian;
+    final byte[] memory;
+    final int offset;
+    final int sizeClass;
+    private final int capacity;
+
+    PooledChannelBuffer(
+            PooledChannelBufferFactory factory, ByteOrder order,
+            byte[] memory, int offset, int sizeClass, int capacity) {
+        this.factory = factory;
+        this.order = order;
+        bigEndian = order == ByteOrder.BIG_ENDIAN;
+        this.memory = memory;
+        this.offset = offset;
+        this.sizeClass = sizeClass;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns the {@link PooledChannelBufferFactory} which allocated this
+     * buffer.
+     */
+    public PooledChannelBufferFactory factory() {
+        return factory;
+    }
+
+    public ByteOrder order() {
+        return order;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public byte getByte(int index) {
+        checkIndex(index, 1);
+        return memory[offset + index];
+    }
+
+    public short getShort(int index) {
+        checkIndex(index, 2);
+        int i = offset + index;
+        if (UnsafeAccess.isAvailable()) {
+            return UnsafeAccess.getShort(memory, i, bigEndian);
+        }
+        if (bigEndian) {
+            return (short) (memory[i] << 8 | memory[i+1] & 0xFF);
+        } else {
+            return (short) (memory[i] & 0xFF | memory[i+1] << 8);
+        }
+    }
+
+    public int getUnsignedMedium(int index) {
+        checkIndex(index, 3);
+        int i = offset + index;
+        if (bigEndian) {
+            return  (memory[i]   & 0xff) << 16 |
+                    (memory[i+1] & 0xff) <<  8 |
+                    (memory[i+2] & 0xff) <<  0;
+        } else {
+            return  (memory[i]   & 0xff) <<  0 |
+                    (memory[i+1] & 0xff) <<  8 |
+                    (memory[i+2] & 0xff) << 16;
+        }
+    }
+
+    public int getInt(int index) {
+        checkIndex(index, 4);
+        int i = offset + index;
+        if (UnsafeAccess.isAvailable()) {
+            return UnsafeAccess.getInt(memory, i, bigEndian);
+        }
+        if (bigEndian) {
+            return  (memory[i]   & 0xff) << 24 |
+                    (memory[i+1] & 0xff) << 16 |
+                    (memory[i+2] & 0xff) <<  8 |
+                    (memory[i+3] & 0xff) <<  0;
+        } else {
+            return  (memory[i]   & 0xff) <<  0 |
+                    (memory[i+1] & 0xff) <<  8 |
+                    (memory[i+2] & 0xff) << 16 |
+                    (memory[i+3] & 0xff) << 24;
+        }
+    }
+
+    public long getLong(int index) {
+        checkIndex(index, 8);
+        int i = offset + index;
+        if (UnsafeAccess.isAvailable()) {
+            return UnsafeAccess.getLong(memory, i, bigEndian);
+        }
+        if (bigEndian) {
+            return  ((long) memory[i]   & 0xff) << 56 |
+                    ((long) memory[i+1] & 0xff) << 48 |
+                    ((long) memory[i+2] & 0xff) << 40 |
+                    ((long) memory[i+3] & 0xff) << 32 |
+                    ((long) memory[i+4] & 0xff) << 24 |
+                    ((long) memory[i+5] & 0xff) << 16 |
+                    ((long) memory[i+6] & 0xff) <<  8 |
+                    ((long) memory[i+7] & 0xff) <<  0;
+        } else {
+            return  ((long) memory[i]   & 0xff) <<  0 |
+                    ((long) memory[i+1] & 0xff) <<  8 |
+                    ((long) memory[i+2] & 0xff) << 16 |
+                    ((long) memory[i+3] & 0xff) << 24 |
+                    ((long) memory[i+4] & 0xff) << 32 |
+                    ((long) memory[i+5] & 0xff) << 40 |
+                    ((long) memory[i+6] & 0xff) << 48 |
+                    ((long) memory[i+7] & 0xff) << 56;
+        }
+    }
+
+    public void getBytes(int index, ChannelBuffer dst, int dstIndex, int length) {
+        checkIndex(index, length);
+        dst.setBytes(dstIndex, memory, offset + index, length);
+    }
+
+    public void getBytes(int index, byte[] dst, int dstIndex, int length) {
+        checkIndex(index, length);
+        System.arraycopy(memory, offset + index, dst, dstIndex, length);
+    }
+
+    public void getBytes(int index, ByteBuffer dst) {
+        int length = Math.min(capacity - index, dst.remaining());
+        checkIndex(index, length);
+        dst.put(memory, offset + index, length);
+    }
+
+    public void getBytes(int index, OutputStream out, int length)
+            throws IOException {
+        checkIndex(index, length);
+        out.write(memory, offset + index, length);
+    }
+
+    public int getBytes(int index, GatheringByteChannel out, int length)
+            throws IOException {
+        checkIndex(index, length);
+        return out.write(ByteBuffer.wrap(memory, offset + index, length));
+    }
+
+    public void setByte(int index, byte value) {
+        checkIndex(index, 1);
+        memory[offset + index] = value;
+    }
+
+    public void setShort(int index, short value) {
+        checkIndex(index, 2);
+        int i = offset + index;
+        if (UnsafeAccess.isAvailable()) {
+            UnsafeAccess.putShort(memory, i, value, bigEndian);
+            return;
+        }
+        if (bigEndian) {
+            memory[i  ] = (byte) (value >>> 8);
+            memory[i+1] = (byte) (value >>> 0);
+        } else {
+            memory[i  ] = (byte) (value >>> 0);
+            memory[i+1] = (byte) (value >>> 8);
+        }
+    }
+
+    public void setMedium(int index, int   value) {
+        checkIndex(index, 3);
+        int i = offset + index;
+        if (bigEndian) {
+            memory[i  ] = (byte) (value >>> 16);
+            memory[i+1] = (byte) (value >>> 8);
+            memory[i+2] = (byte) (value >>> 0);
+        } else {
+            memory[i  ] = (byte) (value >>> 0);
+            memory[i+1] = (byte) (value >>> 8);
+            memory[i+2] = (byte) (value >>> 16);
+        }
+    }
+
+    public void setInt(int index, int   value) {
+        checkIndex(index, 4);
+        int i = offset + index;
+        if (UnsafeAccess.isAvailable()) {
+            UnsafeAccess.putInt(memory, i, value, bigEndian);
+            return;
+        }
+        if (bigEndian) {
+            memory[i  ] = (byte) (value >>> 24);
+            memory[i+1] = (byte) (value >>> 16);
+            memory[i+2] = (byte) (value >>> 8);
+            memory[i+3] = (byte) (value >>> 0);
+        } else {
+            memory[i  ] = (byte) (value >>> 0);
+            memory[i+1] = (byte) (value >>> 8);
+            memory[i+2] = (byte) (value >>> 16);
+            memory[i+3] = (byte) (value >>> 24);
+        }
+    }
+
+    public void setLong(int index, long  value) {
+        checkIndex(index, 8);
+        int i = offset + index;
+        if (UnsafeAccess.isAvailable()) {
+            UnsafeAccess.putLong(memory, i, value, bigEndian);
+            return;
+        }
+        if (bigEndian) {
+            memory[i  ] = (byte) (value >>> 56);
+            memory[i+1] = (byte) (value >>> 48);
+            memory[i+2] = (byte) (value >>> 40);
+            memory[i+3] = (byte) (value >>> 32);
+            memory[i+4] = (byte) (value >>> 24);
+            memory[i+5] = (byte) (value >>> 16);
+            memory[i+6] = (byte) (value >>> 8);
+            memory[i+7] = (byte) (value >>> 0);
+        } else {
+            memory[i  ] = (byte) (value >>> 0);
+            memory[i+1] = (byte) (value >>> 8);
+            memory[i+2] = (byte) (value >>> 16);
+            memory[i+3] = (byte) (value >>> 24);
+            memory[i+4] = (byte) (value >>> 32);
+            memory[i+5] = (byte) (value >>> 40);
+            memory[i+6] = (byte) (value >>> 48);
+            memory[i+7] = (byte) (value >>> 56);
+        }
+    }
+
+    public void setBytes(int index, ChannelBuffer src, int srcIndex, int length) {
+        checkIndex(index, length);
+        src.getBytes(srcIndex, memory, offset + index, length);
+    }
+
+    public void setBytes(int index, byte[] src, int srcIndex, int length) {
+        checkIndex(index, length);
+        System.arraycopy(src, srcIndex, memory, offset + index, length);
+    }
+
+    public void setBytes(int index, ByteBuffer src) {
+        int length = src.remaining();
+        checkIndex(index, length);
+        src.get(memory, offset + index, length);
+    }
+
+    public int setBytes(int index, InputStream in, int length) throws IOException {
+        checkIndex(index, length);
+        index += offset;
+        int readBytes = 0;
+        do {
+            int localReadBytes = in.read(memory, index, length);
+            if (localReadBytes < 0) {
+                if (readBytes == 0) {
+                    return -1;
+                } else {
+                    break;
+                }
+            }
+            readBytes += localReadBytes;
+            index += localReadBytes;
+            length -= localReadBytes;
+        } while (length > 0);
+
+        return readBytes;
+    }
+
+    public int setBytes(int index, ScatteringByteChannel in, int length) throws IOException {
+        checkIndex(index, length);
+        ByteBuffer buf = ByteBuffer.wrap(memory, offset + index, length);
+        int readBytes = 0;
+
+        do {
+            int localReadBytes = in.read(buf);
+            if (localReadBytes < 0) {
+                if (readBytes == 0) {
+                    return -1;
+                } else {
+                    break;
+                }
+            } else if (localReadBytes == 0) {
+                break;
+            }
+            readBytes += localReadBytes;
+        } while (readBytes < length);
+
+        return readBytes;
+    }
+
+    public ChannelBuffer slice(int index, int length) {
+        if (index == 0) {
+            if (length == 0) {
+                return ChannelBuffers.EMPTY_BUFFER;
+            }
+            if (length == capacity) {
+                return duplicate();
+            } else {
+                return new TruncatedChannelBuffer(this, length);
+            }
+        } else {
+            if (length == 0) {
+                return ChannelBuffers.EMPTY_BUFFER;
+            }
+            return new SlicedChannelBuffer(this, index, length);
+        }
+    }
+
+    public ChannelBuffer duplicate() {
+        return new DuplicatedChannelBuffer(this);
+    }
+
+    public ChannelBuffer copy(int index, int length) {
+        ensureAccessible();
+        if (index < 0 || length < 0 || index + length > capacity) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        ChannelBuffer copy = ChannelBuffers.buffer(order, length);
+        copy.writeBytes(memory, offset + index, length);
+        return copy;
+    }
+
+    @Override
+    public int indexOf(int fromIndex, int toIndex, byte value) {
+        ensureAccessible();
+        return ByteSearch.indexOf(this, memory, offset, fromIndex, toIndex, value);
+    }
+
+    @Override
+    public int indexOf(int fromIndex, int toIndex, ChannelBufferIndexFinder indexFinder) {
+        ensureAccessible();
+        return ByteSearch.indexOf(this, memory, offset, fromIndex, toIndex, indexFinder);
+    }
+
+    public ByteBuffer toByteBuffer(int index, int length) {
+        checkIndex(index, length);
+        return ByteBuffer.wrap(memory, offset + index, length).slice().order(order);
+    }
+
+    public String toString(int index, int length, String charsetName) {
+        checkIndex(index, length);
+        try {
+            return new String(memory, offset + index, length, charsetName);
+        } catch (UnsupportedEncodingException e) {
+            throw new UnsupportedCharsetException(charsetName);
+        }
+    }
+
+    @Override
+    protected void deallocate() {
+        factory.free(this);
+    }
+
+    private void checkIndex(int index, int length) {
+        ensureAccessible();
+        if (index < 0 || length < 0 || index > capacity - length) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+}
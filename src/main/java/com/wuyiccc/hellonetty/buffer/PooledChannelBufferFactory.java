@@ -0,0 +1,322 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.wuyiccc.hellonetty.buffer;
+
+import java.nio.ByteOrder;
+
+/**
+ * A {@link ChannelBufferFactory} which carves its buffers out of large
+ * pre-allocated byte arrays (arena chunks) instead of allocating a new byte
+ * array for every request.
+ * <p>
+ * A requested capacity is rounded up to the nearest power of two which is
+ * not less than {@code 64}, and each such size class has its own arena.
+ * When a buffer is {@linkplain ChannelBuffer#release() released}, its region
+ * is kept in a small per-thread cache first, so that an I/O worker thread
+ * which releases a buffer can reuse it without any synchronization, and then
+ * in the shared free list of its arena.  A request whose capacity is greater than
+ * {@link #getMaxPooledSize()} is not pooled at all and a new heap buffer is
+ * returned instead.
+ * <p>
+ * A buffer which is never released is simply garbage-collected together with
+ * its arena chunk once no buffer refers to the chunk anymore, and therefore
+ * forgetting to release a buffer does not leak any memory.
+ *
+ * @author The Netty Project (netty-dev@lists.jboss.org)
+ * @author Trustin Lee (tlee@redhat.com)
+ *
+ * @version $Rev$, $Date$
+ *
+ * @apiviz.has com.wuyiccc.hellonetty.buffer.PooledChannelBuffer oneway - - creates
+ */
+public class PooledChannelBufferFactory implements ChannelBufferFactory {
+
+    private static final int MIN_REGION_SIZE_SHIFT = 6;
+    private static final int MIN_REGION_SIZE = 1 << MIN_REGION_SIZE_SHIFT;
+
+    private static final int DEFAULT_MAX_POOLED_SIZE = 65536;
+    private static final int DEFAULT_CHUNK_SIZE = 1048576;
+    private static final int DEFAULT_THREAD_CACHE_SIZE = 32;
+    private static final int DEFAULT_ARENA_POOL_SIZE = 256;
+
+    private final ByteOrder defaultOrder;
+    private final int maxPooledSize;
+    private final int chunkSize;
+    private final int threadCacheSize;
+    private final Arena[] arenas;
+    private final ThreadLocal<ThreadCache> threadCache =
+        new ThreadLocal<ThreadCache>() {
+            @Override
+            protected ThreadCache initialValue() {
+                return new ThreadCache(arenas.length, threadCacheSize);
+            }
+        };
+
+    /**
+     * Creates a new big-endian factory which pools the buffers up to
+     * {@code 65536} bytes in {@code 1048576}-byte arena chunks.
+     */
+    public PooledChannelBufferFactory() {
+        this(ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Creates a new factory with the specified default endianness, which
+     * pools the buffers up to {@code 65536} bytes in {@code 1048576}-byte
+     * arena chunks.
+     */
+    public PooledChannelBufferFactory(ByteOrder defaultOrder) {
+        this(defaultOrder, DEFAULT_MAX_POOLED_SIZE, DEFAULT_CHUNK_SIZE,
+             DEFAULT_THREAD_CACHE_SIZE, DEFAULT_ARENA_POOL_SIZE);
+    }
+
+    /**
+     * Creates a new factory.
+     *
+     * @param defaultOrder    the endianness of the buffers returned by
+     *                        {@link #getBuffer(int)}
+     * @param maxPooledSize   the maximum capacity of a pooled buffer.  It is
+     *                        rounded up to the nearest power of two.
+     * @param chunkSize       the size of an arena chunk in byte unit.  It must
+     *                        not be less than {@code maxPooledSize}.
+     * @param threadCacheSize the maximum number of released regions which are
+     *                        cached per thread and per size class
+     * @param arenaPoolSize   the maximum number of released regions which are
+     *                        kept in the shared free list of each size class
+     */
+    public PooledChannelBufferFactory(
+            ByteOrder defaultOrder, int maxPooledSize, int chunkSize,
+            int threadCacheSize, int arenaPoolSize) {
+        if (defaultOrder == null) {
+            throw new NullPointerException("defaultOrder");
+        }
+        if (maxPooledSize < MIN_REGION_SIZE) {
+            throw new IllegalArgumentException(
+                    "maxPooledSize: " + maxPooledSize +
+                    " (expected: " + MIN_REGION_SIZE + "+)");
+        }
+        int maxSizeClass = sizeClass(maxPooledSize);
+        maxPooledSize = MIN_REGION_SIZE << maxSizeClass;
+        if (chunkSize < maxPooledSize) {
+            throw new IllegalArgumentException(
+                    "chunkSize: " + chunkSize +
+                    " (expected: " + maxPooledSize + "+)");
+        }
+        if (threadCacheSize < 0) {
+            throw new IllegalArgumentException(
+                    "threadCacheSize: " + threadCacheSize);
+        }
+        if (arenaPoolSize < 0) {
+            throw new IllegalArgumentException(
+                    "arenaPoolSize: " + arenaPoolSize);
+        }
+
+        this.defaultOrder = defaultOrder;
+        this.maxPooledSize = maxPooledSize;
+        this.chunkSize = chunkSize;
+        this.threadCacheSize = threadCacheSize;
+
+        arenas = new Arena[maxSizeClass + 1];
+        for (int i = 0; i < arenas.length; i ++) {
+            arenas[i] = new Arena(MIN_REGION_SIZE << i, chunkSize, arenaPoolSize);
+        }
+    }
+
+    public ChannelBuffer getBuffer(int capacity) {
+        return getBuffer(getDefaultOrder(), capacity);
+    }
+
+    public ChannelBuffer getBuffer(ByteOrder endianness, int capacity) {
+        if (endianness == null) {
+            throw new NullPointerException("endianness");
+        }
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity: " + capacity);
+        }
+        if (capacity == 0) {
+            return ChannelBuffers.EMPTY_BUFFER;
+        }
+        if (capacity > maxPooledSize) {
+            return ChannelBuffers.buffer(endianness, capacity);
+        }
+
+        int sizeClass = sizeClass(capacity);
+        ThreadCache cache = threadCache.get();
+        int i = cache.counts[sizeClass];
+        PooledChannelBuffer buffer;
+        if (i > 0) {
+            i --;
+            byte[] memory = cache.memories[sizeClass][i];
+            cache.memories[sizeClass][i] = null;
+            cache.counts[sizeClass] = i;
+            buffer = new PooledChannelBuffer(
+                    this, endianness, memory, cache.offsets[sizeClass][i],
+                    sizeClass, capacity);
+        } else {
+            buffer = arenas[sizeClass].allocate(this, endianness, sizeClass, capacity);
+        }
+
+        ChannelBufferLeakDetector.track(buffer);
+        return buffer;
+    }
+
+    public ByteOrder getDefaultOrder() {
+        return defaultOrder;
+    }
+
+    void free(PooledChannelBuffer buf) {
+        int sizeClass = buf.sizeClass;
+        ThreadCache cache = threadCache.get();
+        int i = cache.counts[sizeClass];
+        if (i < threadCacheSize) {
+            cache.memories[sizeClass][i] = buf.memory;
+            cache.offsets[sizeClass][i] = buf.offset;
+            cache.counts[sizeClass] = i + 1;
+        } else {
+            arenas[sizeClass].free(buf.memory, buf.offset);
+        }
+    }
+
+    /**
+     * Returns the maximum capacity of a pooled buffer.  The returned value
+     * can be somewhat different from what was specified in the constructor.
+     */
+    public int getMaxPooledSize() {
+        return maxPooledSize;
+    }
+
+    /**
+     * Returns the size of an arena chunk in byte unit.
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Returns the total number of bytes of all arena chunks which have been
+     * allocated by this factory so far.
+     */
+    public long getAllocatedArenaSize() {
+        long size = 0;
+        for (Arena a: arenas) {
+            size += a.allocatedSize();
+        }
+        return size;
+    }
+
+    /**
+     * Returns the number of bytes which were released but have not been
+     * reused yet, excluding the regions cached by each thread.  You can
+     * estimate how optimal the pool sizes are from this value.  If it keeps
+     * returning {@code 0}, it means the shared free lists are getting
+     * exhausted.  If it keeps returning an unnecessarily big value, it means
+     * the pool is wasting the heap space.
+     */
+    public long getUnacquiredPoolSize() {
+        long size = 0;
+        for (Arena a: arenas) {
+            size += a.unacquiredSize();
+        }
+        return size;
+    }
+
+    private static int sizeClass(int capacity) {
+        int sizeClass = 0;
+        int regionSize = MIN_REGION_SIZE;
+        while (regionSize < capacity) {
+            regionSize <<= 1;
+            sizeClass ++;
+        }
+        return sizeClass;
+    }
+
+    private static final class Arena {
+        private final int regionSize;
+        private final int chunkSize;
+        private final byte[][] freeMemories;
+        private final int[] freeOffsets;
+        private int freeCount;
+        private byte[] chunk;
+        private int chunkOffset;
+        private long allocatedSize;
+
+        Arena(int regionSize, int chunkSize, int poolSize) {
+            this.regionSize = regionSize;
+            this.chunkSize = chunkSize - chunkSize % regionSize;
+            freeMemories = new byte[poolSize][];
+            freeOffsets = new int[poolSize];
+        }
+
+        synchronized PooledChannelBuffer allocate(
+                PooledChannelBufferFactory factory, ByteOrder endianness,
+                int sizeClass, int capacity) {
+            byte[] memory;
+            int offset;
+            if (freeCount > 0) {
+                freeCount --;
+                memory = freeMemories[freeCount];
+                offset = freeOffsets[freeCount];
+                freeMemories[freeCount] = null;
+            } else {
+                if (chunk == null || chunkOffset == chunk.length) {
+                    chunk = new byte[chunkSize];
+                    chunkOffset = 0;
+                    allocatedSize += chunkSize;
+                }
+                memory = chunk;
+                offset = chunkOffset;
+                chunkOffset += regionSize;
+            }
+            return new PooledChannelBuffer(
+                    factory, endianness, memory, offset, sizeClass, capacity);
+        }
+
+        synchronized void free(byte[] memory, int offset) {
+            if (freeCount < freeMemories.length) {
+                freeMemories[freeCount] = memory;
+                freeOffsets[freeCount] = offset;
+                freeCount ++;
+            }
+        }
+
+        synchronized long allocatedSize() {
+            return allocatedSize;
+        }
+
+        synchronized long unacquiredSize() {
+            return (long) freeCount * regionSize;
+        }
+    }
+
+    private static final class ThreadCache {
+        final byte[][][] memories;
+        final int[][] offsets;
+        final int[] counts;
+
+        ThreadCache(int sizeClasses, int cacheSize) {
+            memories = new byte[sizeClasses][cacheSize][];
+            offsets = new int[sizeClasses][cacheSize];
+            counts = new int[sizeClasses];
+        }
+    }
+}
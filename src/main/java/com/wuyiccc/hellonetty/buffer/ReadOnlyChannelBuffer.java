@@ -49,8 +49,18 @@ public class ReadOnlyChannelBuffer extends AbstractChannelBuffer implements Wrap
         if (buffer == null) {
             throw new NullPointerException("buffer");
         }
+        int readerIndex = buffer.readerIndex();
+        int writerIndex = buffer.writerIndex();
+
+        // Wrap the root buffer rather than another duplicate or read-only
+        // buffer, which have the same capacity and content.
+        while (buffer instanceof DuplicatedChannelBuffer ||
+               buffer instanceof ReadOnlyChannelBuffer) {
+            buffer = ((WrappedChannelBuffer) buffer).unwrap();
+        }
+
         this.buffer = buffer;
-        setIndex(buffer.readerIndex(), buffer.writerIndex());
+        setIndex(readerIndex, writerIndex);
     }
 
     private ReadOnlyChannelBuffer(ReadOnlyChannelBuffer buffer) {
@@ -62,6 +72,22 @@ public class ReadOnlyChannelBuffer extends AbstractChannelBuffer implements Wrap
         return buffer;
     }
 
+    @Override
+    public int refCnt() {
+        return buffer.refCnt();
+    }
+
+    @Override
+    public ChannelBuffer retain() {
+        buffer.retain();
+        return this;
+    }
+
+    @Override
+    public boolean release() {
+        return buffer.release();
+    }
+
     public ByteOrder order() {
         return buffer.order();
     }
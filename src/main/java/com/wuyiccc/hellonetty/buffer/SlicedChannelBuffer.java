@@ -49,6 +49,12 @@ public class SlicedChannelBuffer extends AbstractChannelBuffer implements Wrappe
     private final int adjustment;
     private final int length;
 
+    /**
+     * The array of {@link #buffer} if it is a heap buffer, so that the byte
+     * accessors do not have to call the heap buffer.
+     */
+    private final byte[] array;
+
     public SlicedChannelBuffer(ChannelBuffer buffer, int index, int length) {
         if (index < 0 || index > buffer.capacity()) {
             throw new IndexOutOfBoundsException();
@@ -58,16 +64,53 @@ public class SlicedChannelBuffer extends AbstractChannelBuffer implements Wrappe
             throw new IndexOutOfBoundsException();
         }
 
+        // Slice the root buffer rather than another derived buffer so that
+        // an access costs the same no matter how many times it was sliced.
+        for (;;) {
+            if (buffer instanceof SlicedChannelBuffer) {
+                SlicedChannelBuffer slice = (SlicedChannelBuffer) buffer;
+                index += slice.adjustment;
+                buffer = slice.buffer;
+            } else if (buffer instanceof TruncatedChannelBuffer ||
+                       buffer instanceof DuplicatedChannelBuffer) {
+                buffer = ((WrappedChannelBuffer) buffer).unwrap();
+            } else {
+                break;
+            }
+        }
+
         this.buffer = buffer;
         adjustment = index;
         this.length = length;
+        array = buffer instanceof HeapChannelBuffer? ((HeapChannelBuffer) buffer).array : null;
         writerIndex(length);
     }
 
+    /**
+     * Returns the root buffer this buffer is a slice of, which is never a
+     * {@link SlicedChannelBuffer}, a {@link TruncatedChannelBuffer} nor a
+     * {@link DuplicatedChannelBuffer}.
+     */
     public ChannelBuffer unwrap() {
         return buffer;
     }
 
+    @Override
+    public int refCnt() {
+        return buffer.refCnt();
+    }
+
+    @Override
+    public ChannelBuffer retain() {
+        buffer.retain();
+        return this;
+    }
+
+    @Override
+    public boolean release() {
+        return buffer.release();
+    }
+
     public ByteOrder order() {
         return buffer.order();
     }
@@ -76,8 +119,22 @@ public class SlicedChannelBuffer extends AbstractChannelBuffer implements Wrappe
         return length;
     }
 
+    @Override
+    byte[] backingArray() {
+        return array;
+    }
+
+    @Override
+    int backingArrayOffset() {
+        return adjustment;
+    }
+
     public byte getByte(int index) {
         checkIndex(index);
+        byte[] array = this.array;
+        if (array != null) {
+            return array[index + adjustment];
+        }
         return buffer.getByte(index + adjustment);
     }
 
@@ -127,7 +184,12 @@ public class SlicedChannelBuffer extends AbstractChannelBuffer implements Wrappe
 
     public void getBytes(int index, byte[] dst, int dstIndex, int length) {
         checkIndex(index, length);
-        buffer.getBytes(index + adjustment, dst, dstIndex, length);
+        byte[] array = this.array;
+        if (array != null) {
+            System.arraycopy(array, index + adjustment, dst, dstIndex, length);
+        } else {
+            buffer.getBytes(index + adjustment, dst, dstIndex, length);
+        }
     }
 
     public void getBytes(int index, ByteBuffer dst) {
@@ -137,7 +199,12 @@ public class SlicedChannelBuffer extends AbstractChannelBuffer implements Wrappe
 
     public void setByte(int index, byte value) {
         checkIndex(index);
-        buffer.setByte(index + adjustment, value);
+        byte[] array = this.array;
+        if (array != null) {
+            array[index + adjustment] = value;
+        } else {
+            buffer.setByte(index + adjustment, value);
+        }
     }
 
     public void setShort(int index, short value) {
@@ -162,7 +229,12 @@ public class SlicedChannelBuffer extends AbstractChannelBuffer implements Wrappe
 
     public void setBytes(int index, byte[] src, int srcIndex, int length) {
         checkIndex(index, length);
-        buffer.setBytes(index + adjustment, src, srcIndex, length);
+        byte[] array = this.array;
+        if (array != null) {
+            System.arraycopy(src, srcIndex, array, index + adjustment, length);
+        } else {
+            buffer.setBytes(index + adjustment, src, srcIndex, length);
+        }
     }
 
     public void setBytes(int index, ChannelBuffer src, int srcIndex, int length) {
@@ -199,11 +271,35 @@ public class SlicedChannelBuffer extends AbstractChannelBuffer implements Wrappe
         return buffer.setBytes(index + adjustment, in, length);
     }
 
+    @Override
+    public int indexOf(int fromIndex, int toIndex, byte value) {
+        if (fromIndex < 0 || fromIndex > length || toIndex < 0 || toIndex > length) {
+            return super.indexOf(fromIndex, toIndex, value);
+        }
+        int index = buffer.indexOf(fromIndex + adjustment, toIndex + adjustment, value);
+        return index < 0? -1 : index - adjustment;
+    }
+
+    @Override
+    public int indexOf(int fromIndex, int toIndex, ChannelBufferIndexFinder indexFinder) {
+        if (fromIndex < 0 || fromIndex > length || toIndex < 0 || toIndex > length) {
+            return super.indexOf(fromIndex, toIndex, indexFinder);
+        }
+        int index = buffer.indexOf(fromIndex + adjustment, toIndex + adjustment, indexFinder);
+        return index < 0? -1 : index - adjustment;
+    }
+
     public ByteBuffer toByteBuffer(int index, int length) {
         checkIndex(index, length);
         return buffer.toByteBuffer(index + adjustment, length);
     }
 
+    @Override
+    public ByteBuffer[] toByteBuffers(int index, int length) {
+        checkIndex(index, length);
+        return buffer.toByteBuffers(index + adjustment, length);
+    }
+
     public String toString(int index, int length, String charsetName) {
         checkIndex(index, length);
         return buffer.toString(index + adjustment, length, charsetName);
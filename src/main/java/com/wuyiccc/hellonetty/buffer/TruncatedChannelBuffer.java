@@ -48,20 +48,55 @@ public class TruncatedChannelBuffer extends AbstractChannelBuffer implements Wra
     private final ChannelBuffer buffer;
     private final int length;
 
+    /**
+     * The array of {@link #buffer} if it is a heap buffer, so that the byte
+     * accessors do not have to call the heap buffer.
+     */
+    private final byte[] array;
+
     public TruncatedChannelBuffer(ChannelBuffer buffer, int length) {
         if (length > buffer.capacity()) {
             throw new IndexOutOfBoundsException();
         }
 
+        // Truncate the root buffer rather than another derived buffer so
+        // that an access costs the same no matter how many times it was
+        // derived.  A slice keeps its offset, so it can't be skipped.
+        while (buffer instanceof TruncatedChannelBuffer ||
+               buffer instanceof DuplicatedChannelBuffer) {
+            buffer = ((WrappedChannelBuffer) buffer).unwrap();
+        }
+
         this.buffer = buffer;
         this.length = length;
+        array = buffer instanceof HeapChannelBuffer? ((HeapChannelBuffer) buffer).array : null;
         writerIndex(length);
     }
 
+    /**
+     * Returns the buffer this buffer is derived from, which is never a
+     * {@link TruncatedChannelBuffer} nor a {@link DuplicatedChannelBuffer}.
+     */
     public ChannelBuffer unwrap() {
         return buffer;
     }
 
+    @Override
+    public int refCnt() {
+        return buffer.refCnt();
+    }
+
+    @Override
+    public ChannelBuffer retain() {
+        buffer.retain();
+        return this;
+    }
+
+    @Override
+    public boolean release() {
+        return buffer.release();
+    }
+
     public ByteOrder order() {
         return buffer.order();
     }
@@ -70,8 +105,17 @@ public class TruncatedChannelBuffer extends AbstractChannelBuffer implements Wra
         return length;
     }
 
+    @Override
+    byte[] backingArray() {
+        return array;
+    }
+
     public byte getByte(int index) {
         checkIndex(index);
+        byte[] array = this.array;
+        if (array != null) {
+            return array[index];
+        }
         return buffer.getByte(index);
     }
 
@@ -121,7 +165,12 @@ public class TruncatedChannelBuffer extends AbstractChannelBuffer implements Wra
 
     public void getBytes(int index, byte[] dst, int dstIndex, int length) {
         checkIndex(index, length);
-        buffer.getBytes(index, dst, dstIndex, length);
+        byte[] array = this.array;
+        if (array != null) {
+            System.arraycopy(array, index, dst, dstIndex, length);
+        } else {
+            buffer.getBytes(index, dst, dstIndex, length);
+        }
     }
 
     public void getBytes(int index, ByteBuffer dst) {
@@ -131,7 +180,12 @@ public class TruncatedChannelBuffer extends AbstractChannelBuffer implements Wra
 
     public void setByte(int index, byte value) {
         checkIndex(index);
-        buffer.setByte(index, value);
+        byte[] array = this.array;
+        if (array != null) {
+            array[index] = value;
+        } else {
+            buffer.setByte(index, value);
+        }
     }
 
     public void setShort(int index, short value) {
@@ -156,7 +210,12 @@ public class TruncatedChannelBuffer extends AbstractChannelBuffer implements Wra
 
     public void setBytes(int index, byte[] src, int srcIndex, int length) {
         checkIndex(index, length);
-        buffer.setBytes(index, src, srcIndex, length);
+        byte[] array = this.array;
+        if (array != null) {
+            System.arraycopy(src, srcIndex, array, index, length);
+        } else {
+            buffer.setBytes(index, src, srcIndex, length);
+        }
     }
 
     public void setBytes(int index, ChannelBuffer src, int srcIndex, int length) {
@@ -193,11 +252,33 @@ public class TruncatedChannelBuffer extends AbstractChannelBuffer implements Wra
         return buffer.setBytes(index, in, length);
     }
 
+    @Override
+    public int indexOf(int fromIndex, int toIndex, byte value) {
+        if (fromIndex < 0 || fromIndex > length || toIndex < 0 || toIndex > length) {
+            return super.indexOf(fromIndex, toIndex, value);
+        }
+        return buffer.indexOf(fromIndex, toIndex, value);
+    }
+
+    @Override
+    public int indexOf(int fromIndex, int toIndex, ChannelBufferIndexFinder indexFinder) {
+        if (fromIndex < 0 || fromIndex > length || toIndex < 0 || toIndex > length) {
+            return super.indexOf(fromIndex, toIndex, indexFinder);
+        }
+        return buffer.indexOf(fromIndex, toIndex, indexFinder);
+    }
+
     public ByteBuffer toByteBuffer(int index, int length) {
         checkIndex(index, length);
         return buffer.toByteBuffer(index, length);
     }
 
+    @Override
+    public ByteBuffer[] toByteBuffers(int index, int length) {
+        checkIndex(index, length);
+        return buffer.toByteBuffers(index, length);
+    }
+
     public String toString(int index, int length, String charsetName) {
         checkIndex(index, length);
         return buffer.toString(index, length, charsetName);
@@ -0,0 +1,347 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.wuyiccc.hellonetty.buffer;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import com.wuyiccc.hellonetty.logging.InternalLogger;
+import com.wuyiccc.hellonetty.logging.InternalLoggerFactory;
+import com.wuyiccc.hellonetty.util.SystemPropertyUtil;
+
+/**
+ * Reads and writes multi-byte primitives from and to a byte array or native
+ * memory with a single unaligned load or store via {@code sun.misc.Unsafe},
+ * swapping the bytes with {@link Integer#reverseBytes(int)} and its
+ * siblings if the requested byte order is not the native one.
+ * {@code Unsafe} is looked up reflectively and its accessors are invoked
+ * via constant {@link MethodHandle}s, which the JIT compiler inlines.
+ * <p>
+ * The buffers must check {@link #isAvailable()} and fall back to their
+ * byte-by-byte implementation if it returns {@code false}, which is the
+ * case when {@code Unsafe} is not accessible, when the platform does not
+ * allow unaligned access, or when the system property
+ * {@code com.wuyiccc.hellonetty.noUnsafe} is {@code true}.
+ * <p>
+ * The accessors for a byte array check the bounds of the array.  The
+ * accessors for native memory do not check anything; the caller is
+ * responsible for passing an address within a live direct buffer.
+ *
+ * @author The Netty Project (netty-dev@lists.jboss.org)
+ * @author Trustin Lee (tlee@redhat.com)
+ *
+ * @version $Rev$, $Date$
+ */
+final class UnsafeAccess {
+
+    private static final InternalLogger logger =
+        InternalLoggerFactory.getInstance(UnsafeAccess.class);
+
+    private static final boolean NATIVE_BIG_ENDIAN =
+        ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN;
+
+    // Bound to the Unsafe instance; (Object, long) address a field of an
+    // object, or native memory if the object is null.
+    private static final MethodHandle GET_SHORT;
+    private static final MethodHandle GET_INT;
+    private static final MethodHandle GET_LONG;
+    private static final MethodHandle PUT_SHORT;
+    private static final MethodHandle PUT_INT;
+    private static final MethodHandle PUT_LONG;
+    private static final MethodHandle COPY_MEMORY;
+
+    private static final long BYTE_ARRAY_BASE_OFFSET;
+    private static final long ADDRESS_FIELD_OFFSET;
+    private static final boolean AVAILABLE;
+
+    static {
+        MethodHandle getShort = null;
+        MethodHandle getInt = null;
+        MethodHandle getLong = null;
+        MethodHandle putShort = null;
+        MethodHandle putInt = null;
+        MethodHandle putLong = null;
+        MethodHandle copyMemory = null;
+        long byteArrayBaseOffset = -1;
+        long addressFieldOffset = -1;
+        boolean available = false;
+        try {
+            if (Boolean.parseBoolean(
+                    SystemPropertyUtil.get("com.wuyiccc.hellonetty.noUnsafe"))) {
+                throw new UnsupportedOperationException(
+                        "disabled by com.wuyiccc.hellonetty.noUnsafe");
+            }
+            if (!isUnalignedAccessAllowed()) {
+                throw new UnsupportedOperationException(
+                        "unaligned access is not allowed on " +
+                        SystemPropertyUtil.get("os.arch"));
+            }
+
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Object unsafe = theUnsafe.get(null);
+
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            getShort = lookup.findVirtual(unsafeClass, "getShort",
+                    MethodType.methodType(short.class, Object.class, long.class)).bindTo(unsafe);
+            getInt = lookup.findVirtual(unsafeClass, "getInt",
+                    MethodType.methodType(int.class, Object.class, long.class)).bindTo(unsafe);
+            getLong = lookup.findVirtual(unsafeClass, "getLong",
+                    MethodType.methodType(long.class, Object.class, long.class)).bindTo(unsafe);
+            putShort = lookup.findVirtual(unsafeClass, "putShort",
+                    MethodType.methodType(void.class, Object.class, long.class, short.class)).bindTo(unsafe);
+            putInt = lookup.findVirtual(unsafeClass, "putInt",
+                    MethodType.methodType(void.class, Object.class, long.class, int.class)).bindTo(unsafe);
+            putLong = lookup.findVirtual(unsafeClass, "putLong",
+                    MethodType.methodType(void.class, Object.class, long.class, long.class)).bindTo(unsafe);
+            copyMemory = lookup.findVirtual(unsafeClass, "copyMemory",
+                    MethodType.methodType(void.class, Object.class, long.class,
+                            Object.class, long.class, long.class)).bindTo(unsafe);
+
+            Method arrayBaseOffset = unsafeClass.getMethod("arrayBaseOffset", Class.class);
+            Method objectFieldOffset = unsafeClass.getMethod("objectFieldOffset", Field.class);
+            byteArrayBaseOffset = ((Integer) arrayBaseOffset.invoke(unsafe, byte[].class)).longValue();
+            addressFieldOffset = (Long) objectFieldOffset.invoke(
+                    unsafe, Buffer.class.getDeclaredField("address"));
+
+            // Make sure that the address is what we think it is.
+            ByteBuffer direct = ByteBuffer.allocateDirect(8);
+            direct.putShort(0, (short) 42);
+            long address = (long) getLong.invokeExact((Object) direct, addressFieldOffset);
+            short value = (short) getShort.invokeExact((Object) null, address);
+            if (value != (NATIVE_BIG_ENDIAN? 42 : Short.reverseBytes((short) 42))) {
+                throw new IllegalStateException("unexpected Buffer.address");
+            }
+            available = true;
+        } catch (Throwable t) {
+            logger.debug(
+                    "Multi-byte primitives will be accessed byte by byte " +
+                    "because Unsafe is not available.", t);
+        }
+
+        GET_SHORT = getShort;
+        GET_INT = getInt;
+        GET_LONG = getLong;
+        PUT_SHORT = putShort;
+        PUT_INT = putInt;
+        PUT_LONG = putLong;
+        COPY_MEMORY = copyMemory;
+        BYTE_ARRAY_BASE_OFFSET = byteArrayBaseOffset;
+        ADDRESS_FIELD_OFFSET = addressFieldOffset;
+        AVAILABLE = available;
+    }
+
+    private static boolean isUnalignedAccessAllowed() {
+        String arch = SystemPropertyUtil.get("os.arch", "");
+        return arch.matches("^(i[3-6]86|x86(_64)?|amd64|x64|aarch64|ppc64le|s390x)$");
+    }
+
+    /**
+     * Returns {@code true} if and only if the accessors of this class can be
+     * used.
+     */
+    static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    /**
+     * Returns the address of the first byte of the specified direct buffer.
+     */
+    static long address(ByteBuffer buffer) {
+        try {
+            return (long) GET_LONG.invokeExact((Object) buffer, ADDRESS_FIELD_OFFSET);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    static short getShort(byte[] array, int index, boolean bigEndian) {
+        checkIndex(array, index, 2);
+        return getShort((Object) array, BYTE_ARRAY_BASE_OFFSET + index, bigEndian);
+    }
+
+    static int getInt(byte[] array, int index, boolean bigEndian) {
+        checkIndex(array, index, 4);
+        return getInt((Object) array, BYTE_ARRAY_BASE_OFFSET + index, bigEndian);
+    }
+
+    static long getLong(byte[] array, int index, boolean bigEndian) {
+        checkIndex(array, index, 8);
+        return getLong((Object) array, BYTE_ARRAY_BASE_OFFSET + index, bigEndian);
+    }
+
+    static void putShort(byte[] array, int index, short value, boolean bigEndian) {
+        checkIndex(array, index, 2);
+        putShort((Object) array, BYTE_ARRAY_BASE_OFFSET + index, value, bigEndian);
+    }
+
+    static void putInt(byte[] array, int index, int value, boolean bigEndian) {
+        checkIndex(array, index, 4);
+        putInt((Object) array, BYTE_ARRAY_BASE_OFFSET + index, value, bigEndian);
+    }
+
+    static void putLong(byte[] array, int index, long value, boolean bigEndian) {
+        checkIndex(array, index, 8);
+        putLong((Object) array, BYTE_ARRAY_BASE_OFFSET + index, value, bigEndian);
+    }
+
+    static short getShort(long address, boolean bigEndian) {
+        return getShort(null, address, bigEndian);
+    }
+
+    static int getInt(long address, boolean bigEndian) {
+        return getInt(null, address, bigEndian);
+    }
+
+    static long getLong(long address, boolean bigEndian) {
+        return getLong(null, address, bigEndian);
+    }
+
+    static void putShort(long address, short value, boolean bigEndian) {
+        putShort(null, address, value, bigEndian);
+    }
+
+    static void putInt(long address, int value, boolean bigEndian) {
+        putInt(null, address, value, bigEndian);
+    }
+
+    static void putLong(long address, long value, boolean bigEndian) {
+        putLong(null, address, value, bigEndian);
+    }
+
+    /**
+     * Copies {@code length} bytes from native memory to the specified array.
+     */
+    static void copyMemory(long srcAddress, byte[] dst, int dstIndex, int length) {
+        checkIndex(dst, dstIndex, length);
+        try {
+            COPY_MEMORY.invokeExact(
+                    (Object) null, srcAddress,
+                    (Object) dst, BYTE_ARRAY_BASE_OFFSET + dstIndex, (long) length);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    /**
+     * Copies {@code length} bytes from the specified array to native memory.
+     */
+    static void copyMemory(byte[] src, int srcIndex, long dstAddress, int length) {
+        checkIndex(src, srcIndex, length);
+        try {
+            COPY_MEMORY.invokeExact(
+                    (Object) src, BYTE_ARRAY_BASE_OFFSET + srcIndex,
+                    (Object) null, dstAddress, (long) length);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    private static short getShort(Object base, long offset, boolean bigEndian) {
+        short value;
+        try {
+            value = (short) GET_SHORT.invokeExact(base, offset);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+        return bigEndian == NATIVE_BIG_ENDIAN? value : Short.reverseBytes(value);
+    }
+
+    private static int getInt(Object base, long offset, boolean bigEndian) {
+        int value;
+        try {
+            value = (int) GET_INT.invokeExact(base, offset);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+        return bigEndian == NATIVE_BIG_ENDIAN? value : Integer.reverseBytes(value);
+    }
+
+    private static long getLong(Object base, long offset, boolean bigEndian) {
+        long value;
+        try {
+            value = (long) GET_LONG.invokeExact(base, offset);
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+        return bigEndian == NATIVE_BIG_ENDIAN? value : Long.reverseBytes(value);
+    }
+
+    private static void putShort(Object base, long offset, short value, boolean bigEndian) {
+        try {
+            PUT_SHORT.invokeExact(
+                    base, offset,
+                    bigEndian == NATIVE_BIG_ENDIAN? value : Short.reverseBytes(value));
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    private static void putInt(Object base, long offset, int value, boolean bigEndian) {
+        try {
+            PUT_INT.invokeExact(
+                    base, offset,
+                    bigEndian == NATIVE_BIG_ENDIAN? value : Integer.reverseBytes(value));
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    private static void putLong(Object base, long offset, long value, boolean bigEndian) {
+        try {
+            PUT_LONG.invokeExact(
+                    base, offset,
+                    bigEndian == NATIVE_BIG_ENDIAN? value : Long.reverseBytes(value));
+        } catch (Throwable t) {
+            throw rethrow(t);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        // Unsafe throws no checked exception.
+        throw new IllegalStateException(t);
+    }
+
+    private static void checkIndex(byte[] array, int index, int length) {
+        if (index < 0 || length < 0 || index > array.length - length) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+
+    private UnsafeAccess() {
+        // Unused
+    }
+}
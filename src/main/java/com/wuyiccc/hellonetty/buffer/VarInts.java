@@ -0,0 +1,116 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.wuyiccc.hellonetty.buffer;
+
+/**
+ * Encodes and decodes the base 128 varints of Google Protocol Buffers and
+ * their ZigZag encoded ({@code sint32} and {@code sint64}) variants for the
+ * {@link ChannelBuffer} implementations.
+ *
+ * @author The Netty Project (netty-dev@lists.jboss.org)
+ * @author Trustin Lee (tlee@redhat.com)
+ *
+ * @version $Rev$, $Date$
+ */
+final class VarInts {
+
+    static final int MAX_VARINT32_BYTES = 5;
+    static final int MAX_VARINT64_BYTES = 10;
+
+    /**
+     * Returns the number of bytes the specified integer takes when encoded
+     * as an unsigned varint.
+     */
+    static int sizeOf(int value) {
+        return (31 - Integer.numberOfLeadingZeros(value | 1)) / 7 + 1;
+    }
+
+    /**
+     * Returns the number of bytes the specified long integer takes when
+     * encoded as an unsigned varint.
+     */
+    static int sizeOf(long value) {
+        return (63 - Long.numberOfLeadingZeros(value | 1)) / 7 + 1;
+    }
+
+    /**
+     * Encodes the specified integer into the specified array.
+     *
+     * @return the index next to the last encoded byte
+     */
+    static int encode(byte[] array, int index, int value) {
+        while ((value & ~0x7F) != 0) {
+            array[index ++] = (byte) (value | 0x80);
+            value >>>= 7;
+        }
+        array[index ++] = (byte) value;
+        return index;
+    }
+
+    /**
+     * Encodes the specified long integer into the specified array.
+     *
+     * @return the index next to the last encoded byte
+     */
+    static int encode(byte[] array, int index, long value) {
+        while ((value & ~0x7FL) != 0) {
+            array[index ++] = (byte) (value | 0x80);
+            value >>>= 7;
+        }
+        array[index ++] = (byte) value;
+        return index;
+    }
+
+    static int zigZag(int value) {
+        return value << 1 ^ value >> 31;
+    }
+
+    static long zigZag(long value) {
+        return value << 1 ^ value >> 63;
+    }
+
+    static int unZigZag(int value) {
+        return value >>> 1 ^ -(value & 1);
+    }
+
+    static long unZigZag(long value) {
+        return value >>> 1 ^ -(value & 1);
+    }
+
+    /**
+     * Returns the exception to throw when a varint could not be decoded after
+     * reading the specified number of bytes, all of which had the
+     * continuation bit set.
+     */
+    static RuntimeException decodeFailure(int readBytes, int maxBytes) {
+        if (readBytes < maxBytes) {
+            return new IndexOutOfBoundsException();
+        }
+        return new IllegalStateException(
+                "varint is longer than " + maxBytes + " bytes");
+    }
+
+    private VarInts() {
+        // Unused
+    }
+}
@@ -27,6 +27,7 @@ import com.wuyiccc.hellonetty.util.TimeBasedUuidGenerator;
 import java.net.SocketAddress;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A skeletal {@link Channel} implementation.
@@ -47,6 +48,8 @@ public abstract class AbstractChannel implements Channel, Comparable<Channel> {
 
     private final AtomicBoolean closed = new AtomicBoolean();
     private volatile int interestOps = OP_READ;
+    private final AtomicLong writeBufferSize = new AtomicLong();
+    private final AtomicBoolean writeSuspended = new AtomicBoolean();
 
     /** Cache for the string representation of this channel */
     private String strVal;
@@ -166,7 +169,31 @@ public abstract class AbstractChannel implements Channel, Comparable<Channel> {
         return Channels.disconnect(this);
     }
 
+    /**
+     * Returns the current {@code interestOps} of this channel.  While this
+     * channel is open, the {@link #OP_WRITE} flag is set if and only if the
+     * number of the bytes queued for write has reached the high water mark
+     * and has not dropped below the low water mark yet.
+     */
     public int getInterestOps() {
+        int interestOps = this.interestOps;
+        if (!isOpen()) {
+            return interestOps;
+        }
+        if (writeSuspended.get()) {
+            return interestOps | OP_WRITE;
+        } else {
+            return interestOps & ~OP_WRITE;
+        }
+    }
+
+    /**
+     * Returns the {@code interestOps} which were set by
+     * {@link #setInterestOpsNow(int)}, regardless of the number of the bytes
+     * queued for write.  This method is intended to be called by an internal
+     * component - please do not call it unless you know what you are doing.
+     */
+    protected int getRawInterestOps() {
         return interestOps;
     }
 
@@ -183,6 +210,57 @@ public abstract class AbstractChannel implements Channel, Comparable<Channel> {
         this.interestOps = interestOps;
     }
 
+    /**
+     * Returns the number of the bytes which were requested to be written but
+     * have not been written yet.
+     */
+    protected long getWriteBufferSize() {
+        return writeBufferSize.get();
+    }
+
+    /**
+     * Adds the specified amount to the number of the bytes queued for write
+     * and fires a {@code "channelInterestChanged"} event if the channel has
+     * become unwritable or writable again as a result.  The channel becomes
+     * unwritable when the queued bytes reach {@code highWaterMark}, and
+     * becomes writable again when they drop below {@code lowWaterMark} or
+     * the queue is drained.  This method is intended to be called by an
+     * internal component - please do not call it unless you know what you
+     * are doing.
+     *
+     * @param delta the number of the bytes queued (positive) or written or
+     *              discarded (negative)
+     */
+    protected void updateWriteBufferSize(
+            long delta, int lowWaterMark, int highWaterMark) {
+        long size = delta == 0? writeBufferSize.get()
+                              : writeBufferSize.addAndGet(delta);
+        for (;;) {
+            if (writeSuspended.get()) {
+                if (size != 0 && size >= Math.min(lowWaterMark, highWaterMark)) {
+                    break;
+                }
+                if (!writeSuspended.compareAndSet(true, false)) {
+                    continue;
+                }
+            } else {
+                if (size == 0 || size < highWaterMark) {
+                    break;
+                }
+                if (!writeSuspended.compareAndSet(false, true)) {
+                    continue;
+                }
+            }
+
+            if (isOpen()) {
+                Channels.fireChannelInterestChanged(this, getInterestOps());
+            }
+
+            // The size might have changed while the event was handled.
+            size = writeBufferSize.get();
+        }
+    }
+
     public boolean isReadable() {
         return (getInterestOps() & OP_READ) != 0;
     }
@@ -207,6 +285,14 @@ public abstract class AbstractChannel implements Channel, Comparable<Channel> {
         return Channels.write(this, message, remoteAddress);
     }
 
+    public ChannelFuture writeWithoutFlush(Object message) {
+        return Channels.writeWithoutFlush(this, message);
+    }
+
+    public ChannelFuture flush() {
+        return Channels.flush(this);
+    }
+
     /**
      * Returns the {@link String} representation of this channel.  The returned
      * string contains the {@linkplain #getId() ID}, {@linkplain #getLocalAddress() local address},
@@ -34,6 +34,8 @@ import java.net.SocketAddress;
  * <li>{@link #setInterestOps(int)}</li>
  * <li>{@link #write(Object)}</li>
  * <li>{@link #write(Object, SocketAddress)}</li>
+ * <li>{@link #writeWithoutFlush(Object)}</li>
+ * <li>{@link #flush()}</li>
  * <li>and the shortcut methods which calls the methods mentioned above
  * </ul>
  *
@@ -98,4 +100,14 @@ public abstract class AbstractServerChannel extends AbstractChannel {
         return getUnsupportedOperationFuture();
     }
 
+    @Override
+    public ChannelFuture writeWithoutFlush(Object message) {
+        return getUnsupportedOperationFuture();
+    }
+
+    @Override
+    public ChannelFuture flush() {
+        return getUnsupportedOperationFuture();
+    }
+
 }
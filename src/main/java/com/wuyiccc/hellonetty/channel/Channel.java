@@ -188,6 +188,31 @@ public interface Channel {
      */
     ChannelFuture write(Object message, SocketAddress remoteAddress);
 
+    /**
+     * Sends a message to this channel asynchronously without flushing it.
+     * The message is queued until {@link #flush()} is called, so that the
+     * messages written in a row (e.g. pipelined responses) can be written
+     * out with a single operation.  {@link #write(Object)} is a shortcut to
+     * this method followed by {@link #flush()}.
+     *
+     * @param message the message to write
+     *
+     * @return the {@link ChannelFuture} which will be notified when the
+     *         write request succeeds or fails
+     *
+     * @throws NullPointerException if the specified message is {@code null}
+     */
+    ChannelFuture writeWithoutFlush(Object message);
+
+    /**
+     * Requests the messages which were written by
+     * {@link #writeWithoutFlush(Object)} to be written out asynchronously.
+     *
+     * @return the {@link ChannelFuture} which will be notified when the
+     *         flush request is handed to the I/O thread
+     */
+    ChannelFuture flush();
+
     /**
      * Binds this channel to the specified local address asynchronously.
      *
@@ -255,13 +280,14 @@ public interface Channel {
     boolean isReadable();
 
     /**
-     * Returns {@code true} if and only if the I/O thread will perform the
-     * requested write operation immediately.  Any write requests made when
-     * this method returns {@code false} are queued until the I/O thread is
-     * ready to process the queued write requests.  This method is a shortcut
-     * to the following code:
+     * Returns {@code true} if and only if the number of the bytes queued for
+     * write is below the high water mark of this channel.  Write requests
+     * made when this method returns {@code false} are still queued, but a
+     * producer should stop writing until a {@code "channelInterestChanged"}
+     * event tells that the queued bytes dropped below the low water mark.
+     * This method is a shortcut to the following code:
      * <pre>
-     * return (getInterestOps() & OP_WRITE) != 0;
+     * return (getInterestOps() & OP_WRITE) == 0;
      * </pre>
      */
     boolean isWritable();
@@ -593,9 +593,10 @@ public class Channels {
     }
 
     /**
-     * Sends a {@code "write"} request to the previous
-     * {@link ChannelDownstreamHandler} in the {@link ChannelPipeline} where
-     * the specified {@link ChannelHandlerContext} belongs.
+     * Sends a {@code "write"} request followed by a {@code "flush"} request
+     * to the previous {@link ChannelDownstreamHandler} in the
+     * {@link ChannelPipeline} where the specified {@link ChannelHandlerContext}
+     * belongs.
      *
      * @param ctx     the context
      * @param channel the channel to write a message
@@ -609,9 +610,26 @@ public class Channels {
     }
 
     /**
-     * Sends a {@code "write"} request to the last
-     * {@link ChannelDownstreamHandler} in the {@link ChannelPipeline} of
-     * the specified {@link Channel}.
+     * Sends a {@code "write"} request to the previous
+     * {@link ChannelDownstreamHandler} in the {@link ChannelPipeline} where
+     * the specified {@link ChannelHandlerContext} belongs without requesting
+     * a flush.
+     *
+     * @param ctx     the context
+     * @param channel the channel to write a message
+     * @param future  the future which will be notified when the write
+     *                operation is done
+     */
+    public static void writeWithoutFlush(
+            ChannelHandlerContext ctx, Channel channel,
+            ChannelFuture future, Object message) {
+        writeWithoutFlush(ctx, channel, future, message, null);
+    }
+
+    /**
+     * Sends a {@code "write"} request followed by a {@code "flush"} request
+     * to the last {@link ChannelDownstreamHandler} in the
+     * {@link ChannelPipeline} of the specified {@link Channel}.
      *
      * @param channel  the channel to write a message
      * @param message  the message to write to the channel
@@ -623,17 +641,80 @@ public class Channels {
      */
     public static ChannelFuture write(Channel channel, Object message, SocketAddress remoteAddress) {
         ChannelFuture future = future(channel);
-        channel.getPipeline().sendDownstream(
+        ChannelPipeline pipeline = channel.getPipeline();
+        pipeline.sendDownstream(
                 new DefaultMessageEvent(channel, future, message, remoteAddress));
+        pipeline.sendDownstream(
+                new DefaultFlushEvent(channel, succeededFuture(channel)));
         return future;
     }
 
     /**
-     * Sends a {@code "write"} request to the previous
+     * Sends a {@code "write"} request to the last
+     * {@link ChannelDownstreamHandler} in the {@link ChannelPipeline} of
+     * the specified {@link Channel} without requesting a flush.  The
+     * message is queued by the transport until the next {@code "flush"}
+     * request, so that the messages written in a row can be written out
+     * at once.
+     *
+     * @param channel  the channel to write a message
+     * @param message  the message to write to the channel
+     *
+     * @return the {@link ChannelFuture} which will be notified when the
+     *         write operation is done
+     */
+    public static ChannelFuture writeWithoutFlush(Channel channel, Object message) {
+        ChannelFuture future = future(channel);
+        channel.getPipeline().sendDownstream(
+                new DefaultMessageEvent(channel, future, message, null));
+        return future;
+    }
+
+    /**
+     * Sends a {@code "flush"} request to the last
+     * {@link ChannelDownstreamHandler} in the {@link ChannelPipeline} of
+     * the specified {@link Channel}.
+     *
+     * @param channel  the channel to flush
+     *
+     * @return the {@link ChannelFuture} which will be notified when the
+     *         queued messages are handed to the I/O thread.  Please use the
+     *         future of each write request to find out when the message was
+     *         actually written.
+     */
+    public static ChannelFuture flush(Channel channel) {
+        ChannelFuture future = future(channel);
+        channel.getPipeline().sendDownstream(
+                new DefaultFlushEvent(channel, future));
+        return future;
+    }
+
+    /**
+     * Sends a {@code "flush"} request to the previous
      * {@link ChannelDownstreamHandler} in the {@link ChannelPipeline} where
      * the specified {@link ChannelHandlerContext} belongs.
      *
      * @param ctx     the context
+     * @param channel the channel to flush
+     * @param future  the future which will be notified when the queued
+     *                messages are handed to the I/O thread
+     */
+    public static void flush(
+            ChannelHandlerContext ctx, Channel channel, ChannelFuture future) {
+        ctx.sendDownstream(new DefaultFlushEvent(channel, future));
+    }
+
+    /**
+     * Sends a {@code "write"} request followed by a {@code "flush"} request
+     * to the previous {@link ChannelDownstreamHandler} in the
+     * {@link ChannelPipeline} where the specified {@link ChannelHandlerContext}
+     * belongs.  A handler which transforms a message should call
+     * {@link #writeWithoutFlush(ChannelHandlerContext, Channel, ChannelFuture, Object, SocketAddress)}
+     * instead and forward the {@code "flush"} request of the original writer,
+     * so that the messages written without a flush are not flushed one by
+     * one.
+     *
+     * @param ctx     the context
      * @param channel the channel to write a message
      * @param future  the future which will be notified when the write
      *                operation is done
@@ -644,6 +725,31 @@ public class Channels {
     public static void write(
             ChannelHandlerContext ctx, Channel channel,
             ChannelFuture future, Object message, SocketAddress remoteAddress) {
+        writeWithoutFlush(ctx, channel, future, message, remoteAddress);
+        ctx.sendDownstream(
+                new DefaultFlushEvent(channel, succeededFuture(channel)));
+    }
+
+    /**
+     * Sends a {@code "write"} request to the previous
+     * {@link ChannelDownstreamHandler} in the {@link ChannelPipeline} where
+     * the specified {@link ChannelHandlerContext} belongs without requesting
+     * a flush.  The message is queued by the transport until the next
+     * {@code "flush"} request.  A handler which writes a message on its own
+     * with this method should call
+     * {@link #flush(ChannelHandlerContext, Channel, ChannelFuture)} later.
+     *
+     * @param ctx     the context
+     * @param channel the channel to write a message
+     * @param future  the future which will be notified when the write
+     *                operation is done
+     * @param message the message to write to the channel
+     * @param remoteAddress  the destination of the message.
+     *                       {@code null} to use the default remote address.
+     */
+    public static void writeWithoutFlush(
+            ChannelHandlerContext ctx, Channel channel,
+            ChannelFuture future, Object message, SocketAddress remoteAddress) {
         ctx.sendDownstream(
                 new DefaultMessageEvent(channel, future, message, remoteAddress));
     }
@@ -0,0 +1,120 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.wuyiccc.hellonetty.channel;
+
+import com.wuyiccc.hellonetty.logging.InternalLogger;
+import com.wuyiccc.hellonetty.logging.InternalLoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * The default {@link FileRegion} implementation which transfers a region of
+ * a {@link FileChannel}.  The {@link FileChannel} is closed when the region
+ * is released.
+ *
+ * @author The Netty Project (netty-dev@lists.jboss.org)
+ * @author Trustin Lee (tlee@redhat.com)
+ *
+ * @version $Rev$, $Date$
+ */
+public class DefaultFileRegion implements FileRegion {
+
+    private static final InternalLogger logger =
+        InternalLoggerFactory.getInstance(DefaultFileRegion.class);
+
+    private final FileChannel file;
+    private final long position;
+    private final long count;
+
+    /**
+     * Creates a new region of the specified file.
+     *
+     * @param file     the file to transfer
+     * @param position the offset in the file where the transfer begins
+     * @param count    the number of bytes to transfer
+     */
+    public DefaultFileRegion(FileChannel file, long position, long count) {
+        if (file == null) {
+            throw new NullPointerException("file");
+        }
+        if (position < 0) {
+            throw new IllegalArgumentException(
+                    "position must be equal to or greater than 0: " + position);
+        }
+        if (count < 0) {
+            throw new IllegalArgumentException(
+                    "count must be equal to or greater than 0: " + count);
+        }
+        this.file = file;
+        this.position = position;
+        this.count = count;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws EOFException
+     *         if the file ends before the region does, for example because
+     *         the file was truncated after this region was created
+     */
+    public long transferTo(WritableByteChannel target, long position) throws IOException {
+        long count = this.count - position;
+        if (count < 0 || position < 0) {
+            throw new IllegalArgumentException(
+                    "position out of range: " + position +
+                    " (expected: 0 - " + (this.count - 1) + ")");
+        }
+        if (count == 0) {
+            return 0L;
+        }
+
+        long filePosition = this.position + position;
+        long transferredBytes = file.transferTo(filePosition, count, target);
+        if (transferredBytes == 0 && filePosition >= file.size()) {
+            // Nothing will be transferred no matter how many times we retry.
+            throw new EOFException(
+                    "File region ended prematurely at " + position +
+                    " (expected: " + this.count + " bytes)");
+        }
+        return transferredBytes;
+    }
+
+    public void releaseExternalResources() {
+        try {
+            file.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close a file.", e);
+        }
+    }
+}
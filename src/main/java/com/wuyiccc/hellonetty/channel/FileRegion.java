@@ -0,0 +1,83 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.wuyiccc.hellonetty.channel;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A region of a file that is sent via a {@link Channel} which supports
+ * zero-copy file transfer.  Write a {@link FileRegion} instead of a
+ * {@link com.wuyiccc.hellonetty.buffer.ChannelBuffer} to send a large file
+ * without reading it into the heap.
+ *
+ * <h3>Releasing the underlying file</h3>
+ *
+ * The transport calls {@link #releaseExternalResources()} once the region
+ * has been written or the write has failed.  A {@link FileRegion} must not
+ * be written more than once.
+ *
+ * <h3>Transports without zero-copy file transfer</h3>
+ *
+ * A transport which does not support zero-copy file transfer, such as the
+ * OIO socket transport, copies the region into the socket with a reusable
+ * buffer.
+ *
+ * @author The Netty Project (netty-dev@lists.jboss.org)
+ * @author Trustin Lee (tlee@redhat.com)
+ *
+ * @version $Rev$, $Date$
+ */
+public interface FileRegion {
+
+    /**
+     * Returns the offset in the file where the transfer began.
+     */
+    long getPosition();
+
+    /**
+     * Returns the number of bytes to transfer.
+     */
+    long getCount();
+
+    /**
+     * Transfers the content of this file region to the specified channel.
+     *
+     * @param target   the destination of the transfer
+     * @param position the relative offset of the file where the transfer
+     *                 begins from.  For example, <tt>0</tt> will make the
+     *                 transfer start from {@link #getPosition()}th byte and
+     *                 <tt>{@link #getCount()} - 1</tt> will make the last
+     *                 byte of the region transferred.
+     *
+     * @return the number of transferred bytes
+     */
+    long transferTo(WritableByteChannel target, long position) throws IOException;
+
+    /**
+     * Releases the resources associated with this file region, such as the
+     * underlying {@link FileChannel}.
+     */
+    void releaseExternalResources();
+}
@@ -22,6 +22,8 @@
  */
 package com.wuyiccc.hellonetty.channel.socket;
 
+import com.wuyiccc.hellonetty.buffer.ChannelBufferFactory;
+import com.wuyiccc.hellonetty.buffer.HeapChannelBufferFactory;
 import com.wuyiccc.hellonetty.channel.ChannelException;
 import com.wuyiccc.hellonetty.channel.ChannelPipelineFactory;
 import com.wuyiccc.hellonetty.util.ConversionUtil;
@@ -44,6 +46,9 @@ public class DefaultSocketChannelConfig implements SocketChannelConfig {
 
     private final Socket socket;
     private volatile int connectTimeoutMillis = 10000; // 10 seconds
+    private volatile ChannelBufferFactory bufferFactory = HeapChannelBufferFactory.getInstance();
+    private volatile int writeBufferHighWaterMark = 64 * 1024;
+    private volatile int writeBufferLowWaterMark = 32 * 1024;
 
     /**
      * Creates a new instance.
@@ -86,6 +91,12 @@ public class DefaultSocketChannelConfig implements SocketChannelConfig {
             setConnectTimeoutMillis(ConversionUtil.toInt(value));
         } else if (key.equals("pipelineFactory")) {
             setPipelineFactory((ChannelPipelineFactory) value);
+        } else if (key.equals("bufferFactory")) {
+            setBufferFactory((ChannelBufferFactory) value);
+        } else if (key.equals("writeBufferHighWaterMark")) {
+            setWriteBufferHighWaterMark(ConversionUtil.toInt(value));
+        } else if (key.equals("writeBufferLowWaterMark")) {
+            setWriteBufferLowWaterMark(ConversionUtil.toInt(value));
         } else {
             return false;
         }
@@ -239,4 +250,39 @@ public class DefaultSocketChannelConfig implements SocketChannelConfig {
     public void setWriteTimeoutMillis(int writeTimeoutMillis) {
         // Unused
     }
+
+    public ChannelBufferFactory getBufferFactory() {
+        return bufferFactory;
+    }
+
+    public void setBufferFactory(ChannelBufferFactory bufferFactory) {
+        if (bufferFactory == null) {
+            throw new NullPointerException("bufferFactory");
+        }
+        this.bufferFactory = bufferFactory;
+    }
+
+    public int getWriteBufferHighWaterMark() {
+        return writeBufferHighWaterMark;
+    }
+
+    public void setWriteBufferHighWaterMark(int writeBufferHighWaterMark) {
+        if (writeBufferHighWaterMark < 0) {
+            throw new IllegalArgumentException(
+                    "writeBufferHighWaterMark: " + writeBufferHighWaterMark);
+        }
+        this.writeBufferHighWaterMark = writeBufferHighWaterMark;
+    }
+
+    public int getWriteBufferLowWaterMark() {
+        return writeBufferLowWaterMark;
+    }
+
+    public void setWriteBufferLowWaterMark(int writeBufferLowWaterMark) {
+        if (writeBufferLowWaterMark < 0) {
+            throw new IllegalArgumentException(
+                    "writeBufferLowWaterMark: " + writeBufferLowWaterMark);
+        }
+        this.writeBufferLowWaterMark = writeBufferLowWaterMark;
+    }
 }
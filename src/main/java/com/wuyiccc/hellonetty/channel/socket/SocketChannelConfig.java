@@ -22,6 +22,8 @@
  */
 package com.wuyiccc.hellonetty.channel.socket;
 
+import com.wuyiccc.hellonetty.buffer.ChannelBufferFactory;
+import com.wuyiccc.hellonetty.channel.Channel;
 import com.wuyiccc.hellonetty.channel.ChannelConfig;
 
 import java.net.Socket;
@@ -51,6 +53,12 @@ import java.net.Socket;
  * <td>{@code "sendBufferSize"}</td><td>{@link #setSendBufferSize(int)}</td>
  * </tr><tr>
  * <td>{@code "trafficClass"}</td><td>{@link #setTrafficClass(int)}</td>
+ * </tr><tr>
+ * <td>{@code "bufferFactory"}</td><td>{@link #setBufferFactory(ChannelBufferFactory)}</td>
+ * </tr><tr>
+ * <td>{@code "writeBufferHighWaterMark"}</td><td>{@link #setWriteBufferHighWaterMark(int)}</td>
+ * </tr><tr>
+ * <td>{@code "writeBufferLowWaterMark"}</td><td>{@link #setWriteBufferLowWaterMark(int)}</td>
  * </tr>
  * </table>
  *
@@ -139,4 +147,49 @@ public interface SocketChannelConfig extends ChannelConfig {
      */
     void setPerformancePreferences(
             int connectionTime, int latency, int bandwidth);
+
+    /**
+     * Returns the {@link ChannelBufferFactory} which creates the buffers
+     * that the inbound data of the channel is read into.
+     */
+    ChannelBufferFactory getBufferFactory();
+
+    /**
+     * Sets the {@link ChannelBufferFactory} which creates the buffers
+     * that the inbound data of the channel is read into.  The default
+     * factory allocates a new heap buffer for every read operation.
+     */
+    void setBufferFactory(ChannelBufferFactory bufferFactory);
+
+    /**
+     * Returns the number of the queued outbound bytes at which the channel
+     * becomes unwritable.  Once the bytes queued for write reach this mark,
+     * {@link Channel#isWritable()} returns {@code false} and a
+     * {@code "channelInterestChanged"} event is fired.  The default value is
+     * {@code 65536}.
+     */
+    int getWriteBufferHighWaterMark();
+
+    /**
+     * Sets the number of the queued outbound bytes at which the channel
+     * becomes unwritable.
+     */
+    void setWriteBufferHighWaterMark(int writeBufferHighWaterMark);
+
+    /**
+     * Returns the number of the queued outbound bytes below which an
+     * unwritable channel becomes writable again.  Once the bytes queued for
+     * write drop below this mark, {@link Channel#isWritable()} returns
+     * {@code true} and a {@code "channelInterestChanged"} event is fired.
+     * A value greater than the {@linkplain #getWriteBufferHighWaterMark()
+     * high water mark} is treated as the high water mark.  The default value
+     * is {@code 32768}.
+     */
+    int getWriteBufferLowWaterMark();
+
+    /**
+     * Sets the number of the queued outbound bytes below which an
+     * unwritable channel becomes writable again.
+     */
+    void setWriteBufferLowWaterMark(int writeBufferLowWaterMark);
 }
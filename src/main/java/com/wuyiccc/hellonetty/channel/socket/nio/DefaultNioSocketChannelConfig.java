@@ -41,8 +41,12 @@ class DefaultNioSocketChannelConfig extends DefaultSocketChannelConfig
 
     private volatile ReceiveBufferSizePredictor predictor =
         new DefaultReceiveBufferSizePredictor();
+    private volatile ReceiveBufferAllocator allocator =
+        HeapReceiveBufferAllocator.INSTANCE;
     private volatile int writeSpinCount = 16;
+    private volatile int gatheringWriteLimit = 16;
     private volatile boolean readWriteFair;
+    private volatile boolean singleWriter;
 
     DefaultNioSocketChannelConfig(Socket socket) {
         super(socket);
@@ -58,8 +62,14 @@ class DefaultNioSocketChannelConfig extends DefaultSocketChannelConfig
             setReadWriteFair(ConversionUtil.toBoolean(value));
         } else if (key.equals("writeSpinCount")) {
             setWriteSpinCount(ConversionUtil.toInt(value));
+        } else if (key.equals("gatheringWriteLimit")) {
+            setGatheringWriteLimit(ConversionUtil.toInt(value));
         } else if (key.equals("receiveBufferSizePredictor")) {
             setReceiveBufferSizePredictor((ReceiveBufferSizePredictor) value);
+        } else if (key.equals("receiveBufferAllocator")) {
+            setReceiveBufferAllocator((ReceiveBufferAllocator) value);
+        } else if (key.equals("singleWriter")) {
+            setSingleWriter(ConversionUtil.toBoolean(value));
         } else {
             return false;
         }
@@ -78,6 +88,18 @@ class DefaultNioSocketChannelConfig extends DefaultSocketChannelConfig
         this.writeSpinCount = writeSpinCount;
     }
 
+    public int getGatheringWriteLimit() {
+        return gatheringWriteLimit;
+    }
+
+    public void setGatheringWriteLimit(int gatheringWriteLimit) {
+        if (gatheringWriteLimit <= 0) {
+            throw new IllegalArgumentException(
+                    "gatheringWriteLimit must be a positive integer.");
+        }
+        this.gatheringWriteLimit = gatheringWriteLimit;
+    }
+
     public ReceiveBufferSizePredictor getReceiveBufferSizePredictor() {
         return predictor;
     }
@@ -90,6 +112,17 @@ class DefaultNioSocketChannelConfig extends DefaultSocketChannelConfig
         this.predictor = predictor;
     }
 
+    public ReceiveBufferAllocator getReceiveBufferAllocator() {
+        return allocator;
+    }
+
+    public void setReceiveBufferAllocator(ReceiveBufferAllocator allocator) {
+        if (allocator == null) {
+            throw new NullPointerException("allocator");
+        }
+        this.allocator = allocator;
+    }
+
     public boolean isReadWriteFair() {
         return readWriteFair;
     }
@@ -97,4 +130,12 @@ class DefaultNioSocketChannelConfig extends DefaultSocketChannelConfig
     public void setReadWriteFair(boolean readWriteFair) {
         this.readWriteFair = readWriteFair;
     }
+
+    public boolean isSingleWriter() {
+        return singleWriter;
+    }
+
+    public void setSingleWriter(boolean singleWriter) {
+        this.singleWriter = singleWriter;
+    }
 }
@@ -0,0 +1,92 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.wuyiccc.hellonetty.channel.socket.nio;
+
+import java.nio.ByteOrder;
+
+import com.wuyiccc.hellonetty.buffer.ChannelBuffer;
+import com.wuyiccc.hellonetty.buffer.ChannelBufferFactory;
+import com.wuyiccc.hellonetty.buffer.DirectMemoryManager;
+import com.wuyiccc.hellonetty.buffer.DirectMemoryManager.Subsystem;
+
+/**
+ * A {@link ReceiveBufferAllocator} which reads the inbound data into a
+ * direct buffer allocated per I/O thread, and then copies the read data into
+ * a buffer acquired from the {@link ChannelBufferFactory} of the channel.
+ * The copied buffer is exactly as large as the read data.
+ * <p>
+ * The JDK copies the data from its own temporary direct buffer when a read
+ * operation is performed with a heap buffer anyway.  This allocator performs
+ * the same copy by itself, so that the received buffer can be exactly sized
+ * and acquired from a pool without the overhead of the temporary direct
+ * buffer management.
+ * <p>
+ * The direct buffers are charged to {@link Subsystem#WORKER_READ} of the
+ * {@link DirectMemoryManager}.
+ *
+ * @author The Netty Project (netty-dev@lists.jboss.org)
+ * @author Trustin Lee (tlee@redhat.com)
+ *
+ * @version $Rev$, $Date$
+ */
+public class DirectCopyReceiveBufferAllocator implements ReceiveBufferAllocator {
+
+    private static final int DEFAULT_CAPACITY = 65536;
+
+    private final ThreadLocal<ChannelBuffer> directBuffer = new ThreadLocal<ChannelBuffer>();
+
+    /**
+     * Creates a new instance.
+     */
+    public DirectCopyReceiveBufferAllocator() {
+        super();
+    }
+
+    public ChannelBuffer allocate(int estimatedSize, ChannelBufferFactory factory) {
+        ChannelBuffer directBuffer = this.directBuffer.get();
+        if (directBuffer == null || directBuffer.capacity() < estimatedSize) {
+            if (directBuffer != null) {
+                directBuffer.release();
+            }
+            directBuffer = DirectMemoryManager.directBuffer(
+                    Subsystem.WORKER_READ, ByteOrder.BIG_ENDIAN,
+                    Math.max(DEFAULT_CAPACITY, estimatedSize));
+            this.directBuffer.set(directBuffer);
+        }
+
+        ChannelBuffer buf = directBuffer.slice(0, estimatedSize);
+        buf.clear();
+        buf.retain();
+        return buf;
+    }
+
+    public ChannelBuffer complete(ChannelBuffer buffer, ChannelBufferFactory factory) {
+        try {
+            ChannelBuffer copy = factory.getBuffer(buffer.readableBytes());
+            copy.writeBytes(buffer);
+            return copy;
+        } finally {
+            buffer.release();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.wuyiccc.hellonetty.channel.socket.nio;
+
+import com.wuyiccc.hellonetty.buffer.ChannelBuffer;
+import com.wuyiccc.hellonetty.buffer.ChannelBufferFactory;
+import com.wuyiccc.hellonetty.buffer.DirectMemoryManager;
+import com.wuyiccc.hellonetty.buffer.DirectMemoryManager.Subsystem;
+
+/**
+ * A {@link ReceiveBufferAllocator} which reads the inbound data into a large
+ * direct buffer allocated per I/O thread, and sends a slice of it upstream.
+ * No memory copy is involved at all, but a direct buffer chunk is not
+ * reclaimed until all slices of it are released.  The endianness of
+ * the received buffers is the default endianness of the
+ * {@link ChannelBufferFactory} of the channel.
+ * <p>
+ * The chunks are charged to {@link Subsystem#WORKER_READ} of the
+ * {@link DirectMemoryManager}, and become heap buffers once its limit is
+ * reached.
+ *
+ * @author The Netty Project (netty-dev@lists.jboss.org)
+ * @author Trustin Lee (tlee@redhat.com)
+ *
+ * @version $Rev$, $Date$
+ */
+public class DirectReceiveBufferAllocator implements ReceiveBufferAllocator {
+
+    private static final int DEFAULT_CHUNK_SIZE = 1048576;
+
+    private final int chunkSize;
+    private final ThreadLocal<ChannelBuffer> chunk = new ThreadLocal<ChannelBuffer>();
+
+    /**
+     * Creates a new instance whose direct buffer chunk is {@code 1048576}
+     * bytes long.
+     */
+    public DirectReceiveBufferAllocator() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Creates a new instance with the specified direct buffer chunk size.
+     */
+    public DirectReceiveBufferAllocator(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    public ChannelBuffer allocate(int estimatedSize, ChannelBufferFactory factory) {
+        ChannelBuffer chunk = this.chunk.get();
+        if (chunk == null || !chunk.writable() ||
+            chunk.order() != factory.getDefaultOrder()) {
+            if (chunk != null) {
+                chunk.release();
+            }
+            chunk = DirectMemoryManager.directBuffer(
+                    Subsystem.WORKER_READ, factory.getDefaultOrder(),
+                    Math.max(chunkSize, estimatedSize));
+            this.chunk.set(chunk);
+        }
+
+        ChannelBuffer buf = chunk.slice(
+                chunk.writerIndex(), Math.min(estimatedSize, chunk.writableBytes()));
+        buf.clear();
+        buf.retain();
+        return buf;
+    }
+
+    public ChannelBuffer complete(ChannelBuffer buffer, ChannelBufferFactory factory) {
+        ChannelBuffer chunk = this.chunk.get();
+        chunk.writerIndex(chunk.writerIndex() + buffer.writerIndex());
+        return buffer;
+    }
+}
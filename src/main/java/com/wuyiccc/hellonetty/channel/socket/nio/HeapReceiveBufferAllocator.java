@@ -0,0 +1,60 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.wuyiccc.hellonetty.channel.socket.nio;
+
+import com.wuyiccc.hellonetty.buffer.ChannelBuffer;
+import com.wuyiccc.hellonetty.buffer.ChannelBufferFactory;
+
+/**
+ * The default {@link ReceiveBufferAllocator} which reads the inbound data
+ * directly into a buffer acquired from the {@link ChannelBufferFactory} of
+ * the channel.  Please note that the JDK copies the data from a temporary
+ * direct buffer when a heap buffer is used for a read operation.
+ *
+ * @author The Netty Project (netty-dev@lists.jboss.org)
+ * @author Trustin Lee (tlee@redhat.com)
+ *
+ * @version $Rev$, $Date$
+ */
+public class HeapReceiveBufferAllocator implements ReceiveBufferAllocator {
+
+    /**
+     * The shared instance.
+     */
+    public static final HeapReceiveBufferAllocator INSTANCE = new HeapReceiveBufferAllocator();
+
+    /**
+     * Creates a new instance.  You can also use {@link #INSTANCE}.
+     */
+    public HeapReceiveBufferAllocator() {
+        super();
+    }
+
+    public ChannelBuffer allocate(int estimatedSize, ChannelBufferFactory factory) {
+        return factory.getBuffer(estimatedSize);
+    }
+
+    public ChannelBuffer complete(ChannelBuffer buffer, ChannelBufferFactory factory) {
+        return buffer;
+    }
+}
@@ -24,7 +24,6 @@ package com.wuyiccc.hellonetty.channel.socket.nio;
 
 import com.wuyiccc.hellonetty.channel.Channel;
 import com.wuyiccc.hellonetty.channel.ChannelPipeline;
-import com.wuyiccc.hellonetty.channel.ChannelSink;
 import com.wuyiccc.hellonetty.channel.socket.ClientSocketChannelFactory;
 import com.wuyiccc.hellonetty.channel.socket.SocketChannel;
 
@@ -91,7 +90,7 @@ import java.util.concurrent.*;
  */
 public class NioClientSocketChannelFactory implements ClientSocketChannelFactory {
 
-    private final ChannelSink sink;
+    private final NioClientSocketPipelineSink sink;
 
     /**
      * Creates a new instance.  Calling this constructor is same with calling
@@ -139,4 +138,14 @@ public class NioClientSocketChannelFactory implements ClientSocketChannelFactory
     public SocketChannel newChannel(ChannelPipeline pipeline) {
         return new NioClientSocketChannel(this, pipeline, sink);
     }
+
+    /**
+     * Returns the number of the times the boss and the I/O workers of this
+     * factory have replaced their selector because it kept returning
+     * prematurely without any selected key.  A non-zero value usually means that the
+     * NIO provider suffers from the epoll spin bug.
+     */
+    public long getSelectorRebuildCount() {
+        return sink.getSelectorRebuildCount();
+    }
 }
@@ -22,6 +22,7 @@
  */
 package com.wuyiccc.hellonetty.channel.socket.nio;
 
+import com.wuyiccc.hellonetty.buffer.ChannelBuffer;
 import com.wuyiccc.hellonetty.channel.*;
 import com.wuyiccc.hellonetty.logging.InternalLogger;
 import com.wuyiccc.hellonetty.logging.InternalLoggerFactory;
@@ -107,8 +108,20 @@ class NioClientSocketPipelineSink extends AbstractChannelSink {
         } else if (e instanceof MessageEvent) {
             MessageEvent event = (MessageEvent) e;
             NioSocketChannel channel = (NioSocketChannel) event.getChannel();
+            Object message = event.getMessage();
+            if (message instanceof ChannelBuffer) {
+                channel.updateWriteBufferSize(
+                        ((ChannelBuffer) message).readableBytes());
+            } else if (message instanceof FileRegion) {
+                channel.updateWriteBufferSize(
+                        ((FileRegion) message).getCount());
+            }
+            // The message is written when a flush is requested.
             channel.writeBuffer.offer(event);
+        } else if (e instanceof FlushEvent) {
+            NioSocketChannel channel = (NioSocketChannel) e.getChannel();
             NioWorker.write(channel, true);
+            e.getFuture().setSuccess();
         }
     }
 
@@ -152,6 +165,14 @@ class NioClientSocketPipelineSink extends AbstractChannelSink {
         }
     }
 
+    long getSelectorRebuildCount() {
+        long count = boss.getSelectorRebuildCount();
+        for (NioWorker w: workers) {
+            count += w.getSelectorRebuildCount();
+        }
+        return count;
+    }
+
     NioWorker nextWorker() {
         return workers[Math.abs(
                 workerIndex.getAndIncrement() % workers.length)];
@@ -161,6 +182,9 @@ class NioClientSocketPipelineSink extends AbstractChannelSink {
 
         private final AtomicBoolean started = new AtomicBoolean();
         private volatile Selector selector;
+        private SelectedSelectionKeySet selectedKeys;
+        private volatile long selectorRebuildCount;
+        private final AtomicBoolean wakenUp = new AtomicBoolean();
         private final Object selectorGuard = new Object();
 
         Boss() {
@@ -172,7 +196,9 @@ class NioClientSocketPipelineSink extends AbstractChannelSink {
             Selector selector;
             if (firstChannel) {
                 try {
-                    this.selector = selector = Selector.open();
+                    selector = Selector.open();
+                    selectedKeys = SelectorUtil.optimize(selector);
+                    this.selector = selector;
                 } catch (IOException e) {
                     throw new ChannelException(
                             "Failed to create a selector.", e);
@@ -198,6 +224,12 @@ class NioClientSocketPipelineSink extends AbstractChannelSink {
                         this, "New I/O client boss #" + id));
             } else {
                 synchronized (selectorGuard) {
+                    // The selector might have been rebuilt meanwhile.
+                    Selector currentSelector = this.selector;
+                    if (currentSelector != null) {
+                        selector = currentSelector;
+                    }
+                    wakenUp.set(true);
                     selector.wakeup();
                     try {
                         channel.socket.register(selector, SelectionKey.OP_CONNECT, channel);
@@ -212,14 +244,34 @@ class NioClientSocketPipelineSink extends AbstractChannelSink {
         public void run() {
             boolean shutdown = false;
             Selector selector = this.selector;
+            SelectedSelectionKeySet selectedKeys = this.selectedKeys;
+            int prematureReturns = 0;
             for (;;) {
+                wakenUp.set(false);
+
                 synchronized (selectorGuard) {
                     // This empty synchronization block prevents the selector
                     // from acquiring its lock.
                 }
                 try {
-                    int selectedKeyCount = selector.select(500);
-                    if (selectedKeyCount > 0) {
+                    long selectStartTime = System.nanoTime();
+                    int selectedKeyCount = selector.select(SelectorUtil.SELECT_TIMEOUT);
+
+                    if (SelectorUtil.REBUILD_THRESHOLD > 0 &&
+                        selectedKeyCount == 0 && !wakenUp.get() &&
+                        SelectorUtil.isPrematureReturn(selectStartTime)) {
+                        if (++ prematureReturns == SelectorUtil.REBUILD_THRESHOLD) {
+                            prematureReturns = 0;
+                            selector = rebuildSelector(selector);
+                            selectedKeys = this.selectedKeys;
+                            selectedKeyCount = selector.selectNow();
+                        }
+                    } else {
+                        prematureReturns = 0;
+                    }
+                    if (selectedKeys != null) {
+                        processSelectedKeys(selectedKeys);
+                    } else if (selectedKeyCount > 0) {
                         processSelectedKeys(selector.selectedKeys());
                     }
 
@@ -270,19 +322,69 @@ class NioClientSocketPipelineSink extends AbstractChannelSink {
             }
         }
 
+        long getSelectorRebuildCount() {
+            return selectorRebuildCount;
+        }
+
+        private Selector rebuildSelector(Selector oldSelector) {
+            // Hold the guard so that no channel is registered to the old
+            // selector while the keys are moved.
+            synchronized (selectorGuard) {
+                Selector newSelector;
+                try {
+                    newSelector = Selector.open();
+                } catch (IOException e) {
+                    logger.warn("Failed to create a new selector.", e);
+                    return oldSelector;
+                }
+
+                // Publish the new selector before moving the keys, as the
+                // I/O workers do.
+                selectedKeys = SelectorUtil.optimize(newSelector);
+                selector = newSelector;
+                int movedKeys = SelectorUtil.moveKeys(oldSelector, newSelector);
+                selectorRebuildCount ++;
+
+                try {
+                    oldSelector.close();
+                } catch (IOException e) {
+                    logger.warn("Failed to close a selector.", e);
+                }
+
+                logger.info(
+                        "Rebuilt the selector of the I/O client boss #" + id +
+                        " after " + SelectorUtil.REBUILD_THRESHOLD +
+                        " premature returns (moved keys: " + movedKeys + ")");
+                return newSelector;
+            }
+        }
+
         private void processSelectedKeys(Set<SelectionKey> selectedKeys) {
             for (Iterator<SelectionKey> i = selectedKeys.iterator(); i.hasNext();) {
                 SelectionKey k = i.next();
                 i.remove();
+                processSelectedKey(k);
+            }
+        }
 
-                if (!k.isValid()) {
-                    close(k);
-                    continue;
+        private void processSelectedKeys(SelectedSelectionKeySet selectedKeys) {
+            try {
+                for (int i = 0; i < selectedKeys.size(); i ++) {
+                    processSelectedKey(selectedKeys.get(i));
                 }
+            } finally {
+                selectedKeys.reset();
+            }
+        }
 
-                if (k.isConnectable()) {
-                    connect(k);
-                }
+        private void processSelectedKey(SelectionKey k) {
+            if (!k.isValid()) {
+                close(k);
+                return;
+            }
+
+            if (k.isConnectable()) {
+                connect(k);
             }
         }
 
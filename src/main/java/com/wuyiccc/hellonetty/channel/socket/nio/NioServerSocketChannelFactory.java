@@ -24,7 +24,6 @@ package com.wuyiccc.hellonetty.channel.socket.nio;
 
 import com.wuyiccc.hellonetty.channel.Channel;
 import com.wuyiccc.hellonetty.channel.ChannelPipeline;
-import com.wuyiccc.hellonetty.channel.ChannelSink;
 import com.wuyiccc.hellonetty.channel.socket.ServerSocketChannel;
 import com.wuyiccc.hellonetty.channel.socket.ServerSocketChannelFactory;
 
@@ -95,7 +94,7 @@ import java.util.concurrent.*;
 public class NioServerSocketChannelFactory implements ServerSocketChannelFactory {
 
     final Executor bossExecutor;
-    private final ChannelSink sink;
+    private final NioServerSocketPipelineSink sink;
 
     /**
      * Creates a new instance.  Calling this constructor is same with calling
@@ -145,4 +144,13 @@ public class NioServerSocketChannelFactory implements ServerSocketChannelFactory
         return new NioServerSocketChannel(this, pipeline, sink);
     }
 
+    /**
+     * Returns the number of the times the I/O workers of this factory
+     * have replaced their selector because it kept returning prematurely
+     * without any selected key.  A non-zero value usually means that the
+     * NIO provider suffers from the epoll spin bug.
+     */
+    public long getSelectorRebuildCount() {
+        return sink.getSelectorRebuildCount();
+    }
 }
@@ -22,6 +22,7 @@
  */
 package com.wuyiccc.hellonetty.channel.socket.nio;
 
+import com.wuyiccc.hellonetty.buffer.ChannelBuffer;
 import com.wuyiccc.hellonetty.channel.*;
 import com.wuyiccc.hellonetty.logging.InternalLogger;
 import com.wuyiccc.hellonetty.logging.InternalLoggerFactory;
@@ -130,8 +131,20 @@ class NioServerSocketPipelineSink extends AbstractChannelSink {
         } else if (e instanceof MessageEvent) {
             MessageEvent event = (MessageEvent) e;
             NioSocketChannel channel = (NioSocketChannel) event.getChannel();
+            Object message = event.getMessage();
+            if (message instanceof ChannelBuffer) {
+                channel.updateWriteBufferSize(
+                        ((ChannelBuffer) message).readableBytes());
+            } else if (message instanceof FileRegion) {
+                channel.updateWriteBufferSize(
+                        ((FileRegion) message).getCount());
+            }
+            // The message is written when a flush is requested.
             channel.writeBuffer.offer(event);
+        } else if (e instanceof FlushEvent) {
+            NioSocketChannel channel = (NioSocketChannel) e.getChannel();
             NioWorker.write(channel, true);
+            e.getFuture().setSuccess();
         }
     }
 
@@ -183,6 +196,14 @@ class NioServerSocketPipelineSink extends AbstractChannelSink {
         }
     }
 
+    long getSelectorRebuildCount() {
+        long count = 0;
+        for (NioWorker w: workers) {
+            count += w.getSelectorRebuildCount();
+        }
+        return count;
+    }
+
     NioWorker nextWorker() {
         return workers[Math.abs(
                 workerIndex.getAndIncrement() % workers.length)];
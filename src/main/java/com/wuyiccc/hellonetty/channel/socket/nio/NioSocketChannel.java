@@ -23,7 +23,7 @@
 package com.wuyiccc.hellonetty.channel.socket.nio;
 
 import com.wuyiccc.hellonetty.channel.*;
-import com.wuyiccc.hellonetty.util.LinkedTransferQueue;
+import com.wuyiccc.hellonetty.util.MpscLinkedQueue;
 
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
@@ -49,9 +49,10 @@ abstract class NioSocketChannel extends AbstractChannel
 
     final AtomicBoolean writeTaskInTaskQueue = new AtomicBoolean();
     final Runnable writeTask = new WriteTask();
-    final Queue<MessageEvent> writeBuffer = new LinkedTransferQueue<MessageEvent>();
+    // Offered by any thread, polled while writeLock is held.
+    final Queue<MessageEvent> writeBuffer = new MpscLinkedQueue<MessageEvent>();
     MessageEvent currentWriteEvent;
-    int currentWriteIndex;
+    long currentWriteIndex;
 
     public NioSocketChannel(
             Channel parent, ChannelFactory factory,
@@ -96,6 +97,24 @@ abstract class NioSocketChannel extends AbstractChannel
         super.setInterestOpsNow(interestOps);
     }
 
+    @Override
+    protected int getRawInterestOps() {
+        return super.getRawInterestOps();
+    }
+
+    @Override
+    protected long getWriteBufferSize() {
+        return super.getWriteBufferSize();
+    }
+
+    void updateWriteBufferSize(long delta) {
+        NioSocketChannelConfig cfg = getConfig();
+        updateWriteBufferSize(
+                delta,
+                cfg.getWriteBufferLowWaterMark(),
+                cfg.getWriteBufferHighWaterMark());
+    }
+
     @Override
     protected ChannelFuture getSucceededFuture() {
         return super.getSucceededFuture();
@@ -27,6 +27,7 @@ import com.wuyiccc.hellonetty.channel.socket.SocketChannel;
 import com.wuyiccc.hellonetty.channel.socket.SocketChannelConfig;
 
 import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.WritableByteChannel;
 
 /**
@@ -44,9 +45,15 @@ import java.nio.channels.WritableByteChannel;
  * </tr><tr>
  * <td>{@code "writeSpinCount"}</td><td>{@link #setWriteSpinCount(int)}</td>
  * </tr><tr>
+ * <td>{@code "gatheringWriteLimit"}</td><td>{@link #setGatheringWriteLimit(int)}</td>
+ * </tr><tr>
  * <td>{@code "receiveBufferSizePredictor"}</td><td>{@link #setReceiveBufferSizePredictor(ReceiveBufferSizePredictor)}</td>
  * </tr><tr>
+ * <td>{@code "receiveBufferAllocator"}</td><td>{@link #setReceiveBufferAllocator(ReceiveBufferAllocator)}</td>
+ * </tr><tr>
  * <td>{@code "readWriteFair"}</td><td>{@link #setReadWriteFair(boolean)}</td>
+ * </tr><tr>
+ * <td>{@code "singleWriter"}</td><td>{@link #setSingleWriter(boolean)}</td>
  * </tr>
  * </table>
  *
@@ -56,6 +63,7 @@ import java.nio.channels.WritableByteChannel;
  * @version $Rev$, $Date$
  *
  * @apiviz.has com.wuyiccc.hellonetty.channel.socket.nio.ReceiveBufferSizePredictor
+ * @apiviz.has com.wuyiccc.hellonetty.channel.socket.nio.ReceiveBufferAllocator
  */
 public interface NioSocketChannelConfig extends SocketChannelConfig {
 
@@ -80,6 +88,29 @@ public interface NioSocketChannelConfig extends SocketChannelConfig {
      */
     void setWriteSpinCount(int writeSpinCount);
 
+    /**
+     * Returns the maximum number of queued messages which are written with
+     * a single {@link GatheringByteChannel#write(ByteBuffer[])} call.
+     * Writing many small messages at once reduces the number of system
+     * calls.  {@code 1} disables the gathering write.  The gathering write
+     * is not performed when {@link #isReadWriteFair() readWriteFair} is
+     * {@code true}.  The default value is {@code 16}.
+     */
+    int getGatheringWriteLimit();
+
+    /**
+     * Sets the maximum number of queued messages which are written with
+     * a single {@link GatheringByteChannel#write(ByteBuffer[])} call.
+     * Writing many small messages at once reduces the number of system
+     * calls.  {@code 1} disables the gathering write.  The gathering write
+     * is not performed when {@link #isReadWriteFair() readWriteFair} is
+     * {@code true}.  The default value is {@code 16}.
+     *
+     * @throws IllegalArgumentException
+     *         if the specified value is {@code 0} or less than {@code 0}
+     */
+    void setGatheringWriteLimit(int gatheringWriteLimit);
+
     /**
      * Returns the {@link ReceiveBufferSizePredictor} which predicts the
      * number of readable bytes in the socket receive buffer.  The default
@@ -95,6 +126,22 @@ public interface NioSocketChannelConfig extends SocketChannelConfig {
      */
     void setReceiveBufferSizePredictor(ReceiveBufferSizePredictor predictor);
 
+    /**
+     * Returns the {@link ReceiveBufferAllocator} which provides the buffer
+     * that the inbound data is read into.  The default allocator is
+     * {@link HeapReceiveBufferAllocator}.
+     */
+    ReceiveBufferAllocator getReceiveBufferAllocator();
+
+    /**
+     * Sets the {@link ReceiveBufferAllocator} which provides the buffer
+     * that the inbound data is read into.  The default allocator is
+     * {@link HeapReceiveBufferAllocator}.  Use
+     * {@link DirectReceiveBufferAllocator} or
+     * {@link DirectCopyReceiveBufferAllocator} to read into a direct buffer.
+     */
+    void setReceiveBufferAllocator(ReceiveBufferAllocator allocator);
+
     /**
      * Returns {@code true} if and only if an I/O thread should do its effort
      * to balance the ratio of read and write operations.  Assuring
@@ -114,4 +161,24 @@ public interface NioSocketChannelConfig extends SocketChannelConfig {
      * {@code false}.
      */
     void setReadWriteFair(boolean fair);
+
+    /**
+     * Returns {@code true} if and only if every socket write of the channel
+     * is performed by the I/O thread which owns the channel.  In this mode,
+     * a thread which requests a write or a flush only puts the message into
+     * a wait-free queue and wakes up the I/O thread, even if the I/O thread
+     * is not running yet or the request was made by the I/O thread itself.
+     * The queued messages are written after the I/O thread has handled the
+     * selected keys, so that the messages written while handling them are
+     * written at once.  The default value is {@code false}.
+     */
+    boolean isSingleWriter();
+
+    /**
+     * Sets if every socket write of the channel should be performed by the
+     * I/O thread which owns the channel.  It is recommended to set this
+     * property before the channel is connected.  The default value is
+     * {@code false}.
+     */
+    void setSingleWriter(boolean singleWriter);
 }
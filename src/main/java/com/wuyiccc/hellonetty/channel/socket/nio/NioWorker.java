@@ -23,10 +23,11 @@
 package com.wuyiccc.hellonetty.channel.socket.nio;
 
 import com.wuyiccc.hellonetty.buffer.ChannelBuffer;
-import com.wuyiccc.hellonetty.buffer.ChannelBuffers;
+import com.wuyiccc.hellonetty.buffer.ChannelBufferFactory;
 import com.wuyiccc.hellonetty.channel.Channel;
 import com.wuyiccc.hellonetty.channel.ChannelException;
 import com.wuyiccc.hellonetty.channel.ChannelFuture;
+import com.wuyiccc.hellonetty.channel.FileRegion;
 import com.wuyiccc.hellonetty.channel.MessageEvent;
 import com.wuyiccc.hellonetty.logging.InternalLogger;
 import com.wuyiccc.hellonetty.logging.InternalLoggerFactory;
@@ -34,6 +35,7 @@ import com.wuyiccc.hellonetty.util.LinkedTransferQueue;
 import com.wuyiccc.hellonetty.util.ThreadRenamingRunnable;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.*;
 import java.util.Iterator;
 import java.util.Queue;
@@ -60,7 +62,18 @@ class NioWorker implements Runnable {
         InternalLoggerFactory.getInstance(NioWorker.class);
 
     private static final int CONSTRAINT_LEVEL = NioProviderMetadata.CONSTRAINT_LEVEL;
-    private static final boolean USE_DIRECT_BUFFER = false;  // Hard-coded for now
+
+    /**
+     * The source buffers of a gathering write, reused by each thread which
+     * performs gathering writes.
+     */
+    private static final ThreadLocal<GatheringBuffers> gatheringBuffers =
+        new ThreadLocal<GatheringBuffers>() {
+            @Override
+            protected GatheringBuffers initialValue() {
+                return new GatheringBuffers();
+            }
+        };
 
     private final int bossId;
     private final int id;
@@ -68,6 +81,9 @@ class NioWorker implements Runnable {
     private final AtomicBoolean started = new AtomicBoolean();
     private volatile Thread thread;
     private volatile Selector selector;
+    private volatile Selector previousSelector;
+    private SelectedSelectionKeySet selectedKeys;
+    private volatile long selectorRebuildCount;
     private final AtomicBoolean wakenUp = new AtomicBoolean();
     private final ReadWriteLock selectorGuard = new ReentrantReadWriteLock();
     private final Object shutdownLock = new Object();
@@ -85,7 +101,9 @@ class NioWorker implements Runnable {
         Selector selector;
         if (firstChannel) {
             try {
-                this.selector = selector = Selector.open();
+                selector = Selector.open();
+                selectedKeys = SelectorUtil.optimize(selector);
+                this.selector = selector;
             } catch (IOException e) {
                 throw new ChannelException(
                         "Failed to create a selector.", e);
@@ -101,7 +119,7 @@ class NioWorker implements Runnable {
         }
 
         boolean server = !(channel instanceof NioClientSocketChannel);
-        Runnable registerTask = new RegisterTask(selector, channel, future, server);
+        Runnable registerTask = new RegisterTask(channel, future, server);
         if (firstChannel) {
             registerTask.run();
             String threadName =
@@ -125,6 +143,8 @@ class NioWorker implements Runnable {
 
         boolean shutdown = false;
         Selector selector = this.selector;
+        SelectedSelectionKeySet selectedKeys = this.selectedKeys;
+        int prematureReturns = 0;
         for (;;) {
             wakenUp.set(false);
 
@@ -136,15 +156,35 @@ class NioWorker implements Runnable {
             }
 
             try {
-                int selectedKeyCount = selector.select(500);
+                long selectStartTime = System.nanoTime();
+                int selectedKeyCount = selector.select(SelectorUtil.SELECT_TIMEOUT);
+
+                if (SelectorUtil.REBUILD_THRESHOLD > 0 &&
+                    selectedKeyCount == 0 && !wakenUp.get() &&
+                    SelectorUtil.isPrematureReturn(selectStartTime)) {
+                    if (++ prematureReturns == SelectorUtil.REBUILD_THRESHOLD) {
+                        prematureReturns = 0;
+                        selector = rebuildSelector(selector);
+                        selectedKeys = this.selectedKeys;
+                        selectedKeyCount = selector.selectNow();
+                    }
+                } else {
+                    prematureReturns = 0;
+                }
 
                 processRegisterTaskQueue();
                 processWriteTaskQueue();
 
-                if (selectedKeyCount > 0) {
+                if (selectedKeys != null) {
+                    processSelectedKeys(selectedKeys);
+                } else if (selectedKeyCount > 0) {
                     processSelectedKeys(selector.selectedKeys());
                 }
 
+                // Run the write tasks scheduled while handling the keys
+                // (see NioSocketChannelConfig.isSingleWriter()).
+                processWriteTaskQueue();
+
                 // Exit the loop when there's nothing to handle.
                 // The shutdown flag is used to delay the shutdown of this
                 // loop to avoid excessive Selector creation when
@@ -191,6 +231,55 @@ class NioWorker implements Runnable {
         }
     }
 
+    /**
+     * Returns the number of the selector rebuilds this worker has performed.
+     */
+    long getSelectorRebuildCount() {
+        return selectorRebuildCount;
+    }
+
+    /**
+     * Replaces the specified selector, which has been returning prematurely,
+     * with a new one.  Returns the old selector if a new one could not be
+     * opened.
+     */
+    private Selector rebuildSelector(Selector oldSelector) {
+        Selector newSelector;
+        try {
+            newSelector = Selector.open();
+        } catch (IOException e) {
+            logger.warn("Failed to create a new selector.", e);
+            return oldSelector;
+        }
+
+        // Publish the new selector before moving the keys, so that a thread
+        // which finds its key cancelled by the move finds the new key.  The
+        // keys which have not been moved yet are found in the old selector
+        // meanwhile.  (See selectionKey())
+        previousSelector = oldSelector;
+        selectedKeys = SelectorUtil.optimize(newSelector);
+        selector = newSelector;
+        int movedKeys;
+        try {
+            movedKeys = SelectorUtil.moveKeys(oldSelector, newSelector);
+        } finally {
+            previousSelector = null;
+        }
+        selectorRebuildCount ++;
+
+        try {
+            oldSelector.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close a selector.", e);
+        }
+
+        logger.info(
+                "Rebuilt the selector of the I/O worker #" + bossId + '-' + id +
+                " after " + SelectorUtil.REBUILD_THRESHOLD +
+                " premature returns (moved keys: " + movedKeys + ")");
+        return newSelector;
+    }
+
     private void processRegisterTaskQueue() {
         for (;;) {
             final Runnable task = registerTaskQueue.poll();
@@ -217,100 +306,63 @@ class NioWorker implements Runnable {
         for (Iterator<SelectionKey> i = selectedKeys.iterator(); i.hasNext();) {
             SelectionKey k = i.next();
             i.remove();
-
-            if (!k.isValid()) {
-                close(k);
-                continue;
-            }
-
-            if (k.isReadable()) {
-
-                // TODO Replace ReceiveBufferSizePredictor with
-                //      ChannelBufferAllocator and let user specify it per
-                //      Channel. (Netty 3.1)
-
-                if (USE_DIRECT_BUFFER) {
-                    readIntoDirectBuffer(k);
-                } else {
-                    readIntoHeapBuffer(k);
-                }
-            }
-
-            if (!k.isValid()) {
-                close(k);
-                continue;
-            }
-
-            if (k.isWritable()) {
-                write(k);
-            }
+            processSelectedKey(k);
         }
     }
 
-    private static void readIntoHeapBuffer(SelectionKey k) {
-        ScatteringByteChannel ch = (ScatteringByteChannel) k.channel();
-        NioSocketChannel channel = (NioSocketChannel) k.attachment();
-
-        ReceiveBufferSizePredictor predictor =
-            channel.getConfig().getReceiveBufferSizePredictor();
-
-        ChannelBuffer buf = ChannelBuffers.buffer(predictor.nextReceiveBufferSize());
-
-        int ret = 0;
-        int readBytes = 0;
-        boolean failure = true;
+    private static void processSelectedKeys(SelectedSelectionKeySet selectedKeys) {
         try {
-            while ((ret = buf.writeBytes(ch, buf.writableBytes())) > 0) {
-                readBytes += ret;
-                if (!buf.writable()) {
-                    break;
-                }
+            for (int i = 0; i < selectedKeys.size(); i ++) {
+                processSelectedKey(selectedKeys.get(i));
             }
-            failure = false;
-        } catch (AsynchronousCloseException e) {
-            // Can happen, and doesn't need a user attention.
-        } catch (Throwable t) {
-            fireExceptionCaught(channel, t);
+        } finally {
+            selectedKeys.reset();
         }
+    }
 
-        if (readBytes > 0) {
-            // Update the predictor.
-            predictor.previousReceiveBufferSize(readBytes);
+    private static void processSelectedKey(SelectionKey k) {
+        if (!k.isValid()) {
+            close(k);
+            return;
+        }
 
-            // Fire the event.
-            fireMessageReceived(channel, buf);
+        if (k.isReadable()) {
+            read(k);
         }
 
-        if (ret < 0 || failure) {
+        if (!k.isValid()) {
             close(k);
+            return;
         }
-    }
 
-    private ChannelBuffer preallocatedDirectBuffer;
+        if (k.isWritable()) {
+            write(k);
+        }
+    }
 
-    private static void readIntoDirectBuffer(SelectionKey k) {
+    private static void read(SelectionKey k) {
         ScatteringByteChannel ch = (ScatteringByteChannel) k.channel();
         NioSocketChannel channel = (NioSocketChannel) k.attachment();
 
         ReceiveBufferSizePredictor predictor =
             channel.getConfig().getReceiveBufferSizePredictor();
 
-        ChannelBuffer preallocatedDirectBuffer = channel.getWorker().preallocatedDirectBuffer;
-        NioWorker worker = channel.getWorker();
-        worker.preallocatedDirectBuffer = null;
+        ReceiveBufferAllocator allocator =
+            channel.getConfig().getReceiveBufferAllocator();
 
-        if (preallocatedDirectBuffer == null) {
-            // 分配1mb
-            preallocatedDirectBuffer = ChannelBuffers.directBuffer(1048576);
-        }
+        ChannelBufferFactory bufferFactory =
+            channel.getConfig().getBufferFactory();
+
+        ChannelBuffer buf = allocator.allocate(
+                predictor.nextReceiveBufferSize(), bufferFactory);
 
         int ret = 0;
         int readBytes = 0;
         boolean failure = true;
         try {
-            while ((ret = preallocatedDirectBuffer.writeBytes(ch, preallocatedDirectBuffer.writableBytes())) > 0) {
+            while ((ret = buf.writeBytes(ch, buf.writableBytes())) > 0) {
                 readBytes += ret;
-                if (!preallocatedDirectBuffer.writable()) {
+                if (!buf.writable()) {
                     break;
                 }
             }
@@ -326,16 +378,10 @@ class NioWorker implements Runnable {
             predictor.previousReceiveBufferSize(readBytes);
 
             // Fire the event.
-            ChannelBuffer slice = preallocatedDirectBuffer.slice(
-                    preallocatedDirectBuffer.readerIndex(),
-                    preallocatedDirectBuffer.readableBytes());
-            preallocatedDirectBuffer.readerIndex(preallocatedDirectBuffer.writerIndex());
-            if (preallocatedDirectBuffer.writable()) {
-                worker.preallocatedDirectBuffer = preallocatedDirectBuffer;
-            }
-            fireMessageReceived(channel, slice);
-        } else if (readBytes == 0) {
-            worker.preallocatedDirectBuffer = preallocatedDirectBuffer;
+            fireMessageReceived(channel, allocator.complete(buf, bufferFactory));
+        } else {
+            // Nobody has seen the buffer yet - return it to where it came from.
+            buf.release();
         }
 
         if (ret < 0 || failure) {
@@ -354,20 +400,8 @@ class NioWorker implements Runnable {
     }
 
     static void write(final NioSocketChannel channel, boolean mightNeedWakeup) {
-        if (mightNeedWakeup) {
-            NioWorker worker = channel.getWorker();
-            if (worker != null) {
-                Thread workerThread = worker.thread;
-                if (workerThread != null && Thread.currentThread() != workerThread) {
-                    if (channel.writeTaskInTaskQueue.compareAndSet(false, true)) {
-                        worker.writeTaskQueue.offer(channel.writeTask);
-                    }
-                    if (worker.wakenUp.compareAndSet(false, true)) {
-                        worker.selector.wakeup();
-                    }
-                    return;
-                }
-            }
+        if (mightNeedWakeup && scheduleWriteTask(channel)) {
+            return;
         }
 
         if (!channel.isConnected()) {
@@ -386,12 +420,54 @@ class NioWorker implements Runnable {
                 cfg.getReceiveBufferSizePredictor().nextReceiveBufferSize();
             maxWrittenBytes = previousReceiveBufferSize + previousReceiveBufferSize >>> 1;
             writeFair(channel, mightNeedWakeup, writeSpinCount, maxWrittenBytes);
+        } else if (cfg.getGatheringWriteLimit() > 1) {
+            writeGathering(
+                    channel, mightNeedWakeup, writeSpinCount,
+                    cfg.getGatheringWriteLimit());
         } else {
             writeUnfair(channel, mightNeedWakeup, writeSpinCount);
         }
 
     }
 
+    /**
+     * Hands the write operation of the specified channel over to the worker
+     * thread which owns the channel.
+     *
+     * @return {@code false} if the caller has to perform the write operation
+     *         by itself
+     */
+    private static boolean scheduleWriteTask(NioSocketChannel channel) {
+        NioWorker worker = channel.getWorker();
+        if (worker == null) {
+            return false;
+        }
+
+        Thread workerThread = worker.thread;
+        boolean inWorkerThread = Thread.currentThread() == workerThread;
+        if (channel.getConfig().isSingleWriter()) {
+            // A closed channel has no worker which would run the task.
+            if (!channel.isOpen()) {
+                return false;
+            }
+        } else if (workerThread == null || inWorkerThread) {
+            return false;
+        }
+
+        if (channel.writeTaskInTaskQueue.compareAndSet(false, true)) {
+            worker.writeTaskQueue.offer(channel.writeTask);
+        }
+
+        // The worker thread runs the task after handling the selected keys.
+        if (!inWorkerThread) {
+            Selector selector = worker.selector;
+            if (selector != null && worker.wakenUp.compareAndSet(false, true)) {
+                selector.wakeup();
+            }
+        }
+        return true;
+    }
+
     private static void writeUnfair(NioSocketChannel channel,
             boolean mightNeedWakeup, final int writeSpinCount) {
 
@@ -400,8 +476,9 @@ class NioWorker implements Runnable {
         boolean removeOpWrite = false;
 
         MessageEvent evt;
-        ChannelBuffer buf;
-        int bufIdx;
+        Object m;
+        long idx;
+        long flushedBytes = 0;
 
         synchronized (channel.writeLock) {
             Queue<MessageEvent> writeBuffer = channel.writeBuffer;
@@ -414,40 +491,43 @@ class NioWorker implements Runnable {
                         removeOpWrite = true;
                         break;
                     }
-                    buf = (ChannelBuffer) evt.getMessage();
-                    bufIdx = buf.readerIndex();
+                    m = evt.getMessage();
+                    idx = startIndex(m);
                 } else {
-                    buf = (ChannelBuffer) evt.getMessage();
-                    bufIdx = channel.currentWriteIndex;
+                    m = evt.getMessage();
+                    idx = channel.currentWriteIndex;
                 }
 
                 try {
+                    long endIdx = endIndex(m);
                     for (int i = writeSpinCount; i > 0; i --) {
-                        int localWrittenBytes = buf.getBytes(
-                            bufIdx,
-                            channel.socket,
-                            buf.writerIndex() - bufIdx);
+                        long localWrittenBytes = writeMessage(
+                            channel, m, idx, endIdx - idx);
 
                         if (localWrittenBytes != 0) {
-                            bufIdx += localWrittenBytes;
+                            flushedBytes += localWrittenBytes;
+                            idx += localWrittenBytes;
                             break;
                         }
                     }
 
-                    if (bufIdx == buf.writerIndex()) {
+                    if (idx == endIdx) {
                         // Successful write - proceed to the next message.
+                        releaseMessage(m);
                         evt.getFuture().setSuccess();
                         evt = null;
                     } else {
                         // Not written fully - perhaps the kernel buffer is full.
                         channel.currentWriteEvent = evt;
-                        channel.currentWriteIndex = bufIdx;
+                        channel.currentWriteIndex = idx;
                         addOpWrite = true;
                         break;
                     }
                 } catch (AsynchronousCloseException e) {
                     // Doesn't need a user attention - ignore.
                 } catch (Throwable t) {
+                    flushedBytes += endIndex(m) - idx;
+                    releaseMessage(m);
                     evt.getFuture().setFailure(t);
                     evt = null;
                     fireExceptionCaught(channel, t);
@@ -459,6 +539,10 @@ class NioWorker implements Runnable {
             }
         }
 
+        if (flushedBytes != 0) {
+            channel.updateWriteBufferSize(-flushedBytes);
+        }
+
         if (open) {
             if (addOpWrite) {
                 setOpWrite(channel, true, mightNeedWakeup);
@@ -468,6 +552,160 @@ class NioWorker implements Runnable {
         }
     }
 
+    private static void writeGathering(NioSocketChannel channel,
+            boolean mightNeedWakeup, final int writeSpinCount,
+            final int gatheringWriteLimit) {
+
+        boolean open = true;
+        boolean addOpWrite = false;
+        boolean removeOpWrite = false;
+
+        MessageEvent evt;
+        Object m;
+        long idx;
+        long flushedBytes = 0;
+        GatheringBuffers buffers = gatheringBuffers.get();
+        buffers.ensureCapacity(gatheringWriteLimit);
+
+        synchronized (channel.writeLock) {
+            Queue<MessageEvent> writeBuffer = channel.writeBuffer;
+            evt = channel.currentWriteEvent;
+            for (;;) {
+                if (evt == null) {
+                    evt = writeBuffer.poll();
+                    if (evt == null) {
+                        channel.currentWriteEvent = null;
+                        removeOpWrite = true;
+                        break;
+                    }
+                    m = evt.getMessage();
+                    idx = startIndex(m);
+                } else {
+                    m = evt.getMessage();
+                    idx = channel.currentWriteIndex;
+                }
+
+                // Gather the current message and the messages queued after
+                // it.  The queued messages are left in the queue until they
+                // are written fully, so that a partial write does not
+                // change the order of the messages.  A file region is
+                // always transferred alone.
+                int gatheredMessages = 1;
+                buffers.clear();
+                if (m instanceof ChannelBuffer) {
+                    ChannelBuffer buf = (ChannelBuffer) m;
+                    gather(buffers, buf, (int) idx, buf.writerIndex() - (int) idx);
+                    Iterator<MessageEvent> it = writeBuffer.iterator();
+                    while (gatheredMessages < gatheringWriteLimit && it.hasNext()) {
+                        Object next = it.next().getMessage();
+                        if (!(next instanceof ChannelBuffer)) {
+                            break;
+                        }
+                        ChannelBuffer b = (ChannelBuffer) next;
+                        gather(buffers, b, b.readerIndex(), b.readableBytes());
+                        gatheredMessages ++;
+                    }
+                }
+
+                try {
+                    long writtenBytes = 0;
+                    if (m instanceof FileRegion) {
+                        for (int i = writeSpinCount; i > 0; i --) {
+                            writtenBytes = writeMessage(
+                                    channel, m, idx, endIndex(m) - idx);
+                            if (writtenBytes != 0) {
+                                break;
+                            }
+                        }
+                    } else if (buffers.size != 0) {
+                        try {
+                            for (int i = writeSpinCount; i > 0; i --) {
+                                writtenBytes = channel.socket.write(
+                                        buffers.array, 0, buffers.size);
+                                if (writtenBytes != 0) {
+                                    break;
+                                }
+                            }
+                        } finally {
+                            // Clear before notifying the futures, whose
+                            // listeners might write to another channel in
+                            // this thread.
+                            buffers.clear();
+                        }
+                    }
+                    flushedBytes += writtenBytes;
+
+                    // Notify the futures of the fully written messages.
+                    for (;;) {
+                        long remaining = endIndex(m) - idx;
+                        if (remaining > writtenBytes) {
+                            idx += writtenBytes;
+                            break;
+                        }
+
+                        writtenBytes -= remaining;
+                        releaseMessage(m);
+                        evt.getFuture().setSuccess();
+                        if (-- gatheredMessages == 0) {
+                            evt = null;
+                            break;
+                        }
+
+                        evt = writeBuffer.poll();
+                        m = evt.getMessage();
+                        idx = startIndex(m);
+                    }
+
+                    if (evt != null) {
+                        // Not written fully - perhaps the kernel buffer is full.
+                        channel.currentWriteEvent = evt;
+                        channel.currentWriteIndex = idx;
+                        addOpWrite = true;
+                        break;
+                    }
+                } catch (AsynchronousCloseException e) {
+                    // Doesn't need a user attention - ignore.
+                } catch (Throwable t) {
+                    channel.currentWriteEvent = null;
+                    flushedBytes += endIndex(m) - idx;
+                    releaseMessage(m);
+                    evt.getFuture().setFailure(t);
+                    evt = null;
+                    fireExceptionCaught(channel, t);
+                    if (t instanceof IOException) {
+                        open = false;
+                        close(channel, channel.getSucceededFuture());
+                    }
+                }
+            }
+        }
+
+        // Do not keep the buffers of a failed write reachable.
+        buffers.clear();
+
+        if (flushedBytes != 0) {
+            channel.updateWriteBufferSize(-flushedBytes);
+        }
+
+        if (open) {
+            if (addOpWrite) {
+                setOpWrite(channel, true, mightNeedWakeup);
+            } else if (removeOpWrite) {
+                setOpWrite(channel, false, mightNeedWakeup);
+            }
+        }
+    }
+
+    private static void gather(
+            GatheringBuffers buffers, ChannelBuffer buf, int index, int length) {
+        if (length == 0) {
+            return;
+        }
+        for (ByteBuffer b: buf.toByteBuffers(index, length)) {
+            buffers.add(b);
+        }
+    }
+
     private static void writeFair(NioSocketChannel channel,
             boolean mightNeedWakeup, final int writeSpinCount,
             final int maxWrittenBytes) {
@@ -477,9 +715,10 @@ class NioWorker implements Runnable {
         boolean removeOpWrite = false;
 
         MessageEvent evt;
-        ChannelBuffer buf;
-        int bufIdx;
-        int writtenBytes = 0;
+        Object m;
+        long idx;
+        long flushedBytes = 0;
+        long writtenBytes = 0;
 
         synchronized (channel.writeLock) {
             Queue<MessageEvent> writeBuffer = channel.writeBuffer;
@@ -492,43 +731,47 @@ class NioWorker implements Runnable {
                         removeOpWrite = true;
                         break;
                     }
-                    buf = (ChannelBuffer) evt.getMessage();
-                    bufIdx = buf.readerIndex();
+                    m = evt.getMessage();
+                    idx = startIndex(m);
                 } else {
-                    buf = (ChannelBuffer) evt.getMessage();
-                    bufIdx = channel.currentWriteIndex;
+                    m = evt.getMessage();
+                    idx = channel.currentWriteIndex;
                 }
 
                 try {
+                    long endIdx = endIndex(m);
                     for (int i = writeSpinCount; i > 0; i --) {
-                        int localWrittenBytes = buf.getBytes(
-                            bufIdx,
-                            channel.socket,
+                        long localWrittenBytes = writeMessage(
+                            channel, m, idx,
                             Math.min(
-                                    maxWrittenBytes - writtenBytes,
-                                    buf.writerIndex() - bufIdx));
+                                    Math.max(0, maxWrittenBytes - writtenBytes),
+                                    endIdx - idx));
 
                         if (localWrittenBytes != 0) {
+                            flushedBytes += localWrittenBytes;
                             writtenBytes += localWrittenBytes;
-                            bufIdx += localWrittenBytes;
+                            idx += localWrittenBytes;
                             break;
                         }
                     }
 
-                    if (bufIdx == buf.writerIndex()) {
+                    if (idx == endIdx) {
                         // Successful write - proceed to the next message.
+                        releaseMessage(m);
                         evt.getFuture().setSuccess();
                         evt = null;
                     } else {
                         // Not written fully - perhaps the kernel buffer is full.
                         channel.currentWriteEvent = evt;
-                        channel.currentWriteIndex = bufIdx;
+                        channel.currentWriteIndex = idx;
                         addOpWrite = true;
                         break;
                     }
                 } catch (AsynchronousCloseException e) {
                     // Doesn't need a user attention - ignore.
                 } catch (Throwable t) {
+                    flushedBytes += endIndex(m) - idx;
+                    releaseMessage(m);
                     evt.getFuture().setFailure(t);
                     evt = null;
                     fireExceptionCaught(channel, t);
@@ -540,6 +783,10 @@ class NioWorker implements Runnable {
             }
         }
 
+        if (flushedBytes != 0) {
+            channel.updateWriteBufferSize(-flushedBytes);
+        }
+
         if (open) {
             if (addOpWrite) {
                 setOpWrite(channel, true, mightNeedWakeup);
@@ -549,6 +796,69 @@ class NioWorker implements Runnable {
         }
     }
 
+    private static long startIndex(Object message) {
+        if (message instanceof FileRegion) {
+            return 0;
+        }
+        return ((ChannelBuffer) message).readerIndex();
+    }
+
+    private static long endIndex(Object message) {
+        if (message instanceof FileRegion) {
+            return ((FileRegion) message).getCount();
+        }
+        return ((ChannelBuffer) message).writerIndex();
+    }
+
+    /**
+     * Writes at most {@code length} bytes of the specified message, starting
+     * from {@code index}.  A {@link FileRegion} is transferred with
+     * {@link FileChannel#transferTo(long, long, WritableByteChannel)}, which
+     * may write more than {@code length} bytes up to the end of the region.
+     */
+    private static long writeMessage(
+            NioSocketChannel channel, Object message, long index, long length)
+            throws IOException {
+        if (message instanceof FileRegion) {
+            return ((FileRegion) message).transferTo(channel.socket, index);
+        }
+        return ((ChannelBuffer) message).getBytes(
+                (int) index, channel.socket, (int) length);
+    }
+
+    private static void releaseMessage(Object message) {
+        if (message instanceof FileRegion) {
+            ((FileRegion) message).releaseExternalResources();
+        } else {
+            ((ChannelBuffer) message).release();
+        }
+    }
+
+    /**
+     * Returns the valid selection key of the specified channel, or
+     * {@code null} if the channel is not registered or its key has been
+     * cancelled.  The caller must hold the {@code interestOpsLock} of the
+     * channel, which keeps {@link #rebuildSelector(Selector)} from moving the
+     * key to a new selector until the caller is done with it.
+     */
+    private static SelectionKey selectionKey(
+            NioWorker worker, NioSocketChannel channel) {
+        SelectionKey key = channel.socket.keyFor(worker.selector);
+        if (key != null && key.isValid()) {
+            return key;
+        }
+
+        // The selector is being rebuilt and the key has not been moved yet.
+        Selector previousSelector = worker.previousSelector;
+        if (previousSelector != null) {
+            key = channel.socket.keyFor(previousSelector);
+            if (key != null && key.isValid()) {
+                return key;
+            }
+        }
+        return null;
+    }
+
     private static void setOpWrite(
             NioSocketChannel channel, boolean opWrite, boolean mightNeedWakeup) {
         NioWorker worker = channel.getWorker();
@@ -559,24 +869,21 @@ class NioWorker implements Runnable {
             return;
         }
 
-        Selector selector = worker.selector;
-        SelectionKey key = channel.socket.keyFor(selector);
-        if (key == null) {
-            return;
-        }
-        if (!key.isValid()) {
-            close(key);
-            return;
-        }
         int interestOps;
         boolean changed = false;
 
         // interestOps can change at any time and at any thread.
         // Acquire a lock to avoid possible race condition.
         synchronized (channel.interestOpsLock) {
+            SelectionKey key = selectionKey(worker, channel);
+            if (key == null) {
+                return;
+            }
+            Selector selector = key.selector();
+
             if (opWrite) {
                 if (!mightNeedWakeup) {
-                    interestOps = channel.getInterestOps();
+                    interestOps = channel.getRawInterestOps();
                     if ((interestOps & SelectionKey.OP_WRITE) == 0) {
                         interestOps |= SelectionKey.OP_WRITE;
                         key.interestOps(interestOps);
@@ -585,7 +892,7 @@ class NioWorker implements Runnable {
                 } else {
                     switch (CONSTRAINT_LEVEL) {
                     case 0:
-                        interestOps = channel.getInterestOps();
+                        interestOps = channel.getRawInterestOps();
                         if ((interestOps & SelectionKey.OP_WRITE) == 0) {
                             interestOps |= SelectionKey.OP_WRITE;
                             key.interestOps(interestOps);
@@ -598,7 +905,7 @@ class NioWorker implements Runnable {
                         break;
                     case 1:
                     case 2:
-                        interestOps = channel.getInterestOps();
+                        interestOps = channel.getRawInterestOps();
                         if ((interestOps & SelectionKey.OP_WRITE) == 0) {
                             if (Thread.currentThread() == worker.thread) {
                                 interestOps |= SelectionKey.OP_WRITE;
@@ -625,7 +932,7 @@ class NioWorker implements Runnable {
                 }
             } else {
                 if (!mightNeedWakeup) {
-                    interestOps = channel.getInterestOps();
+                    interestOps = channel.getRawInterestOps();
                     if ((interestOps & SelectionKey.OP_WRITE) != 0) {
                         interestOps &= ~SelectionKey.OP_WRITE;
                         key.interestOps(interestOps);
@@ -634,7 +941,7 @@ class NioWorker implements Runnable {
                 } else {
                     switch (CONSTRAINT_LEVEL) {
                     case 0:
-                        interestOps = channel.getInterestOps();
+                        interestOps = channel.getRawInterestOps();
                         if ((interestOps & SelectionKey.OP_WRITE) != 0) {
                             interestOps &= ~SelectionKey.OP_WRITE;
                             key.interestOps(interestOps);
@@ -647,7 +954,7 @@ class NioWorker implements Runnable {
                         break;
                     case 1:
                     case 2:
-                        interestOps = channel.getInterestOps();
+                        interestOps = channel.getRawInterestOps();
                         if ((interestOps & SelectionKey.OP_WRITE) != 0) {
                             if (Thread.currentThread() == worker.thread) {
                                 interestOps &= ~SelectionKey.OP_WRITE;
@@ -676,8 +983,10 @@ class NioWorker implements Runnable {
         }
 
         if (changed) {
+            // The OP_WRITE flag of the selection key is not visible to a
+            // user - Channel.isWritable() depends on the write buffer water
+            // marks instead.  Therefore no event is fired here.
             channel.setInterestOpsNow(interestOps);
-            fireChannelInterestChanged(channel, interestOps);
         }
     }
 
@@ -698,7 +1007,7 @@ class NioWorker implements Runnable {
             future.setSuccess();
             if (channel.setClosed()) {
                 if (connected) {
-                    if (channel.getInterestOps() != Channel.OP_WRITE) {
+                    if (channel.getRawInterestOps() != Channel.OP_WRITE) {
                         channel.setInterestOpsNow(Channel.OP_WRITE);
                         fireChannelInterestChanged(channel, Channel.OP_WRITE);
                     }
@@ -728,11 +1037,15 @@ class NioWorker implements Runnable {
         }
 
         // Clean up the stale messages in the write buffer.
+        long discardedBytes = 0;
         synchronized (channel.writeLock) {
             MessageEvent evt = channel.currentWriteEvent;
             if (evt != null) {
+                Object m = evt.getMessage();
+                discardedBytes += endIndex(m) - channel.currentWriteIndex;
                 channel.currentWriteEvent = null;
                 channel.currentWriteIndex = 0;
+                releaseMessage(m);
                 evt.getFuture().setFailure(cause);
                 fireExceptionCaught(channel, cause);
             }
@@ -743,10 +1056,17 @@ class NioWorker implements Runnable {
                 if (evt == null) {
                     break;
                 }
+                Object m = evt.getMessage();
+                discardedBytes += endIndex(m) - startIndex(m);
+                releaseMessage(m);
                 evt.getFuture().setFailure(cause);
                 fireExceptionCaught(channel, cause);
             }
         }
+
+        if (discardedBytes != 0) {
+            channel.updateWriteBufferSize(-discardedBytes);
+        }
     }
 
     static void setInterestOps(
@@ -760,27 +1080,28 @@ class NioWorker implements Runnable {
             return;
         }
 
-        Selector selector = worker.selector;
-        SelectionKey key = channel.socket.keyFor(selector);
-        if (key == null || selector == null) {
-            IllegalStateException cause =
-                new IllegalStateException("Channel not connected yet (SelectionKey not found)");
-            future.setFailure(cause);
-            fireExceptionCaught(channel, cause);
-        }
-
         boolean changed = false;
         try {
             // interestOps can change at any time and at any thread.
             // Acquire a lock to avoid possible race condition.
             synchronized (channel.interestOpsLock) {
+                SelectionKey key = selectionKey(worker, channel);
+                if (key == null) {
+                    if (!channel.isOpen()) {
+                        throw new ClosedChannelException();
+                    }
+                    throw new IllegalStateException(
+                            "Channel not connected yet (SelectionKey not found)");
+                }
+                Selector selector = key.selector();
+
                 // Override OP_WRITE flag - a user cannot change this flag.
                 interestOps &= ~Channel.OP_WRITE;
-                interestOps |= channel.getInterestOps() & Channel.OP_WRITE;
+                interestOps |= channel.getRawInterestOps() & Channel.OP_WRITE;
 
                 switch (CONSTRAINT_LEVEL) {
                 case 0:
-                    if (channel.getInterestOps() != interestOps) {
+                    if (channel.getRawInterestOps() != interestOps) {
                         key.interestOps(interestOps);
                         if (Thread.currentThread() != worker.thread &&
                             worker.wakenUp.compareAndSet(false, true)) {
@@ -791,7 +1112,7 @@ class NioWorker implements Runnable {
                     break;
                 case 1:
                 case 2:
-                    if (channel.getInterestOps() != interestOps) {
+                    if (channel.getRawInterestOps() != interestOps) {
                         if (Thread.currentThread() == worker.thread) {
                             key.interestOps(interestOps);
                             changed = true;
@@ -817,7 +1138,7 @@ class NioWorker implements Runnable {
             future.setSuccess();
             if (changed) {
                 channel.setInterestOpsNow(interestOps);
-                fireChannelInterestChanged(channel, interestOps);
+                fireChannelInterestChanged(channel, channel.getInterestOps());
             }
         } catch (Throwable t) {
             future.setFailure(t);
@@ -826,16 +1147,13 @@ class NioWorker implements Runnable {
     }
 
     private class RegisterTask implements Runnable {
-        private final Selector selector;
         private final NioSocketChannel channel;
         private final ChannelFuture future;
         private final boolean server;
 
         RegisterTask(
-                Selector selector,
                 NioSocketChannel channel, ChannelFuture future, boolean server) {
 
-            this.selector = selector;
             this.channel = channel;
             this.future = future;
             this.server = server;
@@ -843,7 +1161,10 @@ class NioWorker implements Runnable {
 
         public void run() {
             try {
-                channel.socket.register(selector, SelectionKey.OP_READ, channel);
+                // Look up the selector here because it might have been
+                // rebuilt since this task was created.
+                channel.socket.register(
+                        NioWorker.this.selector, SelectionKey.OP_READ, channel);
                 if (future != null) {
                     future.setSuccess();
                 }
@@ -862,4 +1183,35 @@ class NioWorker implements Runnable {
             fireChannelConnected(channel, channel.getRemoteAddress());
         }
     }
-}
\ No newline at end of file
+
+    private static final class GatheringBuffers {
+        ByteBuffer[] array = new ByteBuffer[16];
+        int size;
+
+        GatheringBuffers() {
+            super();
+        }
+
+        void ensureCapacity(int capacity) {
+            if (array.length < capacity) {
+                ByteBuffer[] newArray = new ByteBuffer[capacity];
+                System.arraycopy(array, 0, newArray, 0, size);
+                array = newArray;
+            }
+        }
+
+        void add(ByteBuffer buffer) {
+            if (size == array.length) {
+                ensureCapacity(size << 1);
+            }
+            array[size ++] = buffer;
+        }
+
+        void clear() {
+            for (int i = 0; i < size; i ++) {
+                array[i] = null;
+            }
+            size = 0;
+        }
+    }
+}
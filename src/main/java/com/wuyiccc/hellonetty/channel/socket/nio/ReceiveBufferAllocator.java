@@ -0,0 +1,76 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.wuyiccc.hellonetty.channel.socket.nio;
+
+import com.wuyiccc.hellonetty.buffer.ChannelBuffer;
+import com.wuyiccc.hellonetty.buffer.ChannelBufferFactory;
+
+/**
+ * Provides the {@link ChannelBuffer} an I/O thread reads the inbound data
+ * into, and converts it into the {@link ChannelBuffer} which is sent
+ * upstream once the read operation is finished.
+ * <p>
+ * An I/O thread performs a read operation in the following order:
+ * <ol>
+ * <li>calls {@link #allocate(int, ChannelBufferFactory)} with the capacity
+ *     predicted by the {@link ReceiveBufferSizePredictor} of the channel,</li>
+ * <li>reads the inbound data into the writable bytes of the returned
+ *     buffer, and then</li>
+ * <li>calls {@link #complete(ChannelBuffer, ChannelBufferFactory)} to get the
+ *     buffer which will be sent upstream if some data has been read, or
+ *     {@linkplain ChannelBuffer#release() releases} the buffer otherwise.</li>
+ * </ol>
+ * The same I/O thread calls both methods for a read operation, and therefore
+ * an implementation can keep a per-thread state between the two calls.
+ *
+ * @author The Netty Project (netty-dev@lists.jboss.org)
+ * @author Trustin Lee (tlee@redhat.com)
+ *
+ * @version $Rev$, $Date$
+ *
+ * @apiviz.uses com.wuyiccc.hellonetty.buffer.ChannelBufferFactory
+ */
+public interface ReceiveBufferAllocator {
+
+    /**
+     * Returns a buffer to read the inbound data into.  The caller owns a
+     * reference to the returned buffer.
+     *
+     * @param estimatedSize the predicted number of bytes to read
+     * @param factory       the {@link ChannelBufferFactory} of the channel
+     */
+    ChannelBuffer allocate(int estimatedSize, ChannelBufferFactory factory);
+
+    /**
+     * Returns the buffer which will be sent upstream, whose readable bytes
+     * are the readable bytes of the specified buffer.  The returned buffer
+     * can be the specified buffer itself.  Otherwise, the specified buffer
+     * must be released by this method.
+     *
+     * @param buffer  the buffer returned by
+     *                {@link #allocate(int, ChannelBufferFactory)}, whose
+     *                readable bytes are the data read from the channel
+     * @param factory the {@link ChannelBufferFactory} of the channel
+     */
+    ChannelBuffer complete(ChannelBuffer buffer, ChannelBufferFactory factory);
+}
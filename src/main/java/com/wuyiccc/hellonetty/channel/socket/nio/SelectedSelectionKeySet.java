@@ -0,0 +1,126 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.wuyiccc.hellonetty.channel.socket.nio;
+
+import java.nio.channels.SelectionKey;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An array-backed replacement of the {@link java.util.HashSet} which a
+ * {@link java.nio.channels.Selector} adds its selected keys to.  Adding a
+ * key is a simple array store, and the selector loop visits the keys by
+ * index via {@link #get(int)} instead of iterating and removing them one by
+ * one, so that no garbage is produced per ready key.
+ * <p>
+ * The selector adds a key only if {@link #contains(Object)} returns
+ * {@code false}, which is always the case here.  Therefore, the selector
+ * loop must {@link #reset()} the set before the next select operation.
+ *
+ * @author The Netty Project (netty-dev@lists.jboss.org)
+ * @author Trustin Lee (tlee@redhat.com)
+ *
+ * @version $Rev$, $Date$
+ *
+ */
+final class SelectedSelectionKeySet extends AbstractSet<SelectionKey> {
+
+    private SelectionKey[] keys = new SelectionKey[1024];
+    private int size;
+
+    SelectedSelectionKeySet() {
+        super();
+    }
+
+    @Override
+    public boolean add(SelectionKey k) {
+        if (k == null) {
+            return false;
+        }
+
+        if (size == keys.length) {
+            SelectionKey[] newKeys = new SelectionKey[size << 1];
+            System.arraycopy(keys, 0, newKeys, 0, size);
+            keys = newKeys;
+        }
+        keys[size ++] = k;
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return false;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the key at the specified index, which must be less than
+     * {@link #size()}.
+     */
+    SelectionKey get(int index) {
+        return keys[index];
+    }
+
+    /**
+     * Removes all keys, clearing the array slots so that the keys of the
+     * closed channels can be garbage-collected.
+     */
+    void reset() {
+        for (int i = 0; i < size; i ++) {
+            keys[i] = null;
+        }
+        size = 0;
+    }
+
+    @Override
+    public Iterator<SelectionKey> iterator() {
+        return new Iterator<SelectionKey>() {
+            private int index;
+
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            public SelectionKey next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return keys[index ++];
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
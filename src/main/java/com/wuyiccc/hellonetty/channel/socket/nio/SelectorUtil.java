@@ -0,0 +1,256 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.wuyiccc.hellonetty.channel.socket.nio;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import com.wuyiccc.hellonetty.logging.InternalLogger;
+import com.wuyiccc.hellonetty.logging.InternalLoggerFactory;
+import com.wuyiccc.hellonetty.util.SystemPropertyUtil;
+
+/**
+ * Utility methods for the selector loops of {@link NioWorker} and the client
+ * boss.
+ *
+ * <h3>Selected-key set optimization</h3>
+ *
+ * {@link #optimize(Selector)} replaces the selected-key set of a
+ * {@link Selector} with a {@link SelectedSelectionKeySet}.
+ * <p>
+ * The JDK selector keeps its selected keys in the {@code selectedKeys} and
+ * {@code publicSelectedKeys} fields of {@code sun.nio.ch.SelectorImpl}.
+ * Both fields are replaced via reflection or, if the package is not open to
+ * this class (Java 9 or above without {@code --add-opens}), via
+ * {@code sun.misc.Unsafe}.  If neither works, or the system property
+ * {@code com.wuyiccc.hellonetty.noSelectedKeySetOptimization} is
+ * {@code true}, the selector is left untouched and the selector loop falls
+ * back to {@link Selector#selectedKeys()}.
+ *
+ * <h3>Selector rebuild</h3>
+ *
+ * Some epoll implementations can make {@link Selector#select(long)} return
+ * zero immediately forever, spinning the selector loop at 100% CPU.  A
+ * selector loop counts the consecutive premature returns - no key selected,
+ * no wakeup requested, and less than half of the timeout elapsed - and, when
+ * the count reaches {@link #REBUILD_THRESHOLD}, opens a new selector and
+ * {@linkplain #moveKeys(Selector, Selector) moves} all keys to it.  The
+ * threshold is specified by the system property
+ * {@code com.wuyiccc.hellonetty.selectorAutoRebuildThreshold} (default:
+ * {@code 512}); {@code 0} disables the rebuild.
+ *
+ * @author The Netty Project (netty-dev@lists.jboss.org)
+ * @author Trustin Lee (tlee@redhat.com)
+ *
+ * @version $Rev$, $Date$
+ *
+ */
+final class SelectorUtil {
+
+    private static final InternalLogger logger =
+        InternalLoggerFactory.getInstance(SelectorUtil.class);
+
+    static final boolean DISABLED = Boolean.parseBoolean(
+            SystemPropertyUtil.get("com.wuyiccc.hellonetty.noSelectedKeySetOptimization"));
+
+    /**
+     * The timeout of a select operation in milliseconds.
+     */
+    static final long SELECT_TIMEOUT = 500;
+
+    /**
+     * The number of the consecutive premature returns of a select operation
+     * which triggers a selector rebuild.  {@code 0} if disabled.
+     */
+    static final int REBUILD_THRESHOLD = getIntProperty(
+            "com.wuyiccc.hellonetty.selectorAutoRebuildThreshold", 512);
+
+    private static final long PREMATURE_RETURN_NANOS =
+        SELECT_TIMEOUT * 1000000L / 2;
+
+    private static volatile boolean loggedFailure;
+
+    /**
+     * Replaces the selected-key set of the specified selector, which must not
+     * have been used for a select operation yet.
+     *
+     * @return the installed key set, or {@code null} if the selected-key set
+     *         could not be replaced and {@link Selector#selectedKeys()} has
+     *         to be used
+     */
+    static SelectedSelectionKeySet optimize(Selector selector) {
+        if (DISABLED) {
+            return null;
+        }
+
+        SelectedSelectionKeySet keySet = new SelectedSelectionKeySet();
+        try {
+            Class<?> implType = Class.forName(
+                    "sun.nio.ch.SelectorImpl", false,
+                    ClassLoader.getSystemClassLoader());
+            if (!implType.isInstance(selector)) {
+                throw new UnsupportedOperationException(
+                        "unknown selector type: " + selector.getClass().getName());
+            }
+
+            Field selectedKeys = implType.getDeclaredField("selectedKeys");
+            Field publicSelectedKeys = implType.getDeclaredField("publicSelectedKeys");
+            if (!Set.class.isAssignableFrom(selectedKeys.getType()) ||
+                !Set.class.isAssignableFrom(publicSelectedKeys.getType())) {
+                throw new UnsupportedOperationException(
+                        "unexpected SelectorImpl field types");
+            }
+
+            try {
+                selectedKeys.setAccessible(true);
+                publicSelectedKeys.setAccessible(true);
+                selectedKeys.set(selector, keySet);
+                publicSelectedKeys.set(selector, keySet);
+            } catch (RuntimeException e) {
+                // sun.nio.ch is not open to us - try Unsafe instead.
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                Object unsafe = theUnsafe.get(null);
+                Method objectFieldOffset =
+                    unsafeClass.getMethod("objectFieldOffset", Field.class);
+                Method putObjectVolatile = unsafeClass.getMethod(
+                        "putObjectVolatile", Object.class, long.class, Object.class);
+                putObjectVolatile.invoke(
+                        unsafe, selector,
+                        objectFieldOffset.invoke(unsafe, selectedKeys), keySet);
+                putObjectVolatile.invoke(
+                        unsafe, selector,
+                        objectFieldOffset.invoke(unsafe, publicSelectedKeys), keySet);
+            }
+        } catch (Throwable t) {
+            if (!loggedFailure) {
+                loggedFailure = true;
+                logger.debug(
+                        "Selected keys will be iterated via an Iterator " +
+                        "because the selected-key set could not be replaced.", t);
+            }
+            return null;
+        }
+
+        return keySet;
+    }
+
+    /**
+     * Returns {@code true} if and only if a select operation which started
+     * at {@code startTime} (as returned by {@link System#nanoTime()}),
+     * selected no key and was not woken up has returned too early to be
+     * a timeout.
+     */
+    static boolean isPrematureReturn(long startTime) {
+        return System.nanoTime() - startTime < PREMATURE_RETURN_NANOS &&
+               !Thread.currentThread().isInterrupted();
+    }
+
+    /**
+     * Registers the channel of every valid key of {@code oldSelector} to
+     * {@code newSelector} with the same interest ops and attachment, and
+     * cancels the old key.  The interest ops of an {@link NioSocketChannel}
+     * are copied while its {@code interestOpsLock} is held, so that they are
+     * not changed via the old key in the meantime.  A channel which cannot be
+     * moved is closed.  This method must be called by the thread which
+     * selects with {@code oldSelector}.
+     *
+     * @return the number of the moved keys
+     */
+    static int moveKeys(Selector oldSelector, Selector newSelector) {
+        // Copy the keys first - closing a channel modifies the key set.
+        List<SelectionKey> keys = new ArrayList<SelectionKey>(oldSelector.keys());
+        int movedKeys = 0;
+        for (SelectionKey k: keys) {
+            Object a = k.attachment();
+            try {
+                if (a instanceof NioSocketChannel) {
+                    synchronized (((NioSocketChannel) a).interestOpsLock) {
+                        if (moveKey(k, newSelector)) {
+                            movedKeys ++;
+                        }
+                    }
+                } else if (moveKey(k, newSelector)) {
+                    movedKeys ++;
+                }
+            } catch (Throwable t) {
+                logger.warn("Failed to move a channel to a new selector.", t);
+                if (a instanceof NioSocketChannel) {
+                    NioSocketChannel ch = (NioSocketChannel) a;
+                    NioWorker.close(ch, ch.getSucceededFuture());
+                } else {
+                    try {
+                        k.channel().close();
+                    } catch (Throwable t2) {
+                        logger.warn("Failed to close a channel.", t2);
+                    }
+                }
+            }
+        }
+        return movedKeys;
+    }
+
+    private static boolean moveKey(SelectionKey k, Selector newSelector) throws IOException {
+        if (!k.isValid()) {
+            return false;
+        }
+        SelectableChannel ch = k.channel();
+        if (ch.keyFor(newSelector) != null) {
+            return false;
+        }
+
+        int interestOps = k.interestOps();
+        k.cancel();
+        ch.register(newSelector, interestOps, k.attachment());
+        return true;
+    }
+
+    private static int getIntProperty(String key, int def) {
+        String value = SystemPropertyUtil.get(key);
+        if (value == null) {
+            return def;
+        }
+        try {
+            int v = Integer.parseInt(value.trim());
+            if (v >= 0) {
+                return v;
+            }
+        } catch (NumberFormatException e) {
+            // Fall through
+        }
+        logger.warn("Ignoring the invalid value of " + key + ": " + value);
+        return def;
+    }
+
+    private SelectorUtil() {
+        // Unused
+    }
+}
@@ -83,6 +83,9 @@ class OioClientSocketPipelineSink extends AbstractChannelSink {
             OioWorker.write(
                     channel, future,
                     ((MessageEvent) e).getMessage());
+        } else if (e instanceof FlushEvent) {
+            // A message is written to the stream as soon as it is requested.
+            future.setSuccess();
         }
     }
 
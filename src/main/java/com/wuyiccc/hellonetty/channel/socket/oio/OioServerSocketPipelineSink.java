@@ -123,6 +123,9 @@ class OioServerSocketPipelineSink extends AbstractChannelSink {
             ChannelFuture future = event.getFuture();
             Object message = event.getMessage();
             OioWorker.write(channel, future, message);
+        } else if (e instanceof FlushEvent) {
+            // A message is written to the stream as soon as it is requested.
+            e.getFuture().setSuccess();
         }
     }
 
@@ -91,6 +91,24 @@ abstract class OioSocketChannel extends AbstractChannel
         super.setInterestOpsNow(interestOps);
     }
 
+    @Override
+    protected int getRawInterestOps() {
+        return super.getRawInterestOps();
+    }
+
+    @Override
+    protected long getWriteBufferSize() {
+        return super.getWriteBufferSize();
+    }
+
+    void updateWriteBufferSize(long delta) {
+        SocketChannelConfig cfg = getConfig();
+        updateWriteBufferSize(
+                delta,
+                cfg.getWriteBufferLowWaterMark(),
+                cfg.getWriteBufferHighWaterMark());
+    }
+
     @Override
     protected ChannelFuture getSucceededFuture() {
         return super.getSucceededFuture();
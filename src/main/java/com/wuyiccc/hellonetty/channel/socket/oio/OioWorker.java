@@ -23,12 +23,16 @@
 package com.wuyiccc.hellonetty.channel.socket.oio;
 
 import com.wuyiccc.hellonetty.buffer.ChannelBuffer;
-import com.wuyiccc.hellonetty.buffer.ChannelBuffers;
 import com.wuyiccc.hellonetty.channel.Channel;
 import com.wuyiccc.hellonetty.channel.ChannelFuture;
+import com.wuyiccc.hellonetty.channel.FileRegion;
 
+import java.io.EOFException;
+import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 
 import static com.wuyiccc.hellonetty.channel.Channels.*;
 
@@ -42,6 +46,8 @@ import static com.wuyiccc.hellonetty.channel.Channels.*;
  */
 class OioWorker implements Runnable {
 
+    private static final int FILE_COPY_BUFFER_SIZE = 8192;
+
     private final OioSocketChannel channel;
 
     OioWorker(OioSocketChannel channel) {
@@ -67,13 +73,19 @@ class OioWorker implements Runnable {
                 }
             }
 
-            byte[] buf;
-            int readBytes;
+            ChannelBuffer buffer = null;
             try {
                 int bytesToRead = in.available();
                 if (bytesToRead > 0) {
-                    buf = new byte[bytesToRead];
-                    readBytes = in.read(buf);
+                    // The requested bytes are available already, and
+                    // therefore setBytes() will not block.
+                    buffer = channel.getConfig().getBufferFactory().getBuffer(bytesToRead);
+                    int readBytes = buffer.setBytes(0, in, bytesToRead);
+                    if (readBytes < 0) {
+                        buffer.release();
+                        break;
+                    }
+                    buffer.writerIndex(readBytes);
                 } else {
                     int b = in.read();
                     if (b < 0) {
@@ -83,19 +95,17 @@ class OioWorker implements Runnable {
                     continue;
                 }
             } catch (Throwable t) {
+                if (buffer != null) {
+                    // Nobody has seen the buffer yet - return it to where it
+                    // came from.
+                    buffer.release();
+                }
                 if (!channel.socket.isClosed()) {
                     fireExceptionCaught(channel, t);
                 }
                 break;
             }
 
-            ChannelBuffer buffer;
-            if (readBytes == buf.length) {
-                buffer = ChannelBuffers.wrappedBuffer(buf);
-            } else {
-                // A rare case, but it sometimes happen.
-                buffer = ChannelBuffers.wrappedBuffer(buf, 0, readBytes);
-            }
             fireMessageReceived(channel, buffer);
         }
 
@@ -112,9 +122,32 @@ class OioWorker implements Runnable {
             Object message) {
         OutputStream out = channel.getOutputStream();
         try {
-            ChannelBuffer a = (ChannelBuffer) message;
-            synchronized (out) {
-                a.getBytes(a.readerIndex(), out, a.readableBytes());
+            if (message instanceof FileRegion) {
+                FileRegion region = (FileRegion) message;
+                long count = region.getCount();
+                channel.updateWriteBufferSize(count);
+                try {
+                    synchronized (out) {
+                        copy(channel, region, out);
+                    }
+                } finally {
+                    region.releaseExternalResources();
+                    channel.updateWriteBufferSize(-count);
+                }
+            } else {
+                ChannelBuffer a = (ChannelBuffer) message;
+                // The bytes are counted as queued while the caller waits for
+                // the other threads writing to the same stream.
+                int length = a.readableBytes();
+                channel.updateWriteBufferSize(length);
+                try {
+                    synchronized (out) {
+                        a.getBytes(a.readerIndex(), out, length);
+                    }
+                } finally {
+                    a.release();
+                    channel.updateWriteBufferSize(-length);
+                }
             }
             future.setSuccess();
         } catch (Throwable t) {
@@ -123,16 +156,48 @@ class OioWorker implements Runnable {
         }
     }
 
+    /**
+     * Copies the specified file region into the specified stream.  A stream
+     * has no zero-copy file transfer, so the region is copied through a
+     * buffer provided by the {@link com.wuyiccc.hellonetty.buffer.ChannelBufferFactory}
+     * of the channel, which is released when the copy is done.
+     */
+    private static void copy(
+            OioSocketChannel channel, FileRegion region, OutputStream out)
+            throws IOException {
+        long count = region.getCount();
+        if (count == 0) {
+            return;
+        }
+
+        ChannelBuffer buf = channel.getConfig().getBufferFactory().getBuffer(
+                (int) Math.min(count, FILE_COPY_BUFFER_SIZE));
+        try {
+            WritableByteChannel target = new OutputStreamChannel(buf, out);
+            for (long position = 0; position < count;) {
+                long localTransferredBytes = region.transferTo(target, position);
+                if (localTransferredBytes <= 0) {
+                    throw new EOFException(
+                            "File region ended prematurely at " + position +
+                            " (expected: " + count + " bytes)");
+                }
+                position += localTransferredBytes;
+            }
+        } finally {
+            buf.release();
+        }
+    }
+
     static void setInterestOps(
             OioSocketChannel channel, ChannelFuture future, int interestOps) {
 
         // Override OP_WRITE flag - a user cannot change this flag.
         interestOps &= ~Channel.OP_WRITE;
-        interestOps |= channel.getInterestOps() & Channel.OP_WRITE;
+        interestOps |= channel.getRawInterestOps() & Channel.OP_WRITE;
 
         boolean changed = false;
         try {
-            if (channel.getInterestOps() != interestOps) {
+            if (channel.getRawInterestOps() != interestOps) {
                 if ((interestOps & Channel.OP_READ) != 0) {
                     channel.setInterestOpsNow(Channel.OP_READ);
                 } else {
@@ -151,7 +216,7 @@ class OioWorker implements Runnable {
                 }
 
                 channel.setInterestOpsNow(interestOps);
-                fireChannelInterestChanged(channel, interestOps);
+                fireChannelInterestChanged(channel, channel.getInterestOps());
             }
         } catch (Throwable t) {
             future.setFailure(t);
@@ -174,7 +239,7 @@ class OioWorker implements Runnable {
                         workerThread.interrupt();
                     }
 
-                    if (channel.getInterestOps() != Channel.OP_WRITE) {
+                    if (channel.getRawInterestOps() != Channel.OP_WRITE) {
                         channel.setInterestOpsNow(Channel.OP_WRITE);
                         fireChannelInterestChanged(channel, Channel.OP_WRITE);
                     }
@@ -190,4 +255,38 @@ class OioWorker implements Runnable {
             fireExceptionCaught(channel, t);
         }
     }
-}
\ No newline at end of file
+
+    private static final class OutputStreamChannel implements WritableByteChannel {
+
+        private final ChannelBuffer buf;
+        private final OutputStream out;
+
+        OutputStreamChannel(ChannelBuffer buf, OutputStream out) {
+            this.buf = buf;
+            this.out = out;
+        }
+
+        public int write(ByteBuffer src) throws IOException {
+            int writtenBytes = 0;
+            while (src.hasRemaining()) {
+                int length = Math.min(buf.capacity(), src.remaining());
+                int limit = src.limit();
+                src.limit(src.position() + length);
+                buf.clear();
+                buf.writeBytes(src);
+                src.limit(limit);
+                buf.getBytes(0, out, length);
+                writtenBytes += length;
+            }
+            return writtenBytes;
+        }
+
+        public boolean isOpen() {
+            return true;
+        }
+
+        public void close() {
+            // The stream is closed with the socket.
+        }
+    }
+}
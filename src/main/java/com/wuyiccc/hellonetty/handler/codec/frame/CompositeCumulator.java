@@ -0,0 +1,93 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.wuyiccc.hellonetty.handler.codec.frame;
+
+import com.wuyiccc.hellonetty.buffer.ChannelBuffer;
+import com.wuyiccc.hellonetty.buffer.CompositeChannelBuffer;
+
+/**
+ * A {@link Cumulator} which appends the received buffers to a
+ * {@link CompositeChannelBuffer} without copying them.  The buffers which
+ * were decoded fully are {@linkplain CompositeChannelBuffer#discardReadComponents() discarded}
+ * before every append, so the remaining buffers hold the pending frame only.
+ * When the pending frame spans more than {@code maxComponents} buffers, some
+ * of them are {@linkplain CompositeChannelBuffer#consolidateIfNecessary(int) consolidated}
+ * so that the decoder does not pay too much for accessing a highly
+ * fragmented buffer, without copying the whole frame on every read.
+ *
+ * @author The Netty Project (netty-dev@lists.jboss.org)
+ * @author Trustin Lee (tlee@redhat.com)
+ *
+ * @version $Rev$, $Date$
+ */
+public class CompositeCumulator implements Cumulator {
+
+    private final int maxComponents;
+
+    /**
+     * Creates a new instance which consolidates the cumulation when it spans
+     * more than {@code 16} buffers.
+     */
+    public CompositeCumulator() {
+        this(16);
+    }
+
+    /**
+     * Creates a new instance which consolidates the cumulation when it spans
+     * more than {@code maxComponents} buffers.
+     */
+    public CompositeCumulator(int maxComponents) {
+        if (maxComponents < 2) {
+            throw new IllegalArgumentException(
+                    "maxComponents must be greater than 1: " + maxComponents);
+        }
+        this.maxComponents = maxComponents;
+    }
+
+    /**
+     * Returns the maximum number of buffers a cumulation can span before it
+     * is consolidated.
+     */
+    public int getMaxComponents() {
+        return maxComponents;
+    }
+
+    public ChannelBuffer cumulate(ChannelBuffer cumulation, ChannelBuffer input) {
+        if (cumulation == null) {
+            // Keep the input as it is until more data arrives.
+            return input;
+        }
+
+        if (cumulation instanceof CompositeChannelBuffer) {
+            CompositeChannelBuffer composite = (CompositeChannelBuffer) cumulation;
+            composite.discardReadComponents();
+            composite.addComponent(input);
+            // The cumulation may have been created elsewhere with a
+            // different threshold.
+            composite.consolidateIfNecessary(maxComponents);
+            return composite;
+        }
+
+        return new CompositeChannelBuffer(maxComponents, cumulation, input);
+    }
+}
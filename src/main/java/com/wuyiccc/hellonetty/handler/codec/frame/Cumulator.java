@@ -0,0 +1,65 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.wuyiccc.hellonetty.handler.codec.frame;
+
+import com.wuyiccc.hellonetty.buffer.ChannelBuffer;
+
+/**
+ * Accumulates the received {@link ChannelBuffer}s which a
+ * {@link FrameDecoder} could not decode into a frame yet.  Use
+ * {@link FrameDecoder#setCumulator(Cumulator)} to choose the strategy of a
+ * decoder:
+ * <ul>
+ * <li>{@link MergeCumulator} copies the received buffers into one dynamic
+ *     buffer.  It is the default and works best when a frame usually fits
+ *     into one or two received buffers.</li>
+ * <li>{@link CompositeCumulator} appends the received buffers to a
+ *     {@link com.wuyiccc.hellonetty.buffer.CompositeChannelBuffer} without
+ *     copying.  It works best when a frame is much larger than a received
+ *     buffer.</li>
+ * </ul>
+ *
+ * @author The Netty Project (netty-dev@lists.jboss.org)
+ * @author Trustin Lee (tlee@redhat.com)
+ *
+ * @version $Rev$, $Date$
+ *
+ * @apiviz.landmark
+ */
+public interface Cumulator {
+
+    /**
+     * Appends the readable bytes of the specified input to the specified
+     * cumulation, and returns the new cumulation, which can be the specified
+     * cumulation itself.  This method takes over the references of both
+     * the cumulation and the input; it releases or reuses them.
+     *
+     * @param cumulation the current cumulation, or {@code null} if nothing
+     *                   has been accumulated yet
+     * @param input      the received buffer whose bytes are not decoded yet
+     *
+     * @return the new cumulation whose readable bytes are the readable bytes
+     *         of the cumulation followed by the readable bytes of the input
+     */
+    ChannelBuffer cumulate(ChannelBuffer cumulation, ChannelBuffer input);
+}
@@ -62,6 +62,14 @@ import com.wuyiccc.hellonetty.channel.ChannelHandlerContext;
  * +----------+
  * </pre>
  *
+ * <h3>Performance</h3>
+ * <p>
+ * All delimiters are located in one pass over the received data.  The
+ * decoder remembers how far it has scanned the pending data, so a large
+ * frame which arrives in many small pieces is not scanned again and again
+ * whenever a new piece arrives.  Therefore, a {@link DelimiterBasedFrameDecoder}
+ * must not be shared by more than one channel.
+ *
  * @author The Netty Project (netty-dev@lists.jboss.org)
  * @author Trustin Lee (tlee@redhat.com)
  *
@@ -72,9 +80,14 @@ import com.wuyiccc.hellonetty.channel.ChannelHandlerContext;
  */
 public class DelimiterBasedFrameDecoder extends FrameDecoder {
 
-    private final ChannelBuffer[] delimiters;
+    private final DelimiterMatcher matcher;
     private final int maxFrameLength;
 
+    /** The number of the pending bytes scanned so far. */
+    private int scannedBytes;
+    /** The state of the {@link DelimiterMatcher} after the scanned bytes. */
+    private int scanState;
+
     /**
      * Creates a new instance.
      *
@@ -86,10 +99,10 @@ public class DelimiterBasedFrameDecoder extends FrameDecoder {
     public DelimiterBasedFrameDecoder(int maxFrameLength, ChannelBuffer delimiter) {
         validateMaxFrameLength(maxFrameLength);
         validateDelimiter(delimiter);
-        delimiters = new ChannelBuffer[] {
+        matcher = new DelimiterMatcher(new ChannelBuffer[] {
                 delimiter.slice(
                         delimiter.readerIndex(), delimiter.readableBytes())
-        };
+        });
         this.maxFrameLength = maxFrameLength;
     }
 
@@ -109,73 +122,89 @@ public class DelimiterBasedFrameDecoder extends FrameDecoder {
         if (delimiters.length == 0) {
             throw new IllegalArgumentException("empty delimiters");
         }
-        this.delimiters = new ChannelBuffer[delimiters.length];
+        ChannelBuffer[] slices = new ChannelBuffer[delimiters.length];
         for (int i = 0; i < delimiters.length; i ++) {
             ChannelBuffer d = delimiters[i];
             validateDelimiter(d);
-            this.delimiters[i] = d.slice(d.readerIndex(), d.readableBytes());
+            slices[i] = d.slice(d.readerIndex(), d.readableBytes());
         }
+        matcher = new DelimiterMatcher(slices);
         this.maxFrameLength = maxFrameLength;
     }
 
     @Override
     protected Object decode(
             ChannelHandlerContext ctx, Channel channel, ChannelBuffer buffer) throws Exception {
-        // Try all delimiters and choose the delimiter which yields the shortest frame.
-        int minDelimIndex = Integer.MAX_VALUE;
-        ChannelBuffer minDelim = null;
-        for (ChannelBuffer delim: delimiters) {
-            int delimIndex = indexOf(buffer, delim);
-            if (delimIndex >= 0 && delimIndex < minDelimIndex) {
-                minDelimIndex = delimIndex;
-                minDelim = delim;
+        int readerIndex = buffer.readerIndex();
+        int writerIndex = buffer.writerIndex();
+        if (scannedBytes > writerIndex - readerIndex) {
+            // Not the data scanned previously - start over.
+            resetScan();
+        }
+
+        // Resume the scan where the last call left off, and choose the
+        // delimiter which yields the shortest frame.  Once a delimiter is
+        // found, only the delimiters which start no later than it need to be
+        // looked for.
+        DelimiterMatcher matcher = this.matcher;
+        int state = scanState;
+        int minDelimIndex = -1;
+        int minDelim = -1;
+        int endIndex = writerIndex;
+        int i = readerIndex + scannedBytes;
+        while (i < endIndex) {
+            if (state == 0) {
+                i = matcher.firstCandidate(buffer, i, endIndex);
+                if (i < 0) {
+                    i = endIndex;
+                    break;
+                }
+            }
+
+            state = matcher.next(state, buffer.getByte(i ++));
+            int delim = matcher.match(state);
+            if (delim >= 0) {
+                int delimIndex = i - matcher.length(delim);
+                if (minDelim < 0 || delimIndex < minDelimIndex ||
+                    delimIndex == minDelimIndex && delim < minDelim) {
+                    minDelimIndex = delimIndex;
+                    minDelim = delim;
+                    endIndex = Math.min(writerIndex, delimIndex + matcher.maxLength());
+                }
             }
         }
 
-        if (minDelim != null) {
-            ChannelBuffer frame = buffer.readBytes(minDelimIndex);
-            if (frame.readableBytes() > maxFrameLength) {
-                fail(frame.readableBytes());
+        if (minDelim >= 0) {
+            resetScan();
+            int frameLength = minDelimIndex - readerIndex;
+            if (frameLength > maxFrameLength) {
+                buffer.skipBytes(frameLength);
+                fail(frameLength);
             }
-            buffer.skipBytes(minDelim.capacity());
+            ChannelBuffer frame = buffer.readBytes(frameLength);
+            buffer.skipBytes(matcher.length(minDelim));
             return frame;
         }
 
+        scannedBytes = i - readerIndex;
+        scanState = state;
         if (buffer.readableBytes() > maxFrameLength) {
+            resetScan();
             fail(buffer.readableBytes());
         }
         return null;
     }
 
+    private void resetScan() {
+        scannedBytes = 0;
+        scanState = 0;
+    }
+
     private void fail(int frameLength) throws TooLongFrameException {
         throw new TooLongFrameException(
                 "The frame length exceeds " + maxFrameLength + ": " + frameLength);
     }
 
-    private static int indexOf(ChannelBuffer haystack, ChannelBuffer needle) {
-        for (int i = haystack.readerIndex(); i < haystack.writerIndex(); i ++) {
-            int haystackIndex = i;
-            int needleIndex;
-            for (needleIndex = 0; needleIndex < needle.capacity(); needleIndex ++) {
-                if (haystack.getByte(haystackIndex) != needle.getByte(needleIndex)) {
-                    break;
-                } else {
-                    haystackIndex ++;
-                    if (haystackIndex == haystack.writerIndex() &&
-                        needleIndex != needle.capacity() - 1) {
-                        return -1;
-                    }
-                }
-            }
-
-            if (needleIndex == needle.capacity()) {
-                // Found the needle from the haystack!
-                return i - haystack.readerIndex();
-            }
-        }
-        return -1;
-    }
-
     private static void validateDelimiter(ChannelBuffer delimiter) {
         if (delimiter == null) {
             throw new NullPointerException("delimiter");
@@ -0,0 +1,211 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.wuyiccc.hellonetty.handler.codec.frame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.wuyiccc.hellonetty.buffer.ChannelBuffer;
+import com.wuyiccc.hellonetty.buffer.ChannelBufferIndexFinder;
+
+/**
+ * An Aho-Corasick automaton which locates all delimiters of a
+ * {@link DelimiterBasedFrameDecoder} in one pass.  A state represents the
+ * longest prefix of any delimiter which the scanned bytes end with, so that
+ * a scan can be suspended at the end of the received data and resumed from
+ * the same state when more data arrives.  The automaton is immutable and
+ * holds no scan state.
+ *
+ * @author The Netty Project (netty-dev@lists.jboss.org)
+ * @author Trustin Lee (tlee@redhat.com)
+ *
+ * @version $Rev$, $Date$
+ */
+final class DelimiterMatcher {
+
+    private final int[] lengths;
+    private final int maxLength;
+
+    /** The next state for the current state and a byte. */
+    private final int[][] transitions;
+
+    /**
+     * The index of the longest delimiter which ends at the state, or
+     * {@code -1} if no delimiter ends there.
+     */
+    private final int[] matches;
+
+    private final boolean[] firstBytes;
+    private final ChannelBufferIndexFinder firstByteFinder;
+    private final int firstByte;
+
+    DelimiterMatcher(ChannelBuffer[] delimiters) {
+        lengths = new int[delimiters.length];
+        int maxLength = 0;
+        for (int i = 0; i < delimiters.length; i ++) {
+            lengths[i] = delimiters[i].capacity();
+            maxLength = Math.max(maxLength, lengths[i]);
+        }
+        this.maxLength = maxLength;
+
+        // Build the trie.
+        List<int[]> trie = new ArrayList<int[]>();
+        List<Integer> terminals = new ArrayList<Integer>();
+        trie.add(newRow());
+        terminals.add(-1);
+        for (int i = 0; i < delimiters.length; i ++) {
+            ChannelBuffer d = delimiters[i];
+            int state = 0;
+            for (int j = 0; j < d.capacity(); j ++) {
+                int b = d.getByte(j) & 0xFF;
+                int next = trie.get(state)[b];
+                if (next < 0) {
+                    next = trie.size();
+                    trie.get(state)[b] = next;
+                    trie.add(newRow());
+                    terminals.add(-1);
+                }
+                state = next;
+            }
+            if (terminals.get(state) < 0) {
+                // The first one wins if the same delimiter is specified twice.
+                terminals.set(state, i);
+            }
+        }
+
+        // Turn the trie into a DFA by following the failure links in
+        // breadth-first order.
+        int numStates = trie.size();
+        transitions = trie.toArray(new int[numStates][]);
+        matches = new int[numStates];
+        int[] failures = new int[numStates];
+        int[] queue = new int[numStates];
+        int head = 0;
+        int tail = 0;
+
+        matches[0] = -1;
+        for (int b = 0; b < 256; b ++) {
+            int next = transitions[0][b];
+            if (next < 0) {
+                transitions[0][b] = 0;
+            } else {
+                failures[next] = 0;
+                queue[tail ++] = next;
+            }
+        }
+        while (head < tail) {
+            int state = queue[head ++];
+            int terminal = terminals.get(state);
+            matches[state] = terminal >= 0? terminal : matches[failures[state]];
+            for (int b = 0; b < 256; b ++) {
+                int next = transitions[state][b];
+                if (next < 0) {
+                    transitions[state][b] = transitions[failures[state]][b];
+                } else {
+                    failures[next] = transitions[failures[state]][b];
+                    queue[tail ++] = next;
+                }
+            }
+        }
+
+        // Prepare the fast skip over the bytes which cannot start a delimiter.
+        firstBytes = new boolean[256];
+        int numFirstBytes = 0;
+        int lastFirstByte = -1;
+        for (ChannelBuffer d: delimiters) {
+            int b = d.getByte(0) & 0xFF;
+            if (!firstBytes[b]) {
+                firstBytes[b] = true;
+                numFirstBytes ++;
+                lastFirstByte = b;
+            }
+        }
+        if (numFirstBytes == 1) {
+            firstByte = lastFirstByte;
+            firstByteFinder = null;
+        } else if (numFirstBytes == 2 && firstBytes['\r'] && firstBytes['\n']) {
+            firstByte = -1;
+            firstByteFinder = ChannelBufferIndexFinder.CRLF;
+        } else {
+            firstByte = -1;
+            firstByteFinder = null;
+        }
+    }
+
+    private static int[] newRow() {
+        int[] row = new int[256];
+        Arrays.fill(row, -1);
+        return row;
+    }
+
+    /**
+     * Returns the length of the longest delimiter.
+     */
+    int maxLength() {
+        return maxLength;
+    }
+
+    /**
+     * Returns the length of the {@code id}th delimiter.
+     */
+    int length(int id) {
+        return lengths[id];
+    }
+
+    /**
+     * Returns the state after the specified byte is scanned at the
+     * specified state.  The initial state is {@code 0}.
+     */
+    int next(int state, byte b) {
+        return transitions[state][b & 0xFF];
+    }
+
+    /**
+     * Returns the index of the longest delimiter which the bytes scanned so
+     * far end with at the specified state, or {@code -1} if there's none.
+     */
+    int match(int state) {
+        return matches[state];
+    }
+
+    /**
+     * Returns the index of the first byte in the specified range which can
+     * start a delimiter, or {@code -1} if there's none.  Only the initial
+     * state can skip the bytes this way.
+     */
+    int firstCandidate(ChannelBuffer buffer, int fromIndex, int toIndex) {
+        if (firstByte >= 0) {
+            return buffer.indexOf(fromIndex, toIndex, (byte) firstByte);
+        }
+        if (firstByteFinder != null) {
+            return buffer.indexOf(fromIndex, toIndex, firstByteFinder);
+        }
+        for (int i = fromIndex; i < toIndex; i ++) {
+            if (firstBytes[buffer.getByte(i) & 0xFF]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -23,7 +23,7 @@
 package com.wuyiccc.hellonetty.handler.codec.frame;
 
 import com.wuyiccc.hellonetty.buffer.ChannelBuffer;
-import com.wuyiccc.hellonetty.buffer.ChannelBuffers;
+import com.wuyiccc.hellonetty.buffer.DynamicChannelBuffer;
 import com.wuyiccc.hellonetty.channel.*;
 
 import java.net.SocketAddress;
@@ -121,6 +121,17 @@ import static com.wuyiccc.hellonetty.channel.Channels.*;
  * }
  * </pre>
  *
+ * <h3>Releasing the received buffers</h3>
+ * <p>
+ * {@link FrameDecoder} {@linkplain ChannelBuffer#release() releases} every
+ * received {@link ChannelBuffer} once it has been decoded or handed over to
+ * the {@link Cumulator}.  Therefore, a frame returned by
+ * {@code decode()} must not share its content with the specified buffer
+ * unless it is {@linkplain ChannelBuffer#retain() retained}.  For example,
+ * use {@link ChannelBuffer#readBytes(int)} rather than
+ * {@link ChannelBuffer#readSlice(int)}, or call {@code retain()} on the
+ * slice.
+ *
  * <h3>Returning a POJO rather than a {@link ChannelBuffer}</h3>
  * <p>
  * Please note that you can return an object of a different type than
@@ -140,7 +151,29 @@ import static com.wuyiccc.hellonetty.channel.Channels.*;
 @ChannelPipelineCoverage("one")
 public abstract class FrameDecoder extends SimpleChannelHandler {
 
-    private final ChannelBuffer cumulation = ChannelBuffers.dynamicBuffer();
+    private Cumulator cumulator = MergeCumulator.INSTANCE;
+    private ChannelBuffer cumulation;
+
+    /**
+     * Returns the {@link Cumulator} which accumulates the received buffers
+     * until a frame is decoded.  The default is {@link MergeCumulator}.
+     */
+    public Cumulator getCumulator() {
+        return cumulator;
+    }
+
+    /**
+     * Sets the {@link Cumulator} which accumulates the received buffers
+     * until a frame is decoded.  The default is {@link MergeCumulator}.
+     * Use {@link CompositeCumulator} to avoid copying when a frame is much
+     * larger than a received buffer.
+     */
+    public void setCumulator(Cumulator cumulator) {
+        if (cumulator == null) {
+            throw new NullPointerException("cumulator");
+        }
+        this.cumulator = cumulator;
+    }
 
     @Override
     public void messageReceived(
@@ -154,17 +187,29 @@ public abstract class FrameDecoder extends SimpleChannelHandler {
 
         ChannelBuffer input = (ChannelBuffer) m;
         if (!input.readable()) {
+            input.release();
             return;
         }
 
-        if (cumulation.readable()) {
-            cumulation.discardReadBytes();
-            cumulation.writeBytes(input);
-            callDecode(ctx, e.getChannel(), cumulation, e.getRemoteAddress());
+        if (cumulation != null) {
+            cumulation = cumulator.cumulate(cumulation, input);
+            try {
+                callDecode(ctx, e.getChannel(), cumulation, e.getRemoteAddress());
+            } finally {
+                releaseCumulationIfRead();
+            }
         } else {
-            callDecode(ctx, e.getChannel(), input, e.getRemoteAddress());
-            if (input.readable()) {
-                cumulation.writeBytes(input);
+            boolean cumulated = false;
+            try {
+                callDecode(ctx, e.getChannel(), input, e.getRemoteAddress());
+                if (input.readable()) {
+                    cumulation = cumulator.cumulate(null, input);
+                    cumulated = true;
+                }
+            } finally {
+                if (!cumulated) {
+                    input.release();
+                }
             }
         }
     }
@@ -243,10 +288,25 @@ public abstract class FrameDecoder extends SimpleChannelHandler {
         }
     }
 
+    private void releaseCumulationIfRead() {
+        if (cumulation == null) {
+            return;
+        }
+        if (!cumulation.readable()) {
+            cumulation.release();
+            cumulation = null;
+        } else if (cumulation instanceof DynamicChannelBuffer) {
+            // Give back the room a large frame left behind.
+            ((DynamicChannelBuffer) cumulation).shrink();
+        }
+    }
+
     private void cleanup(ChannelHandlerContext ctx, ChannelStateEvent e)
             throws Exception {
+        ChannelBuffer cumulation = this.cumulation;
+        this.cumulation = null;
         try {
-            if (cumulation.readable()) {
+            if (cumulation != null && cumulation.readable()) {
                 // Make sure all frames are read before notifying a closed channel.
                 callDecode(ctx, e.getChannel(), cumulation, null);
                 if (cumulation.readable()) {
@@ -258,6 +318,9 @@ public abstract class FrameDecoder extends SimpleChannelHandler {
                 }
             }
         } finally {
+            if (cumulation != null) {
+                cumulation.release();
+            }
             ctx.sendUpstream(e);
         }
     }
@@ -0,0 +1,75 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.wuyiccc.hellonetty.handler.codec.frame;
+
+import com.wuyiccc.hellonetty.buffer.ChannelBuffer;
+import com.wuyiccc.hellonetty.buffer.ChannelBuffers;
+import com.wuyiccc.hellonetty.buffer.DynamicChannelBuffer;
+
+/**
+ * A {@link Cumulator} which copies the received buffers into a
+ * {@link DynamicChannelBuffer}, discarding the decoded bytes with
+ * {@link ChannelBuffer#discardReadBytes()} before every append.
+ *
+ * @author The Netty Project (netty-dev@lists.jboss.org)
+ * @author Trustin Lee (tlee@redhat.com)
+ *
+ * @version $Rev$, $Date$
+ */
+public class MergeCumulator implements Cumulator {
+
+    /**
+     * The default instance.
+     */
+    public static final MergeCumulator INSTANCE = new MergeCumulator();
+
+    /**
+     * Creates a new instance.
+     */
+    public MergeCumulator() {
+        super();
+    }
+
+    public ChannelBuffer cumulate(ChannelBuffer cumulation, ChannelBuffer input) {
+        try {
+            if (cumulation instanceof DynamicChannelBuffer) {
+                cumulation.discardReadBytes();
+                cumulation.writeBytes(input);
+                return cumulation;
+            }
+
+            ChannelBuffer merged = ChannelBuffers.dynamicBuffer(input.order(), 256);
+            if (cumulation != null) {
+                try {
+                    merged.writeBytes(cumulation);
+                } finally {
+                    cumulation.release();
+                }
+            }
+            merged.writeBytes(input);
+            return merged;
+        } finally {
+            input.release();
+        }
+    }
+}
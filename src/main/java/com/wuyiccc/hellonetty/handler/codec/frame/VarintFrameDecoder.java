@@ -0,0 +1,138 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.wuyiccc.hellonetty.handler.codec.frame;
+
+import com.wuyiccc.hellonetty.buffer.ChannelBuffer;
+import com.wuyiccc.hellonetty.channel.Channel;
+import com.wuyiccc.hellonetty.channel.ChannelHandlerContext;
+
+/**
+ * A {@link FrameDecoder} which splits the received {@link ChannelBuffer}s
+ * by the length field encoded in the base 128 varint format of Google
+ * Protocol Buffers, as written by {@link ChannelBuffer#writeVarInt32(int)}.
+ * For example, the following two frames prefixed with their lengths:
+ * <pre>
+ * +--------+----------+------+---------------+
+ * | 0x03   | "ABC"    | 0xAC | 0x02          | ... 300 bytes ...
+ * +--------+----------+------+---------------+
+ * </pre>
+ * are decoded into {@code "ABC"} and the following 300 bytes, no matter how
+ * they were fragmented.  The length field is stripped from the decoded
+ * frames.
+ * <p>
+ * If the decoded length is greater than {@code maxFrameLength}, the frame is
+ * discarded as it arrives and a {@link TooLongFrameException} is raised.
+ * If the length field is malformed, a {@link CorruptedFrameException} is
+ * raised.
+ *
+ * @author The Netty Project (netty-dev@lists.jboss.org)
+ * @author Trustin Lee (tlee@redhat.com)
+ *
+ * @version $Rev$, $Date$
+ */
+public class VarintFrameDecoder extends FrameDecoder {
+
+    private static final int MAX_LENGTH_FIELD_BYTES = 5;
+
+    private final int maxFrameLength;
+    private long bytesToDiscard;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maxFrameLength  the maximum length of the decoded frame.
+     *                        A {@link TooLongFrameException} is thrown if
+     *                        the length of the frame exceeds this value.
+     */
+    public VarintFrameDecoder(int maxFrameLength) {
+        if (maxFrameLength <= 0) {
+            throw new IllegalArgumentException(
+                    "maxFrameLength must be a positive integer: " +
+                    maxFrameLength);
+        }
+        this.maxFrameLength = maxFrameLength;
+    }
+
+    @Override
+    protected Object decode(
+            ChannelHandlerContext ctx, Channel channel, ChannelBuffer buffer) throws Exception {
+        if (bytesToDiscard > 0) {
+            int discardedBytes = (int) Math.min(bytesToDiscard, buffer.readableBytes());
+            buffer.skipBytes(discardedBytes);
+            bytesToDiscard -= discardedBytes;
+            return null;
+        }
+
+        int readerIndex = buffer.readerIndex();
+        if (!isLengthFieldComplete(buffer, readerIndex)) {
+            // The length field has not been received completely yet.
+            return null;
+        }
+        int frameLength = buffer.readVarInt32();
+
+        if (frameLength < 0) {
+            throw new CorruptedFrameException(
+                    "negative frame length: " + frameLength);
+        }
+
+        if (frameLength > maxFrameLength) {
+            // Discard the frame as it arrives so that the next frame can be
+            // decoded without buffering the whole frame first.
+            int discardedBytes = Math.min(frameLength, buffer.readableBytes());
+            buffer.skipBytes(discardedBytes);
+            bytesToDiscard = frameLength - discardedBytes;
+            throw new TooLongFrameException(
+                    "frame length exceeds " + maxFrameLength + ": " +
+                    frameLength);
+        }
+
+        if (buffer.readableBytes() < frameLength) {
+            buffer.readerIndex(readerIndex);
+            return null;
+        }
+        return buffer.readBytes(frameLength);
+    }
+
+    /**
+     * Returns {@code true} if the whole varint length field starting at the
+     * specified index is readable, so that {@link ChannelBuffer#readVarInt32()}
+     * is never called just to find out that more bytes are needed.
+     *
+     * @throws CorruptedFrameException
+     *         if the length field is longer than 5 bytes
+     */
+    private static boolean isLengthFieldComplete(
+            ChannelBuffer buffer, int index) throws CorruptedFrameException {
+        int endIndex = Math.min(buffer.writerIndex(), index + MAX_LENGTH_FIELD_BYTES);
+        for (int i = index; i < endIndex; i ++) {
+            if ((buffer.getByte(i) & 0x80) == 0) {
+                return true;
+            }
+        }
+        if (endIndex - index < MAX_LENGTH_FIELD_BYTES) {
+            return false;
+        }
+        throw new CorruptedFrameException(
+                "malformed length field at " + index);
+    }
+}
@@ -23,6 +23,7 @@
 package com.wuyiccc.hellonetty.handler.codec.replay;
 
 import com.wuyiccc.hellonetty.buffer.ChannelBuffer;
+import com.wuyiccc.hellonetty.buffer.DynamicChannelBuffer;
 import com.wuyiccc.hellonetty.channel.*;
 import com.wuyiccc.hellonetty.handler.codec.frame.FrameDecoder;
 
@@ -179,7 +180,7 @@ import static com.wuyiccc.hellonetty.channel.Channels.*;
 @ChannelPipelineCoverage("one")
 public abstract class ReplayingDecoder<T extends Enum<T>> extends SimpleChannelHandler {
 
-    private final ChannelBuffer cumulation = new UnsafeDynamicChannelBuffer(256);
+    private final DynamicChannelBuffer cumulation = new UnsafeDynamicChannelBuffer(256);
     private final ReplayingDecoderBuffer replayable = new ReplayingDecoderBuffer(cumulation);
     private volatile T state;
     private volatile int checkpoint;
@@ -255,12 +256,17 @@ public abstract class ReplayingDecoder<T extends Enum<T>> extends SimpleChannelH
 
         ChannelBuffer input = (ChannelBuffer) m;
         if (!input.readable()) {
+            input.release();
             return;
         }
 
         cumulation.discardReadBytes();
         cumulation.writeBytes(input);
+        input.release();
         callDecode(ctx, e.getChannel(), e.getRemoteAddress());
+
+        // Give back the room a large message left behind.
+        cumulation.shrink();
     }
 
     @Override
@@ -336,6 +342,13 @@ public abstract class ReplayingDecoder<T extends Enum<T>> extends SimpleChannelH
         } catch (ReplayError replay) {
             // Ignore
         } finally {
+            // Give the memory back on the first of channelDisconnected and
+            // channelClosed.  The buffer is cleared first so that the second
+            // cleanup finds nothing to decode.
+            if (cumulation.refCnt() > 0) {
+                cumulation.clear();
+                cumulation.release();
+            }
             ctx.sendUpstream(e);
         }
     }
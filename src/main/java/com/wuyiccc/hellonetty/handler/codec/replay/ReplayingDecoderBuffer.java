@@ -32,6 +32,7 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.ScatteringByteChannel;
+import java.nio.charset.Charset;
 
 /**
  * @author The Netty Project (netty-dev@lists.jboss.org)
@@ -311,6 +312,56 @@ class ReplayingDecoderBuffer implements ChannelBuffer {
         return buffer.readLong();
     }
 
+    public int readVarInt32() {
+        try {
+            return buffer.readVarInt32();
+        } catch (IndexOutOfBoundsException e) {
+            throw REPLAY;
+        }
+    }
+
+    public long readVarInt64() {
+        try {
+            return buffer.readVarInt64();
+        } catch (IndexOutOfBoundsException e) {
+            throw REPLAY;
+        }
+    }
+
+    public int readZigZagVarInt32() {
+        try {
+            return buffer.readZigZagVarInt32();
+        } catch (IndexOutOfBoundsException e) {
+            throw REPLAY;
+        }
+    }
+
+    public long readZigZagVarInt64() {
+        try {
+            return buffer.readZigZagVarInt64();
+        } catch (IndexOutOfBoundsException e) {
+            throw REPLAY;
+        }
+    }
+
+    public ChannelBuffer readLengthPrefixedSlice() {
+        try {
+            return buffer.readLengthPrefixedSlice();
+        } catch (IndexOutOfBoundsException e) {
+            throw REPLAY;
+        }
+    }
+
+    public CharSequence getCharSequence(int index, int length, Charset charset) {
+        checkIndex(index, length);
+        return buffer.getCharSequence(index, length, charset);
+    }
+
+    public CharSequence readCharSequence(int length, Charset charset) {
+        checkReadableBytes(length);
+        return buffer.readCharSequence(length, charset);
+    }
+
     public int readMedium() {
         checkReadableBytes(3);
         return buffer.readMedium();
@@ -529,6 +580,32 @@ class ReplayingDecoderBuffer implements ChannelBuffer {
         reject();
     }
 
+    public void writeVarInt32(int value) {
+        reject();
+    }
+
+    public void writeVarInt64(long value) {
+        reject();
+    }
+
+    public void writeZigZagVarInt32(int value) {
+        reject();
+    }
+
+    public void writeZigZagVarInt64(long value) {
+        reject();
+    }
+
+    public int setCharSequence(int index, CharSequence sequence, Charset charset) {
+        reject();
+        return -1;
+    }
+
+    public int writeCharSequence(CharSequence sequence, Charset charset) {
+        reject();
+        return -1;
+    }
+
     public void writeMedium(int value) {
         reject();
     }
@@ -549,6 +626,20 @@ class ReplayingDecoderBuffer implements ChannelBuffer {
         reject();
     }
 
+    public int refCnt() {
+        return buffer.refCnt();
+    }
+
+    public ChannelBuffer retain() {
+        reject();
+        return this;
+    }
+
+    public boolean release() {
+        reject();
+        return false;
+    }
+
     private void checkIndex(int index) {
         if (index > buffer.writerIndex()) {
             throw REPLAY;
@@ -111,6 +111,6 @@ public class CompatibleObjectEncoder implements ChannelDownstreamHandler {
         oout.flush();
 
         ChannelBuffer encoded = buffer.readBytes(buffer.readableBytes());
-        write(context, e.getChannel(), e.getFuture(), encoded, e.getRemoteAddress());
+        writeWithoutFlush(context, e.getChannel(), e.getFuture(), encoded, e.getRemoteAddress());
     }
 }
@@ -103,6 +103,6 @@ public class ObjectEncoder implements ChannelDownstreamHandler {
         ChannelBuffer msg = bout.buffer();
         msg.setInt(0, msg.writerIndex() - 4);
 
-        write(context, e.getChannel(), e.getFuture(), msg, e.getRemoteAddress());
+        writeWithoutFlush(context, e.getChannel(), e.getFuture(), msg, e.getRemoteAddress());
     }
 }
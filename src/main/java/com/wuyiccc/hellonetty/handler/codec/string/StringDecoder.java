@@ -56,6 +56,9 @@ import static com.wuyiccc.hellonetty.channel.Channels.*;
  *     ch.write("Did you say '" + msg + "'?\n");
  * }
  * </pre>
+ * A buffer is decoded without looking up the character set by its name,
+ * and with a {@link java.nio.charset.CharsetDecoder} cached per thread if
+ * the character set is not US-ASCII, ISO-8859-1 nor UTF-8.
  *
  * @author The Netty Project (netty-dev@lists.jboss.org)
  * @author Trustin Lee (tlee@redhat.com)
@@ -67,7 +70,7 @@ import static com.wuyiccc.hellonetty.channel.Channels.*;
 @ChannelPipelineCoverage("all")
 public class StringDecoder implements ChannelUpstreamHandler {
 
-    private final String charsetName;
+    private final Charset charset;
 
     /**
      * Creates a new instance with the current system character set.
@@ -94,7 +97,7 @@ public class StringDecoder implements ChannelUpstreamHandler {
         if (charset == null) {
             throw new NullPointerException("charset");
         }
-        charsetName = charset.name();
+        this.charset = charset;
     }
 
     public void handleUpstream(
@@ -110,8 +113,14 @@ public class StringDecoder implements ChannelUpstreamHandler {
             return;
         }
 
-        fireMessageReceived(
-                context, e.getChannel(),
-                ((ChannelBuffer) e.getMessage()).toString(charsetName));
+        ChannelBuffer buffer = (ChannelBuffer) e.getMessage();
+        String decoded;
+        try {
+            decoded = buffer.getCharSequence(
+                    buffer.readerIndex(), buffer.readableBytes(), charset).toString();
+        } finally {
+            buffer.release();
+        }
+        fireMessageReceived(context, e.getChannel(), decoded);
     }
 }
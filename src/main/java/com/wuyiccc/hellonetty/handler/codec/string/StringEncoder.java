@@ -54,6 +54,10 @@ import static com.wuyiccc.hellonetty.channel.Channels.*;
  *     ch.write("Did you say '" + msg + "'?\n");
  * }
  * </pre>
+ * A {@link String} is encoded straight into the new buffer without an
+ * intermediary byte array if the character set is US-ASCII, ISO-8859-1 or
+ * UTF-8, and with a {@link java.nio.charset.CharsetEncoder} cached per
+ * thread otherwise.
  *
  * @author The Netty Project (netty-dev@lists.jboss.org)
  * @author Trustin Lee (tlee@redhat.com)
@@ -65,7 +69,7 @@ import static com.wuyiccc.hellonetty.channel.Channels.*;
 @ChannelPipelineCoverage("all")
 public class StringEncoder implements ChannelDownstreamHandler {
 
-    private final String charsetName;
+    private final Charset charset;
 
     public StringEncoder() {
         this(Charset.defaultCharset());
@@ -79,7 +83,7 @@ public class StringEncoder implements ChannelDownstreamHandler {
         if (charset == null) {
             throw new NullPointerException("charset");
         }
-        charsetName = charset.name();
+        this.charset = charset;
     }
 
     public void handleDownstream(
@@ -95,7 +99,7 @@ public class StringEncoder implements ChannelDownstreamHandler {
             return;
         }
 
-        write(context, e.getChannel(), e.getFuture(),
-                copiedBuffer(String.valueOf(e.getMessage()), charsetName));
+        writeWithoutFlush(context, e.getChannel(), e.getFuture(),
+                copiedBuffer((String) e.getMessage(), charset));
     }
 }
@@ -22,8 +22,15 @@
  */
 package com.wuyiccc.hellonetty.handler.ssl;
 
+import com.wuyiccc.hellonetty.buffer.ChannelBuffer;
+import com.wuyiccc.hellonetty.buffer.DirectMemoryManager;
+import com.wuyiccc.hellonetty.buffer.DirectMemoryManager.Subsystem;
+
 import javax.net.ssl.SSLEngine;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
 /**
  * A {@link ByteBuffer} pool dedicated for {@link SslHandler} performance
@@ -38,6 +45,12 @@ import java.nio.ByteBuffer;
  * required buffer is much smaller than that, and therefore allocating a 17KiB
  * buffer for every 'wrap' and 'unwrap' operation wastes a lot of memory
  * bandwidth, resulting in the application performance degradation.
+ * <p>
+ * A pool can also hold direct buffers, which saves the {@link SSLEngine}
+ * implementation a copy when the data is read from or written to a socket.
+ * The direct buffers are charged to {@link Subsystem#SSL} of the
+ * {@link DirectMemoryManager}, and are freed when the pool is full and
+ * cannot keep a released buffer.
  *
  * @author The Netty Project (netty-dev@lists.jboss.org)
  * @author Trustin Lee (tlee@redhat.com)
@@ -52,6 +65,9 @@ public class SslBufferPool {
 
     private final ByteBuffer[] pool;
     private final int maxBufferCount;
+    private final boolean preferDirect;
+    // The direct buffers which were allocated by this pool and are not freed yet.
+    private final Map<ByteBuffer, ChannelBuffer> directBuffers;
     private int index;
 
     /**
@@ -68,6 +84,17 @@ public class SslBufferPool {
      * @param maxPoolSize the maximum number of bytes that this pool can hold
      */
     public SslBufferPool(int maxPoolSize) {
+        this(maxPoolSize, false);
+    }
+
+    /**
+     * Creates a new buffer pool.
+     *
+     * @param maxPoolSize  the maximum number of bytes that this pool can hold
+     * @param preferDirect {@code true} if this pool should hold direct
+     *                     buffers rather than heap buffers
+     */
+    public SslBufferPool(int maxPoolSize, boolean preferDirect) {
         if (maxPoolSize <= 0) {
             throw new IllegalArgumentException("maxPoolSize: " + maxPoolSize);
         }
@@ -80,6 +107,12 @@ public class SslBufferPool {
 
         pool = new ByteBuffer[maxBufferCount];
         this.maxBufferCount = maxBufferCount;
+        this.preferDirect = preferDirect;
+        if (preferDirect) {
+            directBuffers = new IdentityHashMap<ByteBuffer, ChannelBuffer>();
+        } else {
+            directBuffers = null;
+        }
     }
 
     /**
@@ -101,9 +134,18 @@ public class SslBufferPool {
         return index * MAX_PACKET_SIZE;
     }
 
+    /**
+     * Returns {@code true} if and only if this pool holds direct buffers
+     * rather than heap buffers.  A direct pool still hands out heap buffers
+     * when the {@link DirectMemoryManager} runs out of direct memory.
+     */
+    public boolean isPreferDirect() {
+        return preferDirect;
+    }
+
     synchronized ByteBuffer acquire() {
         if (index == 0) {
-            return ByteBuffer.allocate(MAX_PACKET_SIZE);
+            return allocate();
         } else {
             return (ByteBuffer) pool[-- index].clear();
         }
@@ -112,6 +154,25 @@ public class SslBufferPool {
     synchronized void release(ByteBuffer buffer) {
         if (index < maxBufferCount) {
             pool[index ++] = buffer;
+        } else if (directBuffers != null) {
+            ChannelBuffer owner = directBuffers.remove(buffer);
+            if (owner != null) {
+                owner.release();
+            }
+        }
+    }
+
+    private ByteBuffer allocate() {
+        if (!preferDirect) {
+            return ByteBuffer.allocate(MAX_PACKET_SIZE);
+        }
+
+        ChannelBuffer buffer = DirectMemoryManager.directBuffer(
+                Subsystem.SSL, ByteOrder.BIG_ENDIAN, MAX_PACKET_SIZE);
+        ByteBuffer nioBuffer = buffer.toByteBuffer(0, MAX_PACKET_SIZE);
+        if (nioBuffer.isDirect()) {
+            directBuffers.put(nioBuffer, buffer);
         }
+        return nioBuffer;
     }
 }
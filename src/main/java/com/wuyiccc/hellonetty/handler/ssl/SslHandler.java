@@ -319,8 +319,7 @@ public class SslHandler extends FrameDecoder {
 
         // Otherwise, all messages are encrypted.
         ChannelBuffer msg = (ChannelBuffer) e.getMessage();
-        PendingWrite pendingWrite =
-            new PendingWrite(evt.getFuture(), msg.toByteBuffer(msg.readerIndex(), msg.readableBytes()));
+        PendingWrite pendingWrite = new PendingWrite(evt.getFuture(), msg);
         synchronized (pendingUnencryptedWrites) {
             pendingUnencryptedWrites.offer(pendingWrite);
         }
@@ -424,12 +423,13 @@ public class SslHandler extends FrameDecoder {
                     } finally {
                         if (!outAppBuf.hasRemaining()) {
                             pendingUnencryptedWrites.remove();
+                            pendingWrite.msg.release();
                         }
                     }
                     if (result.bytesProduced() > 0) {
                         outNetBuf.flip();
                         msg = ChannelBuffers.buffer(outNetBuf.remaining());
-                        msg.writeBytes(outNetBuf.array(), 0, msg.capacity());
+                        msg.writeBytes(outNetBuf);
                         outNetBuf.clear();
 
                         if (pendingWrite.outAppBuf.hasRemaining()) {
@@ -500,6 +500,7 @@ public class SslHandler extends FrameDecoder {
                         }
                     }
 
+                    pendingWrite.msg.release();
                     pendingWrite.future.setFailure(
                             new IllegalStateException("SSLEngine already closed"));
                 }
@@ -528,9 +529,17 @@ public class SslHandler extends FrameDecoder {
 
         synchronized (pendingEncryptedWrites) {
             MessageEvent e;
+            Channel channel = null;
             while ((e = pendingEncryptedWrites.poll()) != null) {
+                channel = e.getChannel();
                 ctx.sendDownstream(e);
             }
+
+            // The encrypted data might contain the handshake messages which
+            // were not requested by a user, so flush them by ourselves.
+            if (channel != null) {
+                flush(ctx, channel, succeededFuture(channel));
+            }
         }
     }
 
@@ -546,11 +555,11 @@ public class SslHandler extends FrameDecoder {
                 if (result.bytesProduced() > 0) {
                     outNetBuf.flip();
                     ChannelBuffer msg = ChannelBuffers.buffer(outNetBuf.remaining());
-                    msg.writeBytes(outNetBuf.array(), 0, msg.capacity());
+                    msg.writeBytes(outNetBuf);
                     outNetBuf.clear();
                     if (channel.isConnected()) {
                         future = future(channel);
-                        write(ctx, channel, future, msg);
+                        writeWithoutFlush(ctx, channel, future, msg);
                     }
                 }
 
@@ -567,6 +576,10 @@ public class SslHandler extends FrameDecoder {
                     break;
                 }
             }
+
+            if (future != null) {
+                flush(ctx, channel, succeededFuture(channel));
+            }
         } catch (SSLException e) {
             if (handshaking) {
                 setHandshakeFailure(channel, e);
@@ -619,7 +632,7 @@ public class SslHandler extends FrameDecoder {
 
             if (outAppBuf.hasRemaining()) {
                 ChannelBuffer frame = ChannelBuffers.buffer(outAppBuf.remaining());
-                frame.writeBytes(outAppBuf.array(), 0, frame.capacity());
+                frame.writeBytes(outAppBuf);
                 return frame;
             } else {
                 return null;
@@ -701,11 +714,13 @@ public class SslHandler extends FrameDecoder {
 
     private static class PendingWrite {
         final ChannelFuture future;
+        final ChannelBuffer msg;
         final ByteBuffer outAppBuf;
 
-        PendingWrite(ChannelFuture future, ByteBuffer outAppBuf) {
+        PendingWrite(ChannelFuture future, ChannelBuffer msg) {
             this.future = future;
-            this.outAppBuf = outAppBuf;
+            this.msg = msg;
+            outAppBuf = msg.toByteBuffer(msg.readerIndex(), msg.readableBytes());
         }
     }
 }
@@ -0,0 +1,186 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.wuyiccc.hellonetty.util;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * An unbounded multi-producer single-consumer {@link java.util.Queue} based
+ * on linked nodes.  {@link #offer(Object)} is wait-free - it never retries
+ * nor blocks no matter how many threads offer an element at the same time -
+ * while the retrieval operations must not be called by more than one thread
+ * at the same time.  When elements are retrieved from more than one thread,
+ * the retrieval operations have to be serialized, for example with a lock.
+ * <p>
+ * An element which is being offered by a producer thread might not be
+ * visible to the consumer for a short while even if an element offered
+ * later by another producer thread is visible already.  Therefore a
+ * producer is supposed to notify the consumer after offering an element,
+ * as the consumer might have seen the queue as empty.
+ * <p>
+ * Memory consistency effects: actions in a thread prior to placing an
+ * object into a {@link MpscLinkedQueue} <i>happen-before</i> actions
+ * subsequent to the access or removal of that element from the
+ * {@link MpscLinkedQueue} in another thread.
+ *
+ * @author The Netty Project (netty-dev@lists.jboss.org)
+ * @author Trustin Lee (tlee@redhat.com)
+ *
+ * @version $Rev$, $Date$
+ *
+ * @param <E> the type of elements held in this collection
+ */
+public class MpscLinkedQueue<E> extends AbstractQueue<E> {
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<MpscLinkedQueue, Node> tailUpdater =
+        AtomicReferenceFieldUpdater.newUpdater(MpscLinkedQueue.class, Node.class, "tail");
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<Node, Node> nextUpdater =
+        AtomicReferenceFieldUpdater.newUpdater(Node.class, Node.class, "next");
+
+    /** The node whose successor holds the first element.  Consumer only. */
+    private volatile Node<E> head;
+
+    /** The node which holds the last element.  Updated by the producers. */
+    @SuppressWarnings("unused")
+    private volatile Node<E> tail;
+
+    /**
+     * Creates a new instance.
+     */
+    public MpscLinkedQueue() {
+        Node<E> stub = new Node<E>(null);
+        head = stub;
+        tail = stub;
+    }
+
+    /**
+     * Inserts the specified element at the tail of this queue.
+     *
+     * @return {@code true} always
+     */
+    @SuppressWarnings("unchecked")
+    public boolean offer(E e) {
+        if (e == null) {
+            throw new NullPointerException("e");
+        }
+
+        Node<E> node = new Node<E>(e);
+        Node<E> prev = tailUpdater.getAndSet(this, node);
+        nextUpdater.lazySet(prev, node);
+        return true;
+    }
+
+    public E poll() {
+        Node<E> head = this.head;
+        Node<E> next = head.next;
+        if (next == null) {
+            return null;
+        }
+
+        E e = next.value;
+        // The polled node becomes the new stub.
+        next.value = null;
+        this.head = next;
+        return e;
+    }
+
+    public E peek() {
+        Node<E> next = head.next;
+        if (next == null) {
+            return null;
+        }
+        return next.value;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return head.next == null;
+    }
+
+    /**
+     * Returns the number of the elements in this queue.  Unlike in most
+     * collections, this method is not a constant-time operation.
+     */
+    @Override
+    public int size() {
+        int size = 0;
+        for (Node<E> n = head.next; n != null; n = n.next) {
+            if (++ size == Integer.MAX_VALUE) {
+                break;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns an iterator over the elements in this queue in proper
+     * sequence.  The iterator must be used by the consumer thread only and
+     * does not support {@link Iterator#remove()}.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new Itr(head.next);
+    }
+
+    private final class Itr implements Iterator<E> {
+
+        private Node<E> next;
+
+        Itr(Node<E> first) {
+            next = first;
+        }
+
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        public E next() {
+            Node<E> n = next;
+            if (n == null) {
+                throw new NoSuchElementException();
+            }
+            next = n.next;
+            return n.value;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static final class Node<E> {
+
+        E value;
+        volatile Node<E> next;
+
+        Node(E value) {
+            this.value = value;
+        }
+    }
+}
@@ -29,6 +29,7 @@ import org.junit.Test;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.nio.charset.UnsupportedCharsetException;
 import java.util.Arrays;
 import java.util.HashSet;
@@ -1539,6 +1540,91 @@ public abstract class AbstractChannelBufferTest {
         assertEquals(3, buffer.indexOf(4, 1, (byte) 2));
     }
 
+    @Test
+    public void testPrimitiveByteLayout() {
+        boolean bigEndian = buffer.order() == java.nio.ByteOrder.BIG_ENDIAN;
+        for (int i = 0; i < 16; i ++) {
+            // Misaligned indexes as well as aligned ones.
+            int index = buffer.capacity() - 8 - i;
+            long value = random.nextLong();
+
+            buffer.setLong(index, value);
+            for (int j = 0; j < 8; j ++) {
+                int shift = bigEndian? 56 - j * 8 : j * 8;
+                assertEquals((byte) (value >>> shift), buffer.getByte(index + j));
+            }
+
+            buffer.setInt(index, (int) value);
+            for (int j = 0; j < 4; j ++) {
+                int shift = bigEndian? 24 - j * 8 : j * 8;
+                assertEquals((byte) (value >>> shift), buffer.getByte(index + j));
+            }
+
+            buffer.setShort(index, (short) value);
+            assertEquals((byte) (value >>> (bigEndian? 8 : 0)), buffer.getByte(index));
+            assertEquals((byte) (value >>> (bigEndian? 0 : 8)), buffer.getByte(index + 1));
+
+            for (int j = 0; j < 8; j ++) {
+                buffer.setByte(index + j, (byte) (value >>> j * 8));
+            }
+            long expected = bigEndian? Long.reverseBytes(value) : value;
+            assertEquals(expected, buffer.getLong(index));
+            assertEquals(bigEndian? (int) (expected >>> 32) : (int) expected, buffer.getInt(index));
+            assertEquals(bigEndian? (short) (expected >>> 48) : (short) expected, buffer.getShort(index));
+        }
+    }
+
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void getLongBoundaryCheckAtEnd() {
+        buffer.getLong(buffer.capacity() - 7);
+    }
+
+    @Test(expected=IndexOutOfBoundsException.class)
+    public void setIntBoundaryCheckAtEnd() {
+        buffer.setInt(buffer.capacity() - 3, 0);
+    }
+
+    @Test
+    public void testIndexOfRandomRanges() {
+        // Sparse occurrences of the searched bytes make sure that both the
+        // word-at-a-time loop and the trailing bytes are exercised.
+        byte[] candidates = { 0, '\r', '\n', ' ', '\t', 'a', (byte) 0x80, (byte) 0xFF };
+        buffer.clear();
+        for (int i = 0; i < buffer.capacity(); i ++) {
+            buffer.writeByte(
+                    random.nextInt(16) == 0? candidates[random.nextInt(candidates.length)] : (byte) 'x');
+        }
+
+        ChannelBufferIndexFinder[] finders = {
+                ChannelBufferIndexFinder.NUL, ChannelBufferIndexFinder.NOT_NUL,
+                ChannelBufferIndexFinder.CR, ChannelBufferIndexFinder.NOT_CR,
+                ChannelBufferIndexFinder.LF, ChannelBufferIndexFinder.NOT_LF,
+                ChannelBufferIndexFinder.CRLF, ChannelBufferIndexFinder.NOT_CRLF,
+                ChannelBufferIndexFinder.LINEAR_WHITESPACE,
+                ChannelBufferIndexFinder.NOT_LINEAR_WHITESPACE };
+
+        for (int i = 0; i < 1000; i ++) {
+            int fromIndex = random.nextInt(buffer.capacity() + 1);
+            int toIndex = random.nextInt(buffer.capacity() + 1);
+            byte value = candidates[random.nextInt(candidates.length)];
+            assertEquals(
+                    "seed: " + seed,
+                    ChannelBuffers.indexOf(buffer, fromIndex, toIndex, value),
+                    buffer.indexOf(fromIndex, toIndex, value));
+
+            ChannelBufferIndexFinder finder = finders[random.nextInt(finders.length)];
+            assertEquals(
+                    "seed: " + seed,
+                    ChannelBuffers.indexOf(buffer, fromIndex, toIndex, finder),
+                    buffer.indexOf(fromIndex, toIndex, finder));
+        }
+
+        assertEquals(-1, buffer.indexOf(Integer.MIN_VALUE, 0, ChannelBufferIndexFinder.NOT_NUL));
+        assertEquals(
+                ChannelBuffers.indexOf(buffer, Integer.MAX_VALUE, 0, ChannelBufferIndexFinder.NOT_NUL),
+                buffer.indexOf(Integer.MAX_VALUE, 0, ChannelBufferIndexFinder.NOT_NUL));
+    }
+
     @Test
     public void testToByteBuffer1() {
         byte[] value = new byte[buffer.capacity()];
@@ -1669,4 +1755,213 @@ public abstract class AbstractChannelBufferTest {
         assertFalse(set.contains(elemB));
         assertEquals(0, set.size());
     }
+
+    @Test
+    public void testReferenceCount() {
+        assertEquals(1, buffer.refCnt());
+
+        ChannelBuffer slice = buffer.slice(1, CAPACITY / 2);
+        ChannelBuffer duplicate = buffer.duplicate();
+        assertSame(slice, slice.retain());
+        assertEquals(2, buffer.refCnt());
+        assertEquals(2, duplicate.refCnt());
+
+        assertFalse(buffer.release());
+        assertEquals(1, slice.refCnt());
+        assertTrue(duplicate.release());
+        assertEquals(0, buffer.refCnt());
+        assertEquals(0, slice.refCnt());
+
+        // Releasing a released buffer has no effect.
+        assertFalse(buffer.release());
+        assertEquals(0, buffer.refCnt());
+    }
+
+    @Test(expected=IllegalStateException.class)
+    public void testRetainReleased() {
+        buffer.release();
+        buffer.retain();
+    }
+
+    @Test
+    public void testVarIntEncoding() {
+        buffer.clear();
+        buffer.writeVarInt32(0);
+        buffer.writeVarInt32(1);
+        buffer.writeVarInt32(300);
+        buffer.writeVarInt32(-1);
+        buffer.writeVarInt64(Long.MIN_VALUE);
+        buffer.writeZigZagVarInt32(-1);
+        buffer.writeZigZagVarInt64(-2);
+
+        ChannelBuffer expected = wrappedBuffer(new byte[] {
+                0x00, 0x01, (byte) 0xAC, 0x02,
+                (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F,
+                (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80,
+                (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x01,
+                0x01, 0x03 });
+        assertEquals(expected, buffer);
+
+        assertEquals(0, buffer.readVarInt32());
+        assertEquals(1, buffer.readVarInt32());
+        assertEquals(300, buffer.readVarInt32());
+        assertEquals(-1, buffer.readVarInt32());
+        assertEquals(Long.MIN_VALUE, buffer.readVarInt64());
+        assertEquals(-1, buffer.readZigZagVarInt32());
+        assertEquals(-2, buffer.readZigZagVarInt64());
+        assertFalse(buffer.readable());
+    }
+
+    @Test
+    public void testRandomVarIntAccess() {
+        buffer.clear();
+        int[] ints = new int[CAPACITY / 32];
+        long[] longs = new long[ints.length];
+        for (int i = 0; i < ints.length; i ++) {
+            // Vary the number of significant bits to cover all lengths.
+            ints[i] = random.nextInt() >> random.nextInt(32);
+            longs[i] = random.nextLong() >> random.nextInt(64);
+            buffer.writeVarInt32(ints[i]);
+            buffer.writeZigZagVarInt32(ints[i]);
+            buffer.writeVarInt64(longs[i]);
+            buffer.writeZigZagVarInt64(longs[i]);
+        }
+
+        for (int i = 0; i < ints.length; i ++) {
+            assertEquals(ints[i], buffer.readVarInt32());
+            assertEquals(ints[i], buffer.readZigZagVarInt32());
+            assertEquals(longs[i], buffer.readVarInt64());
+            assertEquals(longs[i], buffer.readZigZagVarInt64());
+        }
+        assertFalse(buffer.readable());
+    }
+
+    @Test
+    public void testTruncatedVarInt() {
+        buffer.clear();
+        buffer.writeByte((byte) 0x80);
+        buffer.writeByte((byte) 0x80);
+
+        try {
+            buffer.readVarInt32();
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            // Expected
+        }
+        try {
+            buffer.readVarInt64();
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            // Expected
+        }
+        assertEquals(0, buffer.readerIndex());
+
+        buffer.writeByte((byte) 0x01);
+        assertEquals(1 << 14, buffer.readVarInt32());
+    }
+
+    @Test
+    public void testMalformedVarInt() {
+        buffer.clear();
+        buffer.writeZero(11);
+        for (int i = 0; i < 10; i ++) {
+            buffer.setByte(i, (byte) 0x80);
+        }
+
+        try {
+            buffer.readVarInt32();
+            fail();
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+        try {
+            buffer.readVarInt64();
+            fail();
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+        assertEquals(0, buffer.readerIndex());
+    }
+
+    @Test
+    public void testLengthPrefixedSlice() {
+        buffer.clear();
+        buffer.writeVarInt32(200);
+        for (int i = 0; i < 200; i ++) {
+            buffer.writeByte((byte) i);
+        }
+        buffer.writeVarInt32(3);
+        buffer.writeByte((byte) 42);
+
+        ChannelBuffer slice = buffer.readLengthPrefixedSlice();
+        assertEquals(200, slice.readableBytes());
+        for (int i = 0; i < 200; i ++) {
+            assertEquals((byte) i, slice.getByte(i));
+        }
+
+        int readerIndex = buffer.readerIndex();
+        try {
+            buffer.readLengthPrefixedSlice();
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            // Expected
+        }
+        assertEquals(readerIndex, buffer.readerIndex());
+    }
+
+    @Test
+    public void testCharSequenceRoundTrip() {
+        String[] strings = {
+                "", "Hello, world!", "h\u00e9llo w\u00f6rld", "\u65e5\u672c\u8a9e",
+                "smile \ud83d\ude00", "unpaired \ud800 and \udc00", "\ud800" };
+        Charset[] charsets = {
+                Charset.forName("US-ASCII"), Charset.forName("ISO-8859-1"),
+                Charset.forName("UTF-8"), Charset.forName("UTF-16LE"),
+                Charset.forName("UTF-16") };
+
+        for (Charset charset: charsets) {
+            for (String string: strings) {
+                byte[] expected = string.getBytes(charset);
+
+                buffer.clear();
+                buffer.writeByte((byte) 0);
+                assertEquals(expected.length, buffer.writeCharSequence(string, charset));
+                assertEquals(expected.length + 1, buffer.writerIndex());
+
+                byte[] actual = new byte[expected.length];
+                buffer.getBytes(1, actual);
+                assertArrayEquals(charset + ": " + string, expected, actual);
+
+                buffer.skipBytes(1);
+                assertEquals(
+                        new String(expected, charset),
+                        buffer.readCharSequence(expected.length, charset).toString());
+                assertFalse(buffer.readable());
+
+                buffer.setCharSequence(buffer.capacity() - expected.length, new StringBuilder(string), charset);
+                assertEquals(
+                        new String(expected, charset),
+                        buffer.getCharSequence(buffer.capacity() - expected.length, expected.length, charset).toString());
+            }
+        }
+    }
+
+    @Test
+    public void testWriteCharSequenceOverflow() {
+        buffer.clear();
+        buffer.writerIndex(buffer.capacity() - 2);
+        try {
+            buffer.setCharSequence(buffer.writerIndex(), "\u65e5", Charset.forName("UTF-8"));
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            // Expected
+        }
+        try {
+            buffer.setCharSequence(buffer.writerIndex(), "abc", Charset.forName("UTF-16BE"));
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            // Expected
+        }
+        assertEquals(buffer.capacity() - 2, buffer.writerIndex());
+    }
 }
@@ -22,11 +22,13 @@
  */
 package com.wuyiccc.hellonetty.buffer;
 
+import org.junit.Test;
+
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
-import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.*;
 
 /**
  *
@@ -78,4 +80,206 @@ public class BigEndianCompositeChannelBufferTest extends AbstractChannelBufferTe
     protected ChannelBuffer[] components() {
         return buffers.toArray(new ChannelBuffer[buffers.size()]);
     }
+
+    @Test
+    public void testAddComponent() {
+        CompositeChannelBuffer buf = new CompositeChannelBuffer(
+                ChannelBuffers.wrappedBuffer(new byte[] { 1, 2 }));
+        buf.readByte();
+        ChannelBuffer b = ChannelBuffers.wrappedBuffer(new byte[] { 0, 3, 4 });
+        b.readByte();
+        buf.addComponent(b);
+        buf.addComponent(ChannelBuffers.EMPTY_BUFFER);
+
+        assertEquals(2, buf.numComponents());
+        assertEquals(4, buf.capacity());
+        assertEquals(1, buf.readerIndex());
+        assertEquals(4, buf.writerIndex());
+        assertEquals(0x020304, buf.getUnsignedMedium(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddComponentWithDifferentOrder() {
+        CompositeChannelBuffer buf = new CompositeChannelBuffer(
+                ChannelBuffers.wrappedBuffer(new byte[] { 1 }));
+        buf.addComponent(ChannelBuffers.wrappedBuffer(
+                java.nio.ByteOrder.LITTLE_ENDIAN, new byte[] { 2 }));
+    }
+
+    @Test
+    public void testDiscardReadComponents() {
+        ChannelBuffer a = ChannelBuffers.wrappedBuffer(new byte[] { 1, 2 });
+        ChannelBuffer b = ChannelBuffers.wrappedBuffer(new byte[] { 3, 4 });
+        ChannelBuffer c = ChannelBuffers.wrappedBuffer(new byte[] { 5, 6 });
+        CompositeChannelBuffer buf = new CompositeChannelBuffer(a, b, c);
+
+        buf.skipBytes(1);
+        buf.discardReadComponents();
+        assertEquals(3, buf.numComponents());
+        assertEquals(1, buf.readerIndex());
+
+        buf.skipBytes(2);
+        buf.markReaderIndex();
+        buf.discardReadComponents();
+        assertEquals(2, buf.numComponents());
+        assertEquals(0, a.refCnt());
+        assertEquals(1, buf.readerIndex());
+        assertEquals(4, buf.writerIndex());
+        assertEquals(4, buf.capacity());
+        assertEquals(4, buf.readByte());
+        buf.resetReaderIndex();
+        assertEquals(4, buf.readByte());
+
+        // The last component is never discarded.
+        buf.skipBytes(2);
+        buf.discardReadComponents();
+        assertEquals(1, buf.numComponents());
+        assertEquals(0, b.refCnt());
+        assertEquals(1, c.refCnt());
+        assertFalse(buf.readable());
+        assertEquals(2, buf.capacity());
+    }
+
+    @Test
+    public void testRemoveComponents() {
+        ChannelBuffer a = ChannelBuffers.wrappedBuffer(new byte[] { 1, 2 });
+        ChannelBuffer b = ChannelBuffers.wrappedBuffer(new byte[] { 3, 4 });
+        ChannelBuffer c = ChannelBuffers.wrappedBuffer(new byte[] { 5, 6 });
+        ChannelBuffer d = ChannelBuffers.wrappedBuffer(new byte[] { 7, 8 });
+        CompositeChannelBuffer buf = new CompositeChannelBuffer(a, b, c, d);
+        buf.setIndex(3, 7);
+
+        buf.removeComponents(1, 2);
+        assertEquals(2, buf.numComponents());
+        assertEquals(0, b.refCnt());
+        assertEquals(0, c.refCnt());
+        assertEquals(1, a.refCnt());
+        assertEquals(4, buf.capacity());
+        assertEquals(2, buf.readerIndex());
+        assertEquals(3, buf.writerIndex());
+        assertEquals(2, buf.toByteIndex(1));
+        assertEquals(ChannelBuffers.wrappedBuffer(new byte[] { 7 }), buf);
+
+        buf.removeComponent(0);
+        assertEquals(1, buf.numComponents());
+        assertEquals(0, buf.readerIndex());
+        assertEquals(1, buf.writerIndex());
+        assertEquals(7, buf.getByte(0));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testRemoveComponentsOutOfBounds() {
+        CompositeChannelBuffer buf = new CompositeChannelBuffer(
+                ChannelBuffers.wrappedBuffer(new byte[] { 1 }));
+        buf.removeComponents(0, 2);
+    }
+
+    @Test
+    public void testConsolidate() {
+        CompositeChannelBuffer buf =
+            new CompositeChannelBuffer(ChannelBuffers.BIG_ENDIAN, 3);
+        ChannelBuffer[] components = new ChannelBuffer[4];
+        for (int i = 0; i < components.length; i ++) {
+            components[i] = ChannelBuffers.wrappedBuffer(new byte[] { (byte) i });
+            buf.addComponent(components[i]);
+        }
+        buf.readByte();
+
+        // Only the last two components are consolidated.
+        assertEquals(3, buf.numComponents());
+        assertEquals(1, components[0].refCnt());
+        assertEquals(1, components[1].refCnt());
+        assertEquals(0, components[2].refCnt());
+        assertEquals(0, components[3].refCnt());
+        assertEquals(2, buf.toByteIndex(2));
+        assertEquals(4, buf.capacity());
+        assertEquals(1, buf.readerIndex());
+        assertEquals(4, buf.writerIndex());
+        assertEquals(0x00010203, buf.getInt(0));
+    }
+
+    @Test
+    public void testConsolidateTail() {
+        CompositeChannelBuffer buf =
+            new CompositeChannelBuffer(ChannelBuffers.BIG_ENDIAN, 16);
+        buf.addComponent(ChannelBuffers.wrappedBuffer(new byte[1024]));
+        ChannelBuffer head = buf.component(0);
+
+        // The long first component must not be copied again and again while
+        // short components are added one by one.
+        for (int i = 0; i < 1000; i ++) {
+            buf.addComponent(ChannelBuffers.wrappedBuffer(new byte[] { (byte) i }));
+            assertTrue(buf.numComponents() <= 16);
+            assertSame(head, buf.component(0));
+        }
+        assertEquals(2024, buf.capacity());
+        assertEquals(2024, buf.writerIndex());
+        for (int i = 0; i < 1000; i ++) {
+            assertEquals((byte) i, buf.getByte(1024 + i));
+        }
+    }
+
+    @Test
+    public void testConsolidateRange() {
+        ChannelBuffer a = ChannelBuffers.wrappedBuffer(new byte[] { 1, 2 });
+        ChannelBuffer b = ChannelBuffers.wrappedBuffer(new byte[] { 3, 4 });
+        ChannelBuffer c = ChannelBuffers.wrappedBuffer(new byte[] { 5, 6 });
+        ChannelBuffer d = ChannelBuffers.wrappedBuffer(new byte[] { 7, 8 });
+        CompositeChannelBuffer buf = new CompositeChannelBuffer(a, b, c, d);
+        buf.setIndex(1, 7);
+
+        buf.consolidate(1, 2);
+        assertEquals(3, buf.numComponents());
+        assertEquals(1, a.refCnt());
+        assertEquals(0, b.refCnt());
+        assertEquals(0, c.refCnt());
+        assertEquals(1, d.refCnt());
+        assertEquals(2, buf.toByteIndex(1));
+        assertEquals(6, buf.toByteIndex(2));
+        assertEquals(1, buf.readerIndex());
+        assertEquals(7, buf.writerIndex());
+        assertEquals(0x02030405, buf.getInt(1));
+        assertEquals(0x0607, buf.getShort(5));
+    }
+
+    @Test
+    public void testAddComponentsToEmptyBuffer() {
+        CompositeChannelBuffer buf =
+            new CompositeChannelBuffer(ChannelBuffers.BIG_ENDIAN, 16);
+        assertEquals(0, buf.numComponents());
+        assertEquals(0, buf.capacity());
+
+        ChannelBuffer header = ChannelBuffers.wrappedBuffer(new byte[] { 0, 3 });
+        ChannelBuffer payload = ChannelBuffers.wrappedBuffer(new byte[] { 1, 2, 3 });
+        buf.addComponents(header, payload);
+        assertEquals(2, buf.numComponents());
+        assertEquals(3, buf.readUnsignedShort());
+        assertEquals(ChannelBuffers.wrappedBuffer(new byte[] { 1, 2, 3 }), buf);
+
+        buf.removeComponents(0, 2);
+        assertEquals(0, buf.capacity());
+        assertFalse(buf.readable());
+    }
+
+    @Test
+    public void testRandomAccessOverManyComponents() {
+        ChannelBuffer[] components = new ChannelBuffer[1000];
+        for (int i = 0; i < components.length; i ++) {
+            // Mix in empty components, which must be skipped.
+            components[i] = i % 3 == 0?
+                    ChannelBuffers.EMPTY_BUFFER :
+                    ChannelBuffers.wrappedBuffer(new byte[] { (byte) i, (byte) (i >>> 8) });
+        }
+        CompositeChannelBuffer buf = new CompositeChannelBuffer(components);
+
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i ++) {
+            int index = random.nextInt(buf.capacity());
+            int cIndex = buf.toComponentIndex(index);
+            assertEquals(
+                    buf.component(cIndex).getByte(index - buf.toByteIndex(cIndex)),
+                    buf.getByte(index));
+            assertTrue(buf.component(cIndex).readable());
+        }
+    }
 }
@@ -0,0 +1,96 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.wuyiccc.hellonetty.buffer;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * @author The Netty Project (netty-dev@lists.jboss.org)
+ * @author Trustin Lee (tlee@redhat.com)
+ *
+ * @version $Rev$, $Date$
+ *
+ */
+public class ChannelBufferLeakDetectorTest {
+
+    private final int oldSamplingInterval = ChannelBufferLeakDetector.getSamplingInterval();
+
+    @After
+    public void restoreSamplingInterval() {
+        ChannelBufferLeakDetector.setSamplingInterval(oldSamplingInterval);
+    }
+
+    @Test
+    public void testReleasedBufferIsNotReported() {
+        ChannelBufferLeakDetector.setSamplingInterval(1);
+        int trackedCount = ChannelBufferLeakDetector.getTrackedCount();
+
+        ChannelBuffer buf = new PooledChannelBufferFactory().getBuffer(64);
+        assertEquals(trackedCount + 1, ChannelBufferLeakDetector.getTrackedCount());
+        buf.retain();
+        assertFalse(buf.release());
+        assertEquals(trackedCount + 1, ChannelBufferLeakDetector.getTrackedCount());
+        assertTrue(buf.release());
+        assertEquals(trackedCount, ChannelBufferLeakDetector.getTrackedCount());
+    }
+
+    @Test
+    public void testUnsampledBufferIsNotTracked() {
+        ChannelBufferLeakDetector.setSamplingInterval(0);
+        int trackedCount = ChannelBufferLeakDetector.getTrackedCount();
+        ChannelBuffer buf = ChannelBuffers.directBuffer(64);
+        assertEquals(trackedCount, ChannelBufferLeakDetector.getTrackedCount());
+        buf.release();
+    }
+
+    @Test
+    public void testLeakIsReported() throws Exception {
+        ChannelBufferLeakDetector.setSamplingInterval(1);
+        long leakCount = ChannelBufferLeakDetector.getLeakCount();
+
+        leak();
+        for (int i = 0; i < 100; i ++) {
+            System.gc();
+            Thread.sleep(10);
+            ChannelBufferLeakDetector.reportLeaks();
+            if (ChannelBufferLeakDetector.getLeakCount() > leakCount) {
+                break;
+            }
+        }
+        assertTrue(ChannelBufferLeakDetector.getLeakCount() > leakCount);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeSamplingInterval() {
+        ChannelBufferLeakDetector.setSamplingInterval(-1);
+    }
+
+    private static void leak() {
+        ChannelBuffer buf = ChannelBuffers.directBuffer(64);
+        buf.retain();
+        buf.release();
+    }
+}
@@ -24,7 +24,13 @@ package com.wuyiccc.hellonetty.buffer;
 
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.EOFException;
+import java.io.UTFDataFormatException;
+import java.nio.ByteOrder;
 
 import static org.junit.Assert.*;
 
@@ -179,4 +185,126 @@ public class ChannelBufferStreamTest {
 
         assertEquals(buf.readerIndex(), in.readBytes());
     }
+
+    @Test
+    public void testReadLine() throws Exception {
+        ChannelBuffer buf = ChannelBuffers.copiedBuffer(
+                "first\r\n\nthird\r\r\nlast", "ISO-8859-1");
+        ChannelBufferInputStream in = new ChannelBufferInputStream(buf);
+        assertEquals("first", in.readLine());
+        assertEquals("", in.readLine());
+        assertEquals("third", in.readLine());
+        assertEquals("last", in.readLine());
+        assertNull(in.readLine());
+    }
+
+    @Test
+    public void testLengthIsRespected() throws Exception {
+        ChannelBuffer buf = ChannelBuffers.wrappedBuffer(new byte[] { 1, 2, '\n', 4, 5, 6, 7, 8 });
+        ChannelBufferInputStream in = new ChannelBufferInputStream(buf, 2);
+        assertEquals(1, in.read());
+        assertEquals(2, in.readByte());
+        assertEquals(-1, in.read());
+        assertNull(in.readLine());
+        assertEquals(0, in.read(new byte[4], 0, 0));
+        assertEquals(0, in.skip(-1));
+        try {
+            in.readInt();
+            fail();
+        } catch (EOFException e) {
+            // Expected
+        }
+        assertEquals(2, buf.readerIndex());
+
+        in = new ChannelBufferInputStream(buf, 3);
+        assertEquals("", in.readLine());
+        assertEquals(new String(new char[] { 4, 5 }), in.readLine());
+        assertNull(in.readLine());
+        assertEquals(5, buf.readerIndex());
+    }
+
+    @Test
+    public void testUTF() throws Exception {
+        String[] strings = {
+                "", "Hello, World!", "\0", "caf\u00e9", "\u20ac100",
+                "\ud83d\ude00 surrogate pair", "\u07ff\u0800\uffff",
+        };
+
+        for (ByteOrder order: new ByteOrder[] { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN }) {
+            for (boolean direct: new boolean[] { false, true }) {
+                ByteArrayOutputStream expected = new ByteArrayOutputStream();
+                DataOutputStream dout = new DataOutputStream(expected);
+                ChannelBuffer buf = direct? ChannelBuffers.directBuffer(order, 256)
+                                          : ChannelBuffers.buffer(order, 256);
+                ChannelBufferOutputStream out = new ChannelBufferOutputStream(buf);
+                for (String s: strings) {
+                    dout.writeUTF(s);
+                    out.writeUTF(s);
+                    out.writeBytes(s);
+                }
+
+                ChannelBufferInputStream in = new ChannelBufferInputStream(buf);
+                DataInputStream din = new DataInputStream(
+                        new ByteArrayInputStream(expected.toByteArray()));
+                for (String s: strings) {
+                    assertEquals(s, in.readUTF());
+                    byte[] bytes = new byte[s.length()];
+                    in.readFully(bytes);
+                    for (int i = 0; i < bytes.length; i ++) {
+                        assertEquals((byte) s.charAt(i), bytes[i]);
+                    }
+                    assertEquals(s, din.readUTF());
+                }
+                assertEquals(0, in.available());
+                buf.release();
+            }
+        }
+
+        // The length prefix is big-endian only with a big-endian buffer,
+        // but the content must match DataOutputStream byte for byte.
+        ChannelBuffer buf = ChannelBuffers.dynamicBuffer();
+        new ChannelBufferOutputStream(buf).writeUTF("\0caf\u00e9\u20ac");
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        new DataOutputStream(expected).writeUTF("\0caf\u00e9\u20ac");
+        assertEquals(ChannelBuffers.wrappedBuffer(expected.toByteArray()), buf);
+    }
+
+    @Test
+    public void testMalformedUTF() throws Exception {
+        byte[][] malformed = {
+                { 0, 1, (byte) 0x80 },
+                { 0, 1, (byte) 0xC3 },
+                { 0, 2, (byte) 0xC3, 0x41 },
+                { 0, 3, (byte) 0xE2, (byte) 0x82, 0x41 },
+                { 0, 1, (byte) 0xF0 },
+        };
+        for (byte[] m: malformed) {
+            try {
+                new ChannelBufferInputStream(ChannelBuffers.wrappedBuffer(m)).readUTF();
+                fail();
+            } catch (UTFDataFormatException e) {
+                // Expected
+            }
+        }
+
+        try {
+            new ChannelBufferInputStream(ChannelBuffers.wrappedBuffer(new byte[] { 0, 2, 0x41 })).readUTF();
+            fail();
+        } catch (EOFException e) {
+            // Expected
+        }
+
+        StringBuilder tooLong = new StringBuilder();
+        for (int i = 0; i < 32768; i ++) {
+            tooLong.append('\u00e9');
+        }
+        ChannelBuffer buf = ChannelBuffers.dynamicBuffer();
+        try {
+            new ChannelBufferOutputStream(buf).writeUTF(tooLong.toString());
+            fail();
+        } catch (UTFDataFormatException e) {
+            // Expected
+        }
+        assertEquals(0, buf.writerIndex());
+    }
 }
@@ -28,12 +28,14 @@ import org.junit.Test;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.channels.ScatteringByteChannel;
+import java.nio.charset.Charset;
 import java.nio.charset.UnsupportedCharsetException;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Random;
 
 import static com.wuyiccc.hellonetty.buffer.ChannelBuffers.*;
 import static org.junit.Assert.*;
@@ -167,6 +169,70 @@ public class ChannelBuffersTest {
         }
     }
 
+    @Test
+    public void testHashCodeEqualsCompareMatchPreviousImplementation() {
+        Random random = new Random(42);
+        for (int n = 0; n < 2000; n ++) {
+            byte[] a = new byte[random.nextInt(40)];
+            random.nextBytes(a);
+            // Share a random prefix so that the comparisons go beyond the first word.
+            byte[] b = new byte[random.nextInt(40)];
+            random.nextBytes(b);
+            System.arraycopy(a, 0, b, 0, Math.min(random.nextInt(41), Math.min(a.length, b.length)));
+
+            ChannelBuffer[] as = variants(a, random);
+            ChannelBuffer[] bs = variants(b, random);
+            for (ChannelBuffer x: as) {
+                assertEquals(ComparisonBenchmark.oldHashCode(x), ChannelBuffers.hashCode(x));
+                for (ChannelBuffer y: as) {
+                    assertTrue(ChannelBuffers.equals(x, y));
+                    assertEquals(ComparisonBenchmark.oldCompare(x, y), compare(x, y));
+                }
+                for (ChannelBuffer y: bs) {
+                    assertEquals(ComparisonBenchmark.oldEquals(x, y), ChannelBuffers.equals(x, y));
+                    assertEquals(ComparisonBenchmark.oldCompare(x, y), compare(x, y));
+                    assertEquals(ComparisonBenchmark.oldCompare(y, x), compare(y, x));
+                }
+            }
+            for (ChannelBuffer x: as) {
+                x.release();
+            }
+            for (ChannelBuffer y: bs) {
+                y.release();
+            }
+        }
+    }
+
+    /**
+     * Returns the buffers of various types and endianness whose readable
+     * bytes are the specified bytes.
+     */
+    private static ChannelBuffer[] variants(byte[] data, Random random) {
+        int offset = random.nextInt(8);
+        byte[] padded = new byte[data.length + offset + 8];
+        random.nextBytes(padded);
+        System.arraycopy(data, 0, padded, offset, data.length);
+
+        ChannelBuffer direct = directBuffer(LITTLE_ENDIAN, data.length + 8);
+        direct.writerIndex(offset);
+        direct.readerIndex(offset);
+        direct.writeBytes(data);
+
+        ChannelBuffer readerIndexed = wrappedBuffer(padded);
+        readerIndexed.setIndex(offset, offset + data.length);
+
+        return new ChannelBuffer[] {
+                wrappedBuffer(data),
+                wrappedBuffer(LITTLE_ENDIAN, data),
+                wrappedBuffer(padded).slice(offset, data.length),
+                wrappedBuffer(LITTLE_ENDIAN, padded).slice(offset, data.length).duplicate(),
+                readerIndexed,
+                wrappedBuffer(ByteBuffer.wrap(padded, offset, data.length).slice()),
+                wrappedBuffer(wrappedBuffer(padded, 0, offset), wrappedBuffer(data)).slice(offset, data.length),
+                direct,
+        };
+    }
+
     @Test
     public void shouldReturnEmptyBufferWhenLengthIsZero() {
         assertSame(EMPTY_BUFFER, buffer(0));
@@ -328,6 +394,25 @@ public class ChannelBuffersTest {
         }
     }
 
+    @Test
+    public void testCopiedCharSequence() {
+        String string = "h\u00e9llo \u65e5\u672c \ud83d\ude00";
+        for (String charsetName: new String[] { "US-ASCII", "ISO-8859-1", "UTF-8", "UTF-16" }) {
+            Charset charset = Charset.forName(charsetName);
+            ChannelBuffer expected = wrappedBuffer(string.getBytes(charset));
+            assertEquals(expected, copiedBuffer(string, charsetName));
+            assertEquals(expected, copiedBuffer(new StringBuilder(string), charset));
+            assertEquals(LITTLE_ENDIAN, copiedBuffer(LITTLE_ENDIAN, string, charset).order());
+        }
+
+        try {
+            copiedBuffer("", "Illegal Charset Name");
+            fail();
+        } catch (UnsupportedCharsetException e) {
+            // Expected
+        }
+    }
+
     @Test
     public void testHexDump() {
         assertEquals("", hexDump(EMPTY_BUFFER));
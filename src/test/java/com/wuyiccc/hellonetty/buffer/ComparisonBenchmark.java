@@ -0,0 +1,264 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.wuyiccc.hellonetty.buffer;
+
+import static com.wuyiccc.hellonetty.buffer.ChannelBuffers.*;
+
+import java.nio.ByteOrder;
+import java.util.Random;
+
+/**
+ * Measures the throughput of {@link ChannelBuffers#hashCode(ChannelBuffer)},
+ * {@link ChannelBuffers#equals(ChannelBuffer, ChannelBuffer)} and
+ * {@link ChannelBuffers#compare(ChannelBuffer, ChannelBuffer)} against their
+ * previous implementations, which accessed the buffers via the
+ * {@link ChannelBuffer} interface even when both were backed by an array:
+ * <pre>
+ * java -cp ... com.wuyiccc.hellonetty.buffer.ComparisonBenchmark
+ * </pre>
+ * This is not a unit test and is not run by the build.
+ *
+ * @author The Netty Project (netty-dev@lists.jboss.org)
+ * @author Trustin Lee (tlee@redhat.com)
+ *
+ * @version $Rev$, $Date$
+ */
+public class ComparisonBenchmark {
+
+    private static final int[] LENGTHS = { 16, 64, 1024 };
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int ROUNDS = 20;
+    private static final int ITERATIONS = 100000;
+
+    static volatile long sink;
+
+    public static void main(String[] args) {
+        System.out.println("Unsafe available: " + UnsafeAccess.isAvailable());
+
+        Random random = new Random(42);
+        for (int length: LENGTHS) {
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+            byte[] padded = new byte[length + 3];
+            System.arraycopy(data, 0, padded, 3, length);
+
+            ChannelBuffer heap = wrappedBuffer(data.clone());
+            ChannelBuffer slice = wrappedBuffer(padded).slice(3, length);
+            ChannelBuffer direct = directBuffer(ByteOrder.LITTLE_ENDIAN, length);
+            direct.writeBytes(data);
+
+            ChannelBuffer[][] pairs = {
+                    { heap, wrappedBuffer(data.clone()) },
+                    { heap, slice },
+                    { heap, direct },
+            };
+            for (ChannelBuffer[] pair: pairs) {
+                String name = length + " bytes, " +
+                        pair[0].getClass().getSimpleName() + " vs " +
+                        pair[1].getClass().getSimpleName();
+                for (int op = 0; op < 6; op ++) {
+                    report(name, op, measure(pair[0], pair[1], op));
+                }
+            }
+            direct.release();
+        }
+    }
+
+    private static double measure(ChannelBuffer a, ChannelBuffer b, int op) {
+        for (int i = 0; i < WARMUP_ROUNDS; i ++) {
+            run(a, b, op);
+        }
+        long startTime = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i ++) {
+            run(a, b, op);
+        }
+        return (double) (System.nanoTime() - startTime) / ((long) ROUNDS * ITERATIONS);
+    }
+
+    private static void run(ChannelBuffer a, ChannelBuffer b, int op) {
+        long sum = 0;
+        for (int i = 0; i < ITERATIONS; i ++) {
+            switch (op) {
+            case 0:
+                sum += ChannelBuffers.hashCode(b);
+                break;
+            case 1:
+                sum += oldHashCode(b);
+                break;
+            case 2:
+                sum += ChannelBuffers.equals(a, b)? 1 : 0;
+                break;
+            case 3:
+                sum += oldEquals(a, b)? 1 : 0;
+                break;
+            case 4:
+                sum += ChannelBuffers.compare(a, b);
+                break;
+            default:
+                sum += oldCompare(a, b);
+            }
+        }
+        sink += sum;
+    }
+
+    private static void report(String name, int op, double nanosPerOp) {
+        String[] ops = {
+                "hashCode       ", "hashCode (old) ",
+                "equals         ", "equals (old)   ",
+                "compare        ", "compare (old)  " };
+        System.out.println(String.format("%-60s %s %10.3f ns/op", name, ops[op], nanosPerOp));
+    }
+
+    /**
+     * The previous implementation of {@link ChannelBuffers#hashCode(ChannelBuffer)}.
+     */
+    static int oldHashCode(ChannelBuffer buffer) {
+        final int aLen = buffer.readableBytes();
+        final int intCount = aLen >>> 2;
+        final int byteCount = aLen & 3;
+
+        int hashCode = 1;
+        int arrayIndex = buffer.readerIndex();
+        if (buffer.order() == BIG_ENDIAN) {
+            for (int i = intCount; i > 0; i --) {
+                hashCode = 31 * hashCode + buffer.getInt(arrayIndex);
+                arrayIndex += 4;
+            }
+        } else {
+            for (int i = intCount; i > 0; i --) {
+                hashCode = 31 * hashCode + swapInt(buffer.getInt(arrayIndex));
+                arrayIndex += 4;
+            }
+        }
+
+        for (int i = byteCount; i > 0; i --) {
+            hashCode = 31 * hashCode + buffer.getByte(arrayIndex ++);
+        }
+
+        if (hashCode == 0) {
+            hashCode = 1;
+        }
+
+        return hashCode;
+    }
+
+    /**
+     * The previous implementation of
+     * {@link ChannelBuffers#equals(ChannelBuffer, ChannelBuffer)}.
+     */
+    static boolean oldEquals(ChannelBuffer bufferA, ChannelBuffer bufferB) {
+        final int aLen = bufferA.readableBytes();
+        if (aLen != bufferB.readableBytes()) {
+            return false;
+        }
+
+        final int longCount = aLen >>> 3;
+        final int byteCount = aLen & 7;
+
+        int aIndex = bufferA.readerIndex();
+        int bIndex = bufferB.readerIndex();
+
+        if (bufferA.order() == bufferB.order()) {
+            for (int i = longCount; i > 0; i --) {
+                if (bufferA.getLong(aIndex) != bufferB.getLong(bIndex)) {
+                    return false;
+                }
+                aIndex += 8;
+                bIndex += 8;
+            }
+        } else {
+            for (int i = longCount; i > 0; i --) {
+                if (bufferA.getLong(aIndex) != swapLong(bufferB.getLong(bIndex))) {
+                    return false;
+                }
+                aIndex += 8;
+                bIndex += 8;
+            }
+        }
+
+        for (int i = byteCount; i > 0; i --) {
+            if (bufferA.getByte(aIndex) != bufferB.getByte(bIndex)) {
+                return false;
+            }
+            aIndex ++;
+            bIndex ++;
+        }
+
+        return true;
+    }
+
+    /**
+     * The previous implementation of
+     * {@link ChannelBuffers#compare(ChannelBuffer, ChannelBuffer)}.
+     */
+    static int oldCompare(ChannelBuffer bufferA, ChannelBuffer bufferB) {
+        final int aLen = bufferA.readableBytes();
+        final int bLen = bufferB.readableBytes();
+        final int minLength = Math.min(aLen, bLen);
+        final int uintCount = minLength >>> 2;
+        final int byteCount = minLength & 3;
+
+        int aIndex = bufferA.readerIndex();
+        int bIndex = bufferB.readerIndex();
+
+        if (bufferA.order() == bufferB.order()) {
+            for (int i = uintCount; i > 0; i --) {
+                long va = bufferA.getUnsignedInt(aIndex);
+                long vb = bufferB.getUnsignedInt(bIndex);
+                if (va > vb) {
+                    return 1;
+                } else if (va < vb) {
+                    return -1;
+                }
+                aIndex += 4;
+                bIndex += 4;
+            }
+        } else {
+            for (int i = uintCount; i > 0; i --) {
+                long va = bufferA.getUnsignedInt(aIndex);
+                long vb = swapInt(bufferB.getInt(bIndex)) & 0xFFFFFFFFL;
+                if (va > vb) {
+                    return 1;
+                } else if (va < vb) {
+                    return -1;
+                }
+                aIndex += 4;
+                bIndex += 4;
+            }
+        }
+
+        for (int i = byteCount; i > 0; i --) {
+            byte va = bufferA.getByte(aIndex);
+            byte vb = bufferB.getByte(bIndex);
+            if (va > vb) {
+                return 1;
+            } else if (va < vb) {
+                return -1;
+            }
+            aIndex ++;
+            bIndex ++;
+        }
+
+        return aLen - bLen;
+    }
+}
@@ -22,7 +22,18 @@
  */
 package com.wuyiccc.hellonetty.buffer;
 
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
 
 /**
  *
@@ -46,4 +57,90 @@ public class DirectChannelBufferTest extends AbstractChannelBufferTest {
     protected ChannelBuffer[] components() {
         return new ChannelBuffer[] { buffer };
     }
+
+    @Test
+    public void testConcurrentBulkReadsViaDuplicates() throws Exception {
+        final byte[] data = new byte[8192];
+        new Random().nextBytes(data);
+        final ChannelBuffer shared = ChannelBuffers.directBuffer(data.length);
+        shared.writeBytes(data);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+            for (int i = 0; i < 4; i ++) {
+                results.add(executor.submit(new Callable<Boolean>() {
+                    public Boolean call() {
+                        ChannelBuffer duplicate = shared.duplicate();
+                        Random random = new Random();
+                        for (int j = 0; j < 10000; j ++) {
+                            int index = random.nextInt(data.length);
+                            int length = random.nextInt(data.length - index + 1);
+                            ByteBuffer dst = ByteBuffer.allocate(length);
+                            duplicate.getBytes(index, dst);
+                            dst.flip();
+                            if (!dst.equals(ByteBuffer.wrap(data, index, length))) {
+                                return false;
+                            }
+                        }
+                        return true;
+                    }
+                }));
+            }
+            for (Future<Boolean> f: results) {
+                assertTrue(f.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testAccessAfterRelease() {
+        ChannelBuffer buf = ChannelBuffers.directBuffer(16);
+        buf.writeLong(42);
+        ChannelBuffer slice = buf.slice(4, 8);
+        ChannelBuffer duplicate = buf.duplicate();
+        assertTrue(buf.release());
+
+        ChannelBuffer[] buffers = { buf, slice, duplicate };
+        for (ChannelBuffer b: buffers) {
+            try {
+                b.getByte(0);
+                fail();
+            } catch (IllegalStateException e) {
+                // Expected
+            }
+            try {
+                b.getInt(0);
+                fail();
+            } catch (IllegalStateException e) {
+                // Expected
+            }
+            try {
+                b.getBytes(0, new byte[4]);
+                fail();
+            } catch (IllegalStateException e) {
+                // Expected
+            }
+            try {
+                b.getBytes(0, ByteBuffer.allocate(4));
+                fail();
+            } catch (IllegalStateException e) {
+                // Expected
+            }
+            try {
+                b.setLong(0, 1);
+                fail();
+            } catch (IllegalStateException e) {
+                // Expected
+            }
+            try {
+                b.setBytes(0, new byte[4]);
+                fail();
+            } catch (IllegalStateException e) {
+                // Expected
+            }
+        }
+    }
 }
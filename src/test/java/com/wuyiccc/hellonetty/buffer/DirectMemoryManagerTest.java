@@ -0,0 +1,136 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.wuyiccc.hellonetty.buffer;
+
+import static com.wuyiccc.hellonetty.buffer.DirectMemoryManager.Subsystem.*;
+import static org.junit.Assert.*;
+
+import java.nio.ByteOrder;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * @author The Netty Project (netty-dev@lists.jboss.org)
+ * @author Trustin Lee (tlee@redhat.com)
+ *
+ * @version $Rev$, $Date$
+ *
+ */
+public class DirectMemoryManagerTest {
+
+    private final long oldMaxDirectMemory = DirectMemoryManager.getMaxDirectMemory();
+
+    @After
+    public void restoreMaxDirectMemory() {
+        DirectMemoryManager.setMaxDirectMemory(oldMaxDirectMemory);
+    }
+
+    @Test
+    public void testReleaseReturnsBytesToAccount() {
+        long used = DirectMemoryManager.getUsedDirectMemory(SSL);
+
+        ChannelBuffer buf = DirectMemoryManager.directBuffer(SSL, ByteOrder.BIG_ENDIAN, 1024);
+        assertTrue(buf.toByteBuffer().isDirect());
+        assertEquals(0, buf.readerIndex());
+        assertEquals(0, buf.writerIndex());
+        assertEquals(used + 1024, DirectMemoryManager.getUsedDirectMemory(SSL));
+
+        ChannelBuffer slice = buf.slice(0, 16).retain();
+        assertFalse(buf.release());
+        assertEquals(used + 1024, DirectMemoryManager.getUsedDirectMemory(SSL));
+        assertTrue(slice.release());
+        assertEquals(used, DirectMemoryManager.getUsedDirectMemory(SSL));
+
+        // Releasing a released buffer has no effect.
+        assertFalse(buf.release());
+        assertEquals(used, DirectMemoryManager.getUsedDirectMemory(SSL));
+    }
+
+    @Test
+    public void testUserBuffersAreCharged() {
+        long used = DirectMemoryManager.getUsedDirectMemory(USER);
+        ChannelBuffer buf = ChannelBuffers.directBuffer(ByteOrder.LITTLE_ENDIAN, 100);
+        assertEquals(ByteOrder.LITTLE_ENDIAN, buf.order());
+        assertTrue(DirectMemoryManager.getUsedDirectMemory(USER) >= used + 100);
+        buf.release();
+    }
+
+    @Test
+    public void testCopyIsChargedToSameSubsystem() {
+        long used = DirectMemoryManager.getUsedDirectMemory(SSL);
+        ChannelBuffer buf = DirectMemoryManager.directBuffer(SSL, ByteOrder.BIG_ENDIAN, 64);
+        buf.writeInt(42);
+        ChannelBuffer copy = buf.copy();
+        assertTrue(copy.toByteBuffer().isDirect());
+        assertEquals(42, copy.readInt());
+        assertEquals(used + 68, DirectMemoryManager.getUsedDirectMemory(SSL));
+        buf.release();
+        copy.release();
+        assertEquals(used, DirectMemoryManager.getUsedDirectMemory(SSL));
+    }
+
+    @Test
+    public void testHeapFallback() {
+        long fallbackCount = DirectMemoryManager.getHeapFallbackCount(SSL);
+        DirectMemoryManager.setMaxDirectMemory(
+                DirectMemoryManager.getUsedDirectMemory() + 1024);
+
+        ChannelBuffer direct = DirectMemoryManager.directBuffer(SSL, ByteOrder.BIG_ENDIAN, 1024);
+        assertTrue(direct.toByteBuffer().isDirect());
+        assertEquals(fallbackCount, DirectMemoryManager.getHeapFallbackCount(SSL));
+
+        ChannelBuffer heap = DirectMemoryManager.directBuffer(SSL, ByteOrder.LITTLE_ENDIAN, 1);
+        assertFalse(heap.toByteBuffer().isDirect());
+        assertEquals(ByteOrder.LITTLE_ENDIAN, heap.order());
+        assertEquals(1, heap.capacity());
+        assertEquals(0, heap.writerIndex());
+        assertEquals(fallbackCount + 1, DirectMemoryManager.getHeapFallbackCount(SSL));
+
+        direct.release();
+        ChannelBuffer again = DirectMemoryManager.directBuffer(SSL, ByteOrder.BIG_ENDIAN, 1024);
+        assertTrue(again.toByteBuffer().isDirect());
+        again.release();
+    }
+
+    @Test
+    public void testEmptyBuffer() {
+        assertSame(ChannelBuffers.EMPTY_BUFFER,
+                DirectMemoryManager.directBuffer(SSL, ByteOrder.BIG_ENDIAN, 0));
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testNegativeCapacity() {
+        DirectMemoryManager.directBuffer(SSL, ByteOrder.BIG_ENDIAN, -1);
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testNegativeMaxDirectMemory() {
+        DirectMemoryManager.setMaxDirectMemory(-1);
+    }
+
+    @Test(expected=NullPointerException.class)
+    public void testNullSubsystem() {
+        DirectMemoryManager.directBuffer(null, ByteOrder.BIG_ENDIAN, 1);
+    }
+}
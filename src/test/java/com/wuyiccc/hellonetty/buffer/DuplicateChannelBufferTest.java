@@ -24,7 +24,7 @@ package com.wuyiccc.hellonetty.buffer;
 
 import org.junit.Test;
 
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 /**
  *
@@ -53,4 +53,22 @@ public class DuplicateChannelBufferTest extends AbstractChannelBufferTest {
     public void shouldNotAllowNullInConstructor() {
         new DuplicatedChannelBuffer(null);
     }
+
+    @Test
+    public void shouldDuplicateRootBufferOfNestedDuplicates() {
+        ChannelBuffer root = ChannelBuffers.buffer(16);
+        root.writerIndex(12);
+        root.readerIndex(4);
+
+        ChannelBuffer first = root.duplicate();
+        first.readerIndex(6);
+        ChannelBuffer second = first.duplicate();
+
+        assertSame(root, ((WrappedChannelBuffer) second).unwrap());
+        assertEquals(6, second.readerIndex());
+        assertEquals(12, second.writerIndex());
+
+        second.setByte(3, (byte) 42);
+        assertEquals(42, root.getByte(3));
+    }
 }
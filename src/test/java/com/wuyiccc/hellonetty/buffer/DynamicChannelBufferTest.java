@@ -24,7 +24,7 @@ package com.wuyiccc.hellonetty.buffer;
 
 import org.junit.Test;
 
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 /**
  *
@@ -64,4 +64,79 @@ public class DynamicChannelBufferTest extends AbstractChannelBufferTest {
     public void shouldNotAllowNullInConstructor() {
         new DynamicChannelBuffer(null, 0);
     }
+
+    @Test
+    public void shouldGrowLinearlyBeyondThreshold() {
+        DynamicChannelBuffer buf = new DynamicChannelBuffer(16);
+        buf.setGrowthThreshold(1024);
+
+        buf.writeZero(100);
+        assertEquals(128, buf.capacity());
+        buf.writeZero(800);
+        assertEquals(1024, buf.capacity());
+        buf.writeZero(200);
+        assertEquals(2048, buf.capacity());
+        buf.writeZero(1000);
+        assertEquals(3072, buf.capacity());
+
+        // A large write jumps straight to the next step.
+        buf.writeZero(5000);
+        assertEquals(7168, buf.capacity());
+        assertEquals(7100, buf.readableBytes());
+    }
+
+    @Test
+    public void shouldShrinkWhenIdle() {
+        DynamicChannelBuffer buf = new DynamicChannelBuffer(256);
+        long shrinkCount = DynamicChannelBuffer.getShrinkCount();
+
+        buf.writeZero(65536);
+        buf.writeBytes(new byte[] { 1, 2, 3 });
+        buf.skipBytes(65535);
+        buf.markReaderIndex();
+        assertEquals(131072, buf.capacity());
+
+        for (int i = 0; i < 7; i ++) {
+            assertFalse(buf.shrink());
+        }
+        assertTrue(buf.shrink());
+        assertEquals(256, buf.capacity());
+        assertEquals(0, buf.readerIndex());
+        assertEquals(4, buf.writerIndex());
+        assertEquals(0, buf.readByte());
+        assertEquals(1, buf.readByte());
+        buf.resetReaderIndex();
+        assertEquals(0, buf.readerIndex());
+        assertTrue(DynamicChannelBuffer.getShrinkCount() > shrinkCount);
+    }
+
+    @Test
+    public void shouldNotShrinkWhileCumulating() {
+        DynamicChannelBuffer buf = new DynamicChannelBuffer(256);
+        buf.writeZero(4096);
+        buf.skipBytes(4000);
+
+        for (int i = 0; i < 7; i ++) {
+            assertFalse(buf.shrink());
+        }
+        // The readable bytes grew again, so the count starts over.
+        buf.writeZero(2000);
+        assertFalse(buf.shrink());
+        buf.skipBytes(2000);
+        for (int i = 0; i < 7; i ++) {
+            assertFalse(buf.shrink());
+        }
+        assertTrue(buf.shrink());
+        assertEquals(256, buf.capacity());
+    }
+
+    @Test
+    public void shouldTrackTotalCapacity() {
+        long totalCapacity = DynamicChannelBuffer.getTotalCapacity();
+        DynamicChannelBuffer buf = new DynamicChannelBuffer(256);
+        buf.writeZero(1000);
+        assertEquals(totalCapacity + 1024, DynamicChannelBuffer.getTotalCapacity());
+        assertTrue(buf.release());
+        assertEquals(totalCapacity, DynamicChannelBuffer.getTotalCapacity());
+    }
 }
@@ -0,0 +1,160 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.wuyiccc.hellonetty.buffer;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ReadOnlyBufferException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author The Netty Project (netty-dev@lists.jboss.org)
+ * @author Trustin Lee (tlee@redhat.com)
+ *
+ * @version $Rev$, $Date$
+ */
+public class MappedChannelBufferTest extends AbstractChannelBufferTest {
+
+    private File file;
+    private RandomAccessFile raf;
+    private ChannelBuffer buffer;
+
+    @Override
+    protected ChannelBuffer newBuffer(int length) {
+        try {
+            file = File.createTempFile("hellonetty-", ".tmp");
+            file.deleteOnExit();
+            raf = new RandomAccessFile(file, "rw");
+            buffer = ChannelBuffers.mappedBuffer(
+                    raf.getChannel(), MapMode.READ_WRITE, 0, length);
+        } catch (IOException e) {
+            throw new Error(e);
+        }
+        assertTrue(buffer instanceof MappedChannelBuffer);
+        assertEquals(length, buffer.capacity());
+        buffer.clear();
+        return buffer;
+    }
+
+    @Override
+    protected ChannelBuffer[] components() {
+        return new ChannelBuffer[] { buffer };
+    }
+
+    @After
+    public void closeFile() throws IOException {
+        raf.close();
+        file.delete();
+    }
+
+    @Test
+    public void testReadWriteMapping() throws IOException {
+        MappedChannelBuffer buf = (MappedChannelBuffer) buffer;
+        assertEquals(MapMode.READ_WRITE, buf.getMapMode());
+        assertFalse(buf.isReadOnly());
+
+        buf.setInt(0, 0x01020304);
+        buf.force();
+
+        raf.seek(0);
+        assertEquals(0x01020304, raf.readInt());
+    }
+
+    @Test
+    public void testReadOnlyMapping() throws IOException {
+        raf.seek(0);
+        raf.writeInt(42);
+
+        FileChannel ch = raf.getChannel();
+        ChannelBuffer buf = ChannelBuffers.mappedBuffer(ch, 0, 8);
+        assertTrue(((MappedChannelBuffer) buf).isReadOnly());
+        assertEquals(0, buf.readerIndex());
+        assertEquals(8, buf.writerIndex());
+        assertEquals(42, buf.getInt(0));
+
+        // A slice shares the mapping.
+        assertEquals(42, buf.slice(0, 4).getInt(0));
+
+        try {
+            buf.setInt(0, 0);
+            fail();
+        } catch (ReadOnlyBufferException e) {
+            // Expected
+        }
+
+        assertTrue(buf.release());
+    }
+
+    @Test
+    public void testAccessAfterUnmapping() throws IOException {
+        raf.seek(0);
+        raf.writeInt(42);
+
+        for (MapMode mode: new MapMode[] { MapMode.READ_ONLY, MapMode.READ_WRITE }) {
+            MappedChannelBuffer buf = (MappedChannelBuffer)
+                    ChannelBuffers.mappedBuffer(raf.getChannel(), mode, 0, 8);
+            ChannelBuffer slice = buf.slice(0, 4);
+            assertEquals(42, slice.getInt(0));
+            assertTrue(buf.release());
+
+            try {
+                buf.getByte(0);
+                fail();
+            } catch (IllegalStateException e) {
+                // Expected
+            }
+            try {
+                slice.getInt(0);
+                fail();
+            } catch (IllegalStateException e) {
+                // Expected
+            }
+            try {
+                buf.getBytes(0, new byte[8]);
+                fail();
+            } catch (IllegalStateException e) {
+                // Expected
+            }
+            try {
+                buf.load();
+                fail();
+            } catch (IllegalStateException e) {
+                // Expected
+            }
+        }
+    }
+
+    @Test
+    public void testEmptyMapping() throws IOException {
+        assertSame(ChannelBuffers.EMPTY_BUFFER,
+                ChannelBuffers.mappedBuffer(raf.getChannel(), 0, 0));
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.wuyiccc.hellonetty.buffer;
+
+import org.junit.Test;
+
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author The Netty Project (netty-dev@lists.jboss.org)
+ * @author Trustin Lee (tlee@redhat.com)
+ *
+ * @version $Rev$, $Date$
+ */
+public class PooledChannelBufferFactoryTest {
+
+    @Test
+    public void testSizeClasses() {
+        PooledChannelBufferFactory factory = new PooledChannelBufferFactory(
+                ByteOrder.BIG_ENDIAN, 1000, 4096, 4, 4);
+        assertEquals(1024, factory.getMaxPooledSize());
+
+        PooledChannelBuffer a = (PooledChannelBuffer) factory.getBuffer(1);
+        PooledChannelBuffer b = (PooledChannelBuffer) factory.getBuffer(64);
+        assertSame(a.memory, b.memory);
+        assertEquals(a.offset + 64, b.offset);
+        assertEquals(1, a.capacity());
+        assertEquals(64, b.capacity());
+
+        PooledChannelBuffer c = (PooledChannelBuffer) factory.getBuffer(65);
+        assertNotSame(a.memory, c.memory);
+        assertEquals(65, c.capacity());
+        assertEquals(8192, factory.getAllocatedArenaSize());
+
+        ChannelBuffer d = factory.getBuffer(1025);
+        assertFalse(d instanceof PooledChannelBuffer);
+        assertEquals(1025, d.capacity());
+        assertSame(ChannelBuffers.EMPTY_BUFFER, factory.getBuffer(0));
+    }
+
+    @Test
+    public void testNewChunk() {
+        PooledChannelBufferFactory factory = new PooledChannelBufferFactory(
+                ByteOrder.BIG_ENDIAN, 1024, 2048, 4, 4);
+        PooledChannelBuffer a = (PooledChannelBuffer) factory.getBuffer(1024);
+        PooledChannelBuffer b = (PooledChannelBuffer) factory.getBuffer(1024);
+        PooledChannelBuffer c = (PooledChannelBuffer) factory.getBuffer(1024);
+        assertSame(a.memory, b.memory);
+        assertNotSame(b.memory, c.memory);
+        assertEquals(0, c.offset);
+        assertEquals(4096, factory.getAllocatedArenaSize());
+    }
+
+    @Test
+    public void testThreadCache() {
+        PooledChannelBufferFactory factory = new PooledChannelBufferFactory();
+        PooledChannelBuffer a = (PooledChannelBuffer) factory.getBuffer(100);
+        assertTrue(a.release());
+
+        PooledChannelBuffer b = (PooledChannelBuffer) factory.getBuffer(128);
+        assertSame(a.memory, b.memory);
+        assertEquals(a.offset, b.offset);
+        assertEquals(0, factory.getUnacquiredPoolSize());
+    }
+
+    @Test
+    public void testSharedPool() throws Exception {
+        final PooledChannelBufferFactory factory = new PooledChannelBufferFactory(
+                ByteOrder.BIG_ENDIAN, 1024, 4096, 0, 1);
+        final PooledChannelBuffer a = (PooledChannelBuffer) factory.getBuffer(100);
+        final PooledChannelBuffer b = (PooledChannelBuffer) factory.getBuffer(100);
+        assertTrue(a.release());
+        assertTrue(b.release());
+        assertEquals(128, factory.getUnacquiredPoolSize());
+
+        final PooledChannelBuffer[] c = new PooledChannelBuffer[1];
+        Thread t = new Thread() {
+            @Override
+            public void run() {
+                c[0] = (PooledChannelBuffer) factory.getBuffer(ByteOrder.LITTLE_ENDIAN, 120);
+            }
+        };
+        t.start();
+        t.join();
+
+        assertSame(a.memory, c[0].memory);
+        assertEquals(a.offset, c[0].offset);
+        assertEquals(ByteOrder.LITTLE_ENDIAN, c[0].order());
+        assertEquals(0, factory.getUnacquiredPoolSize());
+    }
+
+    @Test
+    public void testReleaseDerivedBuffer() {
+        PooledChannelBufferFactory factory = new PooledChannelBufferFactory();
+        PooledChannelBuffer a = (PooledChannelBuffer) factory.getBuffer(100);
+        ChannelBuffer slice = a.slice(10, 20).retain();
+        assertFalse(a.release());
+
+        // The region must not be reused while the slice is alive.
+        PooledChannelBuffer b = (PooledChannelBuffer) factory.getBuffer(100);
+        assertFalse(a.offset == b.offset && a.memory == b.memory);
+
+        assertTrue(slice.release());
+        PooledChannelBuffer c = (PooledChannelBuffer) factory.getBuffer(100);
+        assertSame(a.memory, c.memory);
+        assertEquals(a.offset, c.offset);
+    }
+
+    @Test
+    public void testDoubleRelease() {
+        PooledChannelBufferFactory factory = new PooledChannelBufferFactory();
+        PooledChannelBuffer a = (PooledChannelBuffer) factory.getBuffer(100);
+        assertTrue(a.release());
+        assertFalse(a.release());
+
+        // The region must have been returned only once.
+        PooledChannelBuffer b = (PooledChannelBuffer) factory.getBuffer(100);
+        PooledChannelBuffer c = (PooledChannelBuffer) factory.getBuffer(100);
+        assertEquals(a.offset, b.offset);
+        assertFalse(a.offset == c.offset);
+    }
+
+    @Test
+    public void testAccessAfterRelease() {
+        PooledChannelBufferFactory factory = new PooledChannelBufferFactory();
+        PooledChannelBuffer a = (PooledChannelBuffer) factory.getBuffer(100);
+        ChannelBuffer slice = a.slice(10, 20);
+        assertTrue(a.release());
+
+        // The region belongs to the next buffer now.
+        PooledChannelBuffer b = (PooledChannelBuffer) factory.getBuffer(100);
+        assertSame(a.memory, b.memory);
+        assertEquals(a.offset, b.offset);
+        b.setByte(0, (byte) 42);
+
+        try {
+            a.getByte(0);
+            fail();
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+        try {
+            a.setByte(0, (byte) 0);
+            fail();
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+        try {
+            a.getBytes(0, new byte[8]);
+            fail();
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+        try {
+            a.setLong(0, 0);
+            fail();
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+        try {
+            slice.getInt(0);
+            fail();
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+        assertEquals(42, b.getByte(0));
+    }
+
+    @Test
+    public void testDynamicBuffer() {
+        PooledChannelBufferFactory factory = new PooledChannelBufferFactory();
+        ChannelBuffer buf = ChannelBuffers.dynamicBuffer(ByteOrder.BIG_ENDIAN, 4, factory);
+        buf.writeInt(42);
+        buf.readByte();
+        buf.writeLong(43);
+        assertEquals(42, buf.readUnsignedMedium());
+        assertEquals(43, buf.readLong());
+        assertEquals(16, buf.capacity());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooSmallChunk() {
+        new PooledChannelBufferFactory(ByteOrder.BIG_ENDIAN, 1024, 1000, 4, 4);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.wuyiccc.hellonetty.buffer;
+
+import java.nio.ByteOrder;
+
+/**
+ * Measures the throughput of the multi-byte primitive accessors of the heap,
+ * pooled and direct buffers.  Run it twice to compare the accelerated
+ * accessors with the byte-by-byte fallback:
+ * <pre>
+ * java -cp ... com.wuyiccc.hellonetty.buffer.PrimitiveAccessorBenchmark
+ * java -Dcom.wuyiccc.hellonetty.noUnsafe=true -cp ... com.wuyiccc.hellonetty.buffer.PrimitiveAccessorBenchmark
+ * </pre>
+ * This is not a unit test and is not run by the build.
+ *
+ * @author The Netty Project (netty-dev@lists.jboss.org)
+ * @author Trustin Lee (tlee@redhat.com)
+ *
+ * @version $Rev$, $Date$
+ */
+public class PrimitiveAccessorBenchmark {
+
+    private static final int CAPACITY = 65536;
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int ROUNDS = 20;
+    private static final int ITERATIONS = 200;
+
+    static volatile long sink;
+
+    public static void main(String[] args) {
+        System.out.println("Unsafe available: " + UnsafeAccess.isAvailable());
+
+        PooledChannelBufferFactory pool = new PooledChannelBufferFactory();
+        ChannelBuffer[] buffers = {
+                ChannelBuffers.buffer(ByteOrder.BIG_ENDIAN, CAPACITY),
+                ChannelBuffers.buffer(ByteOrder.LITTLE_ENDIAN, CAPACITY),
+                ChannelBuffers.directBuffer(ByteOrder.BIG_ENDIAN, CAPACITY),
+                ChannelBuffers.directBuffer(ByteOrder.LITTLE_ENDIAN, CAPACITY),
+                pool.getBuffer(ByteOrder.BIG_ENDIAN, CAPACITY),
+        };
+
+        for (ChannelBuffer buf: buffers) {
+            String name = buf.getClass().getSimpleName() + " (" + buf.order() + ")";
+            report(name, "getInt ", measure(buf, 0));
+            report(name, "getLong", measure(buf, 1));
+            report(name, "setInt ", measure(buf, 2));
+            report(name, "setLong", measure(buf, 3));
+        }
+    }
+
+    private static double measure(ChannelBuffer buf, int op) {
+        for (int i = 0; i < WARMUP_ROUNDS; i ++) {
+            run(buf, op);
+        }
+        long startTime = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i ++) {
+            run(buf, op);
+        }
+        long operations = (long) ROUNDS * ITERATIONS * (CAPACITY / 8);
+        return (double) (System.nanoTime() - startTime) / operations;
+    }
+
+    private static void run(ChannelBuffer buf, int op) {
+        long sum = 0;
+        int end = CAPACITY - 8;
+        for (int i = 0; i < ITERATIONS; i ++) {
+            switch (op) {
+            case 0:
+                for (int j = 0; j <= end; j += 8) {
+                    sum += buf.getInt(j + 1);
+                }
+                break;
+            case 1:
+                for (int j = 0; j <= end; j += 8) {
+                    sum += buf.getLong(j);
+                }
+                break;
+            case 2:
+                for (int j = 0; j <= end; j += 8) {
+                    buf.setInt(j + 1, j);
+                }
+                break;
+            default:
+                for (int j = 0; j <= end; j += 8) {
+                    buf.setLong(j, j);
+                }
+            }
+        }
+        sink += sum;
+    }
+
+    private static void report(String name, String op, double nanosPerOp) {
+        System.out.println(String.format("%-45s %s %8.3f ns/op", name, op, nanosPerOp));
+    }
+}
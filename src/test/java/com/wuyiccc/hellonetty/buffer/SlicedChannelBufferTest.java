@@ -26,7 +26,7 @@ import org.junit.Test;
 
 import java.util.Random;
 
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 /**
  *
@@ -57,4 +57,52 @@ public class SlicedChannelBufferTest extends AbstractChannelBufferTest {
     public void shouldNotAllowNullInConstructor() {
         new SlicedChannelBuffer(null, 0, 0);
     }
+
+    @Test
+    public void shouldSliceRootBufferOfNestedSlices() {
+        ChannelBuffer root = ChannelBuffers.directBuffer(64);
+        for (int i = 0; i < root.capacity(); i ++) {
+            root.setByte(i, (byte) i);
+        }
+
+        ChannelBuffer slice = root.slice(4, 32).duplicate().slice(2, 20);
+        slice = new TruncatedChannelBuffer(slice, 16).slice(3, 10).slice(1, 8);
+
+        assertTrue(slice instanceof SlicedChannelBuffer);
+        assertSame(root, ((WrappedChannelBuffer) slice).unwrap());
+        for (int i = 0; i < slice.capacity(); i ++) {
+            assertEquals(10 + i, slice.getByte(i));
+        }
+        assertEquals(0x0a0b0c0d0e0f1011L, slice.getLong(0));
+
+        slice.setByte(0, (byte) 0xFF);
+        assertEquals((byte) 0xFF, root.getByte(10));
+    }
+
+    @Test
+    public void shouldAccessHeapRootArrayOfNestedSlices() {
+        byte[] array = new byte[64];
+        for (int i = 0; i < array.length; i ++) {
+            array[i] = (byte) i;
+        }
+
+        ChannelBuffer slice = ChannelBuffers.wrappedBuffer(array).slice(8, 32).slice(8, 16);
+        assertSame(array, ((HeapChannelBuffer) ((WrappedChannelBuffer) slice).unwrap()).array);
+
+        byte[] dst = new byte[4];
+        slice.getBytes(2, dst);
+        assertArrayEquals(new byte[] { 18, 19, 20, 21 }, dst);
+
+        slice.setBytes(14, new byte[] { 1, 2 });
+        assertEquals(1, array[30]);
+        assertEquals(2, array[31]);
+        assertEquals(32, array[32]);
+
+        try {
+            slice.getByte(16);
+            fail();
+        } catch (IndexOutOfBoundsException e) {
+            // Expected
+        }
+    }
 }
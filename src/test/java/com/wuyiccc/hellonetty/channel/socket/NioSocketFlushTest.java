@@ -0,0 +1,195 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.wuyiccc.hellonetty.channel.socket;
+
+import com.wuyiccc.hellonetty.bootstrap.ClientBootstrap;
+import com.wuyiccc.hellonetty.buffer.ChannelBuffers;
+import com.wuyiccc.hellonetty.channel.Channel;
+import com.wuyiccc.hellonetty.channel.ChannelFuture;
+import com.wuyiccc.hellonetty.channel.ChannelHandlerContext;
+import com.wuyiccc.hellonetty.channel.ChannelStateEvent;
+import com.wuyiccc.hellonetty.channel.SimpleChannelHandler;
+import com.wuyiccc.hellonetty.channel.socket.nio.NioClientSocketChannelFactory;
+import com.wuyiccc.hellonetty.handler.codec.string.StringEncoder;
+import com.wuyiccc.hellonetty.util.DummyHandler;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static com.wuyiccc.hellonetty.channel.Channels.*;
+import static org.junit.Assert.*;
+
+
+/**
+ * @author The Netty Project (netty-dev@lists.jboss.org)
+ * @author Trustin Lee (tlee@redhat.com)
+ *
+ * @version $Rev$, $Date$
+ *
+ */
+public class NioSocketFlushTest {
+
+    @Test
+    public void testWriteWithoutFlush() throws Throwable {
+        ServerSocket serverSocket = new ServerSocket(0);
+        ExecutorService e1 = Executors.newCachedThreadPool();
+        ExecutorService e2 = Executors.newCachedThreadPool();
+        ClientBootstrap b = new ClientBootstrap(new NioClientSocketChannelFactory(e1, e2));
+        b.getPipeline().addLast("encoder", new StringEncoder());
+        b.getPipeline().addLast("handler", new DummyHandler());
+
+        try {
+            ChannelFuture f = b.connect(new InetSocketAddress(
+                    InetAddress.getLocalHost(), serverSocket.getLocalPort()));
+            Socket s = serverSocket.accept();
+            s.setSoTimeout(500);
+            assertTrue(f.awaitUninterruptibly().isSuccess());
+            Channel ch = f.getChannel();
+
+            StringBuilder expected = new StringBuilder();
+            List<ChannelFuture> futures = new ArrayList<ChannelFuture>();
+            for (int i = 0; i < 100; i ++) {
+                String m = "+PONG " + i + "\r\n";
+                expected.append(m);
+                futures.add(ch.writeWithoutFlush(m));
+            }
+
+            // Nothing should be written until a flush is requested.
+            InputStream in = s.getInputStream();
+            try {
+                int b0 = in.read();
+                fail("Unexpected data: " + b0);
+            } catch (SocketTimeoutException ex) {
+                // Expected
+            }
+            for (ChannelFuture wf: futures) {
+                assertFalse(wf.isDone());
+            }
+
+            assertTrue(ch.flush().awaitUninterruptibly().isSuccess());
+
+            s.setSoTimeout(10000);
+            byte[] actual = new byte[expected.length()];
+            for (int i = 0; i < actual.length;) {
+                int n = in.read(actual, i, actual.length - i);
+                assertTrue(n > 0);
+                i += n;
+            }
+            assertEquals(expected.toString(), new String(actual, "ASCII"));
+
+            for (ChannelFuture wf: futures) {
+                assertTrue(wf.awaitUninterruptibly().isSuccess());
+            }
+
+            // A plain write flushes by itself.
+            assertTrue(ch.write("+OK\r\n").awaitUninterruptibly().isSuccess());
+            byte[] ok = new byte[5];
+            for (int i = 0; i < ok.length;) {
+                int n = in.read(ok, i, ok.length - i);
+                assertTrue(n > 0);
+                i += n;
+            }
+            assertEquals("+OK\r\n", new String(ok, "ASCII"));
+
+            ch.close().awaitUninterruptibly();
+            s.close();
+        } finally {
+            e1.shutdownNow();
+            e2.shutdownNow();
+            e1.awaitTermination(10, TimeUnit.SECONDS);
+            e2.awaitTermination(10, TimeUnit.SECONDS);
+            try {
+                serverSocket.close();
+            } catch (IOException ex) {
+                // Ignore.
+            }
+        }
+    }
+
+    @Test
+    public void testWriteViaContext() throws Throwable {
+        ServerSocket serverSocket = new ServerSocket(0);
+        ExecutorService e1 = Executors.newCachedThreadPool();
+        ExecutorService e2 = Executors.newCachedThreadPool();
+        ClientBootstrap b = new ClientBootstrap(new NioClientSocketChannelFactory(e1, e2));
+        b.getPipeline().addLast("handler", new GreetingHandler());
+
+        try {
+            ChannelFuture f = b.connect(new InetSocketAddress(
+                    InetAddress.getLocalHost(), serverSocket.getLocalPort()));
+            Socket s = serverSocket.accept();
+            s.setSoTimeout(10000);
+            assertTrue(f.awaitUninterruptibly().isSuccess());
+            Channel ch = f.getChannel();
+
+            // The handler never requests a flush explicitly.
+            InputStream in = s.getInputStream();
+            byte[] actual = new byte[5];
+            for (int i = 0; i < actual.length;) {
+                int n = in.read(actual, i, actual.length - i);
+                assertTrue(n > 0);
+                i += n;
+            }
+            assertEquals("+OK\r\n", new String(actual, "ASCII"));
+
+            ch.close().awaitUninterruptibly();
+            s.close();
+        } finally {
+            e1.shutdownNow();
+            e2.shutdownNow();
+            e1.awaitTermination(10, TimeUnit.SECONDS);
+            e2.awaitTermination(10, TimeUnit.SECONDS);
+            try {
+                serverSocket.close();
+            } catch (IOException ex) {
+                // Ignore.
+            }
+        }
+    }
+
+    private static class GreetingHandler extends SimpleChannelHandler {
+
+        GreetingHandler() {
+            super();
+        }
+
+        @Override
+        public void channelConnected(
+                ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+            Channel ch = e.getChannel();
+            write(ctx, ch, future(ch), ChannelBuffers.wrappedBuffer(
+                    "+OK\r\n".getBytes("ASCII")));
+        }
+    }
+}
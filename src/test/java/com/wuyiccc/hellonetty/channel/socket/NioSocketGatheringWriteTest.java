@@ -0,0 +1,141 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.wuyiccc.hellonetty.channel.socket;
+
+import com.wuyiccc.hellonetty.bootstrap.ClientBootstrap;
+import com.wuyiccc.hellonetty.buffer.ChannelBuffer;
+import com.wuyiccc.hellonetty.buffer.ChannelBuffers;
+import com.wuyiccc.hellonetty.channel.Channel;
+import com.wuyiccc.hellonetty.channel.ChannelFuture;
+import com.wuyiccc.hellonetty.channel.socket.nio.NioClientSocketChannelFactory;
+import com.wuyiccc.hellonetty.util.DummyHandler;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * @author The Netty Project (netty-dev@lists.jboss.org)
+ * @author Trustin Lee (tlee@redhat.com)
+ *
+ * @version $Rev$, $Date$
+ *
+ */
+public class NioSocketGatheringWriteTest {
+
+    private static final Random random = new Random();
+
+    @Test
+    public void testGatheringWrite() throws Throwable {
+        testWrite(16);
+    }
+
+    @Test
+    public void testNonGatheringWrite() throws Throwable {
+        testWrite(1);
+    }
+
+    private static void testWrite(int gatheringWriteLimit) throws Throwable {
+        byte[] data = new byte[1048576];
+        random.nextBytes(data);
+
+        ServerSocket serverSocket = new ServerSocket(0);
+        ExecutorService e1 = Executors.newCachedThreadPool();
+        ExecutorService e2 = Executors.newCachedThreadPool();
+        ClientBootstrap b = new ClientBootstrap(new NioClientSocketChannelFactory(e1, e2));
+        b.getPipeline().addLast("handler", new DummyHandler());
+        b.setOption("gatheringWriteLimit", gatheringWriteLimit);
+        b.setOption("sendBufferSize", 8192);
+
+        try {
+            ChannelFuture f = b.connect(new InetSocketAddress(
+                    InetAddress.getLocalHost(), serverSocket.getLocalPort()));
+            Socket s = serverSocket.accept();
+            assertTrue(f.awaitUninterruptibly().isSuccess());
+            Channel ch = f.getChannel();
+
+            // Mix small messages, empty messages and composite messages so
+            // that the kernel buffer fills up in the middle of a message.
+            List<ChannelFuture> futures = new ArrayList<ChannelFuture>();
+            for (int i = 0; i < data.length;) {
+                int length = Math.min(random.nextInt(4096), data.length - i);
+                ChannelBuffer m;
+                switch (random.nextInt(3)) {
+                case 0:
+                    m = ChannelBuffers.wrappedBuffer(data, i, length);
+                    break;
+                case 1:
+                    int headerLength = length / 3;
+                    m = ChannelBuffers.wrappedBuffer(
+                            ChannelBuffers.wrappedBuffer(data, i, headerLength),
+                            ChannelBuffers.wrappedBuffer(data, i + headerLength, length - headerLength));
+                    break;
+                default:
+                    futures.add(ch.write(ChannelBuffers.EMPTY_BUFFER));
+                    m = ChannelBuffers.wrappedBuffer(data, i, length);
+                }
+                futures.add(ch.write(m));
+                i += length;
+            }
+
+            InputStream in = s.getInputStream();
+            byte[] actual = new byte[data.length];
+            for (int i = 0; i < actual.length;) {
+                int n = in.read(actual, i, Math.min(8192, actual.length - i));
+                assertTrue(n > 0);
+                i += n;
+            }
+            assertArrayEquals(data, actual);
+
+            for (ChannelFuture wf: futures) {
+                assertTrue(wf.awaitUninterruptibly().isSuccess());
+            }
+
+            ch.close().awaitUninterruptibly();
+            s.close();
+        } finally {
+            e1.shutdownNow();
+            e2.shutdownNow();
+            e1.awaitTermination(10, TimeUnit.SECONDS);
+            e2.awaitTermination(10, TimeUnit.SECONDS);
+            try {
+                serverSocket.close();
+            } catch (IOException ex) {
+                // Ignore.
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.wuyiccc.hellonetty.channel.socket;
+
+import com.wuyiccc.hellonetty.bootstrap.ClientBootstrap;
+import com.wuyiccc.hellonetty.buffer.ChannelBuffer;
+import com.wuyiccc.hellonetty.buffer.ChannelBuffers;
+import com.wuyiccc.hellonetty.channel.Channel;
+import com.wuyiccc.hellonetty.channel.ChannelFuture;
+import com.wuyiccc.hellonetty.channel.FileRegion;
+import com.wuyiccc.hellonetty.channel.socket.nio.NioClientSocketChannelFactory;
+import com.wuyiccc.hellonetty.util.DummyHandler;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * @author The Netty Project (netty-dev@lists.jboss.org)
+ * @author Trustin Lee (tlee@redhat.com)
+ *
+ * @version $Rev$, $Date$
+ *
+ */
+public class NioSocketSingleWriterTest {
+
+    private static final int PRODUCERS = 8;
+    private static final int MESSAGES = 2000;
+
+    @Test
+    public void testConcurrentProducers() throws Throwable {
+        ServerSocket serverSocket = new ServerSocket(0);
+        ExecutorService e1 = Executors.newCachedThreadPool();
+        ExecutorService e2 = Executors.newCachedThreadPool();
+        ExecutorService producers = Executors.newFixedThreadPool(PRODUCERS);
+        ClientBootstrap b = new ClientBootstrap(new NioClientSocketChannelFactory(e1, e2));
+        b.getPipeline().addLast("handler", new DummyHandler());
+        b.setOption("singleWriter", true);
+
+        try {
+            ChannelFuture f = b.connect(new InetSocketAddress(
+                    InetAddress.getLocalHost(), serverSocket.getLocalPort()));
+            Socket s = serverSocket.accept();
+            s.setSoTimeout(10000);
+            assertTrue(f.awaitUninterruptibly().isSuccess());
+            final Channel ch = f.getChannel();
+
+            // The socket write must not be performed by the caller.
+            RecordingRegion region = new RecordingRegion();
+            assertTrue(ch.write(region).awaitUninterruptibly().isSuccess());
+            assertNotNull(region.writer.get());
+            assertNotSame(Thread.currentThread(), region.writer.get());
+
+            DataInputStream in = new DataInputStream(s.getInputStream());
+            assertEquals(RecordingRegion.CONTENT, in.readLong());
+
+            final CountDownLatch start = new CountDownLatch(1);
+            for (int i = 0; i < PRODUCERS; i ++) {
+                final int id = i;
+                producers.execute(new Runnable() {
+                    public void run() {
+                        try {
+                            start.await();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                        for (int j = 0; j < MESSAGES; j ++) {
+                            ChannelBuffer m = ChannelBuffers.buffer(8);
+                            m.writeInt(id);
+                            m.writeInt(j);
+                            ch.write(m);
+                        }
+                    }
+                });
+            }
+            start.countDown();
+
+            // The messages of each producer must arrive in order.
+            int[] next = new int[PRODUCERS];
+            for (int i = 0; i < PRODUCERS * MESSAGES; i ++) {
+                int id = in.readInt();
+                assertEquals(next[id] ++, in.readInt());
+            }
+
+            ch.close().awaitUninterruptibly();
+            s.close();
+        } finally {
+            producers.shutdownNow();
+            e1.shutdownNow();
+            e2.shutdownNow();
+            producers.awaitTermination(10, TimeUnit.SECONDS);
+            e1.awaitTermination(10, TimeUnit.SECONDS);
+            e2.awaitTermination(10, TimeUnit.SECONDS);
+            try {
+                serverSocket.close();
+            } catch (IOException ex) {
+                // Ignore.
+            }
+        }
+    }
+
+    private static class RecordingRegion implements FileRegion {
+
+        static final long CONTENT = 0x0102030405060708L;
+
+        final AtomicReference<Thread> writer = new AtomicReference<Thread>();
+
+        RecordingRegion() {
+            super();
+        }
+
+        public long getPosition() {
+            return 0;
+        }
+
+        public long getCount() {
+            return 8;
+        }
+
+        public long transferTo(WritableByteChannel target, long position) throws IOException {
+            writer.set(Thread.currentThread());
+            ByteBuffer buf = ByteBuffer.allocate(8);
+            buf.putLong(CONTENT);
+            buf.position((int) position);
+            return target.write(buf);
+        }
+
+        public void releaseExternalResources() {
+            // Unused
+        }
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.wuyiccc.hellonetty.channel.socket;
+
+import com.wuyiccc.hellonetty.bootstrap.ClientBootstrap;
+import com.wuyiccc.hellonetty.buffer.ChannelBuffers;
+import com.wuyiccc.hellonetty.channel.Channel;
+import com.wuyiccc.hellonetty.channel.ChannelFuture;
+import com.wuyiccc.hellonetty.channel.ChannelHandlerContext;
+import com.wuyiccc.hellonetty.channel.ChannelStateEvent;
+import com.wuyiccc.hellonetty.channel.DefaultFileRegion;
+import com.wuyiccc.hellonetty.channel.ExceptionEvent;
+import com.wuyiccc.hellonetty.channel.SimpleChannelHandler;
+import com.wuyiccc.hellonetty.channel.socket.nio.NioClientSocketChannelFactory;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * @author The Netty Project (netty-dev@lists.jboss.org)
+ * @author Trustin Lee (tlee@redhat.com)
+ *
+ * @version $Rev$, $Date$
+ *
+ */
+public class NioSocketWriteBufferWaterMarkTest {
+
+    @Test
+    public void testDefaultWaterMarks() throws Exception {
+        Socket s = new Socket();
+        try {
+            SocketChannelConfig cfg = new DefaultSocketChannelConfig(s);
+            assertEquals(65536, cfg.getWriteBufferHighWaterMark());
+            assertEquals(32768, cfg.getWriteBufferLowWaterMark());
+        } finally {
+            s.close();
+        }
+    }
+
+    @Test
+    public void testWaterMarkOptions() throws Exception {
+        Socket s = new Socket();
+        try {
+            SocketChannelConfig cfg = new DefaultSocketChannelConfig(s);
+            Map<String, Object> options = new HashMap<String, Object>();
+            options.put("writeBufferHighWaterMark", "1024");
+            options.put("writeBufferLowWaterMark", Integer.valueOf(512));
+            cfg.setOptions(options);
+            assertEquals(1024, cfg.getWriteBufferHighWaterMark());
+            assertEquals(512, cfg.getWriteBufferLowWaterMark());
+        } finally {
+            s.close();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeHighWaterMark() throws Exception {
+        Socket s = new Socket();
+        try {
+            new DefaultSocketChannelConfig(s).setWriteBufferHighWaterMark(-1);
+        } finally {
+            s.close();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeLowWaterMark() throws Exception {
+        Socket s = new Socket();
+        try {
+            new DefaultSocketChannelConfig(s).setWriteBufferLowWaterMark(-1);
+        } finally {
+            s.close();
+        }
+    }
+
+    @Test
+    public void testWritabilityChanges() throws Throwable {
+        byte[] data = new byte[4 * 1048576];
+
+        // Keep the kernel buffers small so that the written data is queued.
+        ServerSocket serverSocket = new ServerSocket();
+        serverSocket.setReceiveBufferSize(8192);
+        serverSocket.bind(new InetSocketAddress(0));
+
+        ExecutorService e1 = Executors.newCachedThreadPool();
+        ExecutorService e2 = Executors.newCachedThreadPool();
+        ClientBootstrap b = new ClientBootstrap(new NioClientSocketChannelFactory(e1, e2));
+        WritabilityHandler h = new WritabilityHandler();
+        b.getPipeline().addLast("handler", h);
+        b.setOption("sendBufferSize", 8192);
+        b.setOption("writeBufferHighWaterMark", 65536);
+        b.setOption("writeBufferLowWaterMark", 16384);
+
+        try {
+            ChannelFuture f = b.connect(new InetSocketAddress(
+                    InetAddress.getLocalHost(), serverSocket.getLocalPort()));
+            Socket s = serverSocket.accept();
+            assertTrue(f.awaitUninterruptibly().isSuccess());
+            Channel ch = f.getChannel();
+            assertTrue(ch.isWritable());
+
+            List<ChannelFuture> futures = new ArrayList<ChannelFuture>();
+            for (int i = 0; i < data.length; i += 4096) {
+                futures.add(ch.write(ChannelBuffers.wrappedBuffer(data, i, 4096)));
+            }
+
+            // Nothing is read yet, so the queued bytes must exceed the mark.
+            assertFalse(ch.isWritable());
+            assertEquals(Boolean.FALSE, h.events.poll(10, TimeUnit.SECONDS));
+
+            InputStream in = s.getInputStream();
+            byte[] actual = new byte[data.length];
+            for (int i = 0; i < actual.length;) {
+                int n = in.read(actual, i, Math.min(8192, actual.length - i));
+                assertTrue(n > 0);
+                i += n;
+            }
+
+            for (ChannelFuture wf: futures) {
+                assertTrue(wf.awaitUninterruptibly().isSuccess());
+            }
+            assertTrue(ch.isWritable());
+
+            // The channel must have told that it became writable again.
+            for (;;) {
+                Boolean writable = h.events.poll(10, TimeUnit.SECONDS);
+                assertNotNull(writable);
+                if (writable.booleanValue()) {
+                    break;
+                }
+            }
+
+            ch.close().awaitUninterruptibly();
+            s.close();
+            assertNull(h.cause);
+        } finally {
+            e1.shutdownNow();
+            e2.shutdownNow();
+            e1.awaitTermination(10, TimeUnit.SECONDS);
+            e2.awaitTermination(10, TimeUnit.SECONDS);
+            try {
+                serverSocket.close();
+            } catch (IOException ex) {
+                // Ignore.
+            }
+        }
+    }
+
+    @Test
+    public void testFileRegionWritabilityChanges() throws Throwable {
+        File file = File.createTempFile("hellonetty-", ".tmp");
+        file.deleteOnExit();
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        long length = 4 * 1048576;
+        raf.setLength(length);
+
+        ServerSocket serverSocket = new ServerSocket();
+        serverSocket.setReceiveBufferSize(8192);
+        serverSocket.bind(new InetSocketAddress(0));
+
+        ExecutorService e1 = Executors.newCachedThreadPool();
+        ExecutorService e2 = Executors.newCachedThreadPool();
+        ClientBootstrap b = new ClientBootstrap(new NioClientSocketChannelFactory(e1, e2));
+        WritabilityHandler h = new WritabilityHandler();
+        b.getPipeline().addLast("handler", h);
+        b.setOption("sendBufferSize", 8192);
+        b.setOption("writeBufferHighWaterMark", 65536);
+        b.setOption("writeBufferLowWaterMark", 16384);
+
+        try {
+            ChannelFuture f = b.connect(new InetSocketAddress(
+                    InetAddress.getLocalHost(), serverSocket.getLocalPort()));
+            Socket s = serverSocket.accept();
+            assertTrue(f.awaitUninterruptibly().isSuccess());
+            Channel ch = f.getChannel();
+            assertTrue(ch.isWritable());
+
+            // The whole region is counted as queued until it is transferred.
+            ChannelFuture wf = ch.write(new DefaultFileRegion(
+                    raf.getChannel(), 0, length));
+            assertFalse(ch.isWritable());
+            assertEquals(Boolean.FALSE, h.events.poll(10, TimeUnit.SECONDS));
+
+            InputStream in = s.getInputStream();
+            byte[] buf = new byte[8192];
+            for (long i = 0; i < length;) {
+                int n = in.read(buf);
+                assertTrue(n > 0);
+                i += n;
+            }
+
+            assertTrue(wf.awaitUninterruptibly().isSuccess());
+            assertTrue(ch.isWritable());
+            for (;;) {
+                Boolean writable = h.events.poll(10, TimeUnit.SECONDS);
+                assertNotNull(writable);
+                if (writable.booleanValue()) {
+                    break;
+                }
+            }
+
+            ch.close().awaitUninterruptibly();
+            s.close();
+            assertNull(h.cause);
+        } finally {
+            e1.shutdownNow();
+            e2.shutdownNow();
+            e1.awaitTermination(10, TimeUnit.SECONDS);
+            e2.awaitTermination(10, TimeUnit.SECONDS);
+            try {
+                serverSocket.close();
+            } catch (IOException ex) {
+                // Ignore.
+            }
+            raf.close();
+        }
+    }
+
+    private static class WritabilityHandler extends SimpleChannelHandler {
+
+        final BlockingQueue<Boolean> events = new LinkedBlockingQueue<Boolean>();
+        volatile Throwable cause;
+
+        WritabilityHandler() {
+            super();
+        }
+
+        @Override
+        public void channelInterestChanged(
+                ChannelHandlerContext ctx, ChannelStateEvent e) throws Exception {
+            if (e.getChannel().isOpen()) {
+                int interestOps = ((Integer) e.getValue()).intValue();
+                events.add(Boolean.valueOf((interestOps & Channel.OP_WRITE) == 0));
+            }
+        }
+
+        @Override
+        public void exceptionCaught(
+                ChannelHandlerContext ctx,
+                ExceptionEvent e) throws Exception {
+            cause = e.getCause();
+        }
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.wuyiccc.hellonetty.channel.socket;
+
+import com.wuyiccc.hellonetty.bootstrap.ClientBootstrap;
+import com.wuyiccc.hellonetty.buffer.ChannelBuffers;
+import com.wuyiccc.hellonetty.channel.Channel;
+import com.wuyiccc.hellonetty.channel.ChannelFactory;
+import com.wuyiccc.hellonetty.channel.ChannelFuture;
+import com.wuyiccc.hellonetty.channel.DefaultFileRegion;
+import com.wuyiccc.hellonetty.channel.socket.nio.NioClientSocketChannelFactory;
+import com.wuyiccc.hellonetty.channel.socket.oio.OioClientSocketChannelFactory;
+import com.wuyiccc.hellonetty.util.DummyHandler;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * @author The Netty Project (netty-dev@lists.jboss.org)
+ * @author Trustin Lee (tlee@redhat.com)
+ *
+ * @version $Rev$, $Date$
+ *
+ */
+public class SocketFileRegionTest {
+
+    private static final Random random = new Random();
+    static final byte[] data = new byte[4 * 1048576];
+
+    private static ExecutorService executor;
+    private static File file;
+
+    static {
+        random.nextBytes(data);
+    }
+
+    @BeforeClass
+    public static void init() throws IOException {
+        executor = Executors.newCachedThreadPool();
+        file = File.createTempFile("hellonetty-", ".tmp");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+    }
+
+    @AfterClass
+    public static void destroy() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        file.delete();
+    }
+
+    @Test
+    public void testNioFileRegion() throws Throwable {
+        testFileRegion(new NioClientSocketChannelFactory(executor, executor));
+    }
+
+    @Test
+    public void testOioFileRegion() throws Throwable {
+        testFileRegion(new OioClientSocketChannelFactory(executor));
+    }
+
+    @Test
+    public void testNioTruncatedFileRegion() throws Throwable {
+        testTruncatedFileRegion(new NioClientSocketChannelFactory(executor, executor));
+    }
+
+    @Test
+    public void testOioTruncatedFileRegion() throws Throwable {
+        testTruncatedFileRegion(new OioClientSocketChannelFactory(executor));
+    }
+
+    private static void testFileRegion(ChannelFactory factory) throws Throwable {
+        ServerSocket serverSocket = new ServerSocket(0);
+        ClientBootstrap b = new ClientBootstrap(factory);
+        b.getPipeline().addLast("handler", new DummyHandler());
+        b.setOption("sendBufferSize", 8192);
+
+        try {
+            ChannelFuture f = b.connect(new InetSocketAddress(
+                    InetAddress.getLocalHost(), serverSocket.getLocalPort()));
+            Socket s = serverSocket.accept();
+            assertTrue(f.awaitUninterruptibly().isSuccess());
+            Channel ch = f.getChannel();
+
+            // Read in another thread because an OIO write blocks.
+            final InputStream in = s.getInputStream();
+            Future<byte[]> actual = executor.submit(new Callable<byte[]>() {
+                public byte[] call() throws IOException {
+                    byte[] actual = new byte[data.length];
+                    for (int i = 0; i < actual.length;) {
+                        int n = in.read(actual, i, Math.min(8192, actual.length - i));
+                        if (n < 0) {
+                            break;
+                        }
+                        i += n;
+                    }
+                    return actual;
+                }
+            });
+
+            // A buffer, a file region and a buffer again, so that the
+            // region is written between ordinary messages.
+            int offset = 12345;
+            int length = data.length - offset * 2;
+            ChannelFuture f1 = ch.write(ChannelBuffers.wrappedBuffer(data, 0, offset));
+            ChannelFuture f2 = ch.write(new DefaultFileRegion(
+                    new RandomAccessFile(file, "r").getChannel(), offset, length));
+            ChannelFuture f3 = ch.write(ChannelBuffers.wrappedBuffer(data, offset + length, offset));
+
+            assertTrue(Arrays.equals(data, actual.get()));
+
+            assertTrue(f1.awaitUninterruptibly().isSuccess());
+            assertTrue(f2.awaitUninterruptibly().isSuccess());
+            assertTrue(f3.awaitUninterruptibly().isSuccess());
+
+            ch.close().awaitUninterruptibly();
+            s.close();
+        } finally {
+            serverSocket.close();
+        }
+    }
+
+    private static void testTruncatedFileRegion(ChannelFactory factory) throws Throwable {
+        File truncatedFile = File.createTempFile("hellonetty-", ".tmp");
+        truncatedFile.deleteOnExit();
+        RandomAccessFile raf = new RandomAccessFile(truncatedFile, "rw");
+        ServerSocket serverSocket = new ServerSocket(0);
+        ClientBootstrap b = new ClientBootstrap(factory);
+        b.getPipeline().addLast("handler", new DummyHandler());
+
+        try {
+            raf.write(data, 0, 8192);
+            DefaultFileRegion region = new DefaultFileRegion(raf.getChannel(), 0, 8192);
+
+            // Truncate the file after the region is created.
+            raf.setLength(1024);
+
+            ChannelFuture f = b.connect(new InetSocketAddress(
+                    InetAddress.getLocalHost(), serverSocket.getLocalPort()));
+            Socket s = serverSocket.accept();
+            assertTrue(f.awaitUninterruptibly().isSuccess());
+            Channel ch = f.getChannel();
+
+            ChannelFuture writeFuture = ch.write(region);
+            assertTrue(writeFuture.awaitUninterruptibly(10000));
+            assertFalse(writeFuture.isSuccess());
+            assertTrue(writeFuture.getCause() instanceof EOFException);
+
+            ch.close().awaitUninterruptibly();
+            s.close();
+        } finally {
+            serverSocket.close();
+            raf.close();
+            truncatedFile.delete();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.wuyiccc.hellonetty.channel.socket.nio;
+
+import com.wuyiccc.hellonetty.buffer.ChannelBuffer;
+import com.wuyiccc.hellonetty.buffer.ChannelBufferFactory;
+import com.wuyiccc.hellonetty.buffer.HeapChannelBufferFactory;
+import org.junit.Test;
+
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author The Netty Project (netty-dev@lists.jboss.org)
+ * @author Trustin Lee (tlee@redhat.com)
+ *
+ * @version $Rev$, $Date$
+ */
+public class ReceiveBufferAllocatorTest {
+
+    private static final ChannelBufferFactory FACTORY =
+        HeapChannelBufferFactory.getInstance();
+
+    @Test
+    public void testHeapAllocator() {
+        ReceiveBufferAllocator allocator = HeapReceiveBufferAllocator.INSTANCE;
+        ChannelBuffer buf = allocator.allocate(16, FACTORY);
+        assertFalse(buf.toByteBuffer().isDirect());
+        assertEquals(16, buf.capacity());
+        buf.writeInt(42);
+        assertSame(buf, allocator.complete(buf, FACTORY));
+        assertEquals(1, buf.refCnt());
+    }
+
+    @Test
+    public void testDirectAllocator() {
+        ReceiveBufferAllocator allocator = new DirectReceiveBufferAllocator(32);
+
+        ChannelBuffer a = allocator.allocate(16, FACTORY);
+        assertTrue(a.toByteBuffer().isDirect());
+        assertEquals(0, a.writerIndex());
+        assertEquals(16, a.writableBytes());
+        a.writeInt(1);
+        assertSame(a, allocator.complete(a, FACTORY));
+
+        // The next buffer starts right after the bytes read so far.
+        ChannelBuffer b = allocator.allocate(64, FACTORY);
+        assertEquals(28, b.writableBytes());
+        b.writeInt(2);
+        allocator.complete(b, FACTORY);
+        assertEquals(1, a.getInt(0));
+        assertEquals(2, b.getInt(0));
+
+        a.release();
+        b.release();
+    }
+
+    @Test
+    public void testDirectAllocatorReplacesChunk() {
+        ReceiveBufferAllocator allocator = new DirectReceiveBufferAllocator(8);
+
+        ChannelBuffer a = allocator.allocate(8, FACTORY);
+        a.writeLong(1);
+        allocator.complete(a, FACTORY);
+
+        ChannelBuffer b = allocator.allocate(8, FACTORY);
+        b.writeLong(2);
+        allocator.complete(b, FACTORY);
+
+        // The exhausted chunk stays alive until its last slice is released.
+        assertEquals(1, a.refCnt());
+        assertEquals(1, a.getLong(0));
+        assertTrue(a.release());
+        assertEquals(2, b.getLong(0));
+        b.release();
+    }
+
+    @Test
+    public void testDirectAllocatorFollowsFactoryOrder() {
+        ReceiveBufferAllocator allocator = new DirectReceiveBufferAllocator(64);
+        ChannelBuffer a = allocator.allocate(8, FACTORY);
+        assertEquals(ByteOrder.BIG_ENDIAN, a.order());
+        a.release();
+
+        ChannelBuffer b = allocator.allocate(
+                8, HeapChannelBufferFactory.getInstance(ByteOrder.LITTLE_ENDIAN));
+        assertEquals(ByteOrder.LITTLE_ENDIAN, b.order());
+        b.release();
+    }
+
+    @Test
+    public void testDirectCopyAllocator() {
+        ReceiveBufferAllocator allocator = new DirectCopyReceiveBufferAllocator();
+
+        ChannelBuffer buf = allocator.allocate(100, FACTORY);
+        assertTrue(buf.toByteBuffer().isDirect());
+        assertEquals(100, buf.writableBytes());
+        buf.writeInt(42);
+        buf.writeShort((short) 7);
+
+        ChannelBuffer copy = allocator.complete(buf, FACTORY);
+        assertFalse(copy.toByteBuffer().isDirect());
+        assertEquals(6, copy.capacity());
+        assertEquals(6, copy.readableBytes());
+        assertEquals(42, copy.readInt());
+        assertEquals(7, copy.readShort());
+
+        // The direct buffer is reused by the next read.
+        ChannelBuffer next = allocator.allocate(100, FACTORY);
+        assertEquals(0, next.writerIndex());
+        next.writeInt(43);
+        assertEquals(43, allocator.complete(next, FACTORY).getInt(0));
+        assertEquals(42, copy.getInt(0));
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.wuyiccc.hellonetty.channel.socket.nio;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Measures how many selected keys per second a selector loop can visit
+ * with the default {@link java.util.HashSet} of the JDK selector (iterated
+ * and removed one by one) and with a {@link SelectedSelectionKeySet}
+ * (visited by index):
+ * <pre>
+ * java -cp ... com.wuyiccc.hellonetty.channel.socket.nio.SelectedKeySetBenchmark [connections]
+ * </pre>
+ * Every accepted loopback connection has one unread byte, so that all keys
+ * are selected on every select operation.  This is not a unit test and is
+ * not run by the build.
+ *
+ * @author The Netty Project (netty-dev@lists.jboss.org)
+ * @author Trustin Lee (tlee@redhat.com)
+ *
+ * @version $Rev$, $Date$
+ */
+public class SelectedKeySetBenchmark {
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 10;
+    private static final long ROUND_MILLIS = 1000;
+
+    static volatile long sink;
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0? Integer.parseInt(args[0]) : 256;
+
+        ServerSocketChannel server = ServerSocketChannel.open();
+        server.socket().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), connections);
+        List<SocketChannel> channels = new ArrayList<SocketChannel>();
+        try {
+            List<SocketChannel> accepted = new ArrayList<SocketChannel>();
+            for (int i = 0; i < connections; i ++) {
+                SocketChannel client = SocketChannel.open(server.socket().getLocalSocketAddress());
+                client.write(ByteBuffer.wrap(new byte[] { 42 }));
+                channels.add(client);
+                SocketChannel ch = server.accept();
+                ch.configureBlocking(false);
+                channels.add(ch);
+                accepted.add(ch);
+            }
+
+            Selector plain = Selector.open();
+            Selector optimized = Selector.open();
+            try {
+                SelectedSelectionKeySet keySet = SelectorUtil.optimize(optimized);
+                if (keySet == null) {
+                    System.out.println(
+                            "The selected-key set could not be replaced; " +
+                            "both runs will use the iterator.");
+                }
+                for (SocketChannel ch: accepted) {
+                    ch.register(plain, SelectionKey.OP_READ);
+                    ch.register(optimized, SelectionKey.OP_READ);
+                }
+
+                for (int i = 0; i < WARMUP_ROUNDS; i ++) {
+                    run(plain, null);
+                    run(optimized, keySet);
+                }
+
+                long plainTotal = 0;
+                long optimizedTotal = 0;
+                for (int i = 0; i < ROUNDS; i ++) {
+                    plainTotal += run(plain, null);
+                    optimizedTotal += run(optimized, keySet);
+                }
+
+                System.out.println(connections + " connections:");
+                System.out.println(
+                        "  HashSet + Iterator:      " +
+                        plainTotal / ROUNDS + " keys/s");
+                System.out.println(
+                        "  SelectedSelectionKeySet: " +
+                        optimizedTotal / ROUNDS + " keys/s");
+            } finally {
+                plain.close();
+                optimized.close();
+            }
+        } finally {
+            for (SocketChannel ch: channels) {
+                ch.close();
+            }
+            server.close();
+        }
+    }
+
+    private static long run(Selector selector, SelectedSelectionKeySet keySet) throws IOException {
+        long keys = 0;
+        long readyOps = 0;
+        long startTime = System.nanoTime();
+        long endTime = startTime + ROUND_MILLIS * 1000000L;
+        long now;
+        do {
+            selector.selectNow();
+            if (keySet != null) {
+                for (int i = 0; i < keySet.size(); i ++) {
+                    readyOps += keySet.get(i).readyOps();
+                }
+                keys += keySet.size();
+                keySet.reset();
+            } else {
+                for (Iterator<SelectionKey> i = selector.selectedKeys().iterator(); i.hasNext();) {
+                    SelectionKey k = i.next();
+                    i.remove();
+                    readyOps += k.readyOps();
+                    keys ++;
+                }
+            }
+            now = System.nanoTime();
+        } while (now < endTime);
+
+        sink = readyOps;
+        return keys * 1000000000L / (now - startTime);
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.wuyiccc.hellonetty.channel.socket.nio;
+
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author The Netty Project (netty-dev@lists.jboss.org)
+ * @author Trustin Lee (tlee@redhat.com)
+ *
+ * @version $Rev$, $Date$
+ */
+public class SelectedSelectionKeySetTest {
+
+    @Test
+    public void testAddGrowAndReset() throws Exception {
+        Selector selector = Selector.open();
+        SocketChannel ch = SocketChannel.open();
+        try {
+            ch.configureBlocking(false);
+            SelectionKey k = ch.register(selector, 0);
+
+            SelectedSelectionKeySet set = new SelectedSelectionKeySet();
+            assertFalse(set.add(null));
+            for (int i = 0; i < 3000; i ++) {
+                assertTrue(set.add(k));
+            }
+            assertEquals(3000, set.size());
+            assertSame(k, set.get(2999));
+            assertFalse(set.contains(k));
+            assertFalse(set.remove(k));
+
+            int count = 0;
+            for (Iterator<SelectionKey> i = set.iterator(); i.hasNext();) {
+                assertSame(k, i.next());
+                count ++;
+            }
+            assertEquals(3000, count);
+
+            set.reset();
+            assertEquals(0, set.size());
+            assertTrue(set.isEmpty());
+            assertNull(set.get(0));
+        } finally {
+            ch.close();
+            selector.close();
+        }
+    }
+
+    @Test
+    public void testOptimizedSelector() throws Exception {
+        Selector selector = Selector.open();
+        ServerSocketChannel server = ServerSocketChannel.open();
+        SocketChannel client = null;
+        SocketChannel accepted = null;
+        try {
+            SelectedSelectionKeySet set = SelectorUtil.optimize(selector);
+            if (set == null) {
+                // Not supported by this JDK - the iterator will be used.
+                return;
+            }
+            assertSame(set, selector.selectedKeys());
+
+            server.socket().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            client = SocketChannel.open(server.socket().getLocalSocketAddress());
+            accepted = server.accept();
+            accepted.configureBlocking(false);
+            SelectionKey k = accepted.register(selector, SelectionKey.OP_READ);
+
+            client.write(ByteBuffer.wrap(new byte[] { 42 }));
+            for (int i = 0; i < 10 && set.isEmpty(); i ++) {
+                selector.select(1000);
+            }
+            assertEquals(1, set.size());
+            assertSame(k, set.get(0));
+            assertTrue(k.isReadable());
+
+            // The key is selected again once the set is reset.
+            set.reset();
+            assertEquals(1, selector.select(1000));
+            assertSame(k, set.get(0));
+        } finally {
+            if (client != null) {
+                client.close();
+            }
+            if (accepted != null) {
+                accepted.close();
+            }
+            server.close();
+            selector.close();
+        }
+    }
+}
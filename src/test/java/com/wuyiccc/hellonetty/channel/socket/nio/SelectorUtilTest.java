@@ -0,0 +1,117 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.wuyiccc.hellonetty.channel.socket.nio;
+
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author The Netty Project (netty-dev@lists.jboss.org)
+ * @author Trustin Lee (tlee@redhat.com)
+ *
+ * @version $Rev$, $Date$
+ */
+public class SelectorUtilTest {
+
+    @Test
+    public void testMoveKeys() throws Exception {
+        Selector oldSelector = Selector.open();
+        Selector newSelector = Selector.open();
+        ServerSocketChannel server = ServerSocketChannel.open();
+        SocketChannel client = null;
+        SocketChannel accepted = null;
+        try {
+            server.socket().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            client = SocketChannel.open(server.socket().getLocalSocketAddress());
+            accepted = server.accept();
+            accepted.configureBlocking(false);
+            server.configureBlocking(false);
+
+            Object attachment = new Object();
+            SelectionKey oldKey = accepted.register(oldSelector, SelectionKey.OP_READ, attachment);
+            SelectionKey oldServerKey = server.register(oldSelector, 0);
+
+            assertEquals(2, SelectorUtil.moveKeys(oldSelector, newSelector));
+            assertFalse(oldKey.isValid());
+            assertFalse(oldServerKey.isValid());
+
+            SelectionKey newKey = accepted.keyFor(newSelector);
+            assertNotNull(newKey);
+            assertEquals(SelectionKey.OP_READ, newKey.interestOps());
+            assertSame(attachment, newKey.attachment());
+            assertEquals(0, server.keyFor(newSelector).interestOps());
+
+            // The moved key is selected by the new selector.
+            client.write(ByteBuffer.wrap(new byte[] { 42 }));
+            assertEquals(1, newSelector.select(5000));
+            assertTrue(newSelector.selectedKeys().contains(newKey));
+
+            // The invalid keys are not moved again.
+            oldSelector.selectNow();
+            assertEquals(0, SelectorUtil.moveKeys(oldSelector, newSelector));
+        } finally {
+            if (client != null) {
+                client.close();
+            }
+            if (accepted != null) {
+                accepted.close();
+            }
+            server.close();
+            oldSelector.close();
+            newSelector.close();
+        }
+    }
+
+    @Test
+    public void testPrematureReturn() throws Exception {
+        Selector selector = Selector.open();
+        try {
+            long startTime = System.nanoTime();
+            selector.selectNow();
+            assertTrue(SelectorUtil.isPrematureReturn(startTime));
+
+            startTime = System.nanoTime();
+            selector.select(SelectorUtil.SELECT_TIMEOUT);
+            assertFalse(SelectorUtil.isPrematureReturn(startTime));
+        } finally {
+            selector.close();
+        }
+    }
+
+    @Test
+    public void testNoRebuildByDefault() throws Exception {
+        NioClientSocketChannelFactory factory = new NioClientSocketChannelFactory(
+                Executors.newCachedThreadPool(), Executors.newCachedThreadPool());
+        assertEquals(0, factory.getSelectorRebuildCount());
+    }
+}
@@ -95,15 +95,29 @@ public abstract class AbstractSocketFixedLengthEchoTest {
 
     @Test
     public void testFixedLengthEcho() throws Throwable {
+        testFixedLengthEcho(MergeCumulator.INSTANCE);
+    }
+
+    @Test
+    public void testFixedLengthEchoWithCompositeCumulator() throws Throwable {
+        testFixedLengthEcho(new CompositeCumulator(4));
+    }
+
+    private void testFixedLengthEcho(Cumulator cumulator) throws Throwable {
         ServerBootstrap sb = new ServerBootstrap(newServerSocketChannelFactory(executor));
         ClientBootstrap cb = new ClientBootstrap(newClientSocketChannelFactory(executor));
 
         EchoHandler sh = new EchoHandler();
         EchoHandler ch = new EchoHandler();
 
-        sb.getPipeline().addLast("decoder", new FixedLengthFrameDecoder(1024));
+        FixedLengthFrameDecoder sd = new FixedLengthFrameDecoder(1024);
+        FixedLengthFrameDecoder cd = new FixedLengthFrameDecoder(1024);
+        sd.setCumulator(cumulator);
+        cd.setCumulator(cumulator);
+
+        sb.getPipeline().addLast("decoder", sd);
         sb.getPipeline().addAfter("decoder", "handler", sh);
-        cb.getPipeline().addLast("decoder", new FixedLengthFrameDecoder(1024));
+        cb.getPipeline().addLast("decoder", cd);
         cb.getPipeline().addAfter("decoder", "handler", ch);
 
         Channel sc = sb.bind(new InetSocketAddress(0));
@@ -0,0 +1,91 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.wuyiccc.hellonetty.handler.codec.frame;
+
+import com.wuyiccc.hellonetty.buffer.ChannelBuffer;
+import com.wuyiccc.hellonetty.buffer.CompositeChannelBuffer;
+import com.wuyiccc.hellonetty.buffer.DynamicChannelBuffer;
+import org.junit.Test;
+
+import static com.wuyiccc.hellonetty.buffer.ChannelBuffers.*;
+import static org.junit.Assert.*;
+
+/**
+ * @author The Netty Project (netty-dev@lists.jboss.org)
+ * @author Trustin Lee (tlee@redhat.com)
+ *
+ * @version $Rev$, $Date$
+ */
+public class CumulatorTest {
+
+    @Test
+    public void testMergeCumulator() {
+        ChannelBuffer a = wrappedBuffer(new byte[] { 1, 2, 3 });
+        ChannelBuffer b = wrappedBuffer(new byte[] { 4, 5 });
+        a.skipBytes(1);
+
+        ChannelBuffer c = MergeCumulator.INSTANCE.cumulate(null, a);
+        assertTrue(c instanceof DynamicChannelBuffer);
+        assertEquals(0, a.refCnt());
+        assertSame(c, MergeCumulator.INSTANCE.cumulate(c, b));
+        assertEquals(0, b.refCnt());
+        assertEquals(wrappedBuffer(new byte[] { 2, 3, 4, 5 }), c);
+    }
+
+    @Test
+    public void testCompositeCumulator() {
+        Cumulator cumulator = new CompositeCumulator(3);
+        ChannelBuffer a = wrappedBuffer(new byte[] { 1, 2 });
+        ChannelBuffer b = wrappedBuffer(new byte[] { 3, 4 });
+        ChannelBuffer c = wrappedBuffer(new byte[] { 5, 6 });
+        ChannelBuffer d = wrappedBuffer(new byte[] { 7, 8 });
+
+        // The first input is kept as it is.
+        assertSame(a, cumulator.cumulate(null, a));
+
+        ChannelBuffer cumulation = cumulator.cumulate(a, b);
+        assertTrue(cumulation instanceof CompositeChannelBuffer);
+        assertEquals(1, a.refCnt());
+        assertEquals(1, b.refCnt());
+
+        // The components which were read fully are discarded.
+        cumulation.skipBytes(3);
+        assertSame(cumulation, cumulator.cumulate(cumulation, c));
+        assertEquals(0, a.refCnt());
+        assertEquals(2, ((CompositeChannelBuffer) cumulation).numComponents());
+        assertEquals(wrappedBuffer(new byte[] { 4, 5, 6 }), cumulation);
+
+        assertSame(cumulation, cumulator.cumulate(cumulation, d));
+        assertEquals(3, ((CompositeChannelBuffer) cumulation).numComponents());
+
+        // Too many components are consolidated, starting from the last one.
+        assertSame(cumulation, cumulator.cumulate(
+                cumulation, wrappedBuffer(new byte[] { 9 })));
+        assertEquals(2, ((CompositeChannelBuffer) cumulation).numComponents());
+        assertEquals(1, cumulation.refCnt());
+        assertEquals(1, b.refCnt());
+        assertEquals(0, c.refCnt());
+        assertEquals(0, d.refCnt());
+        assertEquals(wrappedBuffer(new byte[] { 4, 5, 6, 7, 8, 9 }), cumulation);
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.wuyiccc.hellonetty.handler.codec.frame;
+
+import static com.wuyiccc.hellonetty.buffer.ChannelBuffers.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.wuyiccc.hellonetty.buffer.ChannelBuffer;
+
+/**
+ * @author The Netty Project (netty-dev@lists.jboss.org)
+ * @author Trustin Lee (tlee@redhat.com)
+ *
+ * @version $Rev$, $Date$
+ *
+ */
+public class DelimiterBasedFrameDecoderTest {
+
+    @Test
+    public void testShortestFrameWins() throws Exception {
+        DelimiterBasedFrameDecoder decoder =
+            new DelimiterBasedFrameDecoder(8192, Delimiters.lineDelimiter());
+        ChannelBuffer buf = copiedBuffer("ABC\nDEF\r\nGHI", "US-ASCII");
+
+        assertEquals("ABC", decode(decoder, buf));
+        assertEquals("DEF", decode(decoder, buf));
+        assertNull(decoder.decode(null, null, buf));
+        assertEquals(3, buf.readableBytes());
+    }
+
+    @Test
+    public void testEarliestDelimiterWinsOverEarliestMatch() throws Exception {
+        // "cd" ends first, but "bcde" starts first.
+        DelimiterBasedFrameDecoder decoder = new DelimiterBasedFrameDecoder(
+                8192, copiedBuffer("cd", "US-ASCII"), copiedBuffer("bcde", "US-ASCII"));
+        ChannelBuffer buf = copiedBuffer("abcdef", "US-ASCII");
+
+        assertEquals("a", decode(decoder, buf));
+        assertEquals("f", buf.toString("US-ASCII"));
+    }
+
+    @Test
+    public void testIncrementalScan() throws Exception {
+        DelimiterBasedFrameDecoder decoder =
+            new DelimiterBasedFrameDecoder(8192, Delimiters.lineDelimiter());
+        ChannelBuffer buf = dynamicBuffer();
+
+        // The delimiter is split across reads.
+        String data = "first line\r\nsecond line\n";
+        List<String> frames = new ArrayList<String>();
+        for (int i = 0; i < data.length(); i ++) {
+            buf.writeByte((byte) data.charAt(i));
+            Object frame;
+            while ((frame = decoder.decode(null, null, buf)) != null) {
+                frames.add(((ChannelBuffer) frame).toString("US-ASCII"));
+            }
+        }
+
+        assertEquals(2, frames.size());
+        assertEquals("first line", frames.get(0));
+        assertEquals("second line", frames.get(1));
+        assertFalse(buf.readable());
+    }
+
+    @Test(expected = TooLongFrameException.class)
+    public void testTooLongFrame() throws Exception {
+        DelimiterBasedFrameDecoder decoder =
+            new DelimiterBasedFrameDecoder(4, Delimiters.nulDelimiter());
+        decoder.decode(null, null, copiedBuffer("ABCDE", "US-ASCII"));
+    }
+
+    @Test
+    public void testTooLongFrameIsDiscarded() throws Exception {
+        DelimiterBasedFrameDecoder decoder =
+            new DelimiterBasedFrameDecoder(4, Delimiters.nulDelimiter());
+        ChannelBuffer buf = copiedBuffer("ABCDE\0FG\0", "US-ASCII");
+        try {
+            decoder.decode(null, null, buf);
+            fail();
+        } catch (TooLongFrameException e) {
+            // Expected
+        }
+        // Only the frame is discarded; its delimiter yields an empty frame.
+        assertEquals("", decode(decoder, buf));
+        assertEquals("FG", decode(decoder, buf));
+    }
+
+    @Test
+    public void testRandomDataInRandomPieces() throws Exception {
+        String[][] delimiterSets = {
+                { "\r\n", "\n" },
+                { "\r", "\r\n" },
+                { "abc", "bc", "cab" },
+                { "aab", "ab", "b" },
+                { "bcde", "cd", "x" },
+        };
+        Random random = new Random(42);
+        for (String[] delimiterSet: delimiterSets) {
+            ChannelBuffer[] delimiters = new ChannelBuffer[delimiterSet.length];
+            for (int i = 0; i < delimiters.length; i ++) {
+                delimiters[i] = copiedBuffer(delimiterSet[i], "US-ASCII");
+            }
+
+            StringBuilder data = new StringBuilder();
+            String alphabet = "abcdex\r\n";
+            for (int i = 0; i < 10000; i ++) {
+                data.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+
+            List<String> expected = new ArrayList<String>();
+            ChannelBuffer whole = copiedBuffer(data.toString(), "US-ASCII");
+            for (;;) {
+                String frame = naiveDecode(whole, delimiters);
+                if (frame == null) {
+                    break;
+                }
+                expected.add(frame);
+            }
+
+            DelimiterBasedFrameDecoder decoder =
+                new DelimiterBasedFrameDecoder(10000, delimiters);
+            ChannelBuffer buf = dynamicBuffer();
+            List<String> actual = new ArrayList<String>();
+            for (int i = 0; i < data.length();) {
+                int length = Math.min(data.length() - i, 1 + random.nextInt(7));
+                buf.writeBytes(copiedBuffer(data.substring(i, i + length), "US-ASCII"));
+                i += length;
+                Object frame;
+                while ((frame = decoder.decode(null, null, buf)) != null) {
+                    actual.add(((ChannelBuffer) frame).toString("US-ASCII"));
+                }
+                buf.discardReadBytes();
+            }
+
+            assertEquals(expected, actual);
+        }
+    }
+
+    private static String decode(
+            DelimiterBasedFrameDecoder decoder, ChannelBuffer buf) throws Exception {
+        ChannelBuffer frame = (ChannelBuffer) decoder.decode(null, null, buf);
+        assertNotNull(frame);
+        return frame.toString("US-ASCII");
+    }
+
+    /**
+     * Tries every delimiter at every position, picking the delimiter which
+     * yields the shortest frame.
+     */
+    private static String naiveDecode(ChannelBuffer buf, ChannelBuffer[] delimiters) {
+        for (int i = buf.readerIndex(); i < buf.writerIndex(); i ++) {
+            for (ChannelBuffer d: delimiters) {
+                if (i + d.capacity() <= buf.writerIndex() &&
+                    buf.slice(i, d.capacity()).equals(d)) {
+                    String frame = buf.toString(
+                            buf.readerIndex(), i - buf.readerIndex(), "US-ASCII");
+                    buf.readerIndex(i + d.capacity());
+                    return frame;
+                }
+            }
+        }
+        return null;
+    }
+}
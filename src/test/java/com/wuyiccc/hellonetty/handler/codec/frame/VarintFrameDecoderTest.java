@@ -0,0 +1,127 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.wuyiccc.hellonetty.handler.codec.frame;
+
+import static com.wuyiccc.hellonetty.buffer.ChannelBuffers.*;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.wuyiccc.hellonetty.buffer.ChannelBuffer;
+
+/**
+ * @author The Netty Project (netty-dev@lists.jboss.org)
+ * @author Trustin Lee (tlee@redhat.com)
+ *
+ * @version $Rev$, $Date$
+ *
+ */
+public class VarintFrameDecoderTest {
+
+    @Test
+    public void testFragmentedFrames() throws Exception {
+        VarintFrameDecoder decoder = new VarintFrameDecoder(8192);
+        ChannelBuffer data = dynamicBuffer();
+        data.writeVarInt32(3);
+        data.writeBytes(new byte[] { 'A', 'B', 'C' });
+        data.writeVarInt32(300);
+        data.writeZero(300);
+        data.writeVarInt32(0);
+
+        // Feed one byte at a time so that the length field is split too.
+        ChannelBuffer buf = dynamicBuffer();
+        int frames = 0;
+        while (data.readable()) {
+            buf.writeByte(data.readByte());
+            Object frame = decoder.decode(null, null, buf);
+            if (frame == null) {
+                continue;
+            }
+
+            ChannelBuffer f = (ChannelBuffer) frame;
+            switch (frames ++) {
+            case 0:
+                assertEquals("ABC", f.toString("US-ASCII"));
+                break;
+            case 1:
+                assertEquals(300, f.readableBytes());
+                break;
+            case 2:
+                assertFalse(f.readable());
+                break;
+            }
+        }
+        assertEquals(3, frames);
+        assertFalse(buf.readable());
+    }
+
+    @Test
+    public void testTooLongFrameIsDiscarded() throws Exception {
+        VarintFrameDecoder decoder = new VarintFrameDecoder(4);
+        ChannelBuffer buf = dynamicBuffer();
+        buf.writeVarInt32(8);
+        buf.writeZero(3);
+
+        try {
+            decoder.decode(null, null, buf);
+            fail();
+        } catch (TooLongFrameException e) {
+            // Expected
+        }
+        assertFalse(buf.readable());
+
+        // The rest of the long frame is discarded as it arrives.
+        buf.writeZero(5);
+        buf.writeVarInt32(2);
+        buf.writeBytes(new byte[] { 'O', 'K' });
+        assertNull(decoder.decode(null, null, buf));
+        ChannelBuffer frame = (ChannelBuffer) decoder.decode(null, null, buf);
+        assertEquals("OK", frame.toString("US-ASCII"));
+    }
+
+    @Test
+    public void testIncompleteLengthField() throws Exception {
+        VarintFrameDecoder decoder = new VarintFrameDecoder(Integer.MAX_VALUE);
+        ChannelBuffer buf = wrappedBuffer(new byte[] {
+                (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80 });
+        assertNull(decoder.decode(null, null, buf));
+        assertEquals(0, buf.readerIndex());
+        assertEquals(4, buf.readableBytes());
+    }
+
+    @Test(expected = CorruptedFrameException.class)
+    public void testMalformedLengthField() throws Exception {
+        VarintFrameDecoder decoder = new VarintFrameDecoder(8192);
+        ChannelBuffer buf = wrappedBuffer(new byte[] {
+                (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x01 });
+        decoder.decode(null, null, buf);
+    }
+
+    @Test(expected = CorruptedFrameException.class)
+    public void testNegativeLengthField() throws Exception {
+        VarintFrameDecoder decoder = new VarintFrameDecoder(8192);
+        ChannelBuffer buf = dynamicBuffer();
+        buf.writeVarInt32(-1);
+        decoder.decode(null, null, buf);
+    }
+}
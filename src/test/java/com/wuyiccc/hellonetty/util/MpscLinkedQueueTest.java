@@ -0,0 +1,143 @@
+/*
+ * JBoss, Home of Professional Open Source
+ *
+ * Copyright 2008, Red Hat Middleware LLC, and individual contributors
+ * by the @author tags. See the COPYRIGHT.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package com.wuyiccc.hellonetty.util;
+
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+
+/**
+ * @author The Netty Project (netty-dev@lists.jboss.org)
+ * @author Trustin Lee (tlee@redhat.com)
+ *
+ * @version $Rev$, $Date$
+ *
+ */
+public class MpscLinkedQueueTest {
+
+    @Test
+    public void testOfferAndPoll() {
+        Queue<Integer> q = new MpscLinkedQueue<Integer>();
+        assertTrue(q.isEmpty());
+        assertEquals(0, q.size());
+        assertNull(q.peek());
+        assertNull(q.poll());
+
+        for (int i = 0; i < 10; i ++) {
+            assertTrue(q.offer(Integer.valueOf(i)));
+        }
+        assertFalse(q.isEmpty());
+        assertEquals(10, q.size());
+        assertEquals(Integer.valueOf(0), q.peek());
+
+        for (int i = 0; i < 10; i ++) {
+            assertEquals(Integer.valueOf(i), q.poll());
+        }
+        assertTrue(q.isEmpty());
+        assertNull(q.poll());
+    }
+
+    @Test
+    public void testIterator() {
+        Queue<Integer> q = new MpscLinkedQueue<Integer>();
+        for (int i = 0; i < 3; i ++) {
+            q.offer(Integer.valueOf(i));
+        }
+        q.poll();
+
+        Iterator<Integer> it = q.iterator();
+        assertTrue(it.hasNext());
+        assertEquals(Integer.valueOf(1), it.next());
+        assertEquals(Integer.valueOf(2), it.next());
+        assertFalse(it.hasNext());
+        try {
+            it.next();
+            fail();
+        } catch (NoSuchElementException e) {
+            // Expected
+        }
+
+        // The iterator does not remove anything.
+        assertEquals(2, q.size());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testNullElement() {
+        new MpscLinkedQueue<Object>().offer(null);
+    }
+
+    @Test
+    public void testConcurrentProducers() throws Exception {
+        final int producers = 8;
+        final int count = 100000;
+        final Queue<long[]> q = new MpscLinkedQueue<long[]>();
+        final CountDownLatch start = new CountDownLatch(1);
+
+        Thread[] threads = new Thread[producers];
+        for (int i = 0; i < producers; i ++) {
+            final int id = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < count; j ++) {
+                        q.offer(new long[] { id, j });
+                    }
+                }
+            };
+            threads[i].start();
+        }
+
+        start.countDown();
+
+        // Every producer's elements must be polled once and in order.
+        int[] next = new int[producers];
+        for (int polled = 0; polled < producers * count;) {
+            long[] e = q.poll();
+            if (e == null) {
+                Thread.yield();
+                continue;
+            }
+            assertEquals(next[(int) e[0]] ++, e[1]);
+            polled ++;
+        }
+
+        for (Thread t: threads) {
+            t.join();
+        }
+        assertNull(q.poll());
+        for (int n: next) {
+            assertEquals(count, n);
+        }
+    }
+}